@@ -0,0 +1,23 @@
+package datastructure;
+
+/**
+ * The terminal held by the error nodes that a recovering parser inserts into
+ * the parse tree where the input could not be parsed.
+ *
+ * @author yucunli
+ */
+public class ErrorSymbol extends Terminal {
+    
+    private ErrorSymbol(String value) {
+        super(value);
+    }
+    
+    public static ErrorSymbol getInstance() {
+        if (error == null) {
+            error = new ErrorSymbol("ERROR");
+        }
+        return error;
+    }
+    
+    private static ErrorSymbol error = null;
+}
@@ -12,6 +12,7 @@ public class Grammar {
     private List<Terminal> terminals;
     private HashMap<Variable, List<List<Symbol>>> relations;
     private Variable start;
+    private OperatorTable operators = new OperatorTable();
     
     public Grammar(List<Variable> variables, List<Terminal> terminals,
             HashMap< Variable, List<List<Symbol>>> relations, Variable start) {
@@ -46,6 +47,15 @@ public class Grammar {
     public Variable getStart() {
         return start;
     }
+
+    /** @return The operator declarations, empty if the grammar has none. */
+    public OperatorTable getOperators() {
+        return operators;
+    }
+
+    public void setOperators(OperatorTable operators) {
+        this.operators = operators;
+    }
     
     private String relationsToString() {
         HashMap<Variable, List<List<Symbol>>> relations = this.getRelations();
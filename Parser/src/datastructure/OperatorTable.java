@@ -0,0 +1,82 @@
+package datastructure;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The operator declarations of a grammar: the precedence and associativity
+ * of binary operators, and the variables parsed as operator-precedence
+ * expressions over an operand variable.  Levels are added from the loosest
+ * to the tightest, so an operator of a later level binds tighter.
+ *
+ * @author yucunli
+ */
+public class OperatorTable {
+
+    public static final int LEFT = 0;
+    public static final int RIGHT = 1;
+    public static final int NONASSOC = 2;
+
+    private final Map<Terminal, Integer> precedences = new HashMap<>();
+    private final Map<Terminal, Integer> associativities = new HashMap<>();
+    private final Map<Variable, Variable> operands = new LinkedHashMap<>();
+    private int levelCount = 0;
+
+    /**
+     * Adds a level of operators binding tighter than the levels added so
+     * far.
+     *
+     * @param associativity {@link #LEFT}, {@link #RIGHT} or
+     * {@link #NONASSOC}.
+     * @param operators The operators of the level.
+     */
+    public void addLevel(int associativity, List<Terminal> operators) {
+        ++levelCount;
+        for (Terminal operator : operators) {
+            precedences.put(operator, levelCount);
+            associativities.put(operator, associativity);
+        }
+    }
+
+    /**
+     * Declares a variable as an expression of operands separated by
+     * operators.
+     *
+     * @param expression The variable parsed as an expression.
+     * @param operand The variable of its operands.
+     */
+    public void addExpression(Variable expression, Variable operand) {
+        operands.put(expression, operand);
+    }
+
+    /** @return The level of an operator, from 1, or 0 if it is none. */
+    public int getPrecedence(Terminal operator) {
+        Integer precedence = precedences.get(operator);
+        return precedence == null ? 0 : precedence;
+    }
+
+    /** @return The associativity of an operator. */
+    public int getAssociativity(Terminal operator) {
+        return associativities.get(operator);
+    }
+
+    public boolean isOperator(Symbol symbol) {
+        return precedences.containsKey(symbol);
+    }
+
+    /** @return The operand variable of an expression, or null. */
+    public Variable getOperand(Variable expression) {
+        return operands.get(expression);
+    }
+
+    public Set<Variable> getExpressions() {
+        return operands.keySet();
+    }
+
+    public boolean isEmpty() {
+        return operands.isEmpty();
+    }
+}
@@ -8,6 +8,7 @@ public class Terminal extends Symbol{
     
     int line;
     int index;
+    String lexeme;
     
     public Terminal(String value) {
         super(value);
@@ -33,6 +34,14 @@ public class Terminal extends Symbol{
     public void setIndex(int index) {
         this.index = index;
     }
+
+    public String getLexeme() {
+        return lexeme;
+    }
+
+    public void setLexeme(String lexeme) {
+        this.lexeme = lexeme;
+    }
     
     
 }
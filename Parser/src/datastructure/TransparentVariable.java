@@ -0,0 +1,16 @@
+package datastructure;
+
+/**
+ * A variable generated for a group, option or repetition of an EBNF right
+ * part.  Parse trees have no node of their own for it: what it derives
+ * belongs to the node of the nearest variable written in the grammar, so a
+ * repetition gives one flat list node.
+ *
+ * @author yucunli
+ */
+public class TransparentVariable extends Variable {
+
+    public TransparentVariable(String value) {
+        super(value);
+    }
+}
@@ -0,0 +1,322 @@
+package driver;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import exceptions.GrammarFormatException;
+import exceptions.GrammarNotLL1Exception;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import lexer.Lexer;
+import lexer.Tag;
+import lexer.Token;
+import parser.Diagnostic;
+import parser.GrammarLoader;
+import parser.ParserGenerator;
+import parser.RecoveringParser;
+import serialization.TreeSerializer;
+
+/**
+ * Syntax-checks many source files in parallel and writes a summary of the
+ * diagnostics and timings of every file.
+ * <p>
+ * The grammar is loaded and its parsing table built once.  Files are parsed
+ * concurrently on a work-stealing pool, largest first, so that the long
+ * files do not end up running alone at the end of the batch.
+ * <p>
+ * Usage: BatchParserDriver [options] (directory | file | glob)...
+ * <pre>
+ *   --grammar file     grammar to parse with
+ *   --include glob     file name pattern used inside directories (default *.txt)
+ *   --threads n        number of worker threads (default: number of cores)
+ *   --max-errors n     diagnostics kept per file (default 100)
+ *   --summary file     write the summary to a file instead of stdout
+ * </pre>
+ * The exit status is 1 if any file has a syntax error, and 2 if the
+ * arguments are wrong or the grammar cannot be loaded or is not LL(1).
+ *
+ * @author yucunli
+ */
+public class BatchParserDriver {
+
+    /**
+     * The outcome of parsing one file.
+     */
+    private static final class Result {
+        final Path file;
+        final long size;
+        int tokens = 0;
+        int errorCount = 0;
+        List<Diagnostic> diagnostics = Collections.emptyList();
+        String failure = null;
+        long nanos = 0;
+
+        Result(Path file, long size) {
+            this.file = file;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A lexer whose file can be closed, which the lexer itself never does,
+     * so that a batch does not keep a file open for every file parsed.
+     */
+    private static final class FileLexer extends Lexer {
+
+        FileLexer(String filename) throws FileNotFoundException {
+            super(filename);
+        }
+
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        String grammarFile = "grammar/grammer_changed_from_solution.txt";
+        String include = "*.txt";
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxErrors = 100;
+        String summary = null;
+        List<String> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; ++i) {
+            switch (args[i]) {
+                case "--grammar":
+                    grammarFile = args[++i];
+                    break;
+                case "--include":
+                    include = args[++i];
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                case "--max-errors":
+                    maxErrors = Integer.parseInt(args[++i]);
+                    break;
+                case "--summary":
+                    summary = args[++i];
+                    break;
+                default:
+                    inputs.add(args[i]);
+            }
+        }
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: BatchParserDriver [options] (directory | file | glob)...");
+            System.exit(2);
+        }
+
+        List<Path> files = collectFiles(inputs, include);
+
+        Grammar grammar;
+        try {
+            grammar = new GrammarLoader().load(grammarFile);
+        } catch (GrammarFormatException ex) {
+            System.err.println(grammarFile + ":" + ex.getMessage());
+            System.exit(2);
+            return;
+        } catch (IOException ex) {
+            System.err.println(ex);
+            System.exit(2);
+            return;
+        }
+        Supplier<RecoveringParser> parsers;
+        try {
+            parsers = ParserGenerator.createRecoveringParserFactory(grammar, maxErrors);
+        } catch (GrammarNotLL1Exception ex) {
+            System.err.println("Given grammar is not LL1 grammar!");
+            System.err.println(ex);
+            System.exit(2);
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Result> results = parseAll(files, parsers, threads);
+        long wallNanos = System.nanoTime() - start;
+
+        boolean failed = false;
+        try (PrintWriter out = summary == null ? new PrintWriter(System.out)
+                : new PrintWriter(TreeSerializer.openWriter(summary))) {
+            failed = writeSummary(results, threads, wallNanos, out);
+        }
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Expands the command line inputs into a list of files.  Directories are
+     * searched recursively for files matching the include pattern, and
+     * inputs containing glob characters are matched against the files below
+     * their longest literal directory.
+     */
+    static List<Path> collectFiles(List<String> inputs, String include) throws IOException {
+        final Set<Path> files = new LinkedHashSet<>();
+        for (String input : inputs) {
+            final PathMatcher matcher;
+            Path root;
+            if (input.matches(".*[*?\\[{].*")) {
+                matcher = FileSystems.getDefault().getPathMatcher("glob:" + input);
+                int literal = input.replaceAll("[*?\\[{].*$", "").lastIndexOf('/');
+                root = Paths.get(literal < 0 ? "." : input.substring(0, literal + 1));
+            } else {
+                root = Paths.get(input);
+                if (!Files.isDirectory(root)) {
+                    files.add(root);
+                    continue;
+                }
+                final PathMatcher name = FileSystems.getDefault().getPathMatcher("glob:" + include);
+                matcher = new PathMatcher() {
+                    @Override
+                    public boolean matches(Path path) {
+                        return name.matches(path.getFileName());
+                    }
+                };
+            }
+
+            final boolean relative = root.toString().equals(".") && !input.startsWith("./");
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    Path candidate = relative ? Paths.get(".").relativize(file) : file;
+                    if (attributes.isRegularFile() && matcher.matches(candidate)) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Parses every file on a work-stealing pool, largest file first.
+     */
+    static List<Result> parseAll(List<Path> files, final Supplier<RecoveringParser> parsers, int threads)
+            throws InterruptedException, ExecutionException {
+        List<Result> results = new ArrayList<>();
+        for (Path file : files) {
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException ex) {
+                size = 0;
+            }
+            results.add(new Result(file, size));
+        }
+        Collections.sort(results, new Comparator<Result>() {
+            @Override
+            public int compare(Result a, Result b) {
+                return Long.compare(b.size, a.size);
+            }
+        });
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (final Result result : results) {
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        parse(result, parsers.get());
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return results;
+    }
+
+    /**
+     * Lexes and parses one file, recording its diagnostics and timing.
+     */
+    static void parse(Result result, RecoveringParser parser) {
+        long start = System.nanoTime();
+        try {
+            FileLexer lex = new FileLexer(result.file.toString());
+            try {
+                lex.init();
+                while (true) {
+                    Token t = lex.next_token();
+                    if (t.tag == Tag.EOF) {
+                        break;
+                    }
+                    Terminal terminal = new Terminal(Tag.tagToTerminalString(t.tag));
+                    terminal.setLine(t.getLine());
+                    terminal.setIndex(t.getIndex());
+                    terminal.setLexeme(t.toString());
+                    parser.nextTerminal(terminal);
+                    ++result.tokens;
+                }
+            } finally {
+                lex.close();
+            }
+            parser.inputComplete();
+            result.diagnostics = parser.getDiagnostics();
+            result.errorCount = parser.getErrorCount();
+        } catch (Exception ex) {
+            result.failure = ex.toString();
+        }
+        result.nanos = System.nanoTime() - start;
+    }
+
+    /**
+     * Writes the per-file results, largest file first, and the totals.
+     *
+     * @return Whether any file failed to parse.
+     */
+    static boolean writeSummary(List<Result> results, int threads, long wallNanos, PrintWriter out) {
+        long totalNanos = 0;
+        long totalTokens = 0;
+        int failedFiles = 0;
+        for (Result result : results) {
+            String status = result.failure != null ? "FAILED"
+                    : result.errorCount > 0 ? "ERRORS" : "OK";
+            out.printf("%-6s %s  %d tokens, %d errors, %.3f ms%n", status, result.file,
+                    result.tokens, result.errorCount, result.nanos / 1e6);
+            if (result.failure != null) {
+                out.println("    " + result.failure);
+            }
+            for (Diagnostic diagnostic : result.diagnostics) {
+                out.println("    " + diagnostic);
+            }
+            if (result.errorCount > result.diagnostics.size()) {
+                out.println("    " + (result.errorCount - result.diagnostics.size()) + " more errors not reported.");
+            }
+            totalNanos += result.nanos;
+            totalTokens += result.tokens;
+            if (result.failure != null || result.errorCount > 0) {
+                ++failedFiles;
+            }
+        }
+        out.printf("%d files, %d with errors, %d tokens, %.3f ms parse time, %.3f ms elapsed on %d threads%n",
+                results.size(), failedFiles, totalTokens, totalNanos / 1e6, wallNanos / 1e6, threads);
+        out.flush();
+        return failedFiles > 0;
+    }
+}
@@ -0,0 +1,77 @@
+package driver;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.util.ArrayList;
+import java.util.List;
+import parser.GrammarOptimizer;
+import parser.GrammarParser;
+import parser.ParseTree;
+import parser.ParserGenerator;
+
+/**
+ * Reports what the grammar optimizer does to a grammar and how many predict
+ * steps it saves on a corpus, checking that the restored trees are the ones
+ * the original grammar gives.
+ * <p>
+ * Usage: OptimizerReport [grammar] [sample files...]
+ *
+ * @author yucunli
+ */
+public class OptimizerReport {
+
+    private static final String GRAMMAR = "grammar/grammer_changed_from_solution.txt";
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        String grammarFile = args.length > 0 ? args[0] : GRAMMAR;
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; ++i) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            files.add("tests/test.txt");
+            files.add("tests/example-valid-program.txt");
+        }
+
+        Grammar grammar = new GrammarParser(grammarFile).generateGrammar();
+        long start = System.nanoTime();
+        GrammarOptimizer optimizer = new GrammarOptimizer(grammar);
+        System.out.printf("optimized in %.3f ms: %d useless, %d inlined, %d merged variables%n",
+                (System.nanoTime() - start) / 1e6, optimizer.getRemovedCount(),
+                optimizer.getInlinedCount(), optimizer.getMergedCount());
+        System.out.printf("variables: %d -> %d, productions: %d -> %d%n",
+                grammar.getRelations().size(), optimizer.getGrammar().getRelations().size(),
+                countProductions(grammar), countProductions(optimizer.getGrammar()));
+
+        long before = 0;
+        long after = 0;
+        for (String file : files) {
+            List<Terminal> input = ParserBenchmark.lex(file);
+            ParseTree expected = ParserBenchmark.parse(ParserGenerator.createParser(grammar), input);
+            ParseTree actual = ParserBenchmark.parse(ParserGenerator.createParser(optimizer.getGrammar()), input);
+            int originalSteps = GrammarOptimizer.countPredictSteps(expected);
+            int optimizedSteps = GrammarOptimizer.countPredictSteps(actual);
+            boolean same = expected.toString().equals(optimizer.restore(actual).toString());
+            System.out.printf("%s: %d tokens, %d -> %d predict steps (%.1f%% saved), restored tree %s%n",
+                    file, input.size(), originalSteps, optimizedSteps,
+                    100.0 * (originalSteps - optimizedSteps) / originalSteps, same ? "matches" : "DIFFERS");
+            before += originalSteps;
+            after += optimizedSteps;
+        }
+        if (before > 0) {
+            System.out.printf("corpus: %d -> %d predict steps (%.1f%% saved)%n",
+                    before, after, 100.0 * (before - after) / before);
+        }
+    }
+
+    private static int countProductions(Grammar grammar) {
+        int count = 0;
+        for (List<?> rightParts : grammar.getRelations().values()) {
+            count += rightParts.size();
+        }
+        return count;
+    }
+}
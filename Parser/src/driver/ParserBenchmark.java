@@ -0,0 +1,326 @@
+package driver;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.lang.reflect.Constructor;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import lexer.Lexer;
+import lexer.Tag;
+import lexer.Token;
+import parser.ASTBuilder;
+import parser.AdaptiveParseTable;
+import parser.AdaptiveParser;
+import parser.DeferredParseTree;
+import parser.GrammarParser;
+import parser.IncrementalParser;
+import parser.LazyParser;
+import parser.ParallelParser;
+import parser.LALRGenerator;
+import parser.LRParseTable;
+import parser.ParseSessionPool;
+import parser.ParseTree;
+import parser.Parser;
+import parser.ParserGenerator;
+import parser.ShiftReduceParser;
+
+/**
+ * Compares the parse engines on the sample programs, scaled up by repeating
+ * their class declarations and function definitions.  The LALR(1) engine
+ * parses the same language with the natural left-recursive grammar.
+ * <p>
+ * Usage: ParserBenchmark [scale] [iterations] [sample files...]
+ *
+ * @author yucunli
+ */
+public class ParserBenchmark {
+
+    private static final String GRAMMAR = "grammar/grammer_changed_from_solution.txt";
+
+    private static final String LALR_GRAMMAR = "grammar/grammar_left_recursive.txt";
+
+    private static final String ADAPTIVE_GRAMMAR = "grammar/grammar_not_ll1.txt";
+
+    private static final List<Variable> FUNCTION_BODIES = Collections.singletonList(new Variable("funcBody"));
+
+    private static final List<Variable> UNITS = Arrays.asList(
+            new Variable("classDecl"), new Variable("progBody"), new Variable("funcDef"));
+
+    private static final String GENERATED_PARSER = "parser.generated.GeneratedParser";
+
+    /**
+     * @param args the command line arguments
+     */
+    public static void main(String[] args) throws Exception {
+        int scale = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        List<String> files = new ArrayList<>();
+        for (int i = 2; i < args.length; ++i) {
+            files.add(args[i]);
+        }
+        if (files.isEmpty()) {
+            files.add("tests/test.txt");
+            files.add("tests/example-valid-program.txt");
+        }
+
+        final Grammar grammar = new GrammarParser(GRAMMAR).generateGrammar();
+        final Constructor<?> generated = Class.forName(GENERATED_PARSER).getDeclaredConstructor();
+        final ParseSessionPool pool = new ParseSessionPool(ParserGenerator.createParseTable(grammar), 1);
+        System.out.printf("LL(1) table: %s, %d ints%n",
+                pool.getParseTable().isCompressed() ? "comb vector" : "dense", pool.getParseTable().getStorageSize());
+
+        long start = System.nanoTime();
+        final LRParseTable lalrTable = LALRGenerator.createParseTable(
+                new GrammarParser(LALR_GRAMMAR).generateGrammar());
+        System.out.printf("LALR(1) table: %d states, %d entries, built in %.3f ms%n",
+                lalrTable.getStateCount(), lalrTable.getEntryCount(), (System.nanoTime() - start) / 1e6);
+        final ShiftReduceParser lalr = new ShiftReduceParser(lalrTable);
+
+        final AdaptiveParseTable adaptiveTable = ParserGenerator.createAdaptiveParseTable(
+                new GrammarParser(ADAPTIVE_GRAMMAR).generateGrammar());
+        System.out.printf("LL(*) table: %d conflicts%n", adaptiveTable.getConflictCount());
+
+        for (String file : files) {
+            List<Terminal> sample = lex(file);
+            List<Terminal> input = scale(sample, scale);
+            System.out.println(file + ": " + sample.size() + " tokens, scaled x" + scale
+                    + " to " + input.size() + " tokens");
+
+            /* Both engines must agree on the tree before we time them. */
+            ParseTree llTree = parse(ParserGenerator.createParser(grammar), sample);
+            String expected = llTree.toString();
+            String actual = parse((Parser) generated.newInstance(), sample).toString();
+            if (!expected.equals(actual)) {
+                System.out.println("  generated parser built a different tree, skipping");
+                continue;
+            }
+            ParseTree lazyTree = ParserGenerator.createLazyParser(grammar, FUNCTION_BODIES).parse(sample);
+            DeferredParseTree.expandAll(lazyTree);
+            if (!expected.equals(lazyTree.toString())) {
+                System.out.println("  expanded lazy tree differs");
+            }
+            ParseTree lalrTree = parse(lalr, sample);
+            lalr.reset();
+            ParseTree hybridTree = parse(ParserGenerator.createHybridParser(grammar), sample);
+            System.out.println("  tree nodes: LL(1) " + ASTBuilder.countNodes(llTree) + " (depth " + depth(llTree)
+                    + "), LL(1) + precedence " + ASTBuilder.countNodes(hybridTree) + " (depth " + depth(hybridTree)
+                    + "), LALR(1) " + ASTBuilder.countNodes(lalrTree) + " (depth " + depth(lalrTree) + ")");
+            System.out.printf("  tree heap: LL(1) %d KB, LL(1) compact %d KB%n",
+                    retainedHeap(ParserGenerator.createParser(grammar), input) / 1024,
+                    retainedHeap(ParserGenerator.createCompactParser(grammar), input) / 1024);
+
+            long table = 0;
+            long tableDriven = 0;
+            long recursiveDescent = 0;
+            long compact = 0;
+            long intStack = 0;
+            long hybrid = 0;
+            long outline = 0;
+            long parallel = 0;
+            ParallelParser units = ParserGenerator.createParallelParser(grammar, UNITS, ForkJoinPool.commonPool());
+            long pooled = 0;
+            long shiftReduce = 0;
+            long incremental = 0;
+            long adaptive = 0;
+            IncrementalParser editor = new IncrementalParser(pool.getParseTable());
+            editor.parse(input);
+            for (int i = 0; i < iterations; ++i) {
+                start = System.nanoTime();
+                Parser parser = ParserGenerator.createParser(grammar);
+                long built = System.nanoTime();
+                parse(parser, input);
+                long end = System.nanoTime();
+                table += built - start;
+                tableDriven += end - built;
+
+                start = System.nanoTime();
+                parse((Parser) generated.newInstance(), input);
+                recursiveDescent += System.nanoTime() - start;
+
+                parser = ParserGenerator.createCompactParser(grammar);
+                start = System.nanoTime();
+                parse(parser, input);
+                compact += System.nanoTime() - start;
+
+                parser = ParserGenerator.createIntStackParser(grammar);
+                start = System.nanoTime();
+                parse(parser, input);
+                intStack += System.nanoTime() - start;
+
+                parser = ParserGenerator.createHybridParser(grammar);
+                start = System.nanoTime();
+                parse(parser, input);
+                hybrid += System.nanoTime() - start;
+
+                LazyParser lazy = ParserGenerator.createLazyParser(grammar, FUNCTION_BODIES);
+                start = System.nanoTime();
+                lazy.parse(input);
+                outline += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                units.parse(input);
+                parallel += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                pool.parse(input);
+                pooled += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                parse(lalr, input);
+                shiftReduce += System.nanoTime() - start;
+                lalr.reset();
+
+                start = System.nanoTime();
+                parse(new AdaptiveParser(adaptiveTable), input);
+                adaptive += System.nanoTime() - start;
+
+                /* Retype one token in the middle of the input. */
+                int at = input.size() / 2;
+                Terminal retyped = new Terminal(input.get(at).getValue());
+                start = System.nanoTime();
+                editor.edit(at, at + 1, Collections.singletonList(retyped));
+                incremental += System.nanoTime() - start;
+            }
+
+            report("LL(1) table build", table, iterations, 0);
+            report("LL(1) table-driven", tableDriven, iterations, input.size());
+            report("recursive descent", recursiveDescent, iterations, input.size());
+            report("LL(1) compact tree", compact, iterations, input.size());
+            report("LL(1) int stack", intStack, iterations, input.size());
+            report("LL(1) + precedence", hybrid, iterations, input.size());
+            report("LL(1) lazy outline", outline, iterations, input.size());
+            report("LL(1) parallel units", parallel, iterations, input.size());
+            report("LL(1) pooled session", pooled, iterations, input.size());
+            report("LALR(1) shift-reduce", shiftReduce, iterations, input.size());
+            report("LL(1) incremental edit", incremental, iterations, 0);
+            report("adaptive LL(*)", adaptive, iterations, input.size());
+            System.out.printf("  LL(*) DFA: %d states, %d decisions with context%n",
+                    adaptiveTable.getDfaStateCount(), adaptiveTable.getContextDecisionCount());
+        }
+    }
+
+    /**
+     * Lexes a source file into the terminals the parsers consume.
+     */
+    static List<Terminal> lex(String filename) throws Exception {
+        List<Terminal> terminals = new ArrayList<>();
+        Lexer lex = new Lexer(filename);
+        lex.init();
+        while (true) {
+            Token t = lex.next_token();
+            if (t.tag == Tag.EOF) {
+                break;
+            }
+            Terminal terminal = new Terminal(Tag.tagToTerminalString(t.tag));
+            terminal.setLine(t.getLine());
+            terminal.setIndex(t.getIndex());
+            terminal.setLexeme(t.toString());
+            terminals.add(terminal);
+        }
+        return terminals;
+    }
+
+    /**
+     * Scales a program up by repeating every class declaration before the
+     * "program" keyword and every token after the end of the program body.
+     * The result is still a valid program of the same language.
+     */
+    static List<Terminal> scale(List<Terminal> program, int times) {
+        int programStart = 0;
+        while (programStart < program.size() && !program.get(programStart).getValue().equals("program")) {
+            ++programStart;
+        }
+        if (programStart == program.size()) {
+            return program;
+        }
+
+        /* Brace match the body of the program block, then skip its ";". */
+        int programEnd = programStart + 1;
+        int depth = 0;
+        do {
+            String value = program.get(programEnd).getValue();
+            if (value.equals("{")) {
+                ++depth;
+            } else if (value.equals("}")) {
+                --depth;
+            }
+            ++programEnd;
+        } while (depth > 0 && programEnd < program.size());
+        programEnd = Math.min(programEnd + 1, program.size());
+
+        List<Terminal> result = new ArrayList<>();
+        for (int i = 0; i < times; ++i) {
+            result.addAll(program.subList(0, programStart));
+        }
+        result.addAll(program.subList(programStart, programEnd));
+        for (int i = 0; i < times; ++i) {
+            result.addAll(program.subList(programEnd, program.size()));
+        }
+        return result;
+    }
+
+    static ParseTree parse(Parser parser, List<Terminal> input) throws Exception {
+        for (Terminal terminal : input) {
+            parser.nextTerminal(terminal);
+        }
+        return parser.inputComplete();
+    }
+
+    /**
+     * Returns the heap a parser retains once it has parsed an input, which
+     * is mostly its tree.  The heap is measured after full collections, so
+     * the figure is approximate.
+     */
+    static long retainedHeap(Parser parser, List<Terminal> input) throws Exception {
+        long before = usedHeap();
+        ParseTree tree = parse(parser, input);
+        long after = usedHeap();
+        return tree.getChildren().isEmpty() ? 0 : after - before;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; ++i) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Returns the number of nodes on the longest path from the root to a
+     * leaf.
+     */
+    static int depth(ParseTree tree) {
+        int max = 0;
+        Deque<ParseTree> nodes = new ArrayDeque<>();
+        Deque<Integer> depths = new ArrayDeque<>();
+        nodes.push(tree);
+        depths.push(1);
+        while (!nodes.isEmpty()) {
+            ParseTree node = nodes.pop();
+            int depth = depths.pop();
+            max = Math.max(max, depth);
+            for (ParseTree child : node.getChildren()) {
+                nodes.push(child);
+                depths.push(depth + 1);
+            }
+        }
+        return max;
+    }
+
+    static void report(String engine, long nanos, int iterations, int tokens) {
+        double millis = nanos / 1e6 / iterations;
+        if (tokens == 0) {
+            System.out.printf("  %-22s %10.3f ms%n", engine, millis);
+            return;
+        }
+        System.out.printf("  %-22s %10.3f ms/parse %12.0f tokens/s%n",
+                engine, millis, tokens / (millis / 1e3));
+    }
+}
@@ -13,10 +13,11 @@ import javax.swing.JFrame;
 import lexer.Lexer;
 import lexer.Tag;
 import lexer.Token;
+import parser.Diagnostic;
 import parser.GrammarParser;
 import parser.ParseTree;
-import parser.Parser;
 import parser.ParserGenerator;
+import parser.RecoveringParser;
 import visulization.TreeView;
 import static visulization.TreeView.demo;
 import static visulization.TreeView.demo;
@@ -27,6 +28,9 @@ import static visulization.TreeView.demo;
  */
 public class ParserDriver {
 
+    /** The maximum number of syntax errors reported for one file. */
+    private static final int MAX_ERRORS = 100;
+
     /**
      * @param args the command line arguments
      */
@@ -35,7 +39,7 @@ public class ParserDriver {
             GrammarParser gp = new GrammarParser("grammar/grammer_changed_from_solution.txt");
             Grammar g = gp.generateGrammar();
             
-            Parser parser = ParserGenerator.createParser(g);
+            RecoveringParser parser = ParserGenerator.createRecoveringParser(g, MAX_ERRORS);
             
             Lexer lex = new Lexer("tests/test.txt");
             lex.init();
@@ -46,19 +50,24 @@ public class ParserDriver {
                     break;
                 }
                 
-                try {
-                    parser.nextTerminal(new Terminal(Tag.tagToTerminalString(t.tag)));
-                } catch (ParseErrorException ex) {
-                    synchronized(System.out){
-                        System.out.println("At source code line: "+t.getLine()+" "+t.getIndex()+" :");
-                        System.out.println(ex);
-                    }
-                }
+                Terminal terminal = new Terminal(Tag.tagToTerminalString(t.tag));
+                terminal.setLine(t.getLine());
+                terminal.setIndex(t.getIndex());
+                terminal.setLexeme(t.toString());
+                parser.nextTerminal(terminal);
             }
             
             ParseTree parseTree = parser.inputComplete();
+            for (Diagnostic diagnostic : parser.getDiagnostics()) {
+                System.out.println("At source code line: " + diagnostic.getLine() + " " + diagnostic.getIndex() + " :");
+                System.out.println(diagnostic.getMessage());
+            }
+            if (parser.getErrorCount() > parser.getDiagnostics().size()) {
+                System.out.println((parser.getErrorCount() - parser.getDiagnostics().size()) + " more errors not reported.");
+            }
             System.out.println(parseTree.toString());
             parseTree.writeToXML("parse_tree.xml");
+            System.out.println("\nXML Created Successfully..");
             
             ParserDriver.displayParseTree("parse_tree.xml");
             
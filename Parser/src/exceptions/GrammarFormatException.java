@@ -0,0 +1,38 @@
+package exceptions;
+
+/**
+ * An exception class that is thrown if a grammar file is malformed.  It
+ * records the position of the offending text.
+ * @author yucunli
+ */
+public class GrammarFormatException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int line;
+    private final int column;
+
+    /**
+     * Constructs a new GrammarFormatException for an error at the given
+     * position.
+     *
+     * @param message The error message, without the position.
+     * @param line The line of the error, starting at 1.
+     * @param column The column of the error, starting at 1.
+     */
+    public GrammarFormatException(String message, int line, int column) {
+        super(line + ":" + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    /** @return The line of the error, starting at 1. */
+    public int getLine() {
+        return line;
+    }
+
+    /** @return The column of the error, starting at 1. */
+    public int getColumn() {
+        return column;
+    }
+}
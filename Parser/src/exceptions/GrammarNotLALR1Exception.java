@@ -0,0 +1,21 @@
+package exceptions;
+
+/**
+ * An exception class that is thrown if a grammar that is not LALR(1) is fed
+ * into the LALR(1) parser generator.
+ * @author yucunli
+ */
+public class GrammarNotLALR1Exception extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a new GrammarNotLALR1Exception exception with the given
+     * error message.
+     *
+     * @param message The error message.
+     */
+    public GrammarNotLALR1Exception(String message) {
+        super(message);
+    }
+}
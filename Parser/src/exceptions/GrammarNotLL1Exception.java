@@ -1,11 +1,17 @@
 package exceptions;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * An exception class that is thrown if a gramar that is not LL(1) is fed into
  * an LL(1) parser generator.
  * @author yucunli
  */
 public class GrammarNotLL1Exception extends Exception {
+
+    private final List<String> conflicts;
+
     /**
      * Constructs a new GrammarNotLL1Exception exception with the given error
      * message.
@@ -14,5 +20,22 @@ public class GrammarNotLL1Exception extends Exception {
      */
     public GrammarNotLL1Exception(String message) {
         super(message);
+        this.conflicts = Collections.singletonList(message);
+    }
+
+    /**
+     * Constructs a new GrammarNotLL1Exception exception reporting several
+     * conflicts, one per line of the message.
+     *
+     * @param conflicts The descriptions of the conflicts, at least one.
+     */
+    public GrammarNotLL1Exception(List<String> conflicts) {
+        super(String.join("\n", conflicts));
+        this.conflicts = Collections.unmodifiableList(conflicts);
+    }
+
+    /** @return The descriptions of the conflicts found. */
+    public List<String> getConflicts() {
+        return conflicts;
     }
 }
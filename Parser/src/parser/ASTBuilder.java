@@ -0,0 +1,287 @@
+package parser;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Builds an abstract syntax tree from a parse tree.
+ * <p>
+ * The builder drops epsilon and punctuation leaves, collapses every variable
+ * node left with a single child into that child, flattens right recursive
+ * lists into one n-ary node, and folds tail variables back into left
+ * associative nodes.  A tail variable is one such as {@code arithExpr1} in
+ * {@code arithExpr->term arithExpr1} and
+ * {@code arithExpr1->addOp term arithExpr1|EPSILON_VALUE}: the tree for
+ * {@code a + b - c} becomes {@code arithExpr -> [arithExpr -> [a, +, b], -, c]}
+ * instead of a right leaning chain.
+ * <p>
+ * The input tree is not modified; terminal leaves are shared with it.
+ *
+ * @author yucunli
+ */
+public class ASTBuilder {
+
+    /** The punctuation of the sample language, dropped by default. */
+    public static final List<String> DEFAULT_PUNCTUATION
+            = Arrays.asList(";", ",", "(", ")", "{", "}", "[", "]");
+
+    /** The variables folded into left associative nodes. */
+    private final Set<Variable> tailVariables;
+
+    /** The terminals dropped from the tree. */
+    private final Set<Terminal> punctuation;
+
+    /**
+     * Constructs an AST builder with an explicit configuration.
+     *
+     * @param tailVariables The variables folded into left associative nodes.
+     * @param punctuation The terminals dropped from the tree.
+     */
+    public ASTBuilder(Set<Variable> tailVariables, Set<Terminal> punctuation) {
+        if (tailVariables == null || punctuation == null) {
+            throw new NullPointerException();
+        }
+        this.tailVariables = tailVariables;
+        this.punctuation = punctuation;
+    }
+
+    /**
+     * Constructs an AST builder configured for the given grammar.  The tail
+     * variables are the ones created by
+     * {@link utils.GrammarAttributes#removeLeftRecursion(Grammar)} together
+     * with every variable that looks like one (see {@link #isTailVariable}),
+     * and the punctuation is {@link #DEFAULT_PUNCTUATION}.
+     *
+     * @param grammar The grammar the parse trees are built from.
+     * @return An AST builder for that grammar.
+     */
+    public static ASTBuilder forGrammar(Grammar grammar) {
+        Set<Variable> tails = new HashSet<>();
+        for (Variable variable : grammar.getRelations().keySet()) {
+            if (isTailVariable(grammar, variable)) {
+                tails.add(variable);
+            }
+        }
+
+        Set<Terminal> punctuation = new HashSet<>();
+        for (String value : DEFAULT_PUNCTUATION) {
+            punctuation.add(new Terminal(value));
+        }
+        return new ASTBuilder(tails, punctuation);
+    }
+
+    /**
+     * Returns whether a variable is a tail variable of the grammar.  Tail
+     * variables are the {@code X'{n}} variables minted by left recursion
+     * removal, and the hand written equivalents: variables that derive
+     * epsilon, only ever appear as the last symbol of a production, and
+     * whose other productions start with an operator, that is a terminal or a
+     * variable whose productions are all single terminals.
+     *
+     * @param grammar The grammar in question.
+     * @param variable The variable in question.
+     * @return Whether the variable is a tail variable.
+     */
+    public static boolean isTailVariable(Grammar grammar, Variable variable) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        if (variable.getValue().matches(".*'\\{\\d+\\}")) {
+            return true;
+        }
+
+        boolean hasEpsilon = false;
+        for (List<Symbol> rightPart : relations.get(variable)) {
+            if (rightPart.contains(Epsilon.getInstance())) {
+                hasEpsilon = true;
+            } else if (rightPart.size() < 2 || !isOperator(relations, rightPart.get(0))) {
+                return false;
+            }
+        }
+        if (!hasEpsilon) {
+            return false;
+        }
+
+        for (List<List<Symbol>> rightParts : relations.values()) {
+            for (List<Symbol> rightPart : rightParts) {
+                int index = rightPart.indexOf(variable);
+                if (index >= 0 && (index != rightPart.size() - 1 || index == 0)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isOperator(HashMap<Variable, List<List<Symbol>>> relations, Symbol symbol) {
+        if (symbol.isTerminal()) {
+            return !symbol.equals(Epsilon.getInstance());
+        }
+        for (List<Symbol> rightPart : relations.get(symbol)) {
+            if (rightPart.size() != 1 || !rightPart.get(0).isTerminal()
+                    || rightPart.get(0).equals(Epsilon.getInstance())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A node of the parse tree being converted.  The children of a node are
+     * read segment by segment: the first segment holds its own children, and
+     * each tail variable below it contributes the next segment.
+     */
+    private static final class Frame {
+        final ParseTree node;
+        Iterator<ParseTree> children;
+        final List<List<ParseTree>> segments = new ArrayList<>();
+        boolean lastChildIsList = false;
+
+        Frame(ParseTree node) {
+            this.node = node;
+            this.children = node.getChildren().iterator();
+            this.segments.add(new ArrayList<ParseTree>());
+        }
+
+        List<ParseTree> segment() {
+            return segments.get(segments.size() - 1);
+        }
+    }
+
+    /**
+     * Builds the AST of a parse tree.  The walk is iterative, so deep trees
+     * do not overflow the Java stack.
+     *
+     * @param tree The parse tree.
+     * @return The AST, or null if nothing of the tree is left.
+     */
+    public ParseTree build(ParseTree tree) {
+        ParseTree leaf = convertLeaf(tree);
+        if (tree.getSymbol().isTerminal()) {
+            return leaf;
+        }
+
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(tree));
+        ParseTree result = null;
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+
+            if (frame.children.hasNext()) {
+                ParseTree child = frame.children.next();
+                Symbol symbol = child.getSymbol();
+
+                if (symbol.isTerminal()) {
+                    ParseTree converted = convertLeaf(child);
+                    if (converted != null) {
+                        frame.segment().add(converted);
+                    }
+                } else if (tailVariables.contains(symbol) && !frame.children.hasNext()
+                        && !symbol.equals(frame.node.getSymbol())) {
+                    /* Read the tail's children as the next segment. */
+                    frame.segments.add(new ArrayList<ParseTree>());
+                    frame.children = child.getChildren().iterator();
+                } else {
+                    frame.lastChildIsList = !frame.children.hasNext()
+                            && symbol.equals(frame.node.getSymbol());
+                    stack.push(new Frame(child));
+                }
+                continue;
+            }
+
+            stack.pop();
+            ParseTree converted = fold(frame);
+            if (stack.isEmpty()) {
+                result = converted;
+            } else if (converted != null) {
+                stack.peek().segment().add(converted);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Combines the converted segments of a node into its AST.
+     */
+    private ParseTree fold(Frame frame) {
+        Symbol symbol = frame.node.getSymbol();
+
+        /* Flatten a right recursive list into its parent. */
+        List<ParseTree> first = frame.segments.get(0);
+        if (frame.lastChildIsList && frame.segments.size() == 1 && !first.isEmpty()) {
+            ParseTree last = first.get(first.size() - 1);
+            if (last.getSymbol().equals(symbol)) {
+                first.remove(first.size() - 1);
+                first.addAll(last.getChildren());
+            }
+        }
+
+        ParseTree accumulated = combine(symbol, first);
+        for (int i = 1; i < frame.segments.size(); ++i) {
+            List<ParseTree> segment = frame.segments.get(i);
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (accumulated != null) {
+                segment.add(0, accumulated);
+            }
+            accumulated = combine(symbol, segment);
+        }
+        return accumulated;
+    }
+
+    private static ParseTree combine(Symbol symbol, List<ParseTree> children) {
+        if (children.isEmpty()) {
+            return null;
+        }
+        if (children.size() == 1) {
+            return children.get(0);
+        }
+        return new ParseTree(symbol, children);
+    }
+
+    private ParseTree convertLeaf(ParseTree leaf) {
+        Symbol symbol = leaf.getSymbol();
+        if (!symbol.isTerminal()) {
+            return null;
+        }
+        if (symbol.equals(Epsilon.getInstance()) || punctuation.contains(symbol)) {
+            return null;
+        }
+        return leaf;
+    }
+
+    /**
+     * Counts the nodes of a tree.
+     *
+     * @param tree The tree in question.
+     * @return The number of nodes, or 0 for a null tree.
+     */
+    public static int countNodes(ParseTree tree) {
+        if (tree == null) {
+            return 0;
+        }
+        int count = 0;
+        Deque<ParseTree> stack = new ArrayDeque<>();
+        stack.push(tree);
+        while (!stack.isEmpty()) {
+            ParseTree node = stack.pop();
+            ++count;
+            for (ParseTree child : node.getChildren()) {
+                stack.push(child);
+            }
+        }
+        return count;
+    }
+}
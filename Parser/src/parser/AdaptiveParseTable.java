@@ -0,0 +1,601 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The prediction tables of an {@link AdaptiveParser}, for grammars that
+ * need more than one terminal of lookahead.  Where the LL(1) table has a
+ * single production for a variable on a terminal, it is used as is.  Where
+ * several productions are predicted, the table decides between them by
+ * simulating every production on the following terminals, ALL(*) style:
+ * <ul>
+ * <li>first without the context of the parse, a configuration that
+ * completes the variable going on with whatever may follow the variable in
+ * the grammar.  The configurations reached after each terminal are the
+ * states of a lookahead DFA of the variable, which is built lazily and kept,
+ * so that a decision met again costs a walk over cached states;</li>
+ * <li>then, when the DFA state cannot tell the productions apart whatever
+ * follows, with the actual parse stack as context.  This decision depends on
+ * the parse and is not cached.</li>
+ * </ul>
+ * If the productions still cannot be told apart, the input is ambiguous and
+ * the first production of the grammar is chosen.
+ * <p>
+ * The DFAs are shared by every parser using the table and built
+ * concurrently by the threads meeting new decisions, so a table may serve
+ * any number of parsers on any number of threads.  The grammar must not be
+ * left recursive.
+ *
+ * @author yucunli
+ */
+public final class AdaptiveParseTable {
+
+    /** The prediction needs more terminals than are available. */
+    static final int NEED_MORE = -2;
+
+    /** No production can derive the input. */
+    static final int ERROR = -1;
+
+    /**
+     * The stack depth of a configuration past which a DFA state gives up
+     * on the context-free simulation, so that nested input cannot build
+     * states without bound.
+     */
+    private static final int MAX_DFA_DEPTH = 64;
+
+    /**
+     * An entry of the stacks of the configurations.  The stacks form a
+     * graph: an entry may continue with several entries below it, when the
+     * configurations of a production that only differ below their top entry
+     * are merged, which keeps nested undecided choices from multiplying the
+     * configurations.  An end entry stands for the end of a variable, after
+     * which anything following the variable in the grammar may come.  An
+     * entry without entries below is the bottom of its stacks.
+     */
+    private static final class Frame {
+        final Symbol symbol;
+        final boolean end;
+        final Set<Frame> next;
+        final int depth;
+        final int hash;
+
+        Frame(Symbol symbol, boolean end, Set<Frame> next) {
+            this.symbol = symbol;
+            this.end = end;
+            this.next = next;
+            int below = 0;
+            int nextHash = 0;
+            for (Frame frame : next) {
+                below = Math.max(below, frame.depth);
+                nextHash += frame.hash;
+            }
+            this.depth = below + 1;
+            this.hash = nextHash * 31 + symbol.hashCode() + (end ? 1 : 0);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Frame)) {
+                return false;
+            }
+            Frame other = (Frame) obj;
+            return hash == other.hash && depth == other.depth && end == other.end
+                    && symbol.equals(other.symbol) && next.equals(other.next);
+        }
+    }
+
+    /**
+     * A production being simulated, with the symbols it still has to
+     * derive; a null stack means the input has been derived up to EOF.
+     */
+    private static final class Config {
+        final int alternative;
+        final Frame stack;
+
+        Config(int alternative, Frame stack) {
+            this.alternative = alternative;
+            this.stack = stack;
+        }
+
+        @Override
+        public int hashCode() {
+            return alternative * 31 + (stack == null ? 0 : stack.hash);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Config)) {
+                return false;
+            }
+            Config other = (Config) obj;
+            return alternative == other.alternative
+                    && (stack == null ? other.stack == null : stack.equals(other.stack));
+        }
+    }
+
+    /**
+     * A state of a lookahead DFA: the configurations whose next symbol is a
+     * terminal, and the decision they allow.
+     */
+    private static final class DfaState {
+        final Set<Config> configs;
+
+        /** The production predicted, or -1 if more lookahead is needed. */
+        final int prediction;
+
+        /** Whether the decision needs the context of the parse. */
+        final boolean needsContext;
+
+        /** The next states by terminal, built on demand. */
+        final ConcurrentMap<Terminal, DfaState> edges = new ConcurrentHashMap<>();
+
+        DfaState(Set<Config> configs, int prediction, boolean needsContext) {
+            this.configs = configs;
+            this.prediction = prediction;
+            this.needsContext = needsContext;
+        }
+    }
+
+    /**
+     * The lookahead DFA of a variable, its states and the entries of their
+     * stacks interned by content.
+     */
+    private static final class Dfa {
+        final DfaState start;
+        final ConcurrentMap<Set<Config>, DfaState> states = new ConcurrentHashMap<>();
+        final ConcurrentMap<Frame, Frame> frames;
+
+        Dfa(DfaState start, ConcurrentMap<Frame, Frame> frames) {
+            this.start = start;
+            this.frames = frames;
+            states.put(start.configs, start);
+        }
+    }
+
+    /**
+     * The place of a variable in a production: the symbols following it and
+     * the variable of the production.
+     */
+    private static final class Occurrence {
+        final List<Symbol> following;
+        final Variable leftPart;
+
+        Occurrence(List<Symbol> following, Variable leftPart) {
+            this.following = following;
+            this.leftPart = leftPart;
+        }
+    }
+
+    /** The LL(1) table, without the conflicting entries. */
+    private final ParseTable parseTable;
+
+    /** The start symbol. */
+    private final Variable start;
+
+    /** The productions of every variable, without epsilon. */
+    private final Map<Variable, List<List<Symbol>>> productions = new HashMap<>();
+
+    /** The lookaheads on which each variable has several productions. */
+    private final Map<Variable, Set<Terminal>> conflicts;
+
+    /** The places of every variable in the productions. */
+    private final Map<Variable, List<Occurrence>> occurrences = new HashMap<>();
+
+    /** The lookahead DFAs built so far. */
+    private final ConcurrentMap<Variable, Dfa> dfas = new ConcurrentHashMap<>();
+
+    private final AtomicInteger dfaStateCount = new AtomicInteger();
+    private final AtomicInteger contextDecisionCount = new AtomicInteger();
+
+    /**
+     * Constructs the tables from the LL(1) table without its conflicting
+     * entries and the productions of the grammar.
+     *
+     * @param parseTable The LL(1) table of the unique entries.
+     * @param relations The productions of the grammar, which are copied.
+     * @param conflicts The lookaheads on which each variable has several
+     * productions.
+     */
+    AdaptiveParseTable(ParseTable parseTable, Map<Variable, List<List<Symbol>>> relations,
+            Map<Variable, Set<Terminal>> conflicts) {
+        this.parseTable = parseTable;
+        this.start = parseTable.getStart();
+        this.conflicts = conflicts;
+        for (Map.Entry<Variable, List<List<Symbol>>> entry : relations.entrySet()) {
+            List<List<Symbol>> list = new ArrayList<>();
+            for (List<Symbol> rightPart : entry.getValue()) {
+                List<Symbol> symbols = new ArrayList<>(rightPart);
+                symbols.removeAll(Collections.singletonList(Epsilon.getInstance()));
+                list.add(symbols);
+                for (int i = 0; i < symbols.size(); ++i) {
+                    if (!symbols.get(i).isTerminal()) {
+                        List<Occurrence> places = occurrences.get(symbols.get(i));
+                        if (places == null) {
+                            places = new ArrayList<>();
+                            occurrences.put((Variable) symbols.get(i), places);
+                        }
+                        places.add(new Occurrence(symbols.subList(i + 1, symbols.size()), entry.getKey()));
+                    }
+                }
+            }
+            productions.put(entry.getKey(), list);
+        }
+    }
+
+    /** @return The LL(1) table of the entries with a single production. */
+    public ParseTable getParseTable() {
+        return parseTable;
+    }
+
+    /** @return The start symbol of the grammar. */
+    public Variable getStart() {
+        return start;
+    }
+
+    /** @return The number of entries with several productions. */
+    public int getConflictCount() {
+        int count = 0;
+        for (Set<Terminal> lookaheads : conflicts.values()) {
+            count += lookaheads.size();
+        }
+        return count;
+    }
+
+    /** @return The number of lookahead DFA states built so far. */
+    public int getDfaStateCount() {
+        return dfaStateCount.get();
+    }
+
+    /** @return The number of decisions that needed the parse stack. */
+    public int getContextDecisionCount() {
+        return contextDecisionCount.get();
+    }
+
+    /**
+     * @return Whether the variable has several productions on the
+     * lookahead.
+     */
+    boolean isConflict(Variable variable, Terminal terminal) {
+        Set<Terminal> lookaheads = conflicts.get(variable);
+        return lookaheads != null && lookaheads.contains(terminal);
+    }
+
+    /** @return The production of a variable with the given number. */
+    List<Symbol> production(Variable variable, int alternative) {
+        return productions.get(variable).get(alternative);
+    }
+
+    /**
+     * Decides which production of a variable derives the input.
+     *
+     * @param variable The variable atop the parse stack.
+     * @param input The input, from the lookahead on, ending with EOF once
+     * the whole input is known.
+     * @param from The position of the lookahead in the input.
+     * @param context The symbols below the variable on the parse stack,
+     * bottom first.
+     * @return The number of the production, {@link #NEED_MORE} if the
+     * input does not go far enough yet, or {@link #ERROR}.
+     */
+    int predict(Variable variable, List<Terminal> input, int from, List<Symbol> context) {
+        Dfa dfa = dfas.get(variable);
+        if (dfa == null) {
+            ConcurrentMap<Frame, Frame> frames = new ConcurrentHashMap<>();
+            Frame end = frame(frames, variable, true, Collections.<Frame>emptySet());
+            Dfa created = new Dfa(newState(start(variable, end, frames), false), frames);
+            dfa = dfas.putIfAbsent(variable, created);
+            if (dfa == null) {
+                dfa = created;
+                dfaStateCount.incrementAndGet();
+            }
+        }
+
+        DfaState state = dfa.start;
+        for (int i = from; i < input.size(); ++i) {
+            Terminal terminal = input.get(i);
+            DfaState next = state.edges.get(terminal);
+            if (next == null) {
+                next = move(dfa, state, terminal);
+                DfaState known = state.edges.putIfAbsent(terminal, next);
+                if (known != null) {
+                    next = known;
+                }
+            }
+            state = next;
+            if (state.prediction != ERROR || state.configs.isEmpty()) {
+                return state.prediction;
+            }
+            if (state.needsContext) {
+                contextDecisionCount.incrementAndGet();
+                return predictInContext(variable, input, from, context);
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * Decides with the parse stack as context, simulating the productions
+     * on as much input as needed.
+     */
+    private int predictInContext(Variable variable, List<Terminal> input, int from, List<Symbol> context) {
+        Map<Frame, Frame> frames = new HashMap<>();
+        Frame below = null;
+        for (Symbol symbol : context) {
+            below = frame(frames, symbol, false,
+                    below == null ? Collections.<Frame>emptySet() : Collections.singleton(below));
+        }
+        Set<Config> configs = start(variable, below, frames);
+        for (int i = from; i < input.size(); ++i) {
+            Terminal terminal = input.get(i);
+            configs = step(configs, terminal, frames);
+            int prediction = decide(configs);
+            if (prediction != ERROR || configs.isEmpty()) {
+                return prediction;
+            }
+            if (isAmbiguous(configs) || terminal.equals(EOF.getInstance())) {
+                return configs.iterator().next().alternative;
+            }
+        }
+        return NEED_MORE;
+    }
+
+    /**
+     * @return The configurations of the productions of a variable, above
+     * the given stack.
+     */
+    private Set<Config> start(Variable variable, Frame below, Map<Frame, Frame> frames) {
+        Set<Config> configs = new LinkedHashSet<>();
+        Set<Config> visited = new HashSet<>();
+        List<List<Symbol>> alternatives = productions.get(variable);
+        Set<Frame> next = Collections.singleton(below);
+        for (int i = 0; i < alternatives.size(); ++i) {
+            if (alternatives.get(i).isEmpty()) {
+                closure(new Config(i, below), configs, visited, frames);
+            } else {
+                closure(new Config(i, push(alternatives.get(i), next, frames)), configs, visited, frames);
+            }
+        }
+        return merge(configs, frames);
+    }
+
+    /**
+     * @return The configurations reached by matching a terminal, merged.
+     */
+    private Set<Config> step(Set<Config> configs, Terminal terminal, Map<Frame, Frame> frames) {
+        Set<Config> result = new LinkedHashSet<>();
+        Set<Config> visited = new HashSet<>();
+        for (Config config : configs) {
+            Frame top = config.stack;
+            if (top == null || !top.symbol.equals(terminal)) {
+                continue;
+            }
+            if (top.next.isEmpty()) {
+                result.add(new Config(config.alternative, null));
+            }
+            for (Frame below : top.next) {
+                closure(new Config(config.alternative, below), result, visited, frames);
+            }
+        }
+        return merge(result, frames);
+    }
+
+    /**
+     * Merges the stacks of the configurations of each production, see
+     * {@link #mergeStacks(Set, Map)}.
+     */
+    private static Set<Config> merge(Set<Config> configs, Map<Frame, Frame> frames) {
+        Map<Integer, Set<Frame>> stacks = new LinkedHashMap<>();
+        Set<Config> result = new LinkedHashSet<>();
+        for (Config config : configs) {
+            if (config.stack == null) {
+                result.add(config);
+                continue;
+            }
+            Set<Frame> set = stacks.get(config.alternative);
+            if (set == null) {
+                set = new HashSet<>();
+                stacks.put(config.alternative, set);
+            }
+            set.add(config.stack);
+        }
+        for (Map.Entry<Integer, Set<Frame>> entry : stacks.entrySet()) {
+            for (Frame stack : mergeStacks(entry.getValue(), frames)) {
+                result.add(new Config(entry.getKey(), stack));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges the entries of a set with the same content into one, which
+     * continues with all their entries below, merged in turn.  The stacks
+     * stay the same, but an undecided choice nested in another one no
+     * longer doubles the entries of the graph.
+     */
+    private static Set<Frame> mergeStacks(Set<Frame> stacks, Map<Frame, Frame> frames) {
+        Map<List<Object>, List<Frame>> groups = new LinkedHashMap<>();
+        for (Frame frame : stacks) {
+            List<Object> key = Arrays.<Object>asList(frame.symbol, frame.end);
+            List<Frame> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<>();
+                groups.put(key, group);
+            }
+            group.add(frame);
+        }
+        if (groups.size() == stacks.size()) {
+            return stacks;
+        }
+        Set<Frame> result = new HashSet<>();
+        for (List<Frame> group : groups.values()) {
+            if (group.size() == 1) {
+                result.add(group.get(0));
+                continue;
+            }
+            Set<Frame> below = new HashSet<>();
+            for (Frame frame : group) {
+                below.addAll(frame.next);
+            }
+            Frame first = group.get(0);
+            result.add(frame(frames, first.symbol, first.end, mergeStacks(below, frames)));
+        }
+        return result;
+    }
+
+    /** Builds the state reached from a state on a terminal. */
+    private DfaState move(Dfa dfa, DfaState state, Terminal terminal) {
+        Set<Config> configs = step(state.configs, terminal, dfa.frames);
+        boolean tooDeep = false;
+        for (Config config : configs) {
+            tooDeep |= config.stack != null && config.stack.depth > MAX_DFA_DEPTH;
+        }
+        DfaState next = dfa.states.get(configs);
+        if (next == null) {
+            DfaState created = newState(configs, tooDeep);
+            next = dfa.states.putIfAbsent(configs, created);
+            if (next == null) {
+                next = created;
+                dfaStateCount.incrementAndGet();
+            }
+        }
+        return next;
+    }
+
+    private static DfaState newState(Set<Config> configs, boolean tooDeep) {
+        int prediction = decide(configs);
+        boolean allDone = true;
+        for (Config config : configs) {
+            allDone &= config.stack == null;
+        }
+        if (prediction == ERROR && allDone && !configs.isEmpty()) {
+            /* EOF was matched and several productions remain. */
+            prediction = configs.iterator().next().alternative;
+        }
+        return new DfaState(configs, prediction, prediction == ERROR && (tooDeep || isAmbiguous(configs)));
+    }
+
+    /**
+     * @return The production of the configurations if they all simulate
+     * the same one, -1 otherwise.
+     */
+    private static int decide(Set<Config> configs) {
+        int prediction = ERROR;
+        for (Config config : configs) {
+            if (prediction == ERROR) {
+                prediction = config.alternative;
+            } else if (prediction != config.alternative) {
+                return ERROR;
+            }
+        }
+        return prediction;
+    }
+
+    /**
+     * @return Whether all the remaining productions have the same stacks,
+     * so that no further input can tell them apart.
+     */
+    private static boolean isAmbiguous(Set<Config> configs) {
+        Map<Integer, Set<Frame>> stacks = new HashMap<>();
+        for (Config config : configs) {
+            Set<Frame> set = stacks.get(config.alternative);
+            if (set == null) {
+                set = new HashSet<>();
+                stacks.put(config.alternative, set);
+            }
+            set.add(config.stack);
+        }
+        return new HashSet<>(stacks.values()).size() == 1;
+    }
+
+    /**
+     * Adds the configurations a configuration reaches without consuming
+     * input: variables atop the stack are expanded, and the end of a
+     * variable goes on with what follows it in the grammar, EOF after the
+     * start symbol.
+     */
+    private void closure(Config config, Set<Config> result, Set<Config> visited, Map<Frame, Frame> frames) {
+        if (!visited.add(config)) {
+            return;
+        }
+        Frame top = config.stack;
+        if (top == null || (top.symbol.isTerminal() && !top.end)) {
+            result.add(config);
+            return;
+        }
+        if (top.end) {
+            Variable variable = (Variable) top.symbol;
+            List<Occurrence> places = occurrences.get(variable);
+            if (places != null) {
+                for (Occurrence place : places) {
+                    Frame end = frame(frames, place.leftPart, true, Collections.<Frame>emptySet());
+                    closure(new Config(config.alternative, place.following.isEmpty() ? end
+                            : push(place.following, Collections.singleton(end), frames)), result, visited, frames);
+                }
+            }
+            if (variable.equals(start)) {
+                closure(new Config(config.alternative,
+                        frame(frames, EOF.getInstance(), false, Collections.<Frame>emptySet())), result, visited, frames);
+            }
+            return;
+        }
+        List<List<Symbol>> alternatives = productions.get(top.symbol);
+        if (alternatives == null) {
+            return;
+        }
+        for (List<Symbol> rightPart : alternatives) {
+            if (rightPart.isEmpty()) {
+                for (Frame below : top.next) {
+                    closure(new Config(config.alternative, below), result, visited, frames);
+                }
+            } else {
+                closure(new Config(config.alternative, push(rightPart, top.next, frames)), result, visited, frames);
+            }
+        }
+    }
+
+    /** @return The top entry of the symbols pushed above some entries. */
+    private static Frame push(List<Symbol> symbols, Set<Frame> next, Map<Frame, Frame> frames) {
+        Frame top = null;
+        for (int i = symbols.size() - 1; i >= 0; --i) {
+            top = frame(frames, symbols.get(i), false, next);
+            next = Collections.singleton(top);
+        }
+        return top;
+    }
+
+    /**
+     * @return The entry with the given content, interned so that the
+     * entries below an entry are always compared by identity rather than
+     * walking the whole graph.
+     */
+    private static Frame frame(Map<Frame, Frame> frames, Symbol symbol, boolean end, Set<Frame> next) {
+        Frame frame = new Frame(symbol, end, next);
+        Frame known = frames.putIfAbsent(frame, frame);
+        return known == null ? frame : known;
+    }
+}
@@ -0,0 +1,163 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A parser for grammars that need more than one terminal of lookahead,
+ * driven by an {@link AdaptiveParseTable}.  It works like
+ * {@link ParseSession} and builds the same trees, but when the LL(1) table
+ * predicts several productions the table looks further into the input to
+ * choose one.  The terminals are therefore kept until every decision they
+ * take part in is taken: {@link #nextTerminal(Terminal)} parses as far as
+ * the terminals seen so far allow, and an error may only be reported on a
+ * later terminal.
+ *
+ * @author yucunli
+ */
+public final class AdaptiveParser implements Parser {
+
+    /** The prediction tables. */
+    private final AdaptiveParseTable table;
+
+    /** The predicted symbols, top of the stack at the end. */
+    private Symbol[] stackSymbols = new Symbol[64];
+
+    /**
+     * The tree each predicted symbol's tree is added to, null for the start
+     * symbol and EOF.
+     */
+    private ParseTree[] stackTrees = new ParseTree[64];
+
+    /** The number of entries on the stack. */
+    private int depth = 0;
+
+    /** The terminals not consumed yet. */
+    private final List<Terminal> input = new ArrayList<>();
+
+    /** The position of the lookahead in the input. */
+    private int position = 0;
+
+    /** The parse tree of the input. */
+    private final ParseTree parseTree;
+
+    /**
+     * Constructs a new parser using the given tables.
+     *
+     * @param table The prediction tables.
+     */
+    public AdaptiveParser(AdaptiveParseTable table) {
+        this.table = table;
+        this.parseTree = new ParseTree(table.getStart());
+        push(EOF.getInstance(), null);
+        push(table.getStart(), null);
+    }
+
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        if (depth == 0)
+            throw new ParseErrorException("Parsing already completed.");
+        input.add(terminal);
+        run();
+    }
+
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        if (depth == 0)
+            throw new ParseErrorException("Parsing already completed.");
+        input.add(EOF.getInstance());
+        run();
+        if (depth != 0)
+            throw new ParseErrorException("Unexpected end of input");
+        return parseTree;
+    }
+
+    private void push(Symbol symbol, ParseTree tree) {
+        if (depth == stackSymbols.length) {
+            stackSymbols = Arrays.copyOf(stackSymbols, depth * 2);
+            stackTrees = Arrays.copyOf(stackTrees, depth * 2);
+        }
+        stackSymbols[depth] = symbol;
+        stackTrees[depth] = tree;
+        ++depth;
+    }
+
+    /**
+     * Applies predict and match steps while the input known so far allows
+     * the decisions, see {@link ParseSession#processSymbol(Terminal)}.
+     */
+    private void run() throws ParseErrorException {
+        while (position < input.size()) {
+            Terminal terminal = input.get(position);
+            Symbol top = stackSymbols[depth - 1];
+            ParseTree parent = stackTrees[depth - 1];
+
+            if (top.equals(terminal)) {
+                --depth;
+                ++position;
+                if (parent != null) {
+                    parent.getChildren().add(ParseSession.leaf(top, terminal));
+                }
+                continue;
+            }
+
+            if (top.isTerminal())
+                throw new ParseErrorException("Expected " + top + ", found " + terminal);
+
+            Variable variable = (Variable) top;
+            List<Symbol> production = table.getParseTable().getProduction(variable, terminal);
+            if (production == null && table.isConflict(variable, terminal)) {
+                int alternative = table.predict(variable, input, position,
+                        Arrays.asList(stackSymbols).subList(0, depth - 1));
+                if (alternative == AdaptiveParseTable.NEED_MORE) {
+                    break;
+                }
+                if (alternative >= 0) {
+                    production = table.production(variable, alternative);
+                }
+            }
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+            --depth;
+
+            /* The variable gets its node, unless it is transparent. */
+            ParseTree node;
+            if (variable instanceof TransparentVariable) {
+                node = parent;
+            } else if (parent == null) {
+                node = parseTree;
+            } else {
+                node = new ParseTree(variable);
+                parent.getChildren().add(node);
+            }
+
+            /* An epsilon production gets an epsilon leaf and pushes nothing;
+             * the productions of the adaptive table are stored without it.
+             */
+            if (production.isEmpty()
+                    || (production.size() == 1 && production.get(0).equals(Epsilon.getInstance()))) {
+                if (node != parent) {
+                    node.getChildren().add(new ParseTree(Epsilon.getInstance()));
+                }
+                continue;
+            }
+            for (int i = production.size() - 1; i >= 0; --i) {
+                push(production.get(i), node);
+            }
+        }
+
+        /* Drop the consumed terminals once in a while. */
+        if (position > 1024 && position * 2 > input.size()) {
+            input.subList(0, position).clear();
+            position = 0;
+        }
+    }
+}
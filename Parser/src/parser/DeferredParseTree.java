@@ -0,0 +1,98 @@
+package parser;
+
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The node of a phrase a {@link LazyParser} skipped: it holds the tokens of
+ * the phrase and gets its children when it is {@link #expand() expanded},
+ * which parses the tokens with a {@link ParseSession} started on the
+ * variable of the node.  An expanded node has the children the phrase gets
+ * in a complete parse, so a tree whose deferred nodes are all expanded is
+ * the tree of a {@link ParseSession}.
+ * <p>
+ * Syntax errors inside the phrase are only found when it is expanded.
+ *
+ * @author yucunli
+ */
+public final class DeferredParseTree extends ParseTree {
+
+    /** The table the phrase is parsed with. */
+    private final ParseTable parseTable;
+
+    /** The tokens of the phrase, null until they are all read. */
+    private List<Terminal> tokens;
+
+    private boolean expanded = false;
+
+    DeferredParseTree(Variable variable, ParseTable parseTable) {
+        super(variable);
+        this.parseTable = parseTable;
+    }
+
+    void setTokens(List<Terminal> tokens) {
+        this.tokens = tokens;
+    }
+
+    /** @return The tokens of the phrase, from its opening to its closing one. */
+    public List<Terminal> getTokens() {
+        return tokens;
+    }
+
+    /** @return Whether the phrase has been parsed. */
+    public boolean isExpanded() {
+        return expanded;
+    }
+
+    /**
+     * Parses the phrase, if it has not been, and adds the children of its
+     * tree to this node.
+     *
+     * @throws ParseErrorException If the phrase does not derive from the
+     * variable.
+     */
+    public void expand() throws ParseErrorException {
+        if (expanded) {
+            return;
+        }
+        ParseSession session = new ParseSession(parseTable, (Variable) getSymbol());
+        for (Terminal terminal : tokens) {
+            session.nextTerminal(terminal);
+        }
+        getChildren().addAll(session.inputComplete().getChildren());
+        expanded = true;
+    }
+
+    /**
+     * Expands every deferred node of a tree.
+     *
+     * @param tree The tree of a lazy parse.
+     * @return The number of nodes expanded.
+     * @throws ParseErrorException If a phrase does not derive from its
+     * variable.
+     */
+    public static int expandAll(ParseTree tree) throws ParseErrorException {
+        int count = 0;
+        Deque<ParseTree> work = new ArrayDeque<>();
+        work.push(tree);
+        while (!work.isEmpty()) {
+            ParseTree node = work.pop();
+            if (node instanceof DeferredParseTree) {
+                /* The phrase of a deferred node has no deferred nodes. */
+                if (!((DeferredParseTree) node).isExpanded()) {
+                    ((DeferredParseTree) node).expand();
+                    ++count;
+                }
+                continue;
+            }
+            for (ParseTree child : node.getChildren()) {
+                work.push(child);
+            }
+        }
+        return count;
+    }
+}
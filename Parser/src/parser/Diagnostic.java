@@ -0,0 +1,84 @@
+package parser;
+
+import datastructure.Symbol;
+import datastructure.Terminal;
+import java.util.List;
+
+/**
+ * A syntax error recorded by a recovering parser.  The message is only
+ * rendered when it is asked for; the list of expected terminals comes from
+ * the tables built together with the parsing table and is shared between
+ * diagnostics.
+ *
+ * @author yucunli
+ */
+public class Diagnostic {
+
+    /** The symbol the parser was working on: a variable or a terminal. */
+    private final Symbol top;
+
+    /** The terminal found in the input. */
+    private final Terminal found;
+
+    /** The terminals that would have been accepted. */
+    private final List<Terminal> expected;
+
+    /** The source line of the offending terminal. */
+    private final int line;
+
+    /** The source index of the offending terminal. */
+    private final int index;
+
+    /**
+     * Constructs a new diagnostic.
+     *
+     * @param top The symbol atop the parsing stack.
+     * @param found The terminal found in the input.
+     * @param expected The terminals that would have been accepted.
+     */
+    public Diagnostic(Symbol top, Terminal found, List<Terminal> expected) {
+        this.top = top;
+        this.found = found;
+        this.expected = expected;
+        this.line = found.getLine();
+        this.index = found.getIndex();
+    }
+
+    public Symbol getTop() {
+        return top;
+    }
+
+    public Terminal getFound() {
+        return found;
+    }
+
+    public List<Terminal> getExpected() {
+        return expected;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Returns the message of this diagnostic, in the same wording as the
+     * ParseErrorException of the LL(1) parser.
+     *
+     * @return A human-readable description of the error.
+     */
+    public String getMessage() {
+        if (top.isTerminal()) {
+            return "Expected " + top + ", found " + found;
+        }
+        return "No production for " + top + " on seeing " + found + ", expected one of " + expected;
+    }
+
+    @Override
+    public String toString() {
+        return line + ":" + index + ": " + getMessage();
+    }
+}
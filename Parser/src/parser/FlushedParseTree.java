@@ -0,0 +1,26 @@
+package parser;
+
+import datastructure.Variable;
+import java.util.Collections;
+
+/**
+ * The placeholder a streaming parser leaves in its tree for a subtree it
+ * handed to a {@link SubtreeSink}.  It has no children, and records the
+ * number under which the sink received the subtree.
+ *
+ * @author yucunli
+ */
+public final class FlushedParseTree extends ParseTree {
+
+    private final int index;
+
+    FlushedParseTree(Variable variable, int index) {
+        super(variable, Collections.<ParseTree>emptyList());
+        this.index = index;
+    }
+
+    /** @return The number of the subtree given to the sink. */
+    public int getIndex() {
+        return index;
+    }
+}
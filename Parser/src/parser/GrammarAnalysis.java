@@ -0,0 +1,571 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.GrammarNotLL1Exception;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import parser.ParserGenerator.TableRow;
+import utils.GrammarAttributes;
+
+/**
+ * The FIRST and FOLLOW sets and the LL(1) table rows of a grammar, kept up
+ * to date while productions are added, removed or replaced one at a time.
+ * <p>
+ * An edit of the productions of a variable A only recomputes what may
+ * depend on them:
+ * <ul>
+ * <li>FIRST (and nullability) of the variables that can reach A through the
+ * leading variables of their productions, recomputed from scratch within
+ * that region since removing a production may shrink the sets;</li>
+ * <li>FOLLOW of the variables next to the edited productions or to a
+ * variable whose FIRST changed, and of the variables their FOLLOW flows
+ * into through the trailing variables of productions;</li>
+ * <li>the table rows of A, of the variables whose productions start with a
+ * variable whose FIRST changed, and of the variables whose FOLLOW changed,
+ * with their conflicts.</li>
+ * </ul>
+ * The regions are found through an index of the occurrences of every
+ * variable on the right-hand sides, so an edit costs time in proportion to
+ * the part of the grammar it can affect rather than to the whole grammar.
+ * <p>
+ * The analysis edits the grammar it is given, so that the grammar and the
+ * analysis always agree: {@link #createParseTable()} hands back the same
+ * table as {@link ParserGenerator#createParseTable(Grammar)} would on the
+ * edited grammar.  It is not thread-safe.
+ *
+ * @author yucunli
+ */
+public final class GrammarAnalysis {
+
+    /**
+     * An occurrence of a variable on the right-hand side of a production.
+     */
+    private static final class Occurrence {
+        final Variable leftPart;
+        final List<Symbol> rightPart;
+        final int index;
+
+        Occurrence(Variable leftPart, List<Symbol> rightPart, int index) {
+            this.leftPart = leftPart;
+            this.rightPart = rightPart;
+            this.index = index;
+        }
+
+        /** @return Whether only variables precede the occurrence. */
+        boolean isLeading() {
+            for (int i = 0; i < index; ++i) {
+                if (rightPart.get(i).isTerminal()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** @return Whether only variables follow the occurrence. */
+        boolean isTrailing() {
+            for (int i = index + 1; i < rightPart.size(); ++i) {
+                if (rightPart.get(i).isTerminal()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** The grammar, edited along with the analysis. */
+    private final Grammar grammar;
+
+    /** The FIRST sets, holding epsilon for nullable variables. */
+    private final HashMap<Variable, Set<Terminal>> first;
+
+    /** The FOLLOW sets. */
+    private final HashMap<Variable, Set<Terminal>> follow;
+
+    /** The order of the terminals in the table rows. */
+    private final Map<Terminal, Integer> terminalRanks;
+
+    /** The occurrences of every variable on right-hand sides. */
+    private final Map<Variable, Set<Occurrence>> occurrences = new HashMap<>();
+
+    /** The occurrences on each production, by identity of the production. */
+    private final Map<List<Symbol>, Occurrence[]> productionOccurrences = new IdentityHashMap<>();
+
+    /** The table row of every variable with productions. */
+    private final Map<Variable, TableRow> rows = new HashMap<>();
+
+    /** The number of conflicts over all rows. */
+    private int conflictCount;
+
+    /** The sizes of the regions recomputed by the last edit. */
+    private int updatedFirstCount;
+    private int updatedFollowCount;
+    private int updatedRowCount;
+
+    /**
+     * Analyzes a grammar from scratch.
+     *
+     * @param grammar The grammar, which the edits made through the analysis
+     * will modify.
+     */
+    public GrammarAnalysis(Grammar grammar) {
+        this.grammar = grammar;
+        this.first = GrammarAttributes.computeFirstSets(grammar);
+        this.follow = GrammarAttributes.computeFollowSets(grammar, first);
+        this.terminalRanks = ParserGenerator.rankTerminals(grammar);
+
+        for (Map.Entry<Variable, List<List<Symbol>>> entry : grammar.getRelations().entrySet()) {
+            declare(entry.getKey());
+            for (List<Symbol> rightPart : entry.getValue()) {
+                index(entry.getKey(), rightPart);
+            }
+        }
+        for (Variable leftPart : grammar.getRelations().keySet()) {
+            updateRow(leftPart);
+        }
+        updatedFirstCount = first.size();
+        updatedFollowCount = follow.size();
+        updatedRowCount = rows.size();
+    }
+
+    /** @return The grammar being analyzed. */
+    public Grammar getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * Adds a production to the grammar.  Variables and terminals the grammar
+     * does not know yet are declared.
+     *
+     * @param leftPart The variable on the left.
+     * @param rightPart The symbols on the right, EPSILON_VALUE alone for an
+     * empty production.
+     */
+    public void addProduction(Variable leftPart, List<Symbol> rightPart) {
+        List<Symbol> production = prepare(leftPart, rightPart);
+        grammar.getRelations().get(leftPart).add(production);
+        index(leftPart, production);
+        update(leftPart, Collections.singletonList(production));
+    }
+
+    /**
+     * Removes a production from the grammar.
+     *
+     * @param leftPart The variable on the left.
+     * @param rightPart The symbols on the right.
+     * @return Whether the grammar had the production.
+     */
+    public boolean removeProduction(Variable leftPart, List<Symbol> rightPart) {
+        List<Symbol> removed = unlink(leftPart, rightPart);
+        if (removed == null) {
+            return false;
+        }
+        update(leftPart, Collections.singletonList(removed));
+        return true;
+    }
+
+    /**
+     * Replaces a production of a variable by another one, in place.
+     *
+     * @param leftPart The variable on the left.
+     * @param oldRightPart The symbols on the right of the production to
+     * replace.
+     * @param newRightPart The symbols on the right of the new production.
+     * @return Whether the grammar had the production to replace.
+     */
+    public boolean replaceProduction(Variable leftPart, List<Symbol> oldRightPart, List<Symbol> newRightPart) {
+        List<List<Symbol>> rightParts = grammar.getRelations().get(leftPart);
+        int position = rightParts == null ? -1 : rightParts.indexOf(oldRightPart);
+        if (position < 0) {
+            return false;
+        }
+        List<Symbol> production = prepare(leftPart, newRightPart);
+        List<Symbol> removed = rightParts.set(position, production);
+        unindex(removed);
+        index(leftPart, production);
+        List<List<Symbol>> changed = new ArrayList<>(2);
+        changed.add(removed);
+        changed.add(production);
+        update(leftPart, changed);
+        return true;
+    }
+
+    /**
+     * @return The FIRST set of a variable, holding epsilon if the variable
+     * is nullable.
+     */
+    public Set<Terminal> getFirst(Variable variable) {
+        Set<Terminal> set = first.get(variable);
+        return set == null ? Collections.<Terminal>emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /** @return The FOLLOW set of a variable. */
+    public Set<Terminal> getFollow(Variable variable) {
+        Set<Terminal> set = follow.get(variable);
+        return set == null ? Collections.<Terminal>emptySet() : Collections.unmodifiableSet(set);
+    }
+
+    /** @return Whether a variable derives the empty string. */
+    public boolean isNullable(Variable variable) {
+        return getFirst(variable).contains(Epsilon.getInstance());
+    }
+
+    /**
+     * Returns the predictions of a variable.  Where there is a conflict, the
+     * last of the competing productions is kept.
+     *
+     * @param variable The variable in question.
+     * @return The productions of the variable by lookahead terminal.
+     */
+    public Map<Terminal, List<Symbol>> getPredictions(Variable variable) {
+        TableRow row = rows.get(variable);
+        return row == null ? Collections.<Terminal, List<Symbol>>emptyMap()
+                : Collections.unmodifiableMap(row.predictions);
+    }
+
+    /** @return Whether the grammar is LL(1). */
+    public boolean isLL1() {
+        return conflictCount == 0;
+    }
+
+    /**
+     * @return The number of conflicts of the table, kept up to date by the
+     * edits without listing them.
+     */
+    public int getConflictCount() {
+        return conflictCount;
+    }
+
+    /**
+     * @return Every conflict of the table, in the order
+     * {@link ParserGenerator#createParseTable(Grammar)} reports them.
+     */
+    public List<String> getConflicts() {
+        List<String> conflicts = new ArrayList<>(conflictCount);
+        if (conflictCount > 0) {
+            for (Variable leftPart : ParserGenerator.orderLeftParts(grammar)) {
+                conflicts.addAll(rows.get(leftPart).conflicts);
+            }
+        }
+        return conflicts;
+    }
+
+    /**
+     * Builds a parsing table from the current rows.
+     *
+     * @return The parsing table.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public ParseTable createParseTable() throws GrammarNotLL1Exception {
+        if (conflictCount > 0) {
+            throw new GrammarNotLL1Exception(getConflicts());
+        }
+        Map<Variable, Map<Terminal, List<Symbol>>> parsingTable = new LinkedHashMap<>();
+        for (Variable leftPart : ParserGenerator.orderLeftParts(grammar)) {
+            parsingTable.put(leftPart, rows.get(leftPart).predictions);
+        }
+        return new ParseTable(grammar.getStart(), parsingTable);
+    }
+
+    /** @return The number of FIRST sets the last edit recomputed. */
+    public int getUpdatedFirstCount() {
+        return updatedFirstCount;
+    }
+
+    /** @return The number of FOLLOW sets the last edit recomputed. */
+    public int getUpdatedFollowCount() {
+        return updatedFollowCount;
+    }
+
+    /** @return The number of table rows the last edit recomputed. */
+    public int getUpdatedRowCount() {
+        return updatedRowCount;
+    }
+
+    /**
+     * Copies a right-hand side, declaring its symbols and its variable.
+     */
+    private List<Symbol> prepare(Variable leftPart, List<Symbol> rightPart) {
+        if (rightPart.isEmpty()) {
+            throw new IllegalArgumentException("Empty right part, use EPSILON_VALUE");
+        }
+        declare(leftPart);
+        if (!grammar.getRelations().containsKey(leftPart)) {
+            grammar.getRelations().put(leftPart, new ArrayList<List<Symbol>>());
+        }
+        for (Symbol symbol : rightPart) {
+            if (symbol.equals(Epsilon.getInstance())) {
+                grammar.addEpsilonToTerminalSet();
+            } else if (symbol.isTerminal()) {
+                if (!terminalRanks.containsKey((Terminal) symbol)) {
+                    terminalRanks.put((Terminal) symbol, terminalRanks.size());
+                    grammar.getTerminals().add((Terminal) symbol);
+                }
+            } else {
+                declare((Variable) symbol);
+            }
+        }
+        return new ArrayList<>(rightPart);
+    }
+
+    private void declare(Variable variable) {
+        if (!first.containsKey(variable)) {
+            grammar.addVariableToVariableSet(variable);
+            first.put(variable, new HashSet<Terminal>());
+            follow.put(variable, new HashSet<Terminal>());
+        }
+        if (!occurrences.containsKey(variable)) {
+            occurrences.put(variable, new LinkedHashSet<Occurrence>());
+        }
+    }
+
+    /**
+     * Removes a production from the grammar and the index.
+     *
+     * @return The production removed, or null.
+     */
+    private List<Symbol> unlink(Variable leftPart, List<Symbol> rightPart) {
+        List<List<Symbol>> rightParts = grammar.getRelations().get(leftPart);
+        int position = rightParts == null ? -1 : rightParts.indexOf(rightPart);
+        if (position < 0) {
+            return null;
+        }
+        List<Symbol> removed = rightParts.remove(position);
+        unindex(removed);
+        return removed;
+    }
+
+    private void index(Variable leftPart, List<Symbol> rightPart) {
+        Occurrence[] indexed = new Occurrence[rightPart.size()];
+        for (int i = 0; i < rightPart.size(); ++i) {
+            Symbol symbol = rightPart.get(i);
+            if (!symbol.isTerminal()) {
+                indexed[i] = new Occurrence(leftPart, rightPart, i);
+                declare((Variable) symbol);
+                occurrences.get(symbol).add(indexed[i]);
+            }
+        }
+        productionOccurrences.put(rightPart, indexed);
+    }
+
+    private void unindex(List<Symbol> rightPart) {
+        for (Occurrence occurrence : productionOccurrences.remove(rightPart)) {
+            if (occurrence != null) {
+                occurrences.get(occurrence.rightPart.get(occurrence.index)).remove(occurrence);
+            }
+        }
+    }
+
+    /**
+     * Brings FIRST, FOLLOW and the rows up to date after the productions of
+     * a variable changed.
+     *
+     * @param leftPart The variable whose productions changed.
+     * @param changed The productions added or removed.
+     */
+    private void update(Variable leftPart, List<List<Symbol>> changed) {
+        Set<Variable> changedFirst = updateFirst(leftPart);
+
+        /* FOLLOW changes next to the edited productions, and before any
+         * variable whose FIRST set or nullability changed.
+         */
+        Set<Variable> seeds = new LinkedHashSet<>();
+        for (List<Symbol> rightPart : changed) {
+            for (Symbol symbol : rightPart) {
+                if (!symbol.isTerminal()) {
+                    seeds.add((Variable) symbol);
+                }
+            }
+        }
+        for (Variable variable : changedFirst) {
+            for (Occurrence occurrence : occurrences.get(variable)) {
+                for (int i = 0; i < occurrence.index; ++i) {
+                    Symbol symbol = occurrence.rightPart.get(i);
+                    if (!symbol.isTerminal()) {
+                        seeds.add((Variable) symbol);
+                    }
+                }
+            }
+        }
+        Set<Variable> changedFollow = updateFollow(seeds);
+
+        /* Rows change with the productions, the FIRST sets of their leading
+         * variables, or the FOLLOW set of their variable.
+         */
+        Set<Variable> stale = new LinkedHashSet<>();
+        stale.add(leftPart);
+        for (Variable variable : changedFirst) {
+            for (Occurrence occurrence : occurrences.get(variable)) {
+                if (occurrence.isLeading()) {
+                    stale.add(occurrence.leftPart);
+                }
+            }
+        }
+        stale.addAll(changedFollow);
+        updatedRowCount = 0;
+        for (Variable variable : stale) {
+            if (grammar.getRelations().containsKey(variable)) {
+                updateRow(variable);
+                ++updatedRowCount;
+            }
+        }
+    }
+
+    /**
+     * Recomputes FIRST over the variables that reach a variable through the
+     * leading variables of their productions.
+     *
+     * @return The variables whose FIRST set changed.
+     */
+    private Set<Variable> updateFirst(Variable edited) {
+        Set<Variable> region = new LinkedHashSet<>();
+        Deque<Variable> work = new ArrayDeque<>();
+        region.add(edited);
+        work.add(edited);
+        while (!work.isEmpty()) {
+            for (Occurrence occurrence : occurrences.get(work.poll())) {
+                if (occurrence.isLeading() && region.add(occurrence.leftPart)) {
+                    work.add(occurrence.leftPart);
+                }
+            }
+        }
+
+        Map<Variable, Set<Terminal>> old = new HashMap<>();
+        for (Variable variable : region) {
+            old.put(variable, first.put(variable, new HashSet<Terminal>()));
+        }
+        work.addAll(region);
+        Set<Variable> queued = new HashSet<>(region);
+        while (!work.isEmpty()) {
+            Variable variable = work.poll();
+            queued.remove(variable);
+            List<List<Symbol>> rightParts = grammar.getRelations().get(variable);
+            if (rightParts == null) {
+                continue;
+            }
+            boolean grown = false;
+            for (List<Symbol> rightPart : rightParts) {
+                grown |= first.get(variable).addAll(GrammarAttributes.getFirstSetForSequence(rightPart, first));
+            }
+            if (!grown) {
+                continue;
+            }
+            for (Occurrence occurrence : occurrences.get(variable)) {
+                if (occurrence.isLeading() && region.contains(occurrence.leftPart)
+                        && queued.add(occurrence.leftPart)) {
+                    work.add(occurrence.leftPart);
+                }
+            }
+        }
+
+        Set<Variable> changed = new LinkedHashSet<>();
+        for (Variable variable : region) {
+            if (!first.get(variable).equals(old.get(variable))) {
+                changed.add(variable);
+            }
+        }
+        updatedFirstCount = region.size();
+        return changed;
+    }
+
+    /**
+     * Recomputes FOLLOW over the seeds and the variables their FOLLOW sets
+     * flow into through the trailing variables of productions.
+     *
+     * @return The variables whose FOLLOW set changed.
+     */
+    private Set<Variable> updateFollow(Set<Variable> seeds) {
+        Set<Variable> region = new LinkedHashSet<>(seeds);
+        Deque<Variable> work = new ArrayDeque<>(seeds);
+        while (!work.isEmpty()) {
+            List<List<Symbol>> rightParts = grammar.getRelations().get(work.poll());
+            if (rightParts == null) {
+                continue;
+            }
+            for (List<Symbol> rightPart : rightParts) {
+                for (int i = rightPart.size() - 1; i >= 0 && !rightPart.get(i).isTerminal(); --i) {
+                    Variable variable = (Variable) rightPart.get(i);
+                    if (region.add(variable)) {
+                        work.add(variable);
+                    }
+                }
+            }
+        }
+
+        /* Start from what comes from outside the region... */
+        Map<Variable, Set<Terminal>> old = new HashMap<>();
+        for (Variable variable : region) {
+            Set<Terminal> set = new HashSet<>();
+            old.put(variable, follow.put(variable, set));
+            if (variable.equals(grammar.getStart())) {
+                set.add(EOF.getInstance());
+            }
+            for (Occurrence occurrence : occurrences.get(variable)) {
+                List<Symbol> rest = occurrence.rightPart.subList(occurrence.index + 1, occurrence.rightPart.size());
+                Set<Terminal> startOfRest = GrammarAttributes.getFirstSetForSequence(rest, first);
+                for (Terminal t : startOfRest) {
+                    if (!t.equals(Epsilon.getInstance())) {
+                        set.add(t);
+                    }
+                }
+                if (startOfRest.contains(Epsilon.getInstance()) && !region.contains(occurrence.leftPart)) {
+                    set.addAll(follow.get(occurrence.leftPart));
+                }
+            }
+        }
+
+        /* ...then let FOLLOW flow within the region. */
+        work.addAll(region);
+        Set<Variable> queued = new HashSet<>(region);
+        while (!work.isEmpty()) {
+            Variable leftPart = work.poll();
+            queued.remove(leftPart);
+            List<List<Symbol>> rightParts = grammar.getRelations().get(leftPart);
+            if (rightParts == null) {
+                continue;
+            }
+            for (List<Symbol> rightPart : rightParts) {
+                for (int i = rightPart.size() - 1; i >= 0 && !rightPart.get(i).isTerminal(); --i) {
+                    Variable variable = (Variable) rightPart.get(i);
+                    if (region.contains(variable) && follow.get(variable).addAll(follow.get(leftPart))
+                            && queued.add(variable)) {
+                        work.add(variable);
+                    }
+                    if (!first.get(variable).contains(Epsilon.getInstance())) {
+                        break;
+                    }
+                }
+            }
+        }
+
+        Set<Variable> changed = new LinkedHashSet<>();
+        for (Variable variable : region) {
+            if (!follow.get(variable).equals(old.get(variable))) {
+                changed.add(variable);
+            }
+        }
+        updatedFollowCount = region.size();
+        return changed;
+    }
+
+    private void updateRow(Variable leftPart) {
+        TableRow row = ParserGenerator.computeRow(leftPart, grammar.getRelations().get(leftPart), first,
+                follow.get(leftPart), terminalRanks);
+        TableRow previous = rows.put(leftPart, row);
+        conflictCount += row.conflicts.size() - (previous == null ? 0 : previous.conflicts.size());
+    }
+}
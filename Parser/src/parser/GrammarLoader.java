@@ -0,0 +1,724 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.OperatorTable;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.GrammarFormatException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a grammar file in one streaming pass.  The format is that of
+ * {@link GrammarParser}:
+ * <pre>
+ * variable variable ...
+ * terminal terminal ...
+ * start
+ * variable -> symbol symbol ... | symbol ... | EPSILON_VALUE
+ * ...
+ * </pre>
+ * with a few extensions:
+ * <ul>
+ * <li>a production may span several lines, as it only ends where the next
+ * one begins, with a variable followed by <code>-&gt;</code>;</li>
+ * <li>productions of the same variable may be given in several places,
+ * their alternatives are added up;</li>
+ * <li><code>#</code> at the start of a symbol begins a comment running to
+ * the end of the line, and blank lines may appear anywhere;</li>
+ * <li>right parts may use the EBNF operators <code>*</code>,
+ * <code>+</code> and <code>?</code> after a symbol or a group, and groups
+ * of alternatives in parentheses, as in
+ * <code>funcBody-&gt;{ statement* }</code> or
+ * <code>aParams-&gt;(expr (, expr)*)?</code>;</li>
+ * <li>lines of operator declarations may come between the productions:
+ * <code>%left</code>, <code>%right</code> or <code>%nonassoc</code>
+ * followed by terminals adds a level of binary operators binding tighter
+ * than the levels above it, and <code>%expression</code> followed by two
+ * variables declares the first as an expression of operands of the second,
+ * see {@link OperatorTable}.  A declaration ends with its line.</li>
+ * </ul>
+ * As parentheses and the operators are terminals of most languages, they
+ * are only read as EBNF when they are attached to a symbol: a group opens
+ * with a parenthesis right before its first symbol and closes with one
+ * right after its last symbol, and an operator follows a symbol or a
+ * closing parenthesis without a space.  A token naming a declared symbol,
+ * such as <code>(</code> or <code>*</code>, is always that symbol.
+ * <p>
+ * Every group, option and repetition becomes a {@link TransparentVariable}
+ * named after the construct, such as <code>(statement)*</code>, shared by
+ * the identical constructs of the grammar.  A repetition is right
+ * recursive, <code>(x)*-&gt;x (x)*|EPSILON_VALUE</code>, so the table
+ * parses it as a loop replacing the repetition by itself, and the parse
+ * tree gets one flat node holding all the items.
+ * Symbols are resolved through a hash index of the declared variables and
+ * terminals, and malformed input is reported with its line and column.
+ * <p>
+ * A loader keeps the size and loading time of the last grammar it read.
+ *
+ * @author yucunli
+ */
+public final class GrammarLoader {
+
+    /** The kinds of tokens of a grammar file. */
+    private static final int SYMBOL = 0;
+    private static final int ARROW = 1;
+    private static final int BAR = 2;
+    private static final int NEWLINE = 3;
+    private static final int END = 4;
+
+    /**
+     * A token with its position.
+     */
+    private static final class Token {
+        final int kind;
+        final String text;
+        final int line;
+        final int column;
+
+        Token(int kind, String text, int line, int column) {
+            this.kind = kind;
+            this.text = text;
+            this.line = line;
+            this.column = column;
+        }
+    }
+
+    /** The input, read through a buffer of its own. */
+    private Reader reader;
+    private final char[] buffer = new char[8192];
+    private int position;
+    private int limit;
+
+    /** The position of the next character. */
+    private int line;
+    private int column;
+
+    /** A token read ahead and given back. */
+    private Token pushedBack;
+
+    /**
+     * A group of an EBNF right part being read.
+     */
+    private static final class Group {
+        final Token open;
+        final List<List<Symbol>> alternatives = new ArrayList<>();
+        List<Symbol> current = new ArrayList<>();
+
+        Group(Token open) {
+            this.open = open;
+        }
+    }
+
+    /** The declared symbols by name. */
+    private final Map<String, Symbol> symbols = new HashMap<>();
+
+    /** The variables generated for EBNF constructs, by name. */
+    private final Map<String, TransparentVariable> generated = new LinkedHashMap<>();
+
+    /** The productions of the grammar being read. */
+    private HashMap<Variable, List<List<Symbol>>> relations;
+
+    /** The operator declarations of the grammar being read. */
+    private OperatorTable operators;
+
+    private long loadTime;
+    private int productionCount;
+    private int lineCount;
+
+    /**
+     * Loads a grammar from a file.
+     *
+     * @param filename The name of the file.
+     * @return The grammar.
+     * @throws IOException If the file cannot be read.
+     * @throws GrammarFormatException If the file is malformed.
+     */
+    public Grammar load(String filename) throws IOException, GrammarFormatException {
+        try (Reader input = new InputStreamReader(new FileInputStream(filename), StandardCharsets.UTF_8)) {
+            return load(input);
+        }
+    }
+
+    /**
+     * Loads a grammar from a reader.  The reader is not closed.
+     *
+     * @param input The text of the grammar.
+     * @return The grammar.
+     * @throws IOException If the input cannot be read.
+     * @throws GrammarFormatException If the input is malformed.
+     */
+    public Grammar load(Reader input) throws IOException, GrammarFormatException {
+        long start = System.nanoTime();
+        reader = input;
+        position = 0;
+        limit = 0;
+        line = 1;
+        column = 1;
+        pushedBack = null;
+        symbols.clear();
+        generated.clear();
+        productionCount = 0;
+        try {
+            Grammar grammar = readGrammar();
+            lineCount = line;
+            return grammar;
+        } finally {
+            reader = null;
+            symbols.clear();
+            generated.clear();
+            relations = null;
+            operators = null;
+            loadTime = System.nanoTime() - start;
+        }
+    }
+
+    /** @return The time taken by the last load, in nanoseconds. */
+    public long getLoadTime() {
+        return loadTime;
+    }
+
+    /** @return The number of alternatives read by the last load. */
+    public int getProductionCount() {
+        return productionCount;
+    }
+
+    /** @return The number of lines read by the last successful load. */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    private Grammar readGrammar() throws IOException, GrammarFormatException {
+        /* First line : variables */
+        List<Variable> variables = new ArrayList<>();
+        for (Token token : readHeaderLine("variables")) {
+            Variable variable = new Variable(token.text);
+            variables.add(variable);
+            if (!symbols.containsKey(token.text)) {
+                symbols.put(token.text, variable);
+            }
+        }
+
+        /* Second line : terminals */
+        List<Terminal> terminals = new ArrayList<>();
+        for (Token token : readHeaderLine("terminals")) {
+            Terminal terminal = special(token.text);
+            if (terminal == null) {
+                terminal = new Terminal(token.text);
+            }
+            terminals.add(terminal);
+            if (!symbols.containsKey(token.text)) {
+                symbols.put(token.text, terminal);
+            }
+        }
+
+        /* Third line : start */
+        List<Token> startLine = readHeaderLine("start symbol");
+        if (startLine.size() != 1) {
+            Token extra = startLine.get(1);
+            throw new GrammarFormatException("Expected a single start symbol", extra.line, extra.column);
+        }
+        Variable start = new Variable(startLine.get(0).text);
+
+        /* The productions */
+        relations = new HashMap<>();
+        operators = new OperatorTable();
+        Token token = nextToken();
+        while (token.kind != END) {
+            if (isDeclaration(token)) {
+                readDeclaration(token);
+                token = nextToken();
+                continue;
+            }
+            if (token.kind != SYMBOL) {
+                throw error("Expected a variable", token);
+            }
+            Symbol symbol = symbols.get(token.text);
+            if (!(symbol instanceof Variable)) {
+                throw error("Left part is not a declared variable : " + token.text, token);
+            }
+            Token arrow = nextToken();
+            if (arrow.kind != ARROW) {
+                throw error("Expected '->' after " + token.text, arrow);
+            }
+
+            List<List<Symbol>> rightParts = relations.get(symbol);
+            if (rightParts == null) {
+                rightParts = new ArrayList<>();
+                relations.put((Variable) symbol, rightParts);
+            }
+            List<Symbol> rightPart = new ArrayList<>();
+            List<Group> groups = new ArrayList<>();
+            Token separator = arrow;
+            token = nextToken();
+            while (true) {
+                if (token.kind == SYMBOL && !isDeclaration(token)) {
+                    Token following = nextToken();
+                    if (following.kind != ARROW) {
+                        addSymbols(token, rightPart, groups);
+                        token = following;
+                        continue;
+                    }
+                    /* The symbol begins the next production. */
+                    pushedBack = following;
+                } else if (token.kind == ARROW) {
+                    throw error("Unexpected '->'", token);
+                }
+                if (token.kind == BAR && !groups.isEmpty()) {
+                    Group group = groups.get(groups.size() - 1);
+                    if (group.current.isEmpty()) {
+                        throw error("Empty alternative, use EPSILON_VALUE", token);
+                    }
+                    group.alternatives.add(normalize(group.current));
+                    group.current = new ArrayList<>();
+                    token = nextToken();
+                    continue;
+                }
+                if (!groups.isEmpty()) {
+                    throw error("Unclosed group", groups.get(groups.size() - 1).open);
+                }
+                if (rightPart.isEmpty()) {
+                    throw error("Empty right part, use EPSILON_VALUE", separator);
+                }
+                rightParts.add(normalize(rightPart));
+                ++productionCount;
+                if (token.kind != BAR) {
+                    break;
+                }
+                rightPart = new ArrayList<>();
+                separator = token;
+                token = nextToken();
+            }
+        }
+
+        /* The generated variables come after the declared ones. */
+        for (TransparentVariable variable : generated.values()) {
+            variables.add(variable);
+            for (List<Symbol> rightPart : relations.get(variable)) {
+                if (rightPart.contains(Epsilon.getInstance()) && !terminals.contains(Epsilon.getInstance())) {
+                    terminals.add(Epsilon.getInstance());
+                }
+            }
+        }
+
+        Grammar grammar = new Grammar(variables, terminals, relations, start);
+        grammar.setOperators(operators);
+        return grammar;
+    }
+
+    /** @return Whether a token begins an operator declaration. */
+    private boolean isDeclaration(Token token) {
+        return token.kind == SYMBOL && token.text.startsWith("%") && !symbols.containsKey(token.text);
+    }
+
+    /** Reads the rest of the line of an operator declaration. */
+    private void readDeclaration(Token keyword) throws IOException, GrammarFormatException {
+        List<Token> tokens = new ArrayList<>();
+        Token token = nextTokenOrNewline();
+        while (token.kind == SYMBOL) {
+            tokens.add(token);
+            token = nextTokenOrNewline();
+        }
+        if (token.kind == END) {
+            pushedBack = token;
+        } else if (token.kind != NEWLINE) {
+            throw error("Unexpected '" + token.text + "' in " + keyword.text, token);
+        }
+
+        if (keyword.text.equals("%expression")) {
+            if (tokens.size() != 2) {
+                throw error("Expected an expression variable and an operand variable", keyword);
+            }
+            Variable[] variables = new Variable[2];
+            for (int i = 0; i < 2; ++i) {
+                Symbol symbol = symbols.get(tokens.get(i).text);
+                if (!(symbol instanceof Variable)) {
+                    throw error("Not a declared variable : " + tokens.get(i).text, tokens.get(i));
+                }
+                variables[i] = (Variable) symbol;
+            }
+            operators.addExpression(variables[0], variables[1]);
+            return;
+        }
+
+        int associativity;
+        if (keyword.text.equals("%left")) {
+            associativity = OperatorTable.LEFT;
+        } else if (keyword.text.equals("%right")) {
+            associativity = OperatorTable.RIGHT;
+        } else if (keyword.text.equals("%nonassoc")) {
+            associativity = OperatorTable.NONASSOC;
+        } else {
+            throw error("Unknown declaration " + keyword.text, keyword);
+        }
+        if (tokens.isEmpty()) {
+            throw error("Expected operators after " + keyword.text, keyword);
+        }
+        List<Terminal> level = new ArrayList<>();
+        for (Token operator : tokens) {
+            Symbol symbol = symbols.get(operator.text);
+            if (symbol == null || !symbol.isTerminal()) {
+                throw error("Not a declared terminal : " + operator.text, operator);
+            }
+            if (operators.isOperator(symbol)) {
+                throw error("Operator declared twice : " + operator.text, operator);
+            }
+            level.add((Terminal) symbol);
+        }
+        operators.addLevel(associativity, level);
+    }
+
+    /**
+     * Reads the symbols of a header line, skipping blank and comment lines
+     * before it.
+     */
+    private List<Token> readHeaderLine(String what) throws IOException, GrammarFormatException {
+        Token token = nextTokenOrNewline();
+        while (token.kind == NEWLINE) {
+            token = nextTokenOrNewline();
+        }
+        if (token.kind == END) {
+            throw error("Missing " + what + " line", token);
+        }
+        List<Token> tokens = new ArrayList<>();
+        while (token.kind != NEWLINE && token.kind != END) {
+            if (token.kind != SYMBOL) {
+                throw error("Unexpected '" + token.text + "' in the " + what + " line", token);
+            }
+            tokens.add(token);
+            token = nextTokenOrNewline();
+        }
+        return tokens;
+    }
+
+    /**
+     * Adds the symbols of a right part token to the innermost open group, or
+     * to the right part.  A token that is not a declared symbol is split
+     * into opening parentheses, a symbol, and closing parentheses and
+     * operators; the longest symbol wins, then the most opening
+     * parentheses.
+     */
+    private void addSymbols(Token token, List<Symbol> rightPart, List<Group> groups)
+            throws GrammarFormatException {
+        String text = token.text;
+        Symbol symbol = lookup(text);
+        if (symbol != null) {
+            target(rightPart, groups).add(symbol);
+            return;
+        }
+
+        int leading = 0;
+        while (leading < text.length() && text.charAt(leading) == '(') {
+            ++leading;
+        }
+        for (int opens = leading; opens >= 0; --opens) {
+            for (int end = text.length(); end > opens; --end) {
+                symbol = lookup(text.substring(opens, end));
+                int closes = countCloses(text, end);
+                if (symbol == null || closes < 0) {
+                    continue;
+                }
+                if (closes > groups.size() + opens) {
+                    throw error("Unmatched ')' in " + text, token);
+                }
+                for (int i = 0; i < opens; ++i) {
+                    groups.add(new Group(token));
+                }
+                int i = end;
+                char operator = operator(text, i);
+                if (operator != 0) {
+                    ++i;
+                }
+                List<List<Symbol>> single = new ArrayList<>();
+                single.add(new ArrayList<>(Collections.singletonList(symbol)));
+                target(rightPart, groups).addAll(construct(single, operator));
+                while (i < text.length()) {
+                    /* A closing parenthesis, maybe followed by an operator. */
+                    Group group = groups.remove(groups.size() - 1);
+                    group.alternatives.add(normalize(group.current));
+                    operator = operator(text, ++i);
+                    if (operator != 0) {
+                        ++i;
+                    }
+                    target(rightPart, groups).addAll(construct(group.alternatives, operator));
+                }
+                return;
+            }
+        }
+        throw error("Right part does not belong to the variables nor the terminals : " + text, token);
+    }
+
+    /**
+     * @return The number of closing parentheses if the text is a valid EBNF
+     * suffix from a position, -1 otherwise.
+     */
+    private static int countCloses(String text, int position) {
+        int i = position;
+        if (operator(text, i) != 0) {
+            ++i;
+        }
+        int closes = 0;
+        while (i < text.length()) {
+            if (text.charAt(i) != ')') {
+                return -1;
+            }
+            ++closes;
+            ++i;
+            if (operator(text, i) != 0) {
+                ++i;
+            }
+        }
+        return closes;
+    }
+
+    /** @return The operator at a position of a text, 0 if there is none. */
+    private static char operator(String text, int position) {
+        if (position < text.length()) {
+            char c = text.charAt(position);
+            if (c == '*' || c == '+' || c == '?') {
+                return c;
+            }
+        }
+        return 0;
+    }
+
+    private static List<Symbol> target(List<Symbol> rightPart, List<Group> groups) {
+        return groups.isEmpty() ? rightPart : groups.get(groups.size() - 1).current;
+    }
+
+    /**
+     * Returns the symbols standing for alternatives under an operator,
+     * generating the variables needed.  A group of one alternative without
+     * operator is replaced by its symbols.
+     */
+    private List<Symbol> construct(List<List<Symbol>> alternatives, char operator) {
+        if (operator == 0) {
+            if (alternatives.size() == 1) {
+                return alternatives.get(0);
+            }
+            return Collections.<Symbol>singletonList(generate(alternatives, "", false));
+        }
+        if (operator == '?') {
+            return Collections.<Symbol>singletonList(generate(alternatives, "?", false));
+        }
+        TransparentVariable repetition = generate(alternatives, "*", true);
+        if (operator == '*') {
+            return Collections.<Symbol>singletonList(repetition);
+        }
+        /* x+ is x x*. */
+        List<Symbol> symbols = new ArrayList<>(construct(alternatives, (char) 0));
+        symbols.add(repetition);
+        return symbols;
+    }
+
+    /**
+     * Returns the variable of a group, option or repetition, generating it
+     * the first time.
+     */
+    private TransparentVariable generate(List<List<Symbol>> alternatives, String operator, boolean repeated) {
+        StringBuilder name = new StringBuilder("(");
+        for (int i = 0; i < alternatives.size(); ++i) {
+            if (i > 0) {
+                name.append(" |");
+            }
+            for (Symbol symbol : alternatives.get(i)) {
+                if (name.length() > 1) {
+                    name.append(' ');
+                }
+                name.append(symbol);
+            }
+        }
+        name.append(')').append(operator);
+        TransparentVariable variable = generated.get(name.toString());
+        if (variable != null) {
+            return variable;
+        }
+        variable = new TransparentVariable(name.toString());
+        generated.put(name.toString(), variable);
+
+        List<List<Symbol>> rightParts = new ArrayList<>();
+        for (List<Symbol> alternative : alternatives) {
+            List<Symbol> rightPart = new ArrayList<>(alternative);
+            if (repeated) {
+                rightPart.add(variable);
+            }
+            rightParts.add(normalize(rightPart));
+        }
+        if (!operator.isEmpty()) {
+            rightParts.add(new ArrayList<Symbol>(Collections.singletonList(Epsilon.getInstance())));
+        }
+        relations.put(variable, rightParts);
+        return variable;
+    }
+
+    /** Removes epsilon from a right part of other symbols. */
+    private static List<Symbol> normalize(List<Symbol> rightPart) {
+        if (rightPart.size() > 1) {
+            rightPart.removeAll(Collections.singletonList(Epsilon.getInstance()));
+            if (rightPart.isEmpty()) {
+                rightPart.add(Epsilon.getInstance());
+            }
+        }
+        return rightPart;
+    }
+
+    /** @return The declared symbol, epsilon or EOF of a name, or null. */
+    private Symbol lookup(String name) {
+        Terminal terminal = special(name);
+        return terminal != null ? terminal : symbols.get(name);
+    }
+
+    /** @return Epsilon or EOF for their names, null for other names. */
+    private static Terminal special(String name) {
+        if (name.equals("EPSILON_VALUE")) {
+            return Epsilon.getInstance();
+        } else if (name.equals("$")) {
+            return EOF.getInstance();
+        }
+        return null;
+    }
+
+    private static GrammarFormatException error(String message, Token token) {
+        return new GrammarFormatException(message, token.line, token.column);
+    }
+
+    /** @return The next token that is not a newline. */
+    private Token nextToken() throws IOException {
+        Token token = nextTokenOrNewline();
+        while (token.kind == NEWLINE) {
+            token = nextTokenOrNewline();
+        }
+        return token;
+    }
+
+    private Token nextTokenOrNewline() throws IOException {
+        if (pushedBack != null) {
+            Token token = pushedBack;
+            pushedBack = null;
+            return token;
+        }
+
+        int c = peek();
+        while (c == ' ' || c == '\t' || c == '\r' || c == '\f') {
+            advance();
+            c = peek();
+        }
+        int tokenLine = line;
+        int tokenColumn = column;
+        if (c < 0) {
+            return new Token(END, "end of file", tokenLine, tokenColumn);
+        }
+        if (c == '\n') {
+            advance();
+            return new Token(NEWLINE, "\n", tokenLine, tokenColumn);
+        }
+        if (c == '#') {
+            /* A comment, up to the end of the line. */
+            while (c >= 0 && c != '\n') {
+                advance();
+                c = peek();
+            }
+            return nextTokenOrNewline();
+        }
+        if (c == '|') {
+            advance();
+            return new Token(BAR, "|", tokenLine, tokenColumn);
+        }
+        if (c == '-' && peekSecond() == '>') {
+            advance();
+            advance();
+            return new Token(ARROW, "->", tokenLine, tokenColumn);
+        }
+
+        StringBuilder text = new StringBuilder();
+        do {
+            text.append((char) c);
+            advance();
+            c = peek();
+        } while (c >= 0 && c != ' ' && c != '\t' && c != '\r' && c != '\f' && c != '\n' && c != '|'
+                && !(c == '-' && peekSecond() == '>'));
+        return new Token(SYMBOL, text.toString(), tokenLine, tokenColumn);
+    }
+
+    /** @return The next character, or -1 at the end of the input. */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    /** @return The character after the next one, or -1. */
+    private int peekSecond() throws IOException {
+        if (position + 1 >= limit) {
+            /* Keep the next character and read more after it. */
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read > 0) {
+                limit += read;
+            }
+            if (limit < 2) {
+                return -1;
+            }
+        }
+        return buffer[position + 1];
+    }
+
+    private void advance() {
+        if (buffer[position++] == '\n') {
+            ++line;
+            column = 1;
+        } else {
+            ++column;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        limit = Math.max(read, 0);
+        return read > 0;
+    }
+
+    /**
+     * Loads a grammar file and reports its size and the time taken.  As for
+     * {@link driver.BatchParserDriver}, the exit status is 2 if the grammar
+     * cannot be loaded.
+     *
+     * @param args The name of the grammar file.
+     */
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.err.println("Usage: GrammarLoader grammar");
+            System.exit(2);
+        }
+        GrammarLoader loader = new GrammarLoader();
+        try {
+            Grammar grammar = loader.load(args[0]);
+            System.out.printf("%s: %d variables, %d terminals, %d productions, %d lines in %.3f ms%n",
+                    args[0], grammar.getVariables().size(), grammar.getTerminals().size(),
+                    loader.getProductionCount(), loader.getLineCount(), loader.getLoadTime() / 1e6);
+        } catch (GrammarFormatException ex) {
+            System.err.println(args[0] + ":" + ex.getMessage());
+            System.exit(2);
+        } catch (IOException ex) {
+            System.err.println(ex);
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,735 @@
+package parser;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites a grammar so that its LL(1) parsers make fewer predict steps,
+ * between loading a grammar and generating a parser for it:
+ * <ol>
+ * <li>useless variables, which derive no terminal string or cannot be
+ * reached from the start symbol, are removed with their productions;</li>
+ * <li>variables whose productions are all single symbols, such as
+ * <code>assignOp-&gt;=</code>, and variables used only once are inlined
+ * into the productions using them, as long as the grammar gains no LL(1)
+ * conflict;</li>
+ * <li>variables with structurally identical productions, such as the tail
+ * variables the grammar transformations mint for similar lists, are merged
+ * into one, again as long as no conflict appears.</li>
+ * </ol>
+ * Each inlined variable saves a predict step and a tree node wherever it
+ * was used.  The optimizer records, for every production of the optimized
+ * grammar, the tree fragment it stands for in the original grammar, so that
+ * {@link #restore(ParseTree)} can give a parse tree the shape the original
+ * grammar would have given it.
+ * <p>
+ * The children of a {@link TransparentVariable} go to the node of its
+ * parent, so the node of a variable using one, such as a list of an EBNF
+ * grammar, has as many children as the list has elements and no production
+ * to restore it by.  Such variables and the transparent variables are left
+ * as they are: nothing is inlined into their productions, they are not
+ * inlined themselves, and neither they nor the variables their productions
+ * use are merged.  Their nodes are then restored child by child.
+ * <p>
+ * The grammar given to the optimizer is not modified.
+ *
+ * @author yucunli
+ */
+public final class GrammarOptimizer {
+
+    /** The most alternatives a variable may have to be inlined everywhere. */
+    private static final int MAX_UNIT_ALTERNATIVES = 8;
+
+    /**
+     * A node of the tree fragment a production stands for in the original
+     * grammar.  A slot node takes the child at a position of the optimized
+     * production, relabelled with the symbol the original grammar has there;
+     * an inner node stands for an inlined variable; a node without slot nor
+     * children is an epsilon leaf of an inlined empty production.
+     */
+    private static final class TemplateNode {
+        final Symbol symbol;
+        final int slot;
+        final List<TemplateNode> children;
+
+        TemplateNode(Symbol symbol, int slot, List<TemplateNode> children) {
+            this.symbol = symbol;
+            this.slot = slot;
+            this.children = children;
+        }
+    }
+
+    /**
+     * A production of the grammar being optimized, with the tree fragment
+     * it stands for.
+     */
+    private static final class Alternative {
+        List<Symbol> rightPart;
+        List<TemplateNode> template;
+
+        Alternative(List<Symbol> rightPart, List<TemplateNode> template) {
+            this.rightPart = rightPart;
+            this.template = template;
+        }
+    }
+
+    /** The original grammar. */
+    private final Grammar original;
+
+    /** The productions of every variable still alive or merged away. */
+    private final Map<Variable, List<Alternative>> alternatives = new LinkedHashMap<>();
+
+    /**
+     * The transparent variables and the variables using one, whose
+     * productions are left as they are.
+     */
+    private final Set<Variable> flattened = new HashSet<>();
+
+    /** The variable each merged variable was merged into. */
+    private final Map<Variable, Variable> mergedInto = new HashMap<>();
+
+    /** The optimized grammar. */
+    private final Grammar optimized;
+
+    /**
+     * For every variable of the original grammar that can appear in an
+     * optimized tree, the tree fragment of each of its productions, by
+     * optimized right part.
+     */
+    private final Map<Variable, Map<List<Symbol>, List<TemplateNode>>> templates = new HashMap<>();
+
+    private int removedCount;
+    private int inlinedCount;
+    private int mergedCount;
+
+    /**
+     * Optimizes a grammar.
+     *
+     * @param grammar The grammar to optimize, which is left unchanged.
+     */
+    public GrammarOptimizer(Grammar grammar) {
+        this.original = grammar;
+        for (Variable variable : declarationOrder(grammar)) {
+            List<Alternative> list = new ArrayList<>();
+            for (List<Symbol> rightPart : grammar.getRelations().get(variable)) {
+                List<TemplateNode> template = new ArrayList<>(rightPart.size());
+                for (int i = 0; i < rightPart.size(); ++i) {
+                    template.add(new TemplateNode(rightPart.get(i), i, null));
+                }
+                list.add(new Alternative(new ArrayList<>(rightPart), template));
+            }
+            alternatives.put(variable, list);
+            for (List<Symbol> rightPart : grammar.getRelations().get(variable)) {
+                for (Symbol symbol : rightPart) {
+                    if (symbol instanceof TransparentVariable) {
+                        flattened.add(variable);
+                        flattened.add((Variable) symbol);
+                    }
+                }
+            }
+        }
+
+        int before = alternatives.size();
+        removeUseless();
+        removedCount = before - alternatives.size();
+        inline();
+        merge();
+        before = alternatives.size() - mergedInto.size();
+        removeUseless();
+        inlinedCount += before - (alternatives.size() - mergedInto.size());
+
+        optimized = build(false);
+        for (Map.Entry<Variable, List<Alternative>> entry : alternatives.entrySet()) {
+            Map<List<Symbol>, List<TemplateNode>> byRightPart = new HashMap<>();
+            for (Alternative alternative : entry.getValue()) {
+                byRightPart.put(alternative.rightPart, alternative.template);
+            }
+            templates.put(entry.getKey(), byRightPart);
+        }
+    }
+
+    /** @return The original grammar. */
+    public Grammar getOriginalGrammar() {
+        return original;
+    }
+
+    /** @return The optimized grammar. */
+    public Grammar getGrammar() {
+        return optimized;
+    }
+
+    /** @return The number of useless variables removed. */
+    public int getRemovedCount() {
+        return removedCount;
+    }
+
+    /** @return The number of variables inlined away. */
+    public int getInlinedCount() {
+        return inlinedCount;
+    }
+
+    /** @return The number of variables merged into an identical one. */
+    public int getMergedCount() {
+        return mergedCount;
+    }
+
+    /**
+     * Gives a parse tree of the optimized grammar the shape the original
+     * grammar would have given it: inlined variables get their nodes back,
+     * and merged variables their own symbols.  Leaves are shared with the
+     * given tree.
+     *
+     * @param tree A parse tree of the optimized grammar.
+     * @return The parse tree of the original grammar.
+     * @throws IllegalArgumentException If the tree does not derive from the
+     * optimized grammar.
+     */
+    public ParseTree restore(ParseTree tree) {
+        return restore(tree, tree.getSymbol());
+    }
+
+    private ParseTree restore(ParseTree node, Symbol symbol) {
+        if (symbol.isTerminal()) {
+            return node;
+        }
+        if (flattened.contains(symbol)) {
+            List<ParseTree> children = new ArrayList<>(node.getChildren().size());
+            for (ParseTree child : node.getChildren()) {
+                children.add(restore(child, child.getSymbol()));
+            }
+            return new ParseTree(symbol, children);
+        }
+        List<Symbol> rightPart = new ArrayList<>(node.getChildren().size());
+        for (ParseTree child : node.getChildren()) {
+            rightPart.add(child.getSymbol());
+        }
+        Map<List<Symbol>, List<TemplateNode>> byRightPart = templates.get(symbol);
+        List<TemplateNode> template = byRightPart == null ? null : byRightPart.get(rightPart);
+        if (template == null) {
+            throw new IllegalArgumentException("No production " + symbol + " -> " + rightPart
+                    + " in the optimized grammar");
+        }
+        return new ParseTree(symbol, instantiate(template, node.getChildren()));
+    }
+
+    private List<ParseTree> instantiate(List<TemplateNode> template, List<ParseTree> slots) {
+        List<ParseTree> children = new ArrayList<>(template.size());
+        for (TemplateNode node : template) {
+            if (node.slot >= 0) {
+                children.add(restore(slots.get(node.slot), node.symbol));
+            } else if (node.children == null) {
+                children.add(new ParseTree(Epsilon.getInstance()));
+            } else {
+                children.add(new ParseTree(node.symbol, instantiate(node.children, slots)));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Counts the predict steps an LL(1) parser made to build a tree, which
+     * is its number of variable nodes.
+     *
+     * @param tree A parse tree.
+     * @return The number of predict steps.
+     */
+    public static int countPredictSteps(ParseTree tree) {
+        int count = 0;
+        Deque<ParseTree> stack = new ArrayDeque<>();
+        stack.push(tree);
+        while (!stack.isEmpty()) {
+            ParseTree node = stack.pop();
+            if (!node.getSymbol().isTerminal()) {
+                ++count;
+            }
+            for (ParseTree child : node.getChildren()) {
+                stack.push(child);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes the variables that derive no terminal string, the productions
+     * using them, and then the variables unreachable from the start symbol.
+     */
+    private void removeUseless() {
+        Set<Variable> productive = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<Variable, List<Alternative>> entry : live().entrySet()) {
+                if (productive.contains(entry.getKey())) {
+                    continue;
+                }
+                for (Alternative alternative : entry.getValue()) {
+                    if (derivesFrom(alternative.rightPart, productive)) {
+                        productive.add(entry.getKey());
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        for (List<Alternative> list : alternatives.values()) {
+            for (int i = list.size() - 1; i >= 0; --i) {
+                if (!derivesFrom(list.get(i).rightPart, productive)) {
+                    list.remove(i);
+                }
+            }
+        }
+
+        Set<Variable> reachable = new HashSet<>();
+        Deque<Variable> work = new ArrayDeque<>();
+        reachable.add(original.getStart());
+        work.add(original.getStart());
+        while (!work.isEmpty()) {
+            List<Alternative> list = alternatives.get(work.poll());
+            if (list == null) {
+                continue;
+            }
+            for (Alternative alternative : list) {
+                for (Symbol symbol : alternative.rightPart) {
+                    if (!symbol.isTerminal() && reachable.add((Variable) symbol)) {
+                        work.add((Variable) symbol);
+                    }
+                }
+            }
+        }
+        for (Variable variable : new ArrayList<>(alternatives.keySet())) {
+            if (!reachable.contains(variable) && !mergedInto.containsKey(variable)) {
+                alternatives.remove(variable);
+            }
+        }
+        /* Merged variables only matter while their representative lives. */
+        for (Map.Entry<Variable, Variable> merge : new ArrayList<>(mergedInto.entrySet())) {
+            if (!alternatives.containsKey(merge.getValue())) {
+                alternatives.remove(merge.getKey());
+                mergedInto.remove(merge.getKey());
+            }
+        }
+    }
+
+    private static boolean derivesFrom(List<Symbol> rightPart, Set<Variable> productive) {
+        for (Symbol symbol : rightPart) {
+            if (!symbol.isTerminal() && !productive.contains(symbol)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return The productions of the variables that were not merged away. */
+    private Map<Variable, List<Alternative>> live() {
+        Map<Variable, List<Alternative>> live = new LinkedHashMap<>();
+        for (Map.Entry<Variable, List<Alternative>> entry : alternatives.entrySet()) {
+            if (!mergedInto.containsKey(entry.getKey())) {
+                live.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return live;
+    }
+
+    /**
+     * Inlines the variables with only single-symbol productions and the
+     * variables used once, one use at a time, keeping each substitution
+     * only if the number of LL(1) conflicts does not grow.  An index of the
+     * productions using each variable is updated with every substitution,
+     * and the analysis only revisits the rows a substitution affects.
+     */
+    private void inline() {
+        GrammarAnalysis analysis = new GrammarAnalysis(build(true));
+        int conflicts = analysis.getConflictCount();
+        Map<Alternative, Variable> owners = new HashMap<>();
+        Map<Variable, Map<Alternative, Integer>> uses = new HashMap<>();
+        for (Map.Entry<Variable, List<Alternative>> entry : alternatives.entrySet()) {
+            for (Alternative alternative : entry.getValue()) {
+                index(entry.getKey(), alternative, owners, uses);
+            }
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Variable variable : new ArrayList<>(alternatives.keySet())) {
+                Map<Alternative, Integer> sites = uses.get(variable);
+                if (sites == null || sites.isEmpty() || variable.equals(original.getStart())
+                        || flattened.contains(variable) || !isInlinable(variable, sites)) {
+                    continue;
+                }
+                Deque<Alternative> work = new ArrayDeque<>(sites.keySet());
+                while (!work.isEmpty()) {
+                    Alternative alternative = work.pop();
+                    Variable user = owners.get(alternative);
+                    if (flattened.contains(user)) {
+                        continue;
+                    }
+                    /* Try the uses from the last one backwards. */
+                    for (int position = alternative.rightPart.lastIndexOf(variable); position >= 0;
+                            position = alternative.rightPart.subList(0, position).lastIndexOf(variable)) {
+                        List<Alternative> expanded = expand(alternative, position, alternatives.get(variable));
+                        analysis.replaceProduction(user, alternative.rightPart, expanded.get(0).rightPart);
+                        for (int i = 1; i < expanded.size(); ++i) {
+                            analysis.addProduction(user, expanded.get(i).rightPart);
+                        }
+                        int now = analysis.getConflictCount();
+                        if (now > conflicts) {
+                            for (int i = expanded.size() - 1; i >= 1; --i) {
+                                analysis.removeProduction(user, expanded.get(i).rightPart);
+                            }
+                            analysis.replaceProduction(user, expanded.get(0).rightPart, alternative.rightPart);
+                            continue;
+                        }
+                        conflicts = now;
+                        List<Alternative> list = alternatives.get(user);
+                        int at = list.indexOf(alternative);
+                        list.remove(at);
+                        list.addAll(at, expanded);
+                        unindex(alternative, owners, uses);
+                        for (Alternative replacement : expanded) {
+                            index(user, replacement, owners, uses);
+                            if (replacement.rightPart.contains(variable)) {
+                                work.push(replacement);
+                            }
+                        }
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Records the variables a production of a variable uses. */
+    private static void index(Variable owner, Alternative alternative, Map<Alternative, Variable> owners,
+            Map<Variable, Map<Alternative, Integer>> uses) {
+        owners.put(alternative, owner);
+        for (Symbol symbol : alternative.rightPart) {
+            if (!symbol.isTerminal()) {
+                Map<Alternative, Integer> sites = uses.get(symbol);
+                if (sites == null) {
+                    sites = new LinkedHashMap<>();
+                    uses.put((Variable) symbol, sites);
+                }
+                Integer count = sites.get(alternative);
+                sites.put(alternative, count == null ? 1 : count + 1);
+            }
+        }
+    }
+
+    /** Forgets a production replaced by its expansions. */
+    private static void unindex(Alternative alternative, Map<Alternative, Variable> owners,
+            Map<Variable, Map<Alternative, Integer>> uses) {
+        owners.remove(alternative);
+        for (Symbol symbol : alternative.rightPart) {
+            if (!symbol.isTerminal()) {
+                uses.get(symbol).remove(alternative);
+            }
+        }
+    }
+
+    private boolean isInlinable(Variable variable, Map<Alternative, Integer> sites) {
+        List<Alternative> list = alternatives.get(variable);
+        if (list == null || list.isEmpty()) {
+            return false;
+        }
+        boolean unit = list.size() <= MAX_UNIT_ALTERNATIVES;
+        for (Alternative alternative : list) {
+            if (alternative.rightPart.contains(variable)) {
+                return false;
+            }
+            unit &= alternative.rightPart.size() == 1;
+        }
+        return unit || (sites.size() == 1 && sites.values().iterator().next() == 1);
+    }
+
+    /**
+     * Substitutes each production of a variable for its use at a position
+     * of a production, composing the tree fragments.
+     */
+    private static List<Alternative> expand(Alternative alternative, int position, List<Alternative> inlined) {
+        List<Alternative> expanded = new ArrayList<>(inlined.size());
+        List<Symbol> rightPart = alternative.rightPart;
+        for (Alternative replacement : inlined) {
+            boolean empty = replacement.rightPart.size() == 1
+                    && replacement.rightPart.get(0).equals(Epsilon.getInstance());
+            int length = empty ? 0 : replacement.rightPart.size();
+
+            List<Symbol> symbols = new ArrayList<>(rightPart.size() - 1 + length);
+            symbols.addAll(rightPart.subList(0, position));
+            if (!empty) {
+                symbols.addAll(replacement.rightPart);
+            }
+            symbols.addAll(rightPart.subList(position + 1, rightPart.size()));
+            if (symbols.isEmpty()) {
+                symbols.add(Epsilon.getInstance());
+            }
+
+            List<TemplateNode> inner = shift(replacement.template, 0, position, empty);
+            expanded.add(new Alternative(symbols,
+                    substitute(alternative.template, position, length - 1, inner)));
+        }
+        return expanded;
+    }
+
+    /**
+     * Copies a fragment, moving the slots from a position on by an offset,
+     * or turning them into epsilon leaves for an inlined empty production.
+     */
+    private static List<TemplateNode> shift(List<TemplateNode> template, int from, int offset, boolean empty) {
+        List<TemplateNode> result = new ArrayList<>(template.size());
+        for (TemplateNode node : template) {
+            if (node.slot >= 0) {
+                result.add(empty ? new TemplateNode(Epsilon.getInstance(), -1, null)
+                        : new TemplateNode(node.symbol, node.slot >= from ? node.slot + offset : node.slot, null));
+            } else if (node.children == null) {
+                result.add(node);
+            } else {
+                result.add(new TemplateNode(node.symbol, -1, shift(node.children, from, offset, empty)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Replaces the slot at a position of a fragment by the fragment of an
+     * inlined variable, moving the later slots by an offset.
+     */
+    private static List<TemplateNode> substitute(List<TemplateNode> template, int position, int offset,
+            List<TemplateNode> inner) {
+        List<TemplateNode> result = new ArrayList<>(template.size());
+        for (TemplateNode node : template) {
+            if (node.slot == position) {
+                result.add(new TemplateNode(node.symbol, -1, inner));
+            } else if (node.slot > position) {
+                result.add(new TemplateNode(node.symbol, node.slot + offset, null));
+            } else if (node.slot >= 0 || node.children == null) {
+                result.add(node);
+            } else {
+                result.add(new TemplateNode(node.symbol, -1,
+                        substitute(node.children, position, offset, inner)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Merges the variables whose productions are identical once the merged
+     * variables are identified, found by partition refinement.  If merging
+     * makes the number of LL(1) conflicts grow, the classes that do so on
+     * their own are kept apart and the partition is refined again.
+     */
+    private void merge() {
+        Set<Variable> pinned = new HashSet<>(flattened);
+        for (Variable variable : flattened) {
+            for (Alternative alternative : alternatives.get(variable)) {
+                for (Symbol symbol : alternative.rightPart) {
+                    if (!symbol.isTerminal()) {
+                        pinned.add((Variable) symbol);
+                    }
+                }
+            }
+        }
+        while (true) {
+            List<Map<Variable, Variable>> groups = partition(pinned);
+            if (groups.isEmpty()) {
+                return;
+            }
+            int conflicts = countConflicts();
+            Map<Variable, Variable> renaming = new HashMap<>();
+            for (Map<Variable, Variable> group : groups) {
+                renaming.putAll(group);
+            }
+            Map<Alternative, List<Symbol>> previous = rename(renaming);
+            if (countConflicts() <= conflicts) {
+                mergedCount += renaming.size();
+                return;
+            }
+            unrename(previous, renaming);
+
+            boolean found = false;
+            for (Map<Variable, Variable> group : groups) {
+                previous = rename(group);
+                if (countConflicts() > conflicts) {
+                    pinned.addAll(group.keySet());
+                    pinned.addAll(group.values());
+                    found = true;
+                }
+                unrename(previous, group);
+            }
+            if (!found) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Partitions the live variables into classes of identical variables,
+     * keeping the pinned ones apart.
+     *
+     * @return For every class of more than one variable, the renaming of
+     * its members to its representative.
+     */
+    private List<Map<Variable, Variable>> partition(Set<Variable> pinned) {
+        List<Variable> variables = new ArrayList<>(live().keySet());
+        Map<Variable, Integer> classes = new HashMap<>();
+        int classCount = 1;
+        for (Variable variable : variables) {
+            classes.put(variable, pinned.contains(variable) ? classCount++ : 0);
+        }
+        while (true) {
+            Map<List<Object>, Integer> signatures = new HashMap<>();
+            Map<Variable, Integer> refined = new HashMap<>();
+            for (Variable variable : variables) {
+                Set<List<Object>> rightParts = new HashSet<>();
+                for (Alternative alternative : alternatives.get(variable)) {
+                    List<Object> shape = new ArrayList<>(alternative.rightPart.size());
+                    for (Symbol symbol : alternative.rightPart) {
+                        shape.add(symbol.isTerminal() ? symbol : classes.get(symbol));
+                    }
+                    rightParts.add(shape);
+                }
+                List<Object> signature = new ArrayList<>(3);
+                signature.add(classes.get(variable));
+                signature.add(alternatives.get(variable).size());
+                signature.add(rightParts);
+                Integer id = signatures.get(signature);
+                if (id == null) {
+                    id = signatures.size();
+                    signatures.put(signature, id);
+                }
+                refined.put(variable, id);
+            }
+            classes = refined;
+            if (signatures.size() == classCount) {
+                break;
+            }
+            classCount = signatures.size();
+        }
+
+        Map<Integer, List<Variable>> members = new LinkedHashMap<>();
+        for (Variable variable : variables) {
+            Integer id = classes.get(variable);
+            if (!members.containsKey(id)) {
+                members.put(id, new ArrayList<Variable>());
+            }
+            members.get(id).add(variable);
+        }
+        List<Map<Variable, Variable>> groups = new ArrayList<>();
+        for (List<Variable> group : members.values()) {
+            if (group.size() < 2) {
+                continue;
+            }
+            Variable representative = group.contains(original.getStart()) ? original.getStart() : group.get(0);
+            Map<Variable, Variable> renaming = new HashMap<>();
+            for (Variable variable : group) {
+                if (!variable.equals(representative)) {
+                    renaming.put(variable, representative);
+                }
+            }
+            groups.add(renaming);
+        }
+        return groups;
+    }
+
+    /**
+     * Renames merged variables in all productions.
+     *
+     * @return The right parts the renamed productions had before.
+     */
+    private Map<Alternative, List<Symbol>> rename(Map<Variable, Variable> renaming) {
+        Map<Alternative, List<Symbol>> previous = new HashMap<>();
+        for (List<Alternative> list : alternatives.values()) {
+            for (Alternative alternative : list) {
+                List<Symbol> renamed = rename(alternative.rightPart, renaming);
+                if (renamed != alternative.rightPart) {
+                    previous.put(alternative, alternative.rightPart);
+                    alternative.rightPart = renamed;
+                }
+            }
+        }
+        mergedInto.putAll(renaming);
+        return previous;
+    }
+
+    private void unrename(Map<Alternative, List<Symbol>> previous, Map<Variable, Variable> renaming) {
+        for (Map.Entry<Alternative, List<Symbol>> entry : previous.entrySet()) {
+            entry.getKey().rightPart = entry.getValue();
+        }
+        mergedInto.keySet().removeAll(renaming.keySet());
+    }
+
+    private int countConflicts() {
+        return new GrammarAnalysis(build(true)).getConflicts().size();
+    }
+
+    private static List<Symbol> rename(List<Symbol> rightPart, Map<Variable, Variable> renaming) {
+        List<Symbol> result = null;
+        for (int i = 0; i < rightPart.size(); ++i) {
+            Variable target = renaming.get(rightPart.get(i));
+            if (target != null) {
+                if (result == null) {
+                    result = new ArrayList<>(rightPart);
+                }
+                result.set(i, target);
+            }
+        }
+        return result == null ? rightPart : result;
+    }
+
+    /**
+     * Builds a grammar from the current productions of the live variables.
+     *
+     * @param copy Whether to copy the right parts, for a grammar that will
+     * be edited.
+     */
+    private Grammar build(boolean copy) {
+        List<Variable> variables = new ArrayList<>();
+        HashMap<Variable, List<List<Symbol>>> relations = new HashMap<>();
+        for (Map.Entry<Variable, List<Alternative>> entry : live().entrySet()) {
+            variables.add(entry.getKey());
+            List<List<Symbol>> rightParts = new ArrayList<>();
+            for (Alternative alternative : entry.getValue()) {
+                rightParts.add(copy ? new ArrayList<>(alternative.rightPart) : alternative.rightPart);
+            }
+            relations.put(entry.getKey(), rightParts);
+        }
+        List<Terminal> terminals = new ArrayList<>();
+        for (Terminal terminal : original.getTerminals()) {
+            if (!terminals.contains(terminal)) {
+                terminals.add(terminal);
+            }
+        }
+        return new Grammar(variables, terminals, relations, original.getStart());
+    }
+
+    /**
+     * @return The variables with productions, in declaration order without
+     * duplicates, then the undeclared ones.
+     */
+    private static Set<Variable> declarationOrder(Grammar grammar) {
+        Set<Variable> order = new LinkedHashSet<>();
+        for (Variable variable : grammar.getVariables()) {
+            if (grammar.getRelations().containsKey(variable)) {
+                order.add(variable);
+            }
+        }
+        order.addAll(grammar.getRelations().keySet());
+        return Collections.unmodifiableSet(order);
+    }
+}
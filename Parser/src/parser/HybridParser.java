@@ -0,0 +1,258 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.OperatorTable;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An LL(1) parser that hands the expressions of a grammar to an
+ * operator-precedence parser.  It works like {@link ParseSession}, except
+ * for the variables the grammar declares with <code>%expression</code>:
+ * rather than predicting their productions, the parser reads operands of
+ * the operand variable, themselves parsed with the table, separated by the
+ * declared operators the productions of the expression use.  The operators
+ * are combined Pratt style by their precedence and associativity.
+ * <p>
+ * An expression gets a compact tree: a single operand is the only child of
+ * the node of the expression, and each binary operator gets a node of the
+ * expression variable with the left operand, the operator and the right
+ * operand as children, so <code>a - b - c</code> gives
+ * <code>expr -&gt; [expr -&gt; [a, -, b], -, c]</code>.  The other nodes are
+ * those of a {@link ParseSession}.
+ *
+ * @author yucunli
+ */
+public final class HybridParser implements Parser {
+
+    /**
+     * A symbol and the parse tree its own tree goes into, or the entry of an
+     * expression being parsed.
+     */
+    private static final class StackEntry {
+        final Symbol token;
+
+        /** The parse tree of the parent, null for the start symbol and EOF. */
+        final ParseTree tree;
+
+        /** The expression, if the entry stands for one. */
+        final Expression expression;
+
+        StackEntry(Symbol token, ParseTree tree, Expression expression) {
+            this.token = token;
+            this.tree = tree;
+            this.expression = expression;
+        }
+    }
+
+    /**
+     * An expression being parsed: the operands and the operators waiting
+     * for their right operand.  The entry of the expression stays under the
+     * operand being parsed, which adds its tree to the holder.
+     */
+    private static final class Expression {
+        final Set<Terminal> operators;
+        final ParseTree holder;
+        final List<ParseTree> operands = new ArrayList<>();
+        final List<ParseTree> pending = new ArrayList<>();
+
+        Expression(Variable variable, Set<Terminal> operators) {
+            this.operators = operators;
+            this.holder = new ParseTree(variable);
+        }
+    }
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The precedence and associativity of the operators. */
+    private final OperatorTable operatorTable;
+
+    /** The operators each expression variable uses. */
+    private final Map<Variable, Set<Terminal>> expressions;
+
+    /** The parsing stack. */
+    private final Deque<StackEntry> parsingStack = new ArrayDeque<StackEntry>();
+
+    /** The parse tree of the input. */
+    private final ParseTree parseTree;
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param parseTable The parsing table.
+     * @param operatorTable The operator declarations of the grammar.
+     * @param expressions The operators used by each expression variable.
+     */
+    HybridParser(ParseTable parseTable, OperatorTable operatorTable, Map<Variable, Set<Terminal>> expressions) {
+        this.parseTable = parseTable;
+        this.operatorTable = operatorTable;
+        this.expressions = expressions;
+        this.parseTree = new ParseTree(parseTable.getStart());
+        parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null, null));
+        parsingStack.offerFirst(new StackEntry(parseTable.getStart(), null, null));
+    }
+
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        processSymbol(terminal);
+    }
+
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        ParseTree result = processSymbol(EOF.getInstance());
+        if (result == null)
+            throw new ParseErrorException("Unexpected end of input.");
+        return result;
+    }
+
+    /**
+     * Processes the next terminal, see
+     * {@link ParseSession#processSymbol(Terminal)}.
+     */
+    private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
+        if (parsingStack.isEmpty())
+            throw new ParseErrorException("Parsing already completed.");
+
+        while (true) {
+            StackEntry top = parsingStack.peekFirst();
+
+            /* An operand is complete: go on with an operator, or end the
+             * expression.
+             */
+            if (top.expression != null) {
+                Expression expression = top.expression;
+                expression.operands.add(expression.holder.getChildren().remove(0));
+                if (continues(expression, terminal)) {
+                    expression.pending.add(ParseSession.leaf(terminal, terminal));
+                    parsingStack.offerFirst(new StackEntry(operatorTable.getOperand((Variable) top.token),
+                            expression.holder, null));
+                    return null;
+                }
+                parsingStack.pollFirst();
+                endExpression(top);
+                continue;
+            }
+
+            if (top.token.equals(terminal)) {
+                parsingStack.pollFirst();
+                if (top.tree != null) {
+                    top.tree.getChildren().add(ParseSession.leaf(top.token, terminal));
+                }
+                return terminal.equals(EOF.getInstance()) ? parseTree : null;
+            }
+
+            if (top.token.isTerminal())
+                throw new ParseErrorException("Expected " + top.token + ", found " + terminal);
+
+            Variable variable = (Variable) top.token;
+            List<Symbol> production = parseTable.getProduction(variable, terminal);
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+            parsingStack.pollFirst();
+
+            /* An expression parses its first operand under its own entry. */
+            Set<Terminal> operators = expressions.get(variable);
+            if (operators != null) {
+                Expression expression = new Expression(variable, operators);
+                parsingStack.offerFirst(new StackEntry(variable, top.tree, expression));
+                parsingStack.offerFirst(new StackEntry(operatorTable.getOperand(variable),
+                        expression.holder, null));
+                continue;
+            }
+
+            ParseTree node;
+            if (variable instanceof TransparentVariable) {
+                node = top.tree;
+            } else if (top.tree == null) {
+                node = parseTree;
+            } else {
+                node = new ParseTree(variable);
+                top.tree.getChildren().add(node);
+            }
+
+            if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+                if (node != top.tree) {
+                    node.getChildren().add(new ParseTree(Epsilon.getInstance()));
+                }
+                continue;
+            }
+
+            for (int i = production.size() - 1; i >= 0; --i) {
+                parsingStack.offerFirst(new StackEntry(production.get(i), node, null));
+            }
+        }
+    }
+
+    /**
+     * Decides whether a terminal continues an expression as an operator,
+     * first combining the pending operators that bind at least as tight.
+     * A non associative operator does not continue an expression after an
+     * operator of its level.
+     */
+    private boolean continues(Expression expression, Terminal terminal) {
+        if (!expression.operators.contains(terminal)) {
+            return false;
+        }
+        int precedence = operatorTable.getPrecedence(terminal);
+        int associativity = operatorTable.getAssociativity(terminal);
+        while (!expression.pending.isEmpty()) {
+            int pending = operatorTable.getPrecedence(lastOperator(expression));
+            if (pending < precedence || (pending == precedence && associativity == OperatorTable.RIGHT)) {
+                break;
+            }
+            if (pending == precedence && associativity == OperatorTable.NONASSOC) {
+                return false;
+            }
+            reduce(expression);
+        }
+        return true;
+    }
+
+    private static Terminal lastOperator(Expression expression) {
+        return (Terminal) expression.pending.get(expression.pending.size() - 1).getSymbol();
+    }
+
+    /** Combines the last operator with its two operands. */
+    private static void reduce(Expression expression) {
+        List<ParseTree> operands = expression.operands;
+        ParseTree right = operands.remove(operands.size() - 1);
+        ParseTree left = operands.remove(operands.size() - 1);
+        ParseTree node = new ParseTree(expression.holder.getSymbol());
+        node.getChildren().add(left);
+        node.getChildren().add(expression.pending.remove(expression.pending.size() - 1));
+        node.getChildren().add(right);
+        operands.add(node);
+    }
+
+    /** Combines the pending operators and adds the tree of the expression. */
+    private void endExpression(StackEntry entry) {
+        Expression expression = entry.expression;
+        boolean single = expression.pending.isEmpty();
+        while (!expression.pending.isEmpty()) {
+            reduce(expression);
+        }
+        ParseTree result = expression.operands.get(0);
+        if (entry.tree == null) {
+            parseTree.getChildren().addAll(single ? Collections.singletonList(result)
+                    : result.getChildren());
+        } else if (single) {
+            ParseTree node = new ParseTree(entry.token);
+            node.getChildren().add(result);
+            entry.tree.getChildren().add(node);
+        } else {
+            entry.tree.getChildren().add(result);
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * An LL(1) parser that keeps the tree of its input and, after an edit of
+ * the token sequence, re-parses only the region the edit damaged.
+ * <p>
+ * Every node of the tree records the number of tokens it spans.  In an
+ * LL(1) parse the subtree of a variable depends only on the variable, the
+ * tokens it spans and the one token of lookahead after them; the stack
+ * below it plays no part.  So when the parser is about to expand a variable
+ * at a position where the previous tree had a node for the same variable,
+ * and neither the tokens of that node nor its lookahead were touched by the
+ * edit, the old node is spliced in as it is and its tokens are skipped.  The
+ * old tree is walked in step with the new parse, so finding the old node is
+ * a matter of following the production being expanded, or of moving from
+ * the nearest old node to the position of the parser when the two part ways
+ * around the edit.
+ * <p>
+ * The leaves of the tree are the terminals handed to the parser, not
+ * copies, and the terminals outside an edit are kept as they are; positions
+ * stored in them are the caller's to maintain.  The cost of a reparse grows
+ * with the size of the edit and with the depth of the tree at the edit,
+ * which for the right recursive lists of an LL(1) grammar is the number of
+ * list elements before it.  Instances are not thread-safe.
+ *
+ * @author yucunli
+ */
+public final class IncrementalParser {
+
+    /**
+     * A parse tree node that knows its parent and the number of tokens it
+     * spans.  The parser works on the children it was built with, which
+     * include the nodes of transparent variables, so that the nodes of a
+     * repetition can be reused like any other; {@link #getChildren()} shows
+     * the children of the tree of a {@link ParseSession}.
+     */
+    private static final class SpanTree extends ParseTree {
+        SpanTree parent;
+        int tokens;
+
+        /** The children shown, null until first asked for. */
+        private List<ParseTree> shown;
+
+        SpanTree(Symbol symbol, SpanTree parent, int tokens) {
+            super(symbol);
+            this.parent = parent;
+            this.tokens = tokens;
+        }
+
+        /** @return The children the node was built with. */
+        List<ParseTree> spans() {
+            return super.getChildren();
+        }
+
+        @Override
+        public List<ParseTree> getChildren() {
+            if (getSymbol() instanceof TransparentVariable) {
+                return spans();
+            }
+            if (shown == null) {
+                shown = ParseSession.flatten(spans());
+            }
+            return shown;
+        }
+    }
+
+    /**
+     * A predicted symbol, where its tree goes, and the old node expected to
+     * match it, if any.  The anchor is an old node close to the position of
+     * the symbol, from which the old tree is searched when the expected
+     * node does not match.
+     */
+    private static final class StackEntry {
+        final Symbol symbol;
+        final SpanTree parent;
+        final int index;
+        final SpanTree candidate;
+        final int candidateStart;
+        final SpanTree anchor;
+        final int anchorStart;
+
+        StackEntry(Symbol symbol, SpanTree parent, int index, SpanTree candidate, int candidateStart,
+                SpanTree anchor, int anchorStart) {
+            this.symbol = symbol;
+            this.parent = parent;
+            this.index = index;
+            this.candidate = candidate;
+            this.candidateStart = candidateStart;
+            this.anchor = anchor;
+            this.anchorStart = anchorStart;
+        }
+    }
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The current tokens. */
+    private final ArrayList<Terminal> tokens = new ArrayList<>();
+
+    /** The tree of the current tokens, null before the first parse. */
+    private SpanTree tree;
+
+    /* The edit being parsed: old tokens [editStart, editEnd) are replaced
+     * by the tokens of replacement.
+     */
+    private int editStart;
+    private int editEnd;
+    private List<? extends Terminal> replacement;
+
+    /* Statistics of the last parse. */
+    private int reusedNodes;
+    private int reusedTokens;
+    private int parsedTokens;
+
+    /**
+     * Constructs an incremental parser using the given table.
+     *
+     * @param parseTable The parsing table.
+     */
+    public IncrementalParser(ParseTable parseTable) {
+        this.parseTable = parseTable;
+    }
+
+    /**
+     * Parses a whole token sequence, replacing the current one.
+     *
+     * @param input The tokens to parse, without EOF.
+     * @return The parse tree.
+     * @throws ParseErrorException If a parse error occurs; the previous
+     * tokens and tree are kept.
+     */
+    public ParseTree parse(List<? extends Terminal> input) throws ParseErrorException {
+        SpanTree previous = tree;
+        tree = null;
+        try {
+            return edit(0, tokens.size(), input);
+        } catch (ParseErrorException ex) {
+            tree = previous;
+            throw ex;
+        }
+    }
+
+    /**
+     * Replaces the tokens in [start, end) by new ones and re-parses the
+     * region damaged by the edit.  The tree handed back replaces the
+     * previous one, which must not be used any more: the subtrees that were
+     * reused belong to the new tree.
+     *
+     * @param start The index of the first token replaced.
+     * @param end The index after the last token replaced.
+     * @param inserted The tokens replacing them, without EOF.
+     * @return The parse tree of the edited tokens.
+     * @throws ParseErrorException If the edited tokens do not parse; the
+     * previous tokens and tree are kept.
+     */
+    public ParseTree edit(int start, int end, List<? extends Terminal> inserted) throws ParseErrorException {
+        if (start < 0 || end < start || end > tokens.size())
+            throw new IndexOutOfBoundsException("Edit [" + start + ", " + end + ") of " + tokens.size() + " tokens");
+
+        editStart = start;
+        editEnd = end;
+        replacement = inserted;
+        reusedNodes = 0;
+        reusedTokens = 0;
+        parsedTokens = 0;
+
+        List<SpanTree> reused = new ArrayList<>();
+        List<SpanTree> created = new ArrayList<>();
+        SpanTree root = run(reused, created);
+
+        /* Commit: compute the spans of the new nodes bottom-up and apply
+         * the edit to the tokens.
+         */
+        for (int i = created.size() - 1; i >= 0; --i) {
+            SpanTree node = created.get(i);
+            int span = 0;
+            for (ParseTree child : node.spans()) {
+                span += ((SpanTree) child).tokens;
+            }
+            node.tokens = span;
+        }
+        tokens.subList(start, end).clear();
+        tokens.addAll(start, inserted);
+        tree = root;
+        replacement = null;
+        return root;
+    }
+
+    /** @return The current tree, or null before the first parse. */
+    public ParseTree getTree() {
+        return tree;
+    }
+
+    /** @return The number of current tokens. */
+    public int getTokenCount() {
+        return tokens.size();
+    }
+
+    /** @return The number of subtrees the last parse reused. */
+    public int getReusedNodeCount() {
+        return reusedNodes;
+    }
+
+    /** @return The number of tokens covered by the reused subtrees. */
+    public int getReusedTokenCount() {
+        return reusedTokens;
+    }
+
+    /** @return The number of tokens the last parse matched one by one. */
+    public int getParsedTokenCount() {
+        return parsedTokens;
+    }
+
+    private int newTokenCount() {
+        return tokens.size() - (editEnd - editStart) + replacement.size();
+    }
+
+    /** Returns the terminal at a position of the edited tokens. */
+    private Terminal tokenAt(int position) {
+        if (position < editStart) {
+            return tokens.get(position);
+        }
+        if (position < editStart + replacement.size()) {
+            return replacement.get(position - editStart);
+        }
+        position += (editEnd - editStart) - replacement.size();
+        return position < tokens.size() ? tokens.get(position) : EOF.getInstance();
+    }
+
+    /**
+     * Maps a position of the edited tokens to the old tokens.
+     *
+     * @return The old position, or -1 inside the edit or without an old
+     * tree.
+     */
+    private int oldPosition(int position) {
+        if (tree == null) {
+            return -1;
+        }
+        if (position < editStart) {
+            return position;
+        }
+        if (position < editStart + replacement.size()) {
+            return -1;
+        }
+        return position - replacement.size() + (editEnd - editStart);
+    }
+
+    /**
+     * Returns whether an old node, and the token after it, lie wholly on one
+     * side of the edit.
+     */
+    private boolean untouched(int start, int span) {
+        return start + span < editStart || start >= editEnd;
+    }
+
+    /**
+     * Runs the LL(1) parse of the edited tokens, reusing old nodes.
+     */
+    private SpanTree run(List<SpanTree> reused, List<SpanTree> created) throws ParseErrorException {
+        int end = newTokenCount();
+        int position = 0;
+        SpanTree root = null;
+
+        Deque<StackEntry> stack = new ArrayDeque<>();
+        stack.push(new StackEntry(EOF.getInstance(), null, -1, null, 0, null, 0));
+        stack.push(new StackEntry(parseTable.getStart(), null, -1, tree, 0, tree, 0));
+
+        while (!stack.isEmpty()) {
+            StackEntry entry = stack.pop();
+            Terminal lookahead = position < end ? tokenAt(position) : EOF.getInstance();
+
+            if (entry.symbol.isTerminal()) {
+                if (!entry.symbol.equals(lookahead))
+                    throw new ParseErrorException("Expected " + entry.symbol + ", found " + lookahead);
+                if (entry.parent != null) {
+                    entry.parent.spans().set(entry.index, new SpanTree(lookahead, entry.parent, 1));
+                    ++position;
+                    ++parsedTokens;
+                }
+                continue;
+            }
+            Variable variable = (Variable) entry.symbol;
+
+            /* Find the old node for this variable at this position. */
+            SpanTree old = null;
+            int oldStart = oldPosition(position);
+            if (oldStart >= 0) {
+                if (entry.candidate != null && entry.candidateStart == oldStart
+                        && entry.candidate.getSymbol().equals(variable)) {
+                    old = entry.candidate;
+                } else if (entry.anchor != null) {
+                    old = find(entry.anchor, entry.anchorStart, variable, oldStart);
+                }
+            }
+
+            if (old != null && old.tokens > 0 && untouched(oldStart, old.tokens)) {
+                if (entry.parent == null) {
+                    root = old;
+                } else {
+                    entry.parent.spans().set(entry.index, old);
+                }
+                reused.add(old);
+                position += old.tokens;
+                ++reusedNodes;
+                reusedTokens += old.tokens;
+                continue;
+            }
+
+            List<Symbol> production = parseTable.getProduction(variable, lookahead);
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + lookahead);
+
+            SpanTree node = new SpanTree(variable, entry.parent, 0);
+            created.add(node);
+            if (entry.parent == null) {
+                root = node;
+            } else {
+                entry.parent.spans().set(entry.index, node);
+            }
+
+            if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+                node.spans().add(new SpanTree(Epsilon.getInstance(), node, 0));
+                continue;
+            }
+
+            /* The children of the old node are expected to match the new
+             * children if it was expanded with the same production.
+             */
+            boolean aligned = old != null && sameProduction(old, production);
+            SpanTree anchor = old != null ? old : entry.anchor;
+            int anchorStart = old != null ? oldStart : entry.anchorStart;
+            int[] childStarts = new int[production.size()];
+            if (aligned) {
+                int childStart = oldStart;
+                for (int i = 0; i < production.size(); ++i) {
+                    childStarts[i] = childStart;
+                    childStart += ((SpanTree) old.spans().get(i)).tokens;
+                }
+            }
+            for (int i = 0; i < production.size(); ++i) {
+                node.spans().add(null);
+            }
+            for (int i = production.size() - 1; i >= 0; --i) {
+                SpanTree candidate = aligned ? (SpanTree) old.spans().get(i) : null;
+                stack.push(new StackEntry(production.get(i), node, i, candidate,
+                        aligned ? childStarts[i] : 0, anchor, anchorStart));
+            }
+        }
+
+        for (SpanTree node : reused) {
+            node.parent = null;
+        }
+        for (SpanTree node : created) {
+            for (ParseTree child : node.spans()) {
+                ((SpanTree) child).parent = node;
+            }
+        }
+        return root;
+    }
+
+    private static boolean sameProduction(SpanTree old, List<Symbol> production) {
+        List<ParseTree> children = old.spans();
+        if (children.size() != production.size()) {
+            return false;
+        }
+        for (int i = 0; i < production.size(); ++i) {
+            if (!children.get(i).getSymbol().equals(production.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Searches the old tree for a node of a variable starting at a position,
+     * moving up from a known node until the position is inside, then down
+     * along the nodes containing the position.
+     *
+     * @param from A node of the old tree.
+     * @param fromStart The position where it starts.
+     * @param variable The variable to look for.
+     * @param position The old position it must start at.
+     * @return The node, or null if there is none.
+     */
+    private static SpanTree find(SpanTree from, int fromStart, Variable variable, int position) {
+        SpanTree node = from;
+        int start = fromStart;
+        while (!(start <= position && position < start + node.tokens)) {
+            SpanTree parent = node.parent;
+            if (parent == null) {
+                return null;
+            }
+            for (ParseTree sibling : parent.spans()) {
+                if (sibling == node) {
+                    break;
+                }
+                start -= ((SpanTree) sibling).tokens;
+            }
+            node = parent;
+        }
+
+        while (true) {
+            if (start == position && node.getSymbol().equals(variable)) {
+                return node;
+            }
+            SpanTree next = null;
+            for (ParseTree child : node.spans()) {
+                SpanTree span = (SpanTree) child;
+                if (position < start + span.tokens) {
+                    next = span;
+                    break;
+                }
+                start += span.tokens;
+            }
+            if (next == null || next.getSymbol().isTerminal()) {
+                return null;
+            }
+            node = next;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.GrammarNotLALR1Exception;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A parser generator that generates LALR(1) parsers for a given grammar.
+ * Unlike {@link ParserGenerator}, it accepts left-recursive grammars, so the
+ * natural grammar of a language can be used without removing left
+ * recursion or left factoring it.
+ * <p>
+ * The LR(0) automaton is built first, then the lookaheads of its reductions
+ * are computed by the relational method of DeRemer and Pennello: the
+ * terminals read after each nonterminal transition are propagated along the
+ * "reads" and "includes" relations with a strongly connected component
+ * traversal, and the lookahead of a reduction is the union of the sets of
+ * the transitions it looks back to.  No LR(1) items are ever built.
+ *
+ * @author yucunli
+ */
+public final class LALRGenerator {
+    /* This class is not meant to be instantiated. */
+    private LALRGenerator() {
+        // Empty //
+    }
+
+    /**
+     * Given a grammar, constructs an LALR(1) parser for that grammar.  If the
+     * grammar is not LALR(1), an exception listing every conflict is raised.
+     *
+     * @param grammar The grammar to build an LALR(1) parser for.
+     * @return An LALR(1) parser for that grammar.
+     * @throws GrammarNotLALR1Exception If the grammar is not LALR(1).
+     */
+    public static Parser createParser(Grammar grammar) throws GrammarNotLALR1Exception {
+        return new ShiftReduceParser(createParseTable(grammar));
+    }
+
+    /**
+     * Computes the LALR(1) parsing table of a grammar, to be shared by any
+     * number of {@link ShiftReduceParser}s.
+     *
+     * @param grammar The grammar to build the table for.
+     * @return The parsing table.
+     * @throws GrammarNotLALR1Exception If the grammar is not LALR(1).
+     */
+    public static LRParseTable createParseTable(Grammar grammar) throws GrammarNotLALR1Exception {
+        return new Builder(grammar).build();
+    }
+
+    /**
+     * The state of one table construction.  Symbols are numbered with the
+     * terminals first, EOF being 0, then the variables; the grammar is
+     * augmented with production 0, start' -> start EOF, so that accepting is
+     * shifting EOF after the start symbol.
+     */
+    private static final class Builder {
+
+        private final Grammar grammar;
+
+        /* The symbols. */
+        private final List<Terminal> terminals = new ArrayList<>();
+        private final Map<Symbol, Integer> terminalIds = new HashMap<>();
+        private final List<Variable> variables = new ArrayList<>();
+        private final Map<Symbol, Integer> variableIds = new HashMap<>();
+        private int terminalCount;
+        private int symbolCount;
+
+        /* The productions, as symbol numbers. */
+        private final List<int[]> rhs = new ArrayList<>();
+        private final List<Integer> lhs = new ArrayList<>();
+        private final List<List<Integer>> productionsOf = new ArrayList<>();
+        private boolean[] nullable;
+
+        /* The LR(0) items: item i is production itemProduction[i] with the
+         * dot before symbol itemDot[i].
+         */
+        private int[] itemBase;
+        private int[] itemProduction;
+        private int[] itemDot;
+        private boolean[] nullableSuffix;
+
+        /* The LR(0) automaton. */
+        private final List<int[]> kernels = new ArrayList<>();
+        private final Map<ItemSet, Integer> stateIds = new HashMap<>();
+        private final List<int[]> transitions = new ArrayList<>();
+        private final List<int[]> reductions = new ArrayList<>();
+
+        /* The nonterminal transitions: number x is the transition out of
+         * state transitionState[x] on variable transitionVariable[x].
+         */
+        private int[] transitionState;
+        private int[] transitionVariable;
+        private int[] transitionId;
+        private int transitionCount;
+
+        Builder(Grammar grammar) {
+            this.grammar = grammar;
+        }
+
+        LRParseTable build() throws GrammarNotLALR1Exception {
+            numberSymbols();
+            computeNullable();
+            numberItems();
+            buildAutomaton();
+            numberTransitions();
+
+            /* DR: the terminals that can be shifted right after each
+             * nonterminal transition.
+             */
+            BitSet[] directReads = new BitSet[transitionCount];
+            List<List<Integer>> reads = new ArrayList<>();
+            for (int x = 0; x < transitionCount; ++x) {
+                int target = transitions.get(transitionState[x])[transitionVariable[x]];
+                int[] row = transitions.get(target);
+                directReads[x] = new BitSet(terminalCount);
+                for (int t = 0; t < terminalCount; ++t) {
+                    if (row[t] >= 0) {
+                        directReads[x].set(t);
+                    }
+                }
+                /* (p, A) reads (r, C) if C is nullable and r goes on C. */
+                List<Integer> edges = new ArrayList<>();
+                for (int c = terminalCount; c < symbolCount; ++c) {
+                    if (nullable[c - terminalCount] && row[c] >= 0) {
+                        edges.add(transitionId[target * symbolCount + c]);
+                    }
+                }
+                reads.add(edges);
+            }
+            BitSet[] read = digraph(reads, directReads);
+
+            /* (p, A) includes (p', B) if B -> beta A gamma, gamma is
+             * nullable and p' goes to p on beta; (q, A -> w) looks back to
+             * (p, A) if p goes to q on w.
+             */
+            List<List<Integer>> includes = new ArrayList<>();
+            for (int x = 0; x < transitionCount; ++x) {
+                includes.add(new ArrayList<Integer>());
+            }
+            Map<Long, BitSet> lookaheads = new HashMap<>();
+            List<long[]> lookbacks = new ArrayList<>();
+            for (int x = 0; x < transitionCount; ++x) {
+                int b = transitionVariable[x] - terminalCount;
+                for (int production : productionsOf.get(b)) {
+                    int state = transitionState[x];
+                    int[] right = rhs.get(production);
+                    for (int i = 0; i < right.length; ++i) {
+                        if (right[i] >= terminalCount && nullableSuffix[itemBase[production] + i + 1]) {
+                            includes.get(transitionId[state * symbolCount + right[i]]).add(x);
+                        }
+                        state = transitions.get(state)[right[i]];
+                    }
+                    lookbacks.add(new long[] { (long) state * rhs.size() + production, x });
+                }
+            }
+            BitSet[] follow = digraph(includes, read);
+            for (long[] lookback : lookbacks) {
+                BitSet lookahead = lookaheads.get(lookback[0]);
+                if (lookahead == null) {
+                    lookahead = new BitSet(terminalCount);
+                    lookaheads.put(lookback[0], lookahead);
+                }
+                lookahead.or(follow[(int) lookback[1]]);
+            }
+
+            return fillTables(lookaheads);
+        }
+
+        /**
+         * Numbers the terminals and variables, and the productions.
+         */
+        private void numberSymbols() {
+            HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+            /* Variables may be declared twice, and used without being
+             * declared.
+             */
+            List<Variable> declared = new ArrayList<>(grammar.getVariables());
+            declared.addAll(relations.keySet());
+            for (Variable variable : declared) {
+                if (!variableIds.containsKey(variable)) {
+                    variableIds.put(variable, variables.size());
+                    variables.add(variable);
+                }
+            }
+            declared = new ArrayList<>(variables);
+            /* The augmented start variable comes last. */
+            Variable augmented = new Variable(grammar.getStart().getValue() + "'");
+            int augmentedId = variables.size();
+            variables.add(augmented);
+
+            terminals.add(EOF.getInstance());
+            terminalIds.put(EOF.getInstance(), 0);
+            for (Variable variable : declared) {
+                List<List<Symbol>> productions = relations.get(variable);
+                if (productions == null) {
+                    continue;
+                }
+                for (List<Symbol> production : productions) {
+                    for (Symbol symbol : production) {
+                        if (symbol.isTerminal() && !symbol.equals(Epsilon.getInstance())
+                                && !terminalIds.containsKey(symbol)) {
+                            terminalIds.put(symbol, terminals.size());
+                            terminals.add((Terminal) symbol);
+                        }
+                    }
+                }
+            }
+            terminalCount = terminals.size();
+            symbolCount = terminalCount + variables.size();
+
+            for (int v = 0; v < variables.size(); ++v) {
+                productionsOf.add(new ArrayList<Integer>());
+            }
+            addProduction(augmentedId, new int[] {
+                terminalCount + variableIds.get(grammar.getStart()), 0 });
+            for (Variable variable : declared) {
+                List<List<Symbol>> productions = relations.get(variable);
+                if (productions == null) {
+                    continue;
+                }
+                for (List<Symbol> production : productions) {
+                    int[] right = new int[production.size()];
+                    int length = 0;
+                    for (Symbol symbol : production) {
+                        if (symbol.equals(Epsilon.getInstance())) {
+                            continue;
+                        }
+                        right[length++] = symbol.isTerminal()
+                                ? terminalIds.get(symbol) : terminalCount + variableIds.get(symbol);
+                    }
+                    addProduction(variableIds.get(variable), Arrays.copyOf(right, length));
+                }
+            }
+        }
+
+        private void addProduction(int variable, int[] right) {
+            productionsOf.get(variable).add(rhs.size());
+            lhs.add(variable);
+            rhs.add(right);
+        }
+
+        private void computeNullable() {
+            nullable = new boolean[variables.size()];
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int p = 0; p < rhs.size(); ++p) {
+                    if (nullable[lhs.get(p)]) {
+                        continue;
+                    }
+                    boolean all = true;
+                    for (int symbol : rhs.get(p)) {
+                        if (symbol < terminalCount || !nullable[symbol - terminalCount]) {
+                            all = false;
+                            break;
+                        }
+                    }
+                    if (all) {
+                        nullable[lhs.get(p)] = true;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        private void numberItems() {
+            itemBase = new int[rhs.size()];
+            int count = 0;
+            for (int p = 0; p < rhs.size(); ++p) {
+                itemBase[p] = count;
+                count += rhs.get(p).length + 1;
+            }
+            itemProduction = new int[count];
+            itemDot = new int[count];
+            nullableSuffix = new boolean[count];
+            for (int p = 0; p < rhs.size(); ++p) {
+                int[] right = rhs.get(p);
+                boolean suffix = true;
+                for (int dot = right.length; dot >= 0; --dot) {
+                    int item = itemBase[p] + dot;
+                    itemProduction[item] = p;
+                    itemDot[item] = dot;
+                    nullableSuffix[item] = suffix;
+                    if (dot > 0) {
+                        int symbol = right[dot - 1];
+                        suffix = suffix && symbol >= terminalCount && nullable[symbol - terminalCount];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Builds the LR(0) automaton from the kernel of the initial state,
+         * recording the transitions and the completed items of each state.
+         */
+        private void buildAutomaton() {
+            stateOf(new int[] { itemBase[0] });
+            boolean[] added = new boolean[variables.size()];
+            for (int state = 0; state < kernels.size(); ++state) {
+                /* Close the kernel. */
+                List<Integer> closure = new ArrayList<>();
+                for (int item : kernels.get(state)) {
+                    closure.add(item);
+                }
+                Arrays.fill(added, false);
+                for (int i = 0; i < closure.size(); ++i) {
+                    int item = closure.get(i);
+                    int[] right = rhs.get(itemProduction[item]);
+                    if (itemDot[item] < right.length && right[itemDot[item]] >= terminalCount) {
+                        int variable = right[itemDot[item]] - terminalCount;
+                        if (!added[variable]) {
+                            added[variable] = true;
+                            for (int production : productionsOf.get(variable)) {
+                                closure.add(itemBase[production]);
+                            }
+                        }
+                    }
+                }
+
+                /* Group the advanced items by the symbol after the dot. */
+                List<List<Integer>> successors = new ArrayList<>();
+                for (int s = 0; s < symbolCount; ++s) {
+                    successors.add(null);
+                }
+                List<Integer> completed = new ArrayList<>();
+                for (int item : closure) {
+                    int[] right = rhs.get(itemProduction[item]);
+                    if (itemDot[item] == right.length) {
+                        completed.add(itemProduction[item]);
+                        continue;
+                    }
+                    int symbol = right[itemDot[item]];
+                    if (successors.get(symbol) == null) {
+                        successors.set(symbol, new ArrayList<Integer>());
+                    }
+                    successors.get(symbol).add(item + 1);
+                }
+
+                int[] row = new int[symbolCount];
+                Arrays.fill(row, -1);
+                for (int symbol = 0; symbol < symbolCount; ++symbol) {
+                    List<Integer> kernel = successors.get(symbol);
+                    if (kernel != null) {
+                        int[] items = new int[kernel.size()];
+                        for (int i = 0; i < items.length; ++i) {
+                            items[i] = kernel.get(i);
+                        }
+                        Arrays.sort(items);
+                        row[symbol] = stateOf(items);
+                    }
+                }
+                transitions.add(row);
+
+                int[] reduced = new int[completed.size()];
+                for (int i = 0; i < reduced.length; ++i) {
+                    reduced[i] = completed.get(i);
+                }
+                reductions.add(reduced);
+            }
+        }
+
+        private int stateOf(int[] kernel) {
+            ItemSet key = new ItemSet(kernel);
+            Integer state = stateIds.get(key);
+            if (state == null) {
+                state = kernels.size();
+                kernels.add(kernel);
+                stateIds.put(key, state);
+            }
+            return state;
+        }
+
+        private void numberTransitions() {
+            int stateCount = kernels.size();
+            transitionId = new int[stateCount * symbolCount];
+            Arrays.fill(transitionId, -1);
+            List<Integer> states = new ArrayList<>();
+            List<Integer> symbols = new ArrayList<>();
+            for (int state = 0; state < stateCount; ++state) {
+                int[] row = transitions.get(state);
+                for (int symbol = terminalCount; symbol < symbolCount; ++symbol) {
+                    if (row[symbol] >= 0) {
+                        transitionId[state * symbolCount + symbol] = states.size();
+                        states.add(state);
+                        symbols.add(symbol);
+                    }
+                }
+            }
+            transitionCount = states.size();
+            transitionState = new int[transitionCount];
+            transitionVariable = new int[transitionCount];
+            for (int x = 0; x < transitionCount; ++x) {
+                transitionState[x] = states.get(x);
+                transitionVariable[x] = symbols.get(x);
+            }
+        }
+
+        /**
+         * Computes F(x) = F'(x) united with F(y) for every y related to x,
+         * the digraph algorithm of DeRemer and Pennello.  Every strongly
+         * connected component of the relation ends up with one set.
+         */
+        private BitSet[] digraph(List<List<Integer>> relation, BitSet[] initial) {
+            int count = initial.length;
+            BitSet[] result = new BitSet[count];
+            int[] depthOf = new int[count];
+            int[] stack = new int[count];
+            int[] stackDepth = { 0 };
+            for (int x = 0; x < count; ++x) {
+                if (depthOf[x] == 0) {
+                    traverse(x, relation, initial, result, depthOf, stack, stackDepth);
+                }
+            }
+            return result;
+        }
+
+        private void traverse(int x, List<List<Integer>> relation, BitSet[] initial, BitSet[] result,
+                int[] depthOf, int[] stack, int[] stackDepth) {
+            stack[stackDepth[0]++] = x;
+            int depth = stackDepth[0];
+            depthOf[x] = depth;
+            result[x] = (BitSet) initial[x].clone();
+            for (int y : relation.get(x)) {
+                if (depthOf[y] == 0) {
+                    traverse(y, relation, initial, result, depthOf, stack, stackDepth);
+                }
+                depthOf[x] = Math.min(depthOf[x], depthOf[y]);
+                result[x].or(result[y]);
+            }
+            if (depthOf[x] == depth) {
+                while (true) {
+                    int top = stack[--stackDepth[0]];
+                    depthOf[top] = Integer.MAX_VALUE;
+                    if (top == x) {
+                        break;
+                    }
+                    result[top] = (BitSet) result[x].clone();
+                }
+            }
+        }
+
+        /**
+         * Fills the ACTION and GOTO tables, collecting every conflict.
+         */
+        private LRParseTable fillTables(Map<Long, BitSet> lookaheads) throws GrammarNotLALR1Exception {
+            int stateCount = kernels.size();
+            int variableCount = variables.size() - 1;
+            int[] action = new int[stateCount * terminalCount];
+            int[] goTo = new int[stateCount * variableCount];
+            List<String> conflicts = new ArrayList<>();
+
+            for (int state = 0; state < stateCount; ++state) {
+                int[] row = transitions.get(state);
+                for (int t = 0; t < terminalCount; ++t) {
+                    if (row[t] < 0) {
+                        continue;
+                    }
+                    /* Only production 0 shifts EOF. */
+                    action[state * terminalCount + t] = t == 0 ? LRParseTable.ACCEPT
+                            : (row[t] << LRParseTable.KIND_BITS) | LRParseTable.SHIFT;
+                }
+                for (int v = 0; v < variableCount; ++v) {
+                    goTo[state * variableCount + v] = row[terminalCount + v];
+                }
+                for (int production : reductions.get(state)) {
+                    BitSet lookahead = lookaheads.get((long) state * rhs.size() + production);
+                    if (lookahead == null) {
+                        continue;
+                    }
+                    for (int t = lookahead.nextSetBit(0); t >= 0; t = lookahead.nextSetBit(t + 1)) {
+                        int entry = state * terminalCount + t;
+                        int reduce = (production << LRParseTable.KIND_BITS) | LRParseTable.REDUCE;
+                        if (action[entry] != LRParseTable.ERROR) {
+                            conflicts.add("Conflict in state " + state + " on " + terminals.get(t) + ": "
+                                    + describe(action[entry]) + " / " + describe(reduce));
+                            continue;
+                        }
+                        action[entry] = reduce;
+                    }
+                }
+            }
+            if (!conflicts.isEmpty()) {
+                StringBuilder message = new StringBuilder();
+                message.append(conflicts.size()).append(" conflicts detected");
+                for (String conflict : conflicts) {
+                    message.append("\n  ").append(conflict);
+                }
+                throw new GrammarNotLALR1Exception(message.toString());
+            }
+
+            int[] productionLhs = new int[rhs.size()];
+            int[] productionLength = new int[rhs.size()];
+            for (int p = 0; p < rhs.size(); ++p) {
+                productionLhs[p] = lhs.get(p);
+                productionLength[p] = rhs.get(p).length;
+            }
+            return new LRParseTable(grammar.getStart(),
+                    terminals.toArray(new Terminal[terminalCount]), new HashMap<>(terminalIds),
+                    variables.subList(0, variableCount).toArray(new Variable[variableCount]),
+                    productionLhs, productionLength, action, goTo, stateCount);
+        }
+
+        private String describe(int action) {
+            switch (action & ((1 << LRParseTable.KIND_BITS) - 1)) {
+                case LRParseTable.SHIFT:
+                    return "shift";
+                case LRParseTable.ACCEPT:
+                    return "accept";
+                default:
+                    int production = action >>> LRParseTable.KIND_BITS;
+                    StringBuilder result = new StringBuilder("reduce ");
+                    result.append(variables.get(lhs.get(production))).append(" ->");
+                    for (int symbol : rhs.get(production)) {
+                        result.append(' ').append(symbol < terminalCount
+                                ? terminals.get(symbol) : variables.get(symbol - terminalCount));
+                    }
+                    if (rhs.get(production).length == 0) {
+                        result.append(' ').append(Epsilon.getInstance());
+                    }
+                    return result.toString();
+            }
+        }
+    }
+
+    /**
+     * A sorted set of LR(0) items, the kernel identifying a state.
+     */
+    private static final class ItemSet {
+        private final int[] items;
+        private final int hash;
+
+        ItemSet(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ItemSet && Arrays.equals(items, ((ItemSet) o).items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
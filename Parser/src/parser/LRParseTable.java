@@ -0,0 +1,134 @@
+package parser;
+
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An LR parsing table built by {@link LALRGenerator}, in the form of flat
+ * int arrays indexed by state.  Terminals, variables and productions are
+ * numbered; the ACTION table holds, for each state and terminal, a shift, a
+ * reduce, accept or an error, and the GOTO table holds the state reached
+ * after reducing to each variable.  A table never changes once built, so
+ * any number of {@link ShiftReduceParser}s may share it.
+ *
+ * @author yucunli
+ */
+public final class LRParseTable {
+
+    /** The action kind of an error entry, which is always 0. */
+    static final int ERROR = 0;
+
+    /** The action kind of a shift, the target state is in the upper bits. */
+    static final int SHIFT = 1;
+
+    /** The action kind of a reduce, the production is in the upper bits. */
+    static final int REDUCE = 2;
+
+    /** The action of accepting the input. */
+    static final int ACCEPT = 3;
+
+    /** The number of bits of an action holding its kind. */
+    static final int KIND_BITS = 2;
+
+    private final Variable start;
+
+    /** The terminals by number, EOF being 0. */
+    private final Terminal[] terminals;
+
+    /** The numbers of the terminals. */
+    private final Map<Symbol, Integer> terminalIds;
+
+    /** The variables by number. */
+    private final Variable[] variables;
+
+    /** The variable number of the left side of each production. */
+    private final int[] productionLhs;
+
+    /** The number of symbols on the right side of each production. */
+    private final int[] productionLength;
+
+    /** The ACTION table, stateCount rows of terminals.length entries. */
+    private final int[] action;
+
+    /** The GOTO table, stateCount rows of variables.length entries. */
+    private final int[] goTo;
+
+    private final int stateCount;
+
+    LRParseTable(Variable start, Terminal[] terminals, Map<Symbol, Integer> terminalIds,
+            Variable[] variables, int[] productionLhs, int[] productionLength,
+            int[] action, int[] goTo, int stateCount) {
+        this.start = start;
+        this.terminals = terminals;
+        this.terminalIds = terminalIds;
+        this.variables = variables;
+        this.productionLhs = productionLhs;
+        this.productionLength = productionLength;
+        this.action = action;
+        this.goTo = goTo;
+        this.stateCount = stateCount;
+    }
+
+    /** @return The start symbol of the grammar. */
+    public Variable getStart() {
+        return start;
+    }
+
+    /** @return The number of states of the automaton. */
+    public int getStateCount() {
+        return stateCount;
+    }
+
+    /** @return The number of entries of the ACTION and GOTO tables. */
+    public int getEntryCount() {
+        return action.length + goTo.length;
+    }
+
+    /**
+     * @return The number of a terminal, or -1 if it is not a terminal of
+     * the grammar.
+     */
+    int terminalId(Terminal terminal) {
+        Integer id = terminalIds.get(terminal);
+        return id == null ? -1 : id;
+    }
+
+    int action(int state, int terminal) {
+        return action[state * terminals.length + terminal];
+    }
+
+    int goTo(int state, int variable) {
+        return goTo[state * variables.length + variable];
+    }
+
+    Variable lhs(int production) {
+        return variables[productionLhs[production]];
+    }
+
+    int lhsId(int production) {
+        return productionLhs[production];
+    }
+
+    int length(int production) {
+        return productionLength[production];
+    }
+
+    /**
+     * @return The terminals on which a state has an action, for error
+     * messages.
+     */
+    List<Terminal> expected(int state) {
+        List<Terminal> result = new ArrayList<>();
+        for (int t = 0; t < terminals.length; ++t) {
+            if (action(state, t) != ERROR) {
+                result.add(terminals[t]);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
@@ -0,0 +1,233 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An LL(1) parser that parses the outline of a program and skips the
+ * phrases of some variables, such as function bodies.  A skipped variable
+ * opens and closes with a pair of terminals, <code>{</code> and
+ * <code>}</code> for <code>funcBody</code>: when the parser would predict
+ * it, it reads up to the matching closing terminal instead, counting the
+ * nested pairs, and adds a {@link DeferredParseTree} holding the tokens in
+ * between.  The deferred nodes can be expanded one at a time, when a body
+ * is needed, or all at once.
+ * <p>
+ * Given its whole input, {@link #parse(List)} finds the closing terminals
+ * by scanning the list and the deferred nodes hold views of it, so the
+ * skipped tokens cost a comparison each.  Otherwise the parser works like
+ * {@link ParseSession} and builds the same tree around the deferred nodes.
+ *
+ * @author yucunli
+ */
+public final class LazyParser implements Parser {
+
+    /**
+     * A symbol and the parse tree its own tree goes into, see
+     * {@link ParseSession}.
+     */
+    private static final class StackEntry {
+        final Symbol token;
+        final ParseTree tree;
+
+        StackEntry(Symbol token, ParseTree tree) {
+            this.token = token;
+            this.tree = tree;
+        }
+    }
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The opening and closing terminals of the skipped variables. */
+    private final Map<Variable, Terminal[]> delimiters;
+
+    /** The parsing stack. */
+    private final Deque<StackEntry> parsingStack = new ArrayDeque<StackEntry>();
+
+    /** The parse tree of the input. */
+    private final ParseTree parseTree;
+
+    /** The node of the phrase being skipped, null if none is. */
+    private DeferredParseTree skipped;
+
+    /**
+     * The tokens of the phrase being skipped when they are fed one at a
+     * time, null otherwise: {@link #parse(List)} takes a view of its input
+     * instead.
+     */
+    private List<Terminal> skippedTokens;
+
+    /** The opening and closing terminals of the phrase being skipped. */
+    private Terminal open;
+    private Terminal close;
+
+    /** The number of pairs open in the phrase being skipped. */
+    private int nesting;
+
+    private int deferredCount = 0;
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param parseTable The parsing table.
+     * @param delimiters The opening and closing terminals of the variables
+     * to skip.
+     */
+    LazyParser(ParseTable parseTable, Map<Variable, Terminal[]> delimiters) {
+        this.parseTable = parseTable;
+        this.delimiters = delimiters;
+        this.parseTree = new ParseTree(parseTable.getStart());
+        parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null));
+        parsingStack.offerFirst(new StackEntry(parseTable.getStart(), null));
+    }
+
+    /** @return The number of phrases skipped so far. */
+    public int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Parses a whole input, skipping each phrase by a scan of the list for
+     * its closing terminal.
+     *
+     * @param input The terminals of the input, without EOF.
+     * @return The parse tree, with a deferred node for each skipped phrase.
+     * @throws ParseErrorException If a parse error occurs in the outline,
+     * or a phrase is not closed.
+     */
+    public ParseTree parse(List<Terminal> input) throws ParseErrorException {
+        int i = 0;
+        while (i < input.size()) {
+            processSymbol(input.get(i));
+            ++i;
+            if (skipped == null) {
+                continue;
+            }
+            /* The phrase just opened: find its end in the input. */
+            int from = i - 1;
+            while (i < input.size() && nesting > 0) {
+                Terminal terminal = input.get(i++);
+                if (terminal.equals(close)) {
+                    --nesting;
+                } else if (terminal.equals(open)) {
+                    ++nesting;
+                }
+            }
+            if (nesting > 0) {
+                throw new ParseErrorException("Unexpected end of input in " + skipped.getSymbol());
+            }
+            skipped.setTokens(input.subList(from, i));
+            skipped = null;
+        }
+        return inputComplete();
+    }
+
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        if (skipped == null) {
+            processSymbol(terminal);
+            /* A phrase opened: its tokens are collected as they come. */
+            if (skipped != null) {
+                skippedTokens = new ArrayList<>();
+                skippedTokens.add(terminal);
+            }
+            return;
+        }
+        skippedTokens.add(terminal);
+        if (terminal.equals(close)) {
+            --nesting;
+        } else if (terminal.equals(open)) {
+            ++nesting;
+        }
+        if (nesting == 0) {
+            skipped.setTokens(skippedTokens);
+            skipped = null;
+            skippedTokens = null;
+        }
+    }
+
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        if (skipped != null)
+            throw new ParseErrorException("Unexpected end of input in " + skipped.getSymbol());
+        ParseTree result = processSymbol(EOF.getInstance());
+        if (result == null)
+            throw new ParseErrorException("Unexpected end of input.");
+        return result;
+    }
+
+    /**
+     * Processes the next terminal, see
+     * {@link ParseSession#processSymbol(Terminal)}, starting to skip when a
+     * skipped variable would be predicted on its opening terminal.
+     */
+    private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
+        if (parsingStack.isEmpty())
+            throw new ParseErrorException("Parsing already completed.");
+
+        while (true) {
+            StackEntry top = parsingStack.peekFirst();
+
+            if (top.token.equals(terminal)) {
+                parsingStack.pollFirst();
+                if (top.tree != null) {
+                    top.tree.getChildren().add(ParseSession.leaf(top.token, terminal));
+                }
+                return terminal.equals(EOF.getInstance()) ? parseTree : null;
+            }
+
+            if (top.token.isTerminal())
+                throw new ParseErrorException("Expected " + top.token + ", found " + terminal);
+
+            Variable variable = (Variable) top.token;
+            Terminal[] pair = delimiters.get(variable);
+            if (pair != null && pair[0].equals(terminal) && top.tree != null) {
+                parsingStack.pollFirst();
+                skipped = new DeferredParseTree(variable, parseTable);
+                top.tree.getChildren().add(skipped);
+                open = pair[0];
+                close = pair[1];
+                nesting = 1;
+                ++deferredCount;
+                return null;
+            }
+
+            List<Symbol> production = parseTable.getProduction(variable, terminal);
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+            parsingStack.pollFirst();
+
+            ParseTree node;
+            if (variable instanceof TransparentVariable) {
+                node = top.tree;
+            } else if (top.tree == null) {
+                node = parseTree;
+            } else {
+                node = new ParseTree(variable);
+                top.tree.getChildren().add(node);
+            }
+
+            if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+                if (node != top.tree) {
+                    node.getChildren().add(new ParseTree(Epsilon.getInstance()));
+                }
+                continue;
+            }
+
+            for (int i = production.size() - 1; i >= 0; --i) {
+                parsingStack.offerFirst(new StackEntry(production.get(i), node));
+            }
+        }
+    }
+}
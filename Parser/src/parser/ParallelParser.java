@@ -0,0 +1,200 @@
+package parser;
+
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Parses an input by cutting it into units, such as the class declarations
+ * and function definitions of a program, and parsing them concurrently.  A
+ * scan of the tokens ends a unit at each terminal units end with that is
+ * outside of any nesting pair, such as the <code>;</code> after the
+ * <code>}</code> of a function.  The terminal a unit opens with gives its
+ * variable, such as <code>classDecl</code>, <code>progBody</code> or
+ * <code>funcDef</code>, and each unit is parsed by a {@link ParseSession}
+ * started on that variable.
+ * <p>
+ * The units are then stitched together by a session parsing the input: on
+ * the first terminal of each unit it predicts down to the unit's variable,
+ * the way it would to parse the unit itself, and {@link
+ * ParseSession#splice(ParseSession) splices} in the unit's session instead.
+ * The lists holding the units, such as <code>classDeclList</code> and
+ * <code>funcDefList</code>, are therefore built by the table, and the tree
+ * is the one of a {@link ParseSession}.
+ * <p>
+ * If a unit does not parse, or is not where the stitching session expects
+ * its variable, the units before it are kept and the session goes on
+ * sequentially with the terminals from that unit on.  It then reports the
+ * error a {@link ParseSession} reports.  Parsers are not thread-safe
+ * themselves but may share their table and pool.
+ * <p>
+ * The scan and the stitching are sequential, and the units are parsed with
+ * one more session each, so the parser only gains over a single session
+ * with several processors.
+ *
+ * @author yucunli
+ */
+public final class ParallelParser {
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The unit variable of each terminal a unit can open with. */
+    private final Map<Terminal, Variable> unitOf;
+
+    /** The terminals units end with. */
+    private final Set<Terminal> ends;
+
+    /** The opening terminals of the nesting pairs and their closing ones. */
+    private final Map<Terminal, Terminal> pairs;
+
+    /** The pool the units are parsed in. */
+    private final ForkJoinPool pool;
+
+    private int unitCount = 0;
+    private boolean fellBack = false;
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param parseTable The parsing table.
+     * @param unitOf The unit variable of each terminal a unit can open with.
+     * @param ends The terminals units end with.
+     * @param pairs The opening terminals of the nesting pairs and their
+     * closing ones.
+     * @param pool The pool the units are parsed in.
+     */
+    ParallelParser(ParseTable parseTable, Map<Terminal, Variable> unitOf, Set<Terminal> ends,
+            Map<Terminal, Terminal> pairs, ForkJoinPool pool) {
+        this.parseTable = parseTable;
+        this.unitOf = unitOf;
+        this.ends = ends;
+        this.pairs = pairs;
+        this.pool = pool;
+    }
+
+    /** @return The number of units of the last input parsed concurrently. */
+    public int getUnitCount() {
+        return unitCount;
+    }
+
+    /** @return Whether part of the last input was parsed sequentially. */
+    public boolean fellBack() {
+        return fellBack;
+    }
+
+    /**
+     * Parses an input.
+     *
+     * @param input The terminals of the input, without EOF.
+     * @return The parse tree, the one a {@link ParseSession} builds.
+     * @throws ParseErrorException If the input does not derive from the
+     * start symbol.
+     */
+    public ParseTree parse(List<Terminal> input) throws ParseErrorException {
+        /* The units, as the positions they start at, then the end of the
+         * last one.  A unit opening with no unit's terminal stops the cut.
+         */
+        List<Integer> bounds = new ArrayList<>();
+        List<Variable> variables = new ArrayList<>();
+        bounds.add(0);
+        int depth = 0;
+        for (int i = 0; i < input.size(); ++i) {
+            Terminal terminal = input.get(i);
+            if (i == bounds.get(bounds.size() - 1)) {
+                Variable variable = unitOf.get(terminal);
+                if (variable == null) {
+                    break;
+                }
+                variables.add(variable);
+            }
+            if (pairs.containsKey(terminal)) {
+                ++depth;
+            } else if (pairs.containsValue(terminal)) {
+                --depth;
+            } else if (depth == 0 && ends.contains(terminal)) {
+                bounds.add(i + 1);
+            }
+        }
+        if (variables.size() == bounds.size()) {
+            /* The last unit does not end. */
+            variables.remove(variables.size() - 1);
+        }
+
+        ParseSession[] units = new ParseSession[variables.size()];
+        pool.invoke(new UnitTask(parseTable, input, bounds, variables, units, 0, units.length));
+
+        ParseSession session = new ParseSession(parseTable);
+        int unit = 0;
+        while (unit < units.length && units[unit] != null
+                && session.predictUntil(input.get(bounds.get(unit)), variables.get(unit))) {
+            session.splice(units[unit]);
+            ++unit;
+        }
+        unitCount = unit;
+        int position = bounds.get(unit);
+        fellBack = position < input.size();
+        for (Terminal terminal : input.subList(position, input.size())) {
+            session.nextTerminal(terminal);
+        }
+        return session.inputComplete();
+    }
+
+    /**
+     * Parses a range of units, splitting the range in halves down to a few
+     * units per task.  A unit that does not parse leaves a null session.
+     */
+    private static final class UnitTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        /** The number of units below which a range is not split. */
+        private static final int BATCH = 8;
+
+        private final ParseTable parseTable;
+        private final List<Terminal> input;
+        private final List<Integer> bounds;
+        private final List<Variable> variables;
+        private final ParseSession[] units;
+        private final int from;
+        private final int to;
+
+        UnitTask(ParseTable parseTable, List<Terminal> input, List<Integer> bounds, List<Variable> variables,
+                ParseSession[] units, int from, int to) {
+            this.parseTable = parseTable;
+            this.input = input;
+            this.bounds = bounds;
+            this.variables = variables;
+            this.units = units;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new UnitTask(parseTable, input, bounds, variables, units, from, middle),
+                        new UnitTask(parseTable, input, bounds, variables, units, middle, to));
+                return;
+            }
+            for (int u = from; u < to; ++u) {
+                ParseSession session = new ParseSession(parseTable, variables.get(u));
+                try {
+                    for (Terminal terminal : input.subList(bounds.get(u), bounds.get(u + 1))) {
+                        session.nextTerminal(terminal);
+                    }
+                    units[u] = session;
+                } catch (ParseErrorException ex) {
+                    /* The stitching session reports it. */
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package parser;
+
+import datastructure.Terminal;
+import datastructure.Variable;
+
+/**
+ * A callback receiving the structure of the input from an event-driven
+ * parser instead of a parse tree.  The events arrive in the same order as a
+ * preorder walk of the tree the parser would otherwise have built.
+ *
+ * @author yucunli
+ */
+public interface ParseListener {
+    /**
+     * Called when the parser predicts a production for a variable.
+     *
+     * @param variable The variable being expanded.
+     */
+    public void enterVariable(Variable variable);
+
+    /**
+     * Called when every symbol of the production predicted for a variable has
+     * been matched.
+     *
+     * @param variable The variable whose expansion is complete.
+     */
+    public void exitVariable(Variable variable);
+
+    /**
+     * Called when a terminal of the input is matched.
+     *
+     * @param terminal The terminal read from the input.
+     */
+    public void terminal(Terminal terminal);
+
+    /**
+     * Called when the variable entered last derives the empty string.
+     */
+    public void epsilon();
+}
@@ -0,0 +1,357 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * An LL(1) parser driven by a shared {@link ParseTable}.  The parser
+ * maintains a stack containing the predicted symbols and looks up in the
+ * table which production to predict.
+ * <p>
+ * All the state of a parse lives in the session: the table is only read,
+ * and the leaves of the tree get their own terminals instead of the ones of
+ * the grammar's productions.  A session parses one input at a time and can
+ * be {@link #reset() reset} to parse the next one, keeping its stack
+ * storage.
+ * <p>
+ * A node is added to the tree when its symbol leaves the stack, matched or
+ * expanded, which builds the tree in order.  A {@link TransparentVariable}
+ * gets no node: what it derives is added to the node of its parent, so the
+ * repetitions of an EBNF grammar give flat list nodes.  A transparent
+ * variable deriving epsilon adds no epsilon leaf, so the node of an empty
+ * repetition is a variable node with no children.
+ * <p>
+ * Sessions are not thread-safe; use one per thread, or take them from a
+ * {@link ParseSessionPool}.
+ *
+ * @author yucunli
+ */
+public final class ParseSession implements Parser {
+
+    /**
+     * A utility struct pairing a symbol and the parse tree its own tree goes
+     * into.  The parser maintains a sequence of these elements so that we
+     * can build up a parse tree for the input as we go.
+     */
+    private static final class StackEntry {
+        /** The token (or EOF) in the stack. */
+        public final Symbol token;
+
+        /**
+         * The parse tree the tree of that symbol is added to, null for the
+         * start symbol and EOF.
+         */
+        public final ParseTree tree;
+
+        /**
+         * Constructs a new StackEntry holding the given symbol and parent
+         * parse tree.
+         *
+         * @param symbol The symbol to store here.
+         * @param tree The parse tree of the parent.
+         */
+        public StackEntry(Symbol token, ParseTree tree) {
+            this.token = token;
+            this.tree = tree;
+        }
+    }
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The variable the input derives, the start symbol by default. */
+    private final Variable start;
+
+    /** The parsing stack. */
+    private final Deque<StackEntry> parsingStack = new ArrayDeque<StackEntry>();
+
+    /** The parse tree of the current input. */
+    private ParseTree parseTree;
+
+    /**
+     * Constructs a new session parsing with the given table, ready for its
+     * first input.
+     *
+     * @param parseTable The parsing table.
+     */
+    public ParseSession(ParseTable parseTable) {
+        this(parseTable, parseTable.getStart());
+    }
+
+    /**
+     * Constructs a new session parsing a phrase of a variable rather than a
+     * whole program, such as the tokens of a single function body.  The
+     * phrase ends with the input, so the table must be able to complete the
+     * variable on EOF, as for a variable ending with a terminal.
+     *
+     * @param parseTable The parsing table.
+     * @param start The variable the input derives.
+     */
+    public ParseSession(ParseTable parseTable, Variable start) {
+        this.parseTable = parseTable;
+        this.start = start;
+        reset();
+    }
+
+    /** @return The table this session parses with. */
+    public ParseTable getParseTable() {
+        return parseTable;
+    }
+
+    /**
+     * Discards the current parse, whether it completed, failed or is still
+     * in progress, and prepares the session for a new input.
+     */
+    public void reset() {
+        parsingStack.clear();
+
+        /* Create a new parse tree seeded with the start symbol. */
+        parseTree = new ParseTree(start);
+
+        /* Put the EOF marker atop the stack, then the start symbol. */
+        parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null));
+        parsingStack.offerFirst(new StackEntry(start, null));
+    }
+
+    /**
+     * Consumes the next terminal symbol, applying a predict/match step
+     * as necessary.  This may cause multiple predict steps to be applied
+     * before a match step is made.  If no prediction exists or if the
+     * match step fails, a ParseErrorException is raised.
+     *
+     * @param terminal The next terminal symbol.
+     * @throws ParseErrorException If a parse error occurs.
+     */
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        processSymbol(terminal);
+    }
+
+    /**
+     * Processes the end of the input.  This should conclude with a series
+     * of predicts and matches that ultimately empties the stack and
+     * returns the parse tree.
+     *
+     * @return The parse tree generated by the parser.
+     * @throws ParseErrorException If EOF wasn't expected.
+     */
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        ParseTree result = processSymbol(EOF.getInstance());
+        if (result == null)
+            throw new ParseErrorException("Unexpected end of input.");
+        return result;
+    }
+
+    /**
+     * Makes the leaf of a matched terminal.  The leaf gets a terminal of its
+     * own, carrying the position and lexeme of the input terminal, so the
+     * symbols of the table are never modified.  Every engine building a
+     * {@link ParseTree} makes its leaves here.
+     *
+     * @param token The symbol matched.
+     * @param terminal The input terminal it matched.
+     * @return The leaf.
+     */
+    static ParseTree leaf(Symbol token, Terminal terminal) {
+        Terminal leaf = new Terminal(token.getValue());
+        leaf.setIndex(terminal.getIndex());
+        leaf.setLine(terminal.getLine());
+        leaf.setLexeme(terminal.getLexeme());
+        return new ParseTree(leaf);
+    }
+
+    /**
+     * Puts the children of the transparent nodes among the children of a
+     * node in their place, for the engines that build a node for every
+     * variable.  A transparent node deriving epsilon leaves nothing, so the
+     * node ends up with the children it has in the tree of a session.  The
+     * repetitions of an EBNF grammar nest their transparent nodes as deep as
+     * the list is long, so they are expanded without recursion.
+     *
+     * @param children The children of a node that is not transparent.
+     * @return The children of the node in the tree of a session, the same
+     * list if none is transparent.
+     */
+    static List<ParseTree> flatten(List<ParseTree> children) {
+        boolean transparent = false;
+        for (ParseTree child : children) {
+            if (child.getSymbol() instanceof TransparentVariable) {
+                transparent = true;
+                break;
+            }
+        }
+        if (!transparent) {
+            return children;
+        }
+
+        /* The iterators of the node and of the transparent nodes being
+         * expanded, innermost first.
+         */
+        List<ParseTree> flat = new ArrayList<>();
+        Deque<Iterator<ParseTree>> pending = new ArrayDeque<>();
+        pending.push(children.iterator());
+        while (!pending.isEmpty()) {
+            Iterator<ParseTree> iterator = pending.peek();
+            if (!iterator.hasNext()) {
+                pending.pop();
+                continue;
+            }
+            ParseTree child = iterator.next();
+            if (child.getSymbol() instanceof TransparentVariable) {
+                pending.push(child.getChildren().iterator());
+            } else if (pending.size() == 1 || !child.getSymbol().equals(Epsilon.getInstance())) {
+                flat.add(child);
+            }
+        }
+        return flat;
+    }
+
+    /**
+     * Private helper function that processes the next token of the input,
+     * which can be either a terminal or the EOF marker.  If a parsing
+     * error occurs, a ParseErrorException is thrown and the offending entry
+     * stays on the stack.  If parsing completes because the input was the
+     * EOF marker, the parse tree is returned.
+     *
+     * @param terminal The terminal that appears next.
+     * @return The completed parse tree, if any.
+     * @throws ParseErrorException If a parse error occurs.
+     */
+    private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
+        /* If the stack is empty, then we're done parsing and can't process
+         * any more terminals.
+         */
+        if (parsingStack.isEmpty())
+            throw new ParseErrorException("Parsing already completed.");
+
+        /* Keep applying predict steps until the top of the stack holds a
+         * terminal symbol.
+         */
+        while (true) {
+            StackEntry top = parsingStack.peekFirst();
+
+            /* If the top symbol matches, add a leaf with a terminal of its
+             * own at the position of the input.  Hand back the tree once EOF
+             * is matched.
+             */
+            if (top.token.equals(terminal)) {
+                parsingStack.pollFirst();
+                if (top.tree != null) {
+                    top.tree.getChildren().add(leaf(top.token, terminal));
+                }
+                return terminal.equals(EOF.getInstance()) ? parseTree : null;
+            }
+
+            if (top.token.isTerminal())
+                throw new ParseErrorException("Expected " + top.token + ", found " + terminal);
+
+            /* Otherwise, the top of the stack must be a nonterminal and
+             * we need to do a predict step.
+             */
+            Variable variable = (Variable) top.token;
+            List<Symbol> production = parseTable.getProduction(variable, terminal);
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+            predict(production);
+        }
+    }
+
+    /**
+     * Applies the predict steps a terminal calls for until a variable is on
+     * top of the stack, without matching the terminal.  If it stops on
+     * anything else, feeding the terminal to {@link #nextTerminal(Terminal)}
+     * goes on from there, reporting the error a parse error would.
+     *
+     * @param terminal The terminal that appears next.
+     * @param variable The variable to stop at.
+     * @return Whether the variable is on top of the stack.
+     */
+    boolean predictUntil(Terminal terminal, Variable variable) {
+        while (!parsingStack.isEmpty()) {
+            StackEntry top = parsingStack.peekFirst();
+            if (top.token.equals(variable)) {
+                return true;
+            }
+            if (top.token.isTerminal()) {
+                return false;
+            }
+            List<Symbol> production = parseTable.getProduction((Variable) top.token, terminal);
+            if (production == null) {
+                return false;
+            }
+            predict(production);
+        }
+        return false;
+    }
+
+    /**
+     * Puts a phrase parsed by another session in place of the variable on
+     * top of the stack, see {@link #predictUntil(Terminal, Variable)}.  The
+     * other session was started on that variable and fed the terminals of
+     * the phrase but not the end of the input.  Its tree becomes the node of
+     * the variable and what is left of its stack goes on top of this one, so
+     * this session is where feeding it the phrase would have left it.  The
+     * other session must not be used afterwards.
+     *
+     * @param phrase The session that parsed the phrase.
+     */
+    void splice(ParseSession phrase) {
+        StackEntry top = parsingStack.pollFirst();
+        top.tree.getChildren().add(phrase.parseTree);
+
+        /* The bottom of the other stack is its EOF marker. */
+        Iterator<StackEntry> rest = phrase.parsingStack.descendingIterator();
+        rest.next();
+        while (rest.hasNext()) {
+            parsingStack.offerFirst(rest.next());
+        }
+    }
+
+    /**
+     * Private helper function that replaces the variable on top of the stack
+     * by a production of it, adding its node to the tree.
+     *
+     * @param production The production predicted for the variable.
+     */
+    private void predict(List<Symbol> production) {
+        StackEntry top = parsingStack.pollFirst();
+        Variable variable = (Variable) top.token;
+
+        /* The variable gets its node, unless it is transparent. */
+        ParseTree node;
+        if (variable instanceof TransparentVariable) {
+            node = top.tree;
+        } else if (top.tree == null) {
+            node = parseTree;
+        } else {
+            node = new ParseTree(variable);
+            top.tree.getChildren().add(node);
+        }
+
+        /* An epsilon production gets an epsilon leaf and pushes nothing. */
+        if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+            if (node != top.tree) {
+                node.getChildren().add(new ParseTree(Epsilon.getInstance()));
+            }
+            return;
+        }
+
+        /* Push the symbols in the reverse order since the stack grows in
+         * the front.
+         */
+        for (int i = production.size() - 1; i >= 0; --i) {
+            parsingStack.offerFirst(new StackEntry(production.get(i), node));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package parser;
+
+import datastructure.Terminal;
+import exceptions.ParseErrorException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A pool of warm {@link ParseSession}s sharing one {@link ParseTable}.
+ * Serving a parse takes an idle session, or makes one if none is idle, and
+ * gives it back reset afterwards, so no table work and little allocation
+ * happens per parse.  The pool may be used from any number of threads.
+ *
+ * @author yucunli
+ */
+public class ParseSessionPool {
+
+    /** The table shared by the sessions. */
+    private final ParseTable parseTable;
+
+    /** The idle sessions, most recently used first. */
+    private final ConcurrentLinkedDeque<ParseSession> idle = new ConcurrentLinkedDeque<>();
+
+    /**
+     * Constructs a pool and warms up a number of sessions.
+     *
+     * @param parseTable The table the sessions parse with.
+     * @param initialSessions The number of sessions to create up front.
+     */
+    public ParseSessionPool(ParseTable parseTable, int initialSessions) {
+        this.parseTable = parseTable;
+        for (int i = 0; i < initialSessions; ++i) {
+            idle.push(new ParseSession(parseTable));
+        }
+    }
+
+    /** @return The table shared by the sessions. */
+    public ParseTable getParseTable() {
+        return parseTable;
+    }
+
+    /**
+     * Takes a session out of the pool.  It must be given back with
+     * {@link #release(ParseSession)} once the parse is over.
+     *
+     * @return A session ready for a new input.
+     */
+    public ParseSession acquire() {
+        ParseSession session = idle.poll();
+        return session == null ? new ParseSession(parseTable) : session;
+    }
+
+    /**
+     * Gives a session back to the pool.  The session is reset, so its tree
+     * stays with the caller.
+     *
+     * @param session A session obtained from {@link #acquire()}.
+     */
+    public void release(ParseSession session) {
+        if (session.getParseTable() != parseTable) {
+            throw new IllegalArgumentException("Session does not belong to this pool.");
+        }
+        session.reset();
+        idle.push(session);
+    }
+
+    /**
+     * Parses a sequence of terminals with a pooled session.
+     *
+     * @param input The terminals to parse, without EOF.
+     * @return The parse tree.
+     * @throws ParseErrorException If a parse error occurs.
+     */
+    public ParseTree parse(Iterable<? extends Terminal> input) throws ParseErrorException {
+        ParseSession session = acquire();
+        try {
+            for (Terminal terminal : input) {
+                session.nextTerminal(terminal);
+            }
+            return session.inputComplete();
+        } finally {
+            release(session);
+        }
+    }
+}
@@ -0,0 +1,618 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An LL(1) parsing table: for every variable, the production to predict on
+ * seeing each terminal.  A table is built once by
+ * {@link ParserGenerator#createParseTable(datastructure.Grammar)} and never
+ * changes afterwards, so any number of parsers on any number of threads may
+ * share it.
+ * <p>
+ * Variables, terminals and productions are numbered, and the table is
+ * stored as a comb vector: the rows of all variables are overlaid in one
+ * pair of arrays, row v starting at offset base[v], and a check array
+ * records which row owns each slot.  Most lookaheads of a variable usually
+ * predict the same production, typically an epsilon production on its
+ * FOLLOW set; that production becomes the default of the row, and only the
+ * other entries are stored in the comb.  A bit matrix tells the default
+ * lookaheads from the errors, so that errors are still detected as soon as
+ * with a dense table.  When the comb would not be smaller than the dense
+ * table, the rows are laid out one after the other without defaults, and
+ * the same lookup code runs on them.
+ * <p>
+ * For engines working on ints, every symbol of the productions also has a
+ * code, terminals first, and every production is available as an array of
+ * codes, in order and reversed.
+ * <p>
+ * Seeing a terminal, a variable often goes through a chain of predictions
+ * that the terminal alone decides, such as expr, arithExpr, term, factor
+ * on an identifier, before the terminal is matched.  The table also keeps
+ * such chains of two predictions or more as macro predictions, in a second
+ * comb without defaults: the codes of the tree nodes the chain allocates,
+ * and the stack entries it leaves, so that an int engine applies the whole
+ * chain in one step and builds the same tree.
+ *
+ * @author yucunli
+ */
+public final class ParseTable {
+
+    /** The start symbol of the grammar. */
+    private final Variable start;
+
+    /** The terminals by number, EOF being 0. */
+    private final Terminal[] terminals;
+
+    /** The numbers of the terminals. */
+    private final Map<Symbol, Integer> terminalIds = new HashMap<>();
+
+    /** The variables with at least one prediction, by number. */
+    private final Variable[] variables;
+
+    /** The numbers of the variables. */
+    private final Map<Variable, Integer> variableIds = new LinkedHashMap<>();
+
+    /** The productions by number, each an unmodifiable list. */
+    private final List<List<Symbol>> productions = new ArrayList<>();
+
+    /** The offset of the row of each variable in the comb. */
+    private final int[] base;
+
+    /** The variable owning each slot of the comb, -1 for free slots. */
+    private final int[] check;
+
+    /** The production in each slot of the comb. */
+    private final int[] next;
+
+    /** The default production of each variable, -1 if it has none. */
+    private final int[] defaults;
+
+    /** Bit v * terminals.length + t is set if v predicts on t. */
+    private final long[] predicts;
+
+    /**
+     * Every symbol of the grammar by code: the terminals by number, then
+     * the variables by number plus the number of terminals, then the
+     * variables without predictions.
+     */
+    private final Symbol[] symbols;
+
+    /** The codes of the symbols of each production, in order. */
+    private final int[][] productionCodes;
+
+    /**
+     * The codes of the symbols of each production in reverse order, without
+     * epsilon, as they are pushed on a parse stack.
+     */
+    private final int[][] reversedCodes;
+
+    /** The offset of the row of each variable in the macro comb. */
+    private final int[] macroBase;
+
+    /** The variable owning each slot of the macro comb, -1 for free slots. */
+    private final int[] macroCheck;
+
+    /** The macro prediction in each slot of the macro comb. */
+    private final int[] macroNext;
+
+    /** The macro predictions by number. */
+    private final Macro[] macros;
+
+    /**
+     * A chain of predictions applied as one step.  The productions of the
+     * chain are expanded one in the first child of the other, their nodes
+     * allocated consecutively from some first node.
+     */
+    static final class Macro {
+
+        /** The codes of the children of each production, in chain order. */
+        final int[] codes;
+
+        /** The end of the children of each production in the codes. */
+        final int[] ends;
+
+        /** The codes to push, bottom first. */
+        final int[] pushCodes;
+
+        /** The node of each code to push, relative to the first node. */
+        final int[] pushNodes;
+
+        /**
+         * The node matching the lookahead relative to the first node, or
+         * -1 if the chain ends with an epsilon production.
+         */
+        final int match;
+
+        Macro(int[] codes, int[] ends, int[] pushCodes, int[] pushNodes, int match) {
+            this.codes = codes;
+            this.ends = ends;
+            this.pushCodes = pushCodes;
+            this.pushNodes = pushNodes;
+            this.match = match;
+        }
+    }
+
+    /**
+     * Constructs a table from the predictions computed by the parser
+     * generator.  The predictions are copied, so the caller may go on
+     * modifying its maps and the grammar afterwards.
+     *
+     * @param start The start symbol.
+     * @param predictions The predictions of every variable.
+     */
+    ParseTable(Variable start, Map<Variable, Map<Terminal, List<Symbol>>> predictions) {
+        this.start = start;
+
+        /* Number the symbols and the distinct productions. */
+        List<Terminal> terminalList = new ArrayList<>();
+        terminalList.add(EOF.getInstance());
+        terminalIds.put(EOF.getInstance(), 0);
+        Map<List<Symbol>, Integer> productionIds = new HashMap<>();
+        for (Map.Entry<Variable, Map<Terminal, List<Symbol>>> row : predictions.entrySet()) {
+            if (row.getValue().isEmpty()) {
+                continue;
+            }
+            variableIds.put(row.getKey(), variableIds.size());
+            for (Map.Entry<Terminal, List<Symbol>> entry : row.getValue().entrySet()) {
+                if (!terminalIds.containsKey(entry.getKey())) {
+                    terminalIds.put(entry.getKey(), terminalList.size());
+                    terminalList.add(entry.getKey());
+                }
+                if (!productionIds.containsKey(entry.getValue())) {
+                    List<Symbol> production = Collections.unmodifiableList(new ArrayList<>(entry.getValue()));
+                    productionIds.put(production, productions.size());
+                    productions.add(production);
+                }
+            }
+        }
+        /* Terminals and variables that only occur in productions, such as
+         * a terminal always following a non-nullable variable, are numbered
+         * after the others so that every symbol has a code.
+         */
+        List<Variable> rowless = new ArrayList<>();
+        Set<Variable> seen = new HashSet<>();
+        for (List<Symbol> production : productions) {
+            for (Symbol symbol : production) {
+                if (symbol.isTerminal()) {
+                    if (!terminalIds.containsKey(symbol)) {
+                        terminalIds.put(symbol, terminalList.size());
+                        terminalList.add((Terminal) symbol);
+                    }
+                } else if (!variableIds.containsKey(symbol) && seen.add((Variable) symbol)) {
+                    rowless.add((Variable) symbol);
+                }
+            }
+        }
+        terminals = terminalList.toArray(new Terminal[terminalList.size()]);
+        variables = variableIds.keySet().toArray(new Variable[variableIds.size()]);
+        int terminalCount = terminals.length;
+        int variableCount = variables.length;
+
+        /* The symbol codes: terminals, then variables with rows, then the
+         * others; and the productions in codes.
+         */
+        symbols = new Symbol[terminalCount + variableCount + rowless.size()];
+        System.arraycopy(terminals, 0, symbols, 0, terminalCount);
+        System.arraycopy(variables, 0, symbols, terminalCount, variableCount);
+        for (int i = 0; i < rowless.size(); ++i) {
+            symbols[terminalCount + variableCount + i] = rowless.get(i);
+        }
+        Map<Symbol, Integer> codes = new HashMap<>();
+        for (int code = 0; code < symbols.length; ++code) {
+            codes.put(symbols[code], code);
+        }
+        productionCodes = new int[productions.size()][];
+        reversedCodes = new int[productions.size()][];
+        for (int p = 0; p < productions.size(); ++p) {
+            List<Symbol> production = productions.get(p);
+            productionCodes[p] = new int[production.size()];
+            int pushed = 0;
+            for (int i = 0; i < production.size(); ++i) {
+                productionCodes[p][i] = codes.get(production.get(i));
+                if (!production.get(i).equals(Epsilon.getInstance())) {
+                    ++pushed;
+                }
+            }
+            reversedCodes[p] = new int[pushed];
+            for (int i = production.size() - 1, j = 0; i >= 0; --i) {
+                if (!production.get(i).equals(Epsilon.getInstance())) {
+                    reversedCodes[p][j++] = productionCodes[p][i];
+                }
+            }
+        }
+
+        /* The dense rows, -1 for errors. */
+        int[][] rows = new int[variableCount][terminalCount];
+        for (int v = 0; v < variableCount; ++v) {
+            Arrays.fill(rows[v], -1);
+            for (Map.Entry<Terminal, List<Symbol>> entry : predictions.get(variables[v]).entrySet()) {
+                rows[v][terminalIds.get(entry.getKey())] = productionIds.get(entry.getValue());
+            }
+        }
+
+        /* Pick the default of every row: its most frequent production, if
+         * it occurs more than once.
+         */
+        int[] rowDefaults = new int[variableCount];
+        int[] counts = new int[productions.size()];
+        for (int v = 0; v < variableCount; ++v) {
+            Arrays.fill(counts, 0);
+            int best = -1;
+            for (int production : rows[v]) {
+                if (production >= 0 && ++counts[production] > (best < 0 ? 1 : counts[best])) {
+                    best = production;
+                }
+            }
+            rowDefaults[v] = best;
+        }
+
+        int[][] comb = overlay(rows, rowDefaults, terminalCount);
+        int combSize = 2 * comb[1].length + 2 * ((variableCount * terminalCount + 63) / 64);
+        if (combSize < 2 * variableCount * terminalCount) {
+            base = comb[0];
+            check = comb[1];
+            next = comb[2];
+            defaults = rowDefaults;
+            predicts = new long[(variableCount * terminalCount + 63) / 64];
+            for (int v = 0; v < variableCount; ++v) {
+                for (int t = 0; t < terminalCount; ++t) {
+                    if (rows[v][t] >= 0) {
+                        int bit = v * terminalCount + t;
+                        predicts[bit >>> 6] |= 1L << bit;
+                    }
+                }
+            }
+        } else {
+            /* The dense layout: row v at v * terminalCount, no defaults. */
+            base = new int[variableCount];
+            check = new int[variableCount * terminalCount];
+            next = new int[variableCount * terminalCount];
+            defaults = new int[variableCount];
+            predicts = new long[0];
+            Arrays.fill(check, -1);
+            Arrays.fill(defaults, -1);
+            for (int v = 0; v < variableCount; ++v) {
+                base[v] = v * terminalCount;
+                for (int t = 0; t < terminalCount; ++t) {
+                    if (rows[v][t] >= 0) {
+                        check[base[v] + t] = v;
+                        next[base[v] + t] = rows[v][t];
+                    }
+                }
+            }
+        }
+
+        /* The macro predictions, the same chain being shared by all the
+         * pairs it starts from.
+         */
+        int[][] macroRows = new int[variableCount][terminalCount];
+        Map<List<Integer>, Integer> macroIds = new HashMap<>();
+        List<Macro> macroList = new ArrayList<>();
+        for (int v = 0; v < variableCount; ++v) {
+            Arrays.fill(macroRows[v], -1);
+            for (int t = 0; t < terminalCount; ++t) {
+                List<Integer> chain = chain(rows, v, t);
+                if (chain.size() < 2) {
+                    continue;
+                }
+                Integer id = macroIds.get(chain);
+                if (id == null) {
+                    id = macroList.size();
+                    macroIds.put(chain, id);
+                    macroList.add(macro(chain));
+                }
+                macroRows[v][t] = id;
+            }
+        }
+        int[] noDefaults = new int[variableCount];
+        Arrays.fill(noDefaults, -1);
+        int[][] macroComb = overlay(macroRows, noDefaults, terminalCount);
+        macroBase = macroComb[0];
+        macroCheck = macroComb[1];
+        macroNext = macroComb[2];
+        macros = macroList.toArray(new Macro[macroList.size()]);
+    }
+
+    /**
+     * Follows the predictions of a variable on a terminal down the first
+     * child of each production, until the production starts with the
+     * terminal, is an epsilon production, or starts with a variable without
+     * a prediction on the terminal.
+     *
+     * @return The productions of the chain, empty on an error.
+     */
+    private List<Integer> chain(int[][] rows, int variable, int terminal) {
+        List<Integer> chain = new ArrayList<>();
+        int production = rows[variable][terminal];
+        while (production >= 0 && chain.size() <= rows.length) {
+            chain.add(production);
+            int code = productionCodes[production][0] - terminals.length;
+            if (reversedCodes[production].length == 0 || code < 0 || code >= rows.length) {
+                break;
+            }
+            production = rows[code][terminal];
+        }
+        return chain;
+    }
+
+    private Macro macro(List<Integer> chain) {
+        int size = 0;
+        for (int production : chain) {
+            size += productionCodes[production].length;
+        }
+        int[] codes = new int[size];
+        int[] ends = new int[chain.size()];
+        int[] pushCodes = new int[size];
+        int[] pushNodes = new int[size];
+        int pushed = 0;
+        int match = -1;
+        int start = 0;
+        for (int k = 0; k < chain.size(); ++k) {
+            int production = chain.get(k);
+            int[] children = productionCodes[production];
+            System.arraycopy(children, 0, codes, start, children.length);
+            ends[k] = start + children.length;
+
+            /* The first child is expanded by the next production, or
+             * matched by the lookahead at the end of the chain.
+             */
+            int last = reversedCodes[production].length == 0 ? 0 : children.length;
+            for (int i = last - 1; i >= 1; --i) {
+                pushCodes[pushed] = children[i];
+                pushNodes[pushed++] = start + i;
+            }
+            if (k == chain.size() - 1 && last > 0) {
+                if (children[0] < terminals.length) {
+                    match = start;
+                } else {
+                    pushCodes[pushed] = children[0];
+                    pushNodes[pushed++] = start;
+                }
+            }
+            start = ends[k];
+        }
+        return new Macro(codes, ends, Arrays.copyOf(pushCodes, pushed), Arrays.copyOf(pushNodes, pushed), match);
+    }
+
+    /**
+     * Overlays the non-default entries of the rows by first fit, the fullest
+     * rows first.  The arrays are long enough for any terminal number to be
+     * looked up in any row without a bounds check.  The search for a row's
+     * offset starts where its first entry would land on the lowest free
+     * slot, as no smaller offset can fit.
+     *
+     * @return The base, check and next arrays.
+     */
+    private static int[][] overlay(final int[][] rows, int[] rowDefaults, int terminalCount) {
+        int variableCount = rows.length;
+        final int[][] columns = new int[variableCount][];
+        Integer[] order = new Integer[variableCount];
+        int[] buffer = new int[terminalCount];
+        for (int v = 0; v < variableCount; ++v) {
+            order[v] = v;
+            int size = 0;
+            for (int t = 0; t < terminalCount; ++t) {
+                if (rows[v][t] >= 0 && rows[v][t] != rowDefaults[v]) {
+                    buffer[size++] = t;
+                }
+            }
+            columns[v] = Arrays.copyOf(buffer, size);
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return columns[b].length - columns[a].length;
+            }
+        });
+
+        int[] base = new int[variableCount];
+        int[] check = new int[terminalCount];
+        int[] next = new int[terminalCount];
+        Arrays.fill(check, -1);
+        int end = terminalCount;
+        int firstFree = 0;
+        for (int v : order) {
+            int[] row = columns[v];
+            if (row.length == 0) {
+                continue;
+            }
+            int offset = Math.max(0, firstFree - row[0]);
+            while (!fits(row, check, offset)) {
+                ++offset;
+            }
+            if (offset + terminalCount > check.length) {
+                int length = Math.max(offset + terminalCount, check.length * 2);
+                int oldLength = check.length;
+                check = Arrays.copyOf(check, length);
+                next = Arrays.copyOf(next, length);
+                Arrays.fill(check, oldLength, length, -1);
+            }
+            base[v] = offset;
+            end = Math.max(end, offset + terminalCount);
+            for (int t : row) {
+                check[offset + t] = v;
+                next[offset + t] = rows[v][t];
+            }
+            while (firstFree < check.length && check[firstFree] >= 0) {
+                ++firstFree;
+            }
+        }
+        return new int[][] { base, Arrays.copyOf(check, end), Arrays.copyOf(next, end) };
+    }
+
+    private static boolean fits(int[] columns, int[] check, int offset) {
+        for (int t : columns) {
+            if (offset + t < check.length && check[offset + t] >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** @return The start symbol of the grammar. */
+    public Variable getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the production to predict for a variable on a lookahead.
+     *
+     * @param variable The variable atop the parse stack.
+     * @param terminal The lookahead terminal, possibly EOF.
+     * @return The production, or null if there is none.
+     */
+    public List<Symbol> getProduction(Variable variable, Terminal terminal) {
+        Integer v = variableIds.get(variable);
+        Integer t = terminalIds.get(terminal);
+        if (v == null || t == null) {
+            return null;
+        }
+        int production = predict(v, t);
+        return production < 0 ? null : productions.get(production);
+    }
+
+    /**
+     * Returns every prediction of a variable.
+     *
+     * @param variable The variable in question.
+     * @return The productions of the variable by lookahead terminal.
+     */
+    public Map<Terminal, List<Symbol>> getPredictions(Variable variable) {
+        Integer v = variableIds.get(variable);
+        if (v == null) {
+            return Collections.<Terminal, List<Symbol>>emptyMap();
+        }
+        Map<Terminal, List<Symbol>> row = new LinkedHashMap<>();
+        for (int t = 0; t < terminals.length; ++t) {
+            int production = predict(v, t);
+            if (production >= 0) {
+                row.put(terminals[t], productions.get(production));
+            }
+        }
+        return Collections.unmodifiableMap(row);
+    }
+
+    /** @return The variables that have at least one prediction. */
+    public Set<Variable> getVariables() {
+        return Collections.unmodifiableSet(variableIds.keySet());
+    }
+
+    /** @return Whether the table is stored as a comb with default rows. */
+    public boolean isCompressed() {
+        return predicts.length > 0 || variables.length == 0;
+    }
+
+    /**
+     * @return The number of ints the table is stored in, longs counting
+     * twice; a dense table takes twice variables times terminals.
+     */
+    public int getStorageSize() {
+        return base.length + check.length + next.length + defaults.length + 2 * predicts.length;
+    }
+
+    /**
+     * @return The number of a terminal, or -1 if the table has no
+     * prediction on it.
+     */
+    int terminalId(Terminal terminal) {
+        Integer id = terminalIds.get(terminal);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return The number of a variable, or -1 if it has no prediction.
+     */
+    int variableId(Variable variable) {
+        Integer id = variableIds.get(variable);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Looks up the production of a variable on a terminal, by number.
+     *
+     * @return The number of the production, or -1 for an error.
+     */
+    int predict(int variable, int terminal) {
+        int slot = base[variable] + terminal;
+        if (check[slot] == variable) {
+            return next[slot];
+        }
+        int production = defaults[variable];
+        if (production < 0) {
+            return -1;
+        }
+        int bit = variable * terminals.length + terminal;
+        return (predicts[bit >>> 6] & (1L << bit)) != 0 ? production : -1;
+    }
+
+    /**
+     * Looks up the macro prediction of a variable on a terminal, by number.
+     *
+     * @return The number of the macro prediction, or -1 if the variable
+     * does not go through a chain of predictions on the terminal.
+     */
+    int macro(int variable, int terminal) {
+        int slot = macroBase[variable] + terminal;
+        return macroCheck[slot] == variable ? macroNext[slot] : -1;
+    }
+
+    /** @return The macro prediction with the given number. */
+    Macro getMacro(int macro) {
+        return macros[macro];
+    }
+
+    /** @return The production with the given number. */
+    List<Symbol> production(int production) {
+        return productions.get(production);
+    }
+
+    /** @return The number of terminals, which is the code of the first variable. */
+    int terminalCount() {
+        return terminals.length;
+    }
+
+    /** @return The number of variables with predictions. */
+    int variableCount() {
+        return variables.length;
+    }
+
+    /** @return The number of symbol codes. */
+    int symbolCount() {
+        return symbols.length;
+    }
+
+    /** @return The symbol with the given code. */
+    Symbol symbol(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * @return The codes of the symbols of a production, in order; the
+     * array must not be modified.
+     */
+    int[] productionCodes(int production) {
+        return productionCodes[production];
+    }
+
+    /**
+     * @return The codes of the symbols of a production in reverse order,
+     * without epsilon; the array must not be modified.
+     */
+    int[] reversedCodes(int production) {
+        return reversedCodes[production];
+    }
+}
@@ -1,21 +1,18 @@
 package parser;
 
 import datastructure.Symbol;
-import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Stack;
-import javax.swing.JFrame;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import serialization.BinaryTreeWriter;
+import serialization.DotTreeSerializer;
+import serialization.JsonTreeSerializer;
+import serialization.MappedParseTree;
+import serialization.TreeMLSerializer;
+import serialization.TreeSerializer;
 
 /**
  * A class representing a parse tree showing a derivation of some string in the
@@ -105,79 +102,53 @@ public class ParseTree implements Iterable<ParseTree> {
         return builder.toString();
     }
     
+    /**
+     * Writes the tree to a file in the TreeML format read by the tree viewer.
+     * The tree is streamed to the file; no document is built in memory.
+     *
+     * @param filename The file to write.
+     */
     public void writeToXML(String filename) {
-        DocumentBuilderFactory icFactory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder icBuilder;
-        
-        try {
-            icBuilder = icFactory.newDocumentBuilder();
-            Document doc = icBuilder.newDocument();
-            Element mainRootElement = doc.createElement("tree");
-            doc.appendChild(mainRootElement);
- 
-            // append child elements to root element
-            mainRootElement.appendChild(getDeclarations(doc));
-            
-            Element treeBranchRoot = getBranchs(doc, this.token.toString());
-            mainRootElement.appendChild(treeBranchRoot);
-            
-            
-            Stack<ParseTree> stack_tree = new Stack<>();
-            Stack<Element> stack_elements = new Stack<>();
-            stack_tree.push(this);
-            stack_elements.push(treeBranchRoot);
-            while(!stack_tree.isEmpty()) {
-                ParseTree top_tree = stack_tree.pop();
-                Element top_element = stack_elements.pop();
-                
-                for(ParseTree tree : top_tree.getChildren()){
-                    Element e = getBranchs(doc, tree.token.toString());
-                    top_element.appendChild(e);
-                    
-                    stack_tree.push(tree);
-                    stack_elements.push(e);
-                }
-                
-            }
- 
-            // output DOM XML to console 
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty("omit-xml-declaration", "yes"); 
-            DOMSource source = new DOMSource(doc);
-            
-            StreamResult console = new StreamResult(new File(filename));
-            
-            transformer.transform(source, console);
- 
-            System.out.println("\nXML DOM Created Successfully..");
- 
-        } catch (Exception e) {
+        try (Writer out = TreeSerializer.openWriter(filename)) {
+            new TreeMLSerializer(out).write(this);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
-    private Element getBranchs(Document doc, String value) {
-        Element branch = doc.createElement("branch");
-
-        Element attribute = doc.createElement("attribute");
-        attribute.setAttribute("name", "name");
-        attribute.setAttribute("value", value);
-
-        branch.appendChild(attribute);
-
-        return branch;
+    /**
+     * Writes the tree to a file as JSON.
+     *
+     * @param filename The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeToJSON(String filename) throws IOException {
+        try (Writer out = TreeSerializer.openWriter(filename)) {
+            new JsonTreeSerializer(out).write(this);
+        }
     }
 
-    private static Node getDeclarations(Document doc) {
-        Element declaration = doc.createElement("declarations");
-
-        Element attributeDecl = doc.createElement("attributeDecl");
-        attributeDecl.setAttribute("name", "name");
-        attributeDecl.setAttribute("type", "String");
-
-        declaration.appendChild(attributeDecl);
+    /**
+     * Writes the tree to a file as a Graphviz DOT digraph.
+     *
+     * @param filename The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeToDOT(String filename) throws IOException {
+        try (Writer out = TreeSerializer.openWriter(filename)) {
+            new DotTreeSerializer(out).write(this);
+        }
+    }
 
-        return declaration;
+    /**
+     * Writes the tree to a file in the binary format read by
+     * {@link MappedParseTree}.
+     *
+     * @param filename The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void writeToBinary(String filename) throws IOException {
+        BinaryTreeWriter.write(this, Paths.get(filename));
     }
 
 }
@@ -2,19 +2,32 @@ package parser;
 
 import datastructure.EOF;
 import datastructure.Epsilon;
+import datastructure.ErrorSymbol;
 import datastructure.Grammar;
+import datastructure.OperatorTable;
 import datastructure.Terminal;
 import datastructure.Symbol;
+import datastructure.TransparentVariable;
 import datastructure.Variable;
 import exceptions.GrammarNotLL1Exception;
 import exceptions.ParseErrorException;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 import utils.GrammarAttributes;
 
 /**
@@ -38,337 +51,1417 @@ public final class ParserGenerator {
      * @throws GrammarNotLL1Exception If the grammar is not LL(1).
      */
     public static Parser createParser(Grammar grammar) throws GrammarNotLL1Exception{
+        /* Wrap the parsing table up into a parser, then hand it back. */
+        return new ParseSession(createParseTable(grammar));
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser for that grammar which
+     * builds a {@link CompactParseTree} instead of one object per node.  The
+     * tree handed back by inputComplete is a {@link CompactParseTree.NodeView}
+     * of the root, from which the compact tree can be reached.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @return An LL(1) parser for that grammar building compact trees.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Parser createCompactParser(Grammar grammar) throws GrammarNotLL1Exception {
+        return new CompactLL1Parser(createParseTable(grammar));
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser for that grammar which
+     * builds a {@link CompactParseTree} and keeps its parse stack in int
+     * arrays of symbol codes, allocating nothing per step but tree storage.
+     * The tree handed back by inputComplete is a
+     * {@link CompactParseTree.NodeView} of the root.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @return An LL(1) parser for that grammar with a primitive stack.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Parser createIntStackParser(Grammar grammar) throws GrammarNotLL1Exception {
+        return new IntStackLL1Parser(createParseTable(grammar));
+    }
+    
+    /**
+     * Given a grammar that may not be LL(1), constructs a parser that looks
+     * as far into the input as needed where the LL(1) table predicts several
+     * productions.
+     *
+     * @param grammar The grammar to build a parser for.
+     * @return An adaptive parser for that grammar.
+     * @throws GrammarNotLL1Exception If the grammar is left recursive.
+     */
+    public static Parser createAdaptiveParser(Grammar grammar) throws GrammarNotLL1Exception {
+        return new AdaptiveParser(createAdaptiveParseTable(grammar));
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser that parses the variables
+     * the grammar declares as expressions by operator precedence, building
+     * compact binary nodes for them.  The operators of an expression are the
+     * declared operators its productions use, down to its operands.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @return An LL(1) parser for that grammar with an operator-precedence
+     * parser for its expressions.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Parser createHybridParser(Grammar grammar) throws GrammarNotLL1Exception {
+        OperatorTable operators = grammar.getOperators();
+        Map<Variable, Set<Terminal>> expressions = new HashMap<>();
+        for (Variable expression : operators.getExpressions()) {
+            Variable operand = operators.getOperand(expression);
+            Set<Terminal> used = new HashSet<>();
+            Set<Variable> seen = new HashSet<>();
+            Deque<Variable> work = new ArrayDeque<>();
+            work.add(expression);
+            seen.add(expression);
+            while (!work.isEmpty()) {
+                List<List<Symbol>> rightParts = grammar.getRelations().get(work.poll());
+                if (rightParts == null) {
+                    continue;
+                }
+                for (List<Symbol> rightPart : rightParts) {
+                    for (Symbol symbol : rightPart) {
+                        if (symbol.isTerminal()) {
+                            if (operators.isOperator(symbol)) {
+                                used.add((Terminal) symbol);
+                            }
+                        } else if (!symbol.equals(operand) && seen.add((Variable) symbol)) {
+                            work.add((Variable) symbol);
+                        }
+                    }
+                }
+            }
+            expressions.put(expression, used);
+        }
+        return new HybridParser(createParseTable(grammar), operators, expressions);
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser that skips the phrases of
+     * some variables, leaving {@link DeferredParseTree deferred nodes} to
+     * parse later.  Each of these variables must open and close with a
+     * pair of terminals in all its productions, as
+     * <code>funcBody-&gt;{ statementList }</code> does.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @param skipped The variables whose phrases are skipped.
+     * @return An LL(1) parser for that grammar skipping those phrases.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     * @throws IllegalArgumentException If a variable is the start symbol, is
+     * not delimited by a pair of terminals, or can derive the closing
+     * terminal without its opening one.
+     */
+    public static LazyParser createLazyParser(Grammar grammar, Collection<Variable> skipped)
+            throws GrammarNotLL1Exception {
+        return new LazyParser(createParseTable(grammar), delimiters(grammar, skipped));
+    }
+    
+    /**
+     * Finds the pair of terminals each of some variables opens and closes
+     * with in all its productions, and checks that the pair only appears
+     * balanced inside its phrases.
+     *
+     * @throws IllegalArgumentException If a variable is the start symbol, is
+     * not delimited by a pair of terminals, or can derive the closing
+     * terminal without its opening one.
+     */
+    private static Map<Variable, Terminal[]> delimiters(Grammar grammar, Collection<Variable> variables) {
+        Map<Variable, Terminal[]> delimiters = new HashMap<>();
+        for (Variable variable : variables) {
+            List<List<Symbol>> rightParts = grammar.getRelations().get(variable);
+            if (variable.equals(grammar.getStart()) || rightParts == null) {
+                throw new IllegalArgumentException("Cannot skip " + variable);
+            }
+            Terminal[] pair = pair(rightParts);
+            if (pair == null) {
+                throw new IllegalArgumentException(variable + " is not delimited by a pair of terminals");
+            }
+            if (!isBalanced(grammar, variable, pair[0], pair[1])) {
+                throw new IllegalArgumentException(variable + " can derive " + pair[1] + " without " + pair[0]);
+            }
+            delimiters.put(variable, pair);
+        }
+        return delimiters;
+    }
+    
+    /**
+     * @return The pair of terminals all the given productions open and close
+     * with, or null if they do not.
+     */
+    private static Terminal[] pair(List<List<Symbol>> rightParts) {
+        Terminal[] pair = null;
+        for (List<Symbol> rightPart : rightParts) {
+            Symbol first = rightPart.get(0);
+            Symbol last = rightPart.get(rightPart.size() - 1);
+            if (rightPart.size() < 2 || !first.isTerminal() || !last.isTerminal() || first.equals(last)
+                    || (pair != null && (!pair[0].equals(first) || !pair[1].equals(last)))) {
+                return null;
+            }
+            pair = new Terminal[] {(Terminal) first, (Terminal) last};
+        }
+        return pair;
+    }
+    
+    /**
+     * Checks that a pair of terminals is balanced in every production of a
+     * variable and of the variables it reaches: read in order, no closing
+     * terminal comes before its opening one and each opening one is closed.
+     * Everything such a variable derives is then balanced too, so a scan
+     * counting the pairs finds the end of its phrases.
+     *
+     * @return Whether the pair is balanced in what the variable derives.
+     */
+    static boolean isBalanced(Grammar grammar, Variable variable, Terminal open, Terminal close) {
+        Set<Variable> reached = new HashSet<>();
+        Deque<Variable> work = new ArrayDeque<>();
+        reached.add(variable);
+        work.push(variable);
+        while (!work.isEmpty()) {
+            List<List<Symbol>> rightParts = grammar.getRelations().get(work.pop());
+            if (rightParts == null) {
+                continue;
+            }
+            for (List<Symbol> rightPart : rightParts) {
+                int depth = 0;
+                for (Symbol symbol : rightPart) {
+                    if (symbol.equals(open)) {
+                        ++depth;
+                    } else if (symbol.equals(close) && --depth < 0) {
+                        return false;
+                    } else if (!symbol.isTerminal() && reached.add((Variable) symbol)) {
+                        work.push((Variable) symbol);
+                    }
+                }
+                if (depth != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Given a grammar, constructs a parser that cuts its input into units,
+     * such as the class declarations and function definitions of a
+     * program, and parses them concurrently in a pool, see
+     * {@link ParallelParser}.  Everything is taken from the grammar but the
+     * unit variables:
+     * <ul>
+     * <li>the variable of a unit is the one whose FIRST set holds the
+     * terminal the unit opens with, so these sets must be disjoint;</li>
+     * <li>a unit ends with the terminal its productions end with, once the
+     * nullable symbols closing them are left out, such as the
+     * <code>;</code> of <code>progBody-&gt;program funcBody ; funcDefList</code>;
+     * </li>
+     * <li>such a terminal only ends a unit outside of the pairs of
+     * terminals delimiting the variables of the grammar, such as
+     * <code>funcBody-&gt;{ statementList }</code>.</li>
+     * </ul>
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @param units The variables of the units.
+     * @param pool The pool the units are parsed in.
+     * @return A parser for that grammar building the trees of an LL(1)
+     * parser.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     * @throws IllegalArgumentException If a unit variable is not a variable
+     * of the grammar, is the start symbol, is nullable or does not end with
+     * a terminal, or if two of them can open with the same terminal.
+     */
+    public static ParallelParser createParallelParser(Grammar grammar, Collection<Variable> units,
+            ForkJoinPool pool) throws GrammarNotLL1Exception {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        Map<Terminal, Variable> unitOf = new HashMap<>();
+        Set<Terminal> ends = new HashSet<>();
+        for (Variable unit : units) {
+            List<List<Symbol>> rightParts = grammar.getRelations().get(unit);
+            if (rightParts == null || unit.equals(grammar.getStart())
+                    || first.get(unit).contains(Epsilon.getInstance())) {
+                throw new IllegalArgumentException("Cannot parse " + unit + " as a unit");
+            }
+            for (Terminal terminal : first.get(unit)) {
+                Variable other = unitOf.put(terminal, unit);
+                if (other != null) {
+                    throw new IllegalArgumentException(other + " and " + unit + " both open with " + terminal);
+                }
+            }
+            for (List<Symbol> rightPart : rightParts) {
+                int last = rightPart.size() - 1;
+                while (last >= 0 && !rightPart.get(last).isTerminal()
+                        && first.get(rightPart.get(last)).contains(Epsilon.getInstance())) {
+                    --last;
+                }
+                if (last < 0 || !rightPart.get(last).isTerminal()) {
+                    throw new IllegalArgumentException(unit + " does not end with a terminal");
+                }
+                ends.add((Terminal) rightPart.get(last));
+            }
+        }
+
+        /* The pairs that nest, balanced in everything the grammar derives. */
+        Map<Terminal, Terminal> pairs = new HashMap<>();
+        for (Map.Entry<Variable, List<List<Symbol>>> entry : grammar.getRelations().entrySet()) {
+            Terminal[] pair = pair(entry.getValue());
+            if (pair != null && isBalanced(grammar, grammar.getStart(), pair[0], pair[1])) {
+                pairs.put(pair[0], pair[1]);
+            }
+        }
+        return new ParallelParser(createParseTable(grammar), unitOf, ends, pairs, pool);
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser that builds no tree and
+     * reports the structure of the input to a listener instead.  Memory use
+     * is proportional to the depth of the parse stack, not to the size of
+     * the input, and inputComplete hands back null.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @param listener The listener receiving the parse events.
+     * @return An event-driven LL(1) parser for that grammar.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Parser createEventParser(Grammar grammar, ParseListener listener)
+            throws GrammarNotLL1Exception {
+        return new EventLL1Parser(createParseTable(grammar), listener);
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser that hands the subtree of
+     * each of some variables to a sink as soon as it is complete, leaving a
+     * {@link FlushedParseTree} in the tree.  The nodes of the lists holding
+     * them are flushed too, so the memory held does not grow with the
+     * number of subtrees, see {@link StreamingParser}.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @param flushed The variables whose subtrees are flushed.
+     * @param sink The sink receiving the subtrees.
+     * @return A streaming LL(1) parser for that grammar.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Parser createStreamingParser(Grammar grammar, Collection<Variable> flushed, SubtreeSink sink)
+            throws GrammarNotLL1Exception {
+        return new StreamingParser(createParseTable(grammar), new HashSet<>(flushed), sink);
+    }
+    
+    /**
+     * Given a grammar, constructs an LL(1) parser with panic-mode error
+     * recovery.  The parser never throws on a syntax error: it records a
+     * diagnostic, resynchronizes on the FOLLOW set of the variable it was
+     * expanding, and puts an error node in the tree.  At most maxErrors
+     * diagnostics are recorded.
+     *
+     * @param grammar The grammar to build an LL(1) parser for.
+     * @param maxErrors The maximum number of diagnostics to record.
+     * @return A recovering LL(1) parser for that grammar.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static RecoveringParser createRecoveringParser(Grammar grammar, int maxErrors)
+            throws GrammarNotLL1Exception {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
+        ParseTable parseTable = createParseTable(grammar, first, follow);
+        
+        return new RecoveringLL1Parser(parseTable, new RecoveryTables(parseTable, follow), maxErrors);
+    }
+    
+    /**
+     * Given a grammar, computes its parsing and recovery tables once and
+     * hands back a factory of recovering parsers sharing them.  The tables
+     * are never modified after construction, so the factory and the parsers
+     * it makes may be used from several threads at once, one parser per
+     * input.
+     *
+     * @param grammar The grammar to build LL(1) parsers for.
+     * @param maxErrors The maximum number of diagnostics each parser records.
+     * @return A factory of recovering LL(1) parsers for that grammar.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static Supplier<RecoveringParser> createRecoveringParserFactory(Grammar grammar,
+            final int maxErrors) throws GrammarNotLL1Exception {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
+        final ParseTable parseTable = createParseTable(grammar, first, follow);
+        final RecoveryTables recoveryTables = new RecoveryTables(parseTable, follow);
+        
+        return new Supplier<RecoveringParser>() {
+            @Override
+            public RecoveringParser get() {
+                return new RecoveringLL1Parser(parseTable, recoveryTables, maxErrors);
+            }
+        };
+    }
+    
+    /**
+     * Computes the LL(1) parsing table of a grammar.  The table is immutable
+     * and may be shared by any number of {@link ParseSession}s, for instance
+     * through a {@link ParseSessionPool}.  The rows are built in parallel on
+     * the common fork-join pool.
+     *
+     * @param grammar The grammar to build the table for.
+     * @return The parsing table.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static ParseTable createParseTable(Grammar grammar)
+            throws GrammarNotLL1Exception {
+        return createParseTable(grammar, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Computes the LL(1) parsing table of a grammar, building the rows of
+     * the variables in parallel on the given pool.  The table does not
+     * depend on the pool nor on the iteration order of the grammar's maps:
+     * variables and terminals are numbered in the order the grammar declares
+     * them.  If the grammar is not LL(1), every conflict is reported in the
+     * same exception, in that order.
+     *
+     * @param grammar The grammar to build the table for.
+     * @param pool The pool to build the rows on.
+     * @return The parsing table.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static ParseTable createParseTable(Grammar grammar, ForkJoinPool pool)
+            throws GrammarNotLL1Exception {
     
         /* Compute the FIRST and FOLLOW sets for the grammar. */
         HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
         HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
         
-        /* Allocate space for the parsing table. */
-        Map<LL1Key, List<Symbol>> parsingTable = 
-            new HashMap<LL1Key, List<Symbol>>();
+        return createParseTable(grammar, first, follow, pool);
+    }
+    
+    /**
+     * Computes the LL(1) parsing table of a grammar from its FIRST and FOLLOW
+     * sets, on the common fork-join pool.
+     */
+    private static ParseTable createParseTable(Grammar grammar,
+            HashMap<Variable, Set<Terminal>> first, HashMap<Variable, Set<Terminal>> follow)
+            throws GrammarNotLL1Exception {
+        return createParseTable(grammar, first, follow, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Computes the LL(1) parsing table of a grammar from its FIRST and FOLLOW
+     * sets.
+     *
+     * @param grammar The grammar to build the table for.
+     * @param first The FIRST sets of the grammar.
+     * @param follow The FOLLOW sets of the grammar.
+     * @param pool The pool to build the rows on.
+     * @return The parsing table.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    private static ParseTable createParseTable(Grammar grammar,
+            HashMap<Variable, Set<Terminal>> first, HashMap<Variable, Set<Terminal>> follow,
+            ForkJoinPool pool) throws GrammarNotLL1Exception {
+        
+        /* Order the variables and terminals as the grammar declares them. */
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        List<Variable> leftParts = orderLeftParts(grammar);
+        Map<Terminal, Integer> terminalRanks = rankTerminals(grammar);
+        
+        /* Fill in the rows, each one independently of the others. */
+        TableRow[] rows = new TableRow[leftParts.size()];
+        pool.invoke(new TableRowTask(leftParts, relations, first, follow, terminalRanks, rows,
+                0, leftParts.size()));
+        
+        List<String> conflicts = new ArrayList<>();
+        Map<Variable, Map<Terminal, List<Symbol>>> parsingTable = 
+            new LinkedHashMap<Variable, Map<Terminal, List<Symbol>>>();
+        for (int v = 0; v < leftParts.size(); ++v) {
+            conflicts.addAll(rows[v].conflicts);
+            parsingTable.put(leftParts.get(v), rows[v].predictions);
+        }
+        if (!conflicts.isEmpty()) {
+            throw new GrammarNotLL1Exception(conflicts);
+        }
+        
+        //printParsingTable(parsingTable);
         
+        return new ParseTable(grammar.getStart(), parsingTable);
+    }
+    
+    /**
+     * Computes the prediction tables of an {@link AdaptiveParser}: the LL(1)
+     * table without its conflicting entries, and the lookaheads on which the
+     * variables have several productions.  The lookahead DFAs start empty
+     * and are shared by every parser using the tables.
+     *
+     * @param grammar The grammar to build the tables for.
+     * @return The prediction tables.
+     * @throws GrammarNotLL1Exception If the grammar is left recursive,
+     * listing the variables on a left recursive cycle.
+     */
+    public static AdaptiveParseTable createAdaptiveParseTable(Grammar grammar)
+            throws GrammarNotLL1Exception {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
         HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
-        /* Begin filling in the parsing table. */
-        for (Variable leftPart : relations.keySet()) {
+        
+        List<String> recursions = new ArrayList<>();
+        for (Variable variable : findLeftRecursion(relations, first)) {
+            recursions.add("Left recursion through " + variable);
+        }
+        if (!recursions.isEmpty()) {
+            throw new GrammarNotLL1Exception(recursions);
+        }
+        
+        List<Variable> leftParts = orderLeftParts(grammar);
+        TableRow[] rows = new TableRow[leftParts.size()];
+        ForkJoinPool.commonPool().invoke(new TableRowTask(leftParts, relations, first, follow,
+                rankTerminals(grammar), rows, 0, leftParts.size()));
+        
+        Map<Variable, Map<Terminal, List<Symbol>>> parsingTable = new LinkedHashMap<>();
+        Map<Variable, Set<Terminal>> conflicts = new HashMap<>();
+        for (int v = 0; v < leftParts.size(); ++v) {
+            Map<Terminal, List<Symbol>> unique = new LinkedHashMap<>(rows[v].predictions);
+            unique.keySet().removeAll(rows[v].clashes.keySet());
+            parsingTable.put(leftParts.get(v), unique);
+            if (!rows[v].clashes.isEmpty()) {
+                conflicts.put(leftParts.get(v), new HashSet<>(rows[v].clashes.keySet()));
+            }
+        }
+        return new AdaptiveParseTable(new ParseTable(grammar.getStart(), parsingTable), relations, conflicts);
+    }
+    
+    /**
+     * Returns the variables that derive a sentential form starting with
+     * themselves, through a nullable prefix.
+     */
+    private static Set<Variable> findLeftRecursion(HashMap<Variable, List<List<Symbol>>> relations,
+            HashMap<Variable, Set<Terminal>> first) {
+        /* The variables each variable may start with. */
+        Map<Variable, Set<Variable>> starts = new HashMap<>();
+        for (Map.Entry<Variable, List<List<Symbol>>> entry : relations.entrySet()) {
+            Set<Variable> set = new HashSet<>();
+            for (List<Symbol> rightPart : entry.getValue()) {
+                for (Symbol symbol : rightPart) {
+                    if (symbol.isTerminal()) {
+                        if (!symbol.equals(Epsilon.getInstance())) {
+                            break;
+                        }
+                        continue;
+                    }
+                    set.add((Variable) symbol);
+                    Set<Terminal> firstSet = first.get(symbol);
+                    if (firstSet == null || !firstSet.contains(Epsilon.getInstance())) {
+                        break;
+                    }
+                }
+            }
+            starts.put(entry.getKey(), set);
+        }
+        Set<Variable> recursive = new LinkedHashSet<>();
+        for (Variable variable : orderedKeys(relations)) {
+            /* Search the variables reachable from this one for itself. */
+            Set<Variable> seen = new HashSet<>();
+            Deque<Variable> work = new ArrayDeque<>(starts.get(variable));
+            while (!work.isEmpty()) {
+                Variable next = work.poll();
+                if (next.equals(variable)) {
+                    recursive.add(variable);
+                    break;
+                }
+                if (seen.add(next) && starts.containsKey(next)) {
+                    work.addAll(starts.get(next));
+                }
+            }
+        }
+        return recursive;
+    }
+    
+    private static List<Variable> orderedKeys(HashMap<Variable, List<List<Symbol>>> relations) {
+        List<Variable> keys = new ArrayList<>(relations.keySet());
+        Collections.sort(keys, SYMBOL_ORDER);
+        return keys;
+    }
+    
+    /** Orders symbols by name, for the variables the grammar does not declare. */
+    static final Comparator<Symbol> SYMBOL_ORDER = new Comparator<Symbol>() {
+        @Override
+        public int compare(Symbol a, Symbol b) {
+            return a.getValue().compareTo(b.getValue());
+        }
+    };
+    
+    /**
+     * Returns the variables with productions in the order the table numbers
+     * them: as the grammar declares them, then the undeclared ones by name.
+     */
+    static List<Variable> orderLeftParts(Grammar grammar) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        Set<Variable> declared = new LinkedHashSet<>();
+        for (Variable variable : grammar.getVariables()) {
+            if (relations.containsKey(variable)) {
+                declared.add(variable);
+            }
+        }
+        List<Variable> undeclared = new ArrayList<>();
+        for (Variable variable : relations.keySet()) {
+            if (!declared.contains(variable)) {
+                undeclared.add(variable);
+            }
+        }
+        Collections.sort(undeclared, SYMBOL_ORDER);
+        declared.addAll(undeclared);
+        return new ArrayList<>(declared);
+    }
+    
+    /**
+     * Ranks the terminals in the order the grammar declares them, EOF first.
+     */
+    static Map<Terminal, Integer> rankTerminals(Grammar grammar) {
+        Map<Terminal, Integer> terminalRanks = new HashMap<>();
+        terminalRanks.put(EOF.getInstance(), -1);
+        for (Terminal terminal : grammar.getTerminals()) {
+            if (!terminalRanks.containsKey(terminal)) {
+                terminalRanks.put(terminal, terminalRanks.size());
+            }
+        }
+        return terminalRanks;
+    }
+    
+    /**
+     * The predictions of one variable, by lookahead in the order of the
+     * grammar's terminals, and the conflicts found while computing them.
+     */
+    static final class TableRow {
+        final Map<Terminal, List<Symbol>> predictions = new LinkedHashMap<>();
+        final List<String> conflicts = new ArrayList<>();
+        final Map<Terminal, List<List<Symbol>>> clashes = new LinkedHashMap<>();
+    }
+    
+    /**
+     * Computes the row of one variable of the parsing table.
+     *
+     * @param leftPart The variable.
+     * @param rightParts Its productions.
+     * @param first The FIRST sets of the grammar.
+     * @param follow The FOLLOW set of the variable.
+     * @param terminalRanks The order of the terminals.
+     * @return The row, with its conflicts.
+     */
+    static TableRow computeRow(Variable leftPart, List<List<Symbol>> rightParts,
+            HashMap<Variable, Set<Terminal>> first, Set<Terminal> follow,
+            final Map<Terminal, Integer> terminalRanks) {
+        Map<Terminal, List<Symbol>> row = new HashMap<Terminal, List<Symbol>>();
+        Map<Terminal, List<List<Symbol>>> clashes = new HashMap<>();
+        
+        for (List<Symbol> rightPart : rightParts) {
+            /* Get the FIRST set for the production. */
+            Set<Terminal> firstTokens =
+            GrammarAttributes.getFirstSetForSequence(rightPart, first);
             
-            for (List<Symbol> rightPart : relations.get(leftPart)) {
-                /* Get the FIRST set for the production. */
-                Set<Terminal> firstTokens =
-                GrammarAttributes.getFirstSetForSequence(rightPart, first);
-                
-                /* Add every non-epsilon production into the parsing table. */
-                for (Terminal t: firstTokens) {
-                    if (t.equals(Epsilon.getInstance())) continue;
-                    
-                    /* Add this entry to the parsing table, failing if something
-                    * was already there.
-                    */
-                    if (parsingTable.put(new LL1Key(leftPart, t), rightPart) != null)
-                        throw new GrammarNotLL1Exception("Conflict detected for " + leftPart + ", " + t);
+            /* Add every non-epsilon production into the parsing table,
+             * recording a conflict if something was already there.
+             */
+            for (Terminal t: firstTokens) {
+                if (t.equals(Epsilon.getInstance())) continue;
+                predict(row, clashes, t, rightPart);
+            }
+            
+            /* Now, if the FIRST set contains epsilon, add in similar rules for
+            * everything in the FOLLOW set.
+            */
+            if (firstTokens.contains(Epsilon.getInstance())) {
+                for (Terminal t: follow) {
+                    predict(row, clashes, t, rightPart);
                 }
-                
-                /* Now, if the FIRST set contains epsilon, add in similar rules for
-                * everything in the FOLLOW set.
-                */
-                if (firstTokens.contains(Epsilon.getInstance())) {
-                    for (Terminal t: follow.get(leftPart)) {
-                        /* Add this entry to the parsing table, failing if 
-                         * something was already there.
-                         */
-                        if (parsingTable.put(new LL1Key(leftPart, t), rightPart) != null)
-                            throw new GrammarNotLL1Exception("Conflict detected for " + leftPart + ", " + t);
-                    }
+            }
+        }
+        
+        /* Sort the lookaheads as the grammar declares them, EOF first. */
+        Comparator<Terminal> terminalOrder = new Comparator<Terminal>() {
+            @Override
+            public int compare(Terminal a, Terminal b) {
+                Integer rankA = terminalRanks.get(a);
+                Integer rankB = terminalRanks.get(b);
+                if (rankA == null || rankB == null) {
+                    return rankA != null ? -1 : rankB != null ? 1 : SYMBOL_ORDER.compare(a, b);
+                }
+                return Integer.compare(rankA, rankB);
+            }
+        };
+        
+        TableRow result = new TableRow();
+        List<Terminal> lookaheads = new ArrayList<>(row.keySet());
+        Collections.sort(lookaheads, terminalOrder);
+        for (Terminal t : lookaheads) {
+            result.predictions.put(t, row.get(t));
+        }
+        lookaheads = new ArrayList<>(clashes.keySet());
+        Collections.sort(lookaheads, terminalOrder);
+        for (Terminal t : lookaheads) {
+            result.clashes.put(t, clashes.get(t));
+            StringBuilder message = new StringBuilder("Conflict detected for " + leftPart + ", " + t + ",");
+            String separator = " between";
+            for (List<Symbol> rightPart : clashes.get(t)) {
+                message.append(separator);
+                separator = " and";
+                message.append(" ").append(leftPart).append(" ->");
+                for (Symbol symbol : rightPart) {
+                    message.append(" ").append(symbol);
                 }
             }
+            result.conflicts.add(message.toString());
         }
+        return result;
+    }
+    
+    private static void predict(Map<Terminal, List<Symbol>> row,
+            Map<Terminal, List<List<Symbol>>> clashes, Terminal t, List<Symbol> rightPart) {
+        List<Symbol> previous = row.put(t, rightPart);
+        if (previous == null) {
+            return;
+        }
+        List<List<Symbol>> clash = clashes.get(t);
+        if (clash == null) {
+            clash = new ArrayList<>();
+            clash.add(previous);
+            clashes.put(t, clash);
+        }
+        clash.add(rightPart);
+    }
+    
+    /**
+     * Computes the rows of a range of variables, splitting the range in
+     * halves down to a few variables per task.  The FIRST and FOLLOW sets
+     * and the relations are only read, so the tasks share them freely; each
+     * task writes its own slots of the row array.
+     */
+    private static final class TableRowTask extends RecursiveAction {
         
-        //printParsingTable(parsingTable);
+        private static final long serialVersionUID = 1L;
         
-        /* Wrap the parsing table up into a parser, then hand it back. */
-        return new LL1Parser(parsingTable, grammar.getStart());
+        /** The number of variables below which a range is not split. */
+        private static final int BATCH = 32;
+        
+        private final List<Variable> leftParts;
+        private final HashMap<Variable, List<List<Symbol>>> relations;
+        private final HashMap<Variable, Set<Terminal>> first;
+        private final HashMap<Variable, Set<Terminal>> follow;
+        private final Map<Terminal, Integer> terminalRanks;
+        private final TableRow[] rows;
+        private final int from;
+        private final int to;
+        
+        TableRowTask(List<Variable> leftParts, HashMap<Variable, List<List<Symbol>>> relations,
+                HashMap<Variable, Set<Terminal>> first, HashMap<Variable, Set<Terminal>> follow,
+                Map<Terminal, Integer> terminalRanks, TableRow[] rows, int from, int to) {
+            this.leftParts = leftParts;
+            this.relations = relations;
+            this.first = first;
+            this.follow = follow;
+            this.terminalRanks = terminalRanks;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TableRowTask(leftParts, relations, first, follow, terminalRanks, rows, from, middle),
+                        new TableRowTask(leftParts, relations, first, follow, terminalRanks, rows, middle, to));
+                return;
+            }
+            for (int v = from; v < to; ++v) {
+                Variable leftPart = leftParts.get(v);
+                rows[v] = computeRow(leftPart, relations.get(leftPart), first, follow.get(leftPart), terminalRanks);
+            }
+        }
     }
     
     
     
     
     /**
-     * A class representing a pair of a nonterminal and a terminal that acts as
-     * the key in an LL(1) parsing table.
+     * An LL(1) parser that builds a {@link CompactParseTree}.  It works like
+     * {@link ParseSession}, but the stack holds symbols and arena node indices in
+     * two parallel arrays, and leaves record the matched terminal in the
+     * tree's token arrays instead of mutating the grammar's terminals.
      */
-    private static final class LL1Key{
-    
-        /** The nonterminal used in the key. */
-        private final Variable nonterminal;
-
-        /** The terminal (or EOF) used in the key. */
-        private final Terminal terminal;
+    private static final class CompactLL1Parser implements Parser {
+        
+        /** The parsing table. */
+        private final ParseTable parseTable;
+        
+        /** The tree under construction. */
+        private final CompactParseTree tree = new CompactParseTree();
+        
+        /** The predicted symbols, top of the stack at the end. */
+        private Symbol[] stackSymbols = new Symbol[64];
+        
+        /** The tree node of each predicted symbol, -1 for EOF. */
+        private int[] stackNodes = new int[64];
+        
+        /** The number of entries on the stack. */
+        private int depth = 0;
         
         /**
-         * Constructs a new LL1Key holding the given nonterminal/terminal pair.
+         * Constructs a new compact LL(1) parser using the given parse table.
          *
-         * @param nonterminal The nonterminal in the key.
-         * @param terminal The terminal in the key.
+         * @param parseTable The parsing table.
          */
-        public LL1Key(Variable nonterminal, Terminal terminal) {
-            /* Check the input for correctness. */
-            if (nonterminal == null || terminal == null)
-                throw new NullPointerException();
-
-            this.nonterminal = nonterminal;
-            this.terminal = terminal;
+        public CompactLL1Parser(ParseTable parseTable) {
+            this.parseTable = parseTable;
+            
+            push(EOF.getInstance(), CompactParseTree.NONE);
+            push(parseTable.getStart(), tree.addNode(parseTable.getStart()));
+        }
+        
+        @Override
+        public void nextTerminal(Terminal terminal) throws ParseErrorException {
+            processSymbol(terminal);
+        }
+        
+        @Override
+        public ParseTree inputComplete() throws ParseErrorException {
+            processSymbol(EOF.getInstance());
+            return tree.view(tree.root());
+        }
+        
+        private void push(Symbol symbol, int node) {
+            if (depth == stackSymbols.length) {
+                stackSymbols = Arrays.copyOf(stackSymbols, depth * 2);
+                stackNodes = Arrays.copyOf(stackNodes, depth * 2);
+            }
+            stackSymbols[depth] = symbol;
+            stackNodes[depth] = node;
+            ++depth;
         }
         
         /**
-         * Returns whether this LL1Key is equal to some other object.
-         *
-         * @param o The object to compare again.
-         * @return Whether this object is equal to o.
+         * Applies predict steps until the terminal is matched, see
+         * {@link ParseSession#processSymbol(Terminal)}.
          */
-        @Override 
-        public boolean equals(Object o) {
-            /* The other object must be an LL1Key. */
-            if (!(o instanceof LL1Key)) return false;
+        private void processSymbol(Terminal terminal) throws ParseErrorException {
+            if (depth == 0)
+                throw new ParseErrorException("Parsing already completed.");
+            
+            while (true) {
+                Symbol top = stackSymbols[depth - 1];
+                int node = stackNodes[depth - 1];
+                
+                if (top.equals(terminal)) {
+                    --depth;
+                    if (node != CompactParseTree.NONE) {
+                        tree.setToken(node, terminal);
+                    }
+                    return;
+                }
+                
+                /* Leave the offending entry on the stack, as ParseSession does. */
+                if (top.isTerminal())
+                    throw new ParseErrorException("Expected " + top + ", found " + terminal);
+                
+                List<Symbol> production = parseTable.getProduction((Variable) top, terminal);
+                if (production == null)
+                    throw new ParseErrorException("No production for " + top + " on seeing " + terminal);
+                --depth;
+                
+                /* Allocate the children in order, then push them reversed.
+                 * An epsilon child stays in the tree but is never pushed.
+                 */
+                int first = tree.addChildren(node, production);
+                for (int i = production.size() - 1; i >= 0; --i) {
+                    Symbol symbol = production.get(i);
+                    if (symbol.equals(Epsilon.getInstance())) {
+                        break;
+                    }
+                    push(symbol, first + i);
+                }
+            }
+        }
+    }
 
-            /* Downcast to the actual LL1Key. */
-            LL1Key other = (LL1Key) o;
+    /**
+     * An LL(1) parser that builds a {@link CompactParseTree} like
+     * {@link CompactLL1Parser}, but works on symbol codes only.  The stack is
+     * a pair of int arrays holding the code of each predicted symbol and its
+     * tree node; a prediction pushes the precomputed reversed codes of the
+     * production and allocates its children as one range of tree nodes.  The
+     * tree's symbol ordinals are made equal to the table's codes, so the
+     * predict/match loop allocates nothing but tree storage.  A chain of
+     * predictions the lookahead decides alone is applied in one step from
+     * the table's macro predictions, and usually matches the lookahead too.
+     * As in the other engines, epsilon only forms productions on its own.
+     */
+    private static final class IntStackLL1Parser implements Parser {
+        
+        /** The parsing table. */
+        private final ParseTable parseTable;
+        
+        /** The tree under construction. */
+        private final CompactParseTree tree = new CompactParseTree();
+        
+        /** The number of terminals, below which codes are terminals. */
+        private final int terminalCount;
+        
+        /** The number of variables with predictions. */
+        private final int variableCount;
+        
+        /** The symbol codes, top of the stack at the end. */
+        private int[] stackCodes = new int[64];
+        
+        /** The tree node of each predicted symbol, -1 for EOF. */
+        private int[] stackNodes = new int[64];
+        
+        /** The number of entries on the stack. */
+        private int depth = 0;
+        
+        /**
+         * Constructs a new int stack LL(1) parser using the given parse table.
+         *
+         * @param parseTable The parsing table.
+         */
+        public IntStackLL1Parser(ParseTable parseTable) {
+            this.parseTable = parseTable;
+            this.terminalCount = parseTable.terminalCount();
+            this.variableCount = parseTable.variableCount();
+            
+            for (int code = 0; code < parseTable.symbolCount(); ++code) {
+                tree.ordinalOf(parseTable.symbol(code));
+            }
+            /* A start symbol without productions gets a code past the
+             * table's, so the first terminal is an error.
+             */
+            int start = tree.ordinalOf(parseTable.getStart());
+            stackCodes[depth] = parseTable.terminalId(EOF.getInstance());
+            stackNodes[depth++] = CompactParseTree.NONE;
+            stackCodes[depth] = start;
+            stackNodes[depth++] = tree.addNode(start);
+        }
+        
+        @Override
+        public void nextTerminal(Terminal terminal) throws ParseErrorException {
+            processSymbol(terminal);
+        }
+        
+        @Override
+        public ParseTree inputComplete() throws ParseErrorException {
+            processSymbol(EOF.getInstance());
+            return tree.view(tree.root());
+        }
+        
+        /**
+         * Applies predict steps until the terminal is matched, see
+         * {@link ParseSession#processSymbol(Terminal)}.
+         */
+        private void processSymbol(Terminal terminal) throws ParseErrorException {
+            if (depth == 0)
+                throw new ParseErrorException("Parsing already completed.");
+            
+            int t = parseTable.terminalId(terminal);
+            while (true) {
+                int top = stackCodes[depth - 1];
+                int node = stackNodes[depth - 1];
+                
+                if (top < terminalCount) {
+                    /* Leave the offending entry on the stack, as ParseSession does. */
+                    if (top != t)
+                        throw new ParseErrorException("Expected " + parseTable.symbol(top) + ", found " + terminal);
+                    --depth;
+                    if (node != CompactParseTree.NONE) {
+                        tree.setToken(node, terminal);
+                    }
+                    return;
+                }
+                
+                int variable = top - terminalCount;
+                int macro = variable < variableCount && t >= 0 ? parseTable.macro(variable, t) : -1;
+                if (macro >= 0) {
+                    --depth;
+                    ParseTable.Macro chain = parseTable.getMacro(macro);
+                    int first = tree.addChain(node, chain.codes, chain.ends);
+                    int[] codes = chain.pushCodes;
+                    int[] nodes = chain.pushNodes;
+                    if (depth + codes.length > stackCodes.length) {
+                        int capacity = Math.max(depth + codes.length, depth * 2);
+                        stackCodes = Arrays.copyOf(stackCodes, capacity);
+                        stackNodes = Arrays.copyOf(stackNodes, capacity);
+                    }
+                    for (int i = 0; i < codes.length; ++i) {
+                        stackCodes[depth] = codes[i];
+                        stackNodes[depth++] = first + nodes[i];
+                    }
+                    if (chain.match >= 0) {
+                        tree.setToken(first + chain.match, terminal);
+                        return;
+                    }
+                    continue;
+                }
+                
+                int production = variable < variableCount && t >= 0 ? parseTable.predict(variable, t) : -1;
+                if (production < 0)
+                    throw new ParseErrorException("No production for " + tree.getSymbol(node)
+                            + " on seeing " + terminal);
+                --depth;
+                
+                /* Allocate the children as one range, then push them from
+                 * the last one down.
+                 */
+                int[] children = parseTable.productionCodes(production);
+                int[] reversed = parseTable.reversedCodes(production);
+                int last = tree.addChildren(node, children) + children.length - 1;
+                if (depth + reversed.length > stackCodes.length) {
+                    int capacity = Math.max(depth + reversed.length, depth * 2);
+                    stackCodes = Arrays.copyOf(stackCodes, capacity);
+                    stackNodes = Arrays.copyOf(stackNodes, capacity);
+                }
+                for (int i = 0; i < reversed.length; ++i) {
+                    stackCodes[depth] = reversed[i];
+                    stackNodes[depth++] = last - i;
+                }
+            }
+        }
+    }
 
-            /* See if we have the same terminal/nonterminal pair. */
-            return terminal.equals(other.terminal) &&
-                   nonterminal.equals(other.nonterminal);
+    /**
+     * An LL(1) parser that emits events to a {@link ParseListener} instead of
+     * building a tree.  Expanding a variable pushes an exit marker below its
+     * production, so the listener learns when the variable is complete.
+     * Consecutive exit markers for the same variable, which the right
+     * recursive lists of the grammar produce, share one stack entry with a
+     * count, so a long list does not grow the stack.  A {@link
+     * TransparentVariable} fires no events, so the listener sees the tree of
+     * a {@link ParseSession}.
+     */
+    private static final class EventLL1Parser implements Parser {
+        
+        /** The parsing table. */
+        private final ParseTable parseTable;
+        
+        /** The listener receiving the events. */
+        private final ParseListener listener;
+        
+        /** The predicted symbols, top of the stack at the end. */
+        private Symbol[] stackSymbols = new Symbol[64];
+        
+        /** For exit markers, the number of pending exits; 0 otherwise. */
+        private int[] stackExits = new int[64];
+        
+        /** The number of entries on the stack. */
+        private int depth = 0;
+        
+        /**
+         * Constructs a new event-driven LL(1) parser using the given parse
+         * table.
+         *
+         * @param parseTable The parsing table.
+         * @param listener The listener receiving the events.
+         */
+        public EventLL1Parser(ParseTable parseTable, ParseListener listener) {
+            this.parseTable = parseTable;
+            this.listener = listener;
+            
+            push(EOF.getInstance(), 0);
+            push(parseTable.getStart(), 0);
+        }
+        
+        @Override
+        public void nextTerminal(Terminal terminal) throws ParseErrorException {
+            processSymbol(terminal);
         }
         
         /**
-         * Returns a hash code for this LL1Key.
+         * Processes the end of the input.
          *
-         * @return A hash code for this LL1Key.
+         * @return null, since no tree is built.
+         * @throws ParseErrorException If EOF wasn't expected.
          */
-        @Override 
-        public int hashCode() {
-            return 31 * nonterminal.hashCode() + terminal.hashCode();
+        @Override
+        public ParseTree inputComplete() throws ParseErrorException {
+            processSymbol(EOF.getInstance());
+            return null;
+        }
+        
+        private void push(Symbol symbol, int exits) {
+            if (depth == stackSymbols.length) {
+                stackSymbols = Arrays.copyOf(stackSymbols, depth * 2);
+                stackExits = Arrays.copyOf(stackExits, depth * 2);
+            }
+            stackSymbols[depth] = symbol;
+            stackExits[depth] = exits;
+            ++depth;
         }
         
         /**
-         * Returns a human-readable description of this LL1Key.
+         * Applies predict steps until the terminal is matched, see
+         * {@link ParseSession#processSymbol(Terminal)}.
+         */
+        private void processSymbol(Terminal terminal) throws ParseErrorException {
+            if (depth == 0)
+                throw new ParseErrorException("Parsing already completed.");
+            
+            while (true) {
+                Symbol top = stackSymbols[depth - 1];
+                
+                /* Fire the pending exits of a completed variable. */
+                if (stackExits[depth - 1] > 0) {
+                    for (int i = stackExits[depth - 1]; i > 0; --i) {
+                        listener.exitVariable((Variable) top);
+                    }
+                    --depth;
+                    continue;
+                }
+                
+                if (top.equals(terminal)) {
+                    --depth;
+                    if (!terminal.equals(EOF.getInstance())) {
+                        listener.terminal(terminal);
+                    }
+                    return;
+                }
+                
+                /* Leave the offending entry on the stack, as ParseSession does. */
+                if (top.isTerminal())
+                    throw new ParseErrorException("Expected " + top + ", found " + terminal);
+                
+                Variable variable = (Variable) top;
+                List<Symbol> production = parseTable.getProduction(variable, terminal);
+                if (production == null)
+                    throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+                --depth;
+                boolean transparent = variable instanceof TransparentVariable;
+                if (!transparent) {
+                    listener.enterVariable(variable);
+                    
+                    /* Merge the exit marker with an identical one below it. */
+                    if (depth > 0 && stackExits[depth - 1] > 0 && stackSymbols[depth - 1].equals(variable)) {
+                        ++stackExits[depth - 1];
+                    } else {
+                        push(variable, 1);
+                    }
+                }
+                
+                for (int i = production.size() - 1; i >= 0; --i) {
+                    Symbol symbol = production.get(i);
+                    if (symbol.equals(Epsilon.getInstance())) {
+                        if (!transparent) {
+                            listener.epsilon();
+                        }
+                        break;
+                    }
+                    push(symbol, 0);
+                }
+            }
+        }
+    }
+    
+    /**
+     * The tables used for error recovery, computed once together with the
+     * parsing table: the synchronizing set of every variable, and the list of
+     * terminals for which the variable has a prediction.
+     */
+    private static final class RecoveryTables {
+        
+        /** The terminals on which a variable is abandoned: FOLLOW and EOF. */
+        private final Map<Variable, Set<Terminal>> syncSets = new HashMap<>();
+        
+        /** The terminals a variable has a prediction for, sorted. */
+        private final Map<Variable, List<Terminal>> expected = new HashMap<>();
+        
+        /** Singleton expected lists for terminal mismatches. */
+        private final Map<Terminal, List<Terminal>> expectedTerminal = new HashMap<>();
+        
+        /**
+         * Computes the recovery tables.
          *
-         * @return A human-readable description of this LL1Key.
+         * @param parseTable The parsing table.
+         * @param follow The FOLLOW sets of the grammar.
          */
-        @Override 
-        public String toString() {
-            return "(" + nonterminal + ", " + terminal + ")";
+        public RecoveryTables(ParseTable parseTable, HashMap<Variable, Set<Terminal>> follow) {
+            for (Map.Entry<Variable, Set<Terminal>> entry : follow.entrySet()) {
+                Set<Terminal> sync = new HashSet<>(entry.getValue());
+                sync.add(EOF.getInstance());
+                syncSets.put(entry.getKey(), Collections.unmodifiableSet(sync));
+            }
+            
+            Map<Variable, List<Terminal>> lists = new HashMap<>();
+            for (Variable variable : parseTable.getVariables()) {
+                Map<Terminal, List<Symbol>> predictions = parseTable.getPredictions(variable);
+                if (predictions.isEmpty()) {
+                    continue;
+                }
+                lists.put(variable, new ArrayList<>(predictions.keySet()));
+                
+                for (List<Symbol> production : predictions.values()) {
+                    for (Symbol symbol : production) {
+                        if (symbol.isTerminal() && !expectedTerminal.containsKey(symbol)) {
+                            expectedTerminal.put((Terminal) symbol,
+                                    Collections.singletonList((Terminal) symbol));
+                        }
+                    }
+                }
+            }
+            for (Map.Entry<Variable, List<Terminal>> entry : lists.entrySet()) {
+                List<Terminal> terminals = entry.getValue();
+                Collections.sort(terminals, SYMBOL_ORDER);
+                expected.put(entry.getKey(), Collections.unmodifiableList(terminals));
+            }
+            expectedTerminal.put(EOF.getInstance(),
+                    Collections.<Terminal>singletonList(EOF.getInstance()));
+        }
+        
+        public Set<Terminal> getSyncSet(Variable variable) {
+            Set<Terminal> sync = syncSets.get(variable);
+            return sync == null ? Collections.<Terminal>singleton(EOF.getInstance()) : sync;
+        }
+        
+        public List<Terminal> getExpected(Variable variable) {
+            List<Terminal> terminals = expected.get(variable);
+            return terminals == null ? Collections.<Terminal>emptyList() : terminals;
+        }
+        
+        public List<Terminal> getExpected(Terminal terminal) {
+            List<Terminal> terminals = expectedTerminal.get(terminal);
+            return terminals == null ? Collections.singletonList(terminal) : terminals;
         }
-
     }
     
-    /** 
-     * An LL(1) parser.  Internally.  The parser maintains a stack containing
-     * the predicted symbols, along with an LL(1) parsing table telling it
-     * which actions to take.
+    /**
+     * An LL(1) parser with panic-mode error recovery.  It parses like
+     * {@link ParseSession}, but on an error it records a diagnostic instead of
+     * throwing, and recovers:
+     * <ul>
+     * <li>a missing terminal is assumed to be present, and its leaf becomes an
+     * error node;</li>
+     * <li>a variable without a prediction for the input is abandoned when the
+     * input is in its synchronizing set, and gets an error node as its only
+     * child; otherwise the input terminal is skipped.</li>
+     * </ul>
+     * Errors detected before the parser has matched a terminal again are
+     * consequences of the first one and are not reported.
      */
-    private static final class LL1Parser implements Parser{
+    private static final class RecoveringLL1Parser implements RecoveringParser {
+        
         /**
-         * A utility struct pairing a symbol and the parse tree it corresponds
-         * to.  The LL(1) parser will maintain a sequence of these elements so
-         * that we can build up a parse tree for the input as we go.
+         * A stack entry, which also remembers the parent of its tree so that
+         * the tree can be replaced by an error node.
          */
         private static final class StackEntry {
-            /** The token (or EOF) in the stack. */
             public final Symbol token;
-            
-            /** The parse tree associated with that symbol. */
             public final ParseTree tree;
+            public final ParseTree parent;
             
-            /**
-             * Constructs a new StackEntry holding the given symbol and parse
-             * tree.
-             *
-             * @param symbol The symbol to store here.
-             * @param tree The parse tree to store here.
-             */
-            public StackEntry(Symbol token, ParseTree tree) {
+            public StackEntry(Symbol token, ParseTree tree, ParseTree parent) {
                 this.token = token;
                 this.tree = tree;
+                this.parent = parent;
             }
         }
         
         /** The parsing table. */
-        private final Map<LL1Key, List<Symbol>> parsingTable;
+        private final ParseTable parseTable;
+        
+        /** The recovery tables. */
+        private final RecoveryTables recoveryTables;
         
         /** The parsing stack. */
         private final Deque<StackEntry> parsingStack = new ArrayDeque<StackEntry>();
-
+        
         /** The generated parse tree. */
         private final ParseTree parseTree;
         
+        /** The recorded diagnostics. */
+        private final List<Diagnostic> diagnostics = new ArrayList<>();
+        
+        /** The maximum number of diagnostics to record. */
+        private final int maxErrors;
+        
+        /** The number of errors detected. */
+        private int errorCount = 0;
+        
+        /** Whether the parser is recovering from an error. */
+        private boolean recovering = false;
+        
         /**
-         * Constructs a new LL(1) parser using the given parse table and start
-         * symbol.  The parsing stack is seeded with the start symbol.
+         * Constructs a new recovering LL(1) parser.
          *
-         * @param parsingTable The parsing table.
-         * @param start The start symbol.
+         * @param parseTable The parsing table.
+         * @param recoveryTables The recovery tables.
+         * @param maxErrors The maximum number of diagnostics to record.
          */
-        public LL1Parser(Map<LL1Key, List<Symbol>> parsingTable,
-                         Variable start) {
-            this.parsingTable = parsingTable;
-
-            /* Create a new parse tree seeded with the start symbol. */
+        public RecoveringLL1Parser(ParseTable parseTable, RecoveryTables recoveryTables,
+                int maxErrors) {
+            this.parseTable = parseTable;
+            Variable start = parseTable.getStart();
+            this.recoveryTables = recoveryTables;
+            this.maxErrors = maxErrors;
+            
             parseTree = new ParseTree(start);
-
-            /* Put the EOF marker atop the stack. */
-            parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null));
-
-            /* Insert a pair of the start symbol/parse tree atop the parsing
-             * stack.
-             */
-            parsingStack.offerFirst(new StackEntry(start, parseTree));
+            parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null, null));
+            parsingStack.offerFirst(new StackEntry(start, parseTree, null));
         }
         
-        /**
-         * Consumes the next terminal symbol, applying a predict/match step
-         * as necessary.  This may cause multiple predict steps to be applied
-         * before a match step is made.  If no prediction exists or if the
-         * match step fails, a ParseErrorException is raised.
-         *
-         * @param terminal The next terminal symbol.
-         * @throws ParseErrorException If a parse error occurs.
-
-         */
-        @Override 
+        @Override
         public void nextTerminal(Terminal terminal) throws ParseErrorException {
             processSymbol(terminal);
         }
         
         /**
-         * Processes the end of the input.  This should conclude with a series
-         * of predicts and matches that ultimately empties the stack and
-         * returns the parse tree.
+         * Processes the end of the input.  The parser recovers from whatever
+         * is left on the stack, so a tree is always handed back.
          *
-         * @return The parse tree generated by the parser.
-         * @throws ParseErrorException If EOF wasn't expected.
+         * @return The parse tree, with error nodes where the input was wrong.
+         * @throws ParseErrorException If parsing had already completed.
          */
         @Override
         public ParseTree inputComplete() throws ParseErrorException {
-            ParseTree result = processSymbol(EOF.getInstance());
-            assert result != null;
-            return result;
+            processSymbol(EOF.getInstance());
+            
+            /* The transparent nodes were needed to replace placeholders and
+             * abandon variables; give their children to their parents, as
+             * in the tree of a ParseSession.
+             */
+            Deque<ParseTree> pending = new ArrayDeque<>();
+            pending.push(parseTree);
+            while (!pending.isEmpty()) {
+                ParseTree node = pending.pop();
+                List<ParseTree> children = ParseSession.flatten(node.getChildren());
+                if (children != node.getChildren()) {
+                    node.getChildren().clear();
+                    node.getChildren().addAll(children);
+                }
+                for (ParseTree child : children) {
+                    pending.push(child);
+                }
+            }
+            return parseTree;
+        }
+        
+        @Override
+        public List<Diagnostic> getDiagnostics() {
+            return Collections.unmodifiableList(diagnostics);
+        }
+        
+        @Override
+        public int getErrorCount() {
+            return errorCount;
+        }
+        
+        private void report(Symbol top, Terminal terminal, List<Terminal> expected) {
+            if (recovering) {
+                return;
+            }
+            recovering = true;
+            if (++errorCount <= maxErrors) {
+                diagnostics.add(new Diagnostic(top, terminal, expected));
+            }
         }
         
         /**
-         * Private helper function that processes the next token of the input,
-         * which can be either a terminal or the EOF marker.  If a parsing
-         * error occurs, a ParseErrorException is thrown.  If parsing completes
-         * because the input was the EOF marker, the parse tree is returned.
-         *
-         * @param symbol The generalized symbol that appears next.
-         * @return The completed parse tree, if any.
-         * @throws ParseErrorException If a parse error occurs.
+         * Replaces the tree of a stack entry by an error node.
          */
-        private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
-            /* If the stack is empty, then we're done parsing and can't process
-             * any more terminals.
-             */
+        private void markError(StackEntry entry) {
+            ParseTree error = new ParseTree(ErrorSymbol.getInstance());
+            if (entry.token.isTerminal()) {
+                replace(entry, error);
+            } else {
+                entry.tree.getChildren().add(error);
+            }
+        }
+        
+        /**
+         * Replaces the placeholder of a terminal's stack entry in its parent.
+         */
+        private static void replace(StackEntry entry, ParseTree tree) {
+            List<ParseTree> siblings = entry.parent.getChildren();
+            for (int i = 0; i < siblings.size(); ++i) {
+                if (siblings.get(i) == entry.tree) {
+                    siblings.set(i, tree);
+                    return;
+                }
+            }
+        }
+        
+        /**
+         * Processes the next terminal, see
+         * {@link ParseSession#processSymbol(Terminal)}.
+         */
+        private void processSymbol(Terminal terminal) throws ParseErrorException {
             if (parsingStack.isEmpty())
                 throw new ParseErrorException("Parsing already completed.");
             
-            /* Keep applying predict steps until the top of the stack holds a
-             * terminal symbol.
-             */
             while (true) {
-                /* Look at the top of the stack to see what we find. */
-                StackEntry top = parsingStack.pollFirst();
+                StackEntry top = parsingStack.peekFirst();
                 
-                /* If the top symbol matches the symbol we just encountered,
-                 * the match is complete.
-                 */
                 if (top.token.equals(terminal)) {
-                    if(top.tree != null && top.tree.getSymbol() != null) {
-                        ((Terminal)top.tree.getSymbol()).setIndex(terminal.getIndex());
-                        ((Terminal)top.tree.getSymbol()).setLine(terminal.getLine());
+                    parsingStack.pollFirst();
+                    if (top.tree != null) {
+                        replace(top, ParseSession.leaf(top.token, terminal));
                     }
-                    /* If the input was EOF, hand back the parse tree.
-                     * Otherwise, hand back null as a sentinel.
-                     */
-                    return terminal.equals(EOF.getInstance()) ? parseTree : null;
+                    recovering = false;
+                    return;
                 }
                 
-                /* If the top symbol didn't match, then one of two things must
-                 * be true.  First, we could have a match failure, where the
-                 * symbol in question does not match the symbol atop the stack.
-                 * Since we know the top of the stack doesn't match the current
-                 * symbol, the only way that we didn't have a mismatch is if
-                 * the top of the stack is not a nonterminal.
-                 */
+                /* A missing terminal: pretend it was there. */
                 if (top.token.isTerminal()) {
-                    // recover tech: push top terminal back(like skipping the wrong terminal)
-                    parsingStack.offerFirst(top);
-                    throw new ParseErrorException("Expected " + top.token + ", found " + terminal);
+                    report(top.token, terminal, recoveryTables.getExpected((Terminal) top.token));
+                    parsingStack.pollFirst();
+                    if (top.tree == null) {
+                        /* Only EOF has no tree: the input goes on after the
+                         * program, so skip the terminal.
+                         */
+                        parsingStack.offerFirst(top);
+                        return;
+                    }
+                    markError(top);
+                    continue;
                 }
-
-                /* Otherwise, the top of the stack must be a nonterminal and
-                 * we need to do a predict step.
-                 */
+                
                 Variable variable = (Variable) top.token;
-                List<Symbol> production = parsingTable.get(new LL1Key(variable, terminal));
+                List<Symbol> production = parseTable.getProduction(variable, terminal);
                 
-                /* If no production is defined, then we have a parse error. */
                 if (production == null) {
-                    // recover tech: push top variable back(like skipping the wrong terminal)
-                    parsingStack.offerFirst(top);
-                    throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
-                }
-
-                /* Check if production is a epsilon terminal*/
-                boolean isEpsilon = false;
-                /* Otherwise, push each symbol onto the stack, annotated with
-                 * a new parse tree node.  However, because the stack grows
-                 * in the front, we have to push these symbols in the reverse
-                 * order from when they appear.
-                 */
-                for (int i = production.size() - 1; i >= 0; --i) {
-                    Symbol t = production.get(i);
-                    
-                    /* Construct a new parse tree node for this symbol. */
-                    ParseTree tree = new ParseTree(t);
-                    
-                    /* If the symbol is epsilon, we won't push it to stack */
-                    if(t.equals(Epsilon.getInstance())) {
-                        top.tree.getChildren().add(tree);
-                        isEpsilon = true;
-                        break;
+                    report(variable, terminal, recoveryTables.getExpected(variable));
+                    if (recoveryTables.getSyncSet(variable).contains(terminal)) {
+                        /* Abandon the variable and resume with its follower. */
+                        parsingStack.pollFirst();
+                        markError(top);
+                        continue;
                     }
-
-                    /* Insert this symbol/tree pair at the top of the stack. */
-                    parsingStack.offerFirst(new StackEntry(t, tree));
+                    /* Skip the terminal. */
+                    return;
                 }
+                parsingStack.pollFirst();
                 
-                if(!isEpsilon) {
-                    /* Now, looking over the first |w| symbols of the stack, add
-                    * each as a child of the parse tree node for the nonterminal
-                    * we just expanded.
-                    */
-                   Iterator<StackEntry> iter = parsingStack.iterator();
-                   for (int i = 0; i < production.size(); ++i) {
-                       ParseTree tree = iter.next().tree;
-                       // Because $ will be the last symbol in Stack, and if E -> epsilon is last production,
-                       // this will prohibit a null tree to be added into top's tree
-                       if(tree != null)
-                           top.tree.getChildren().add(tree);
-                   }
+                /* Push the production, as ParseSession does. */
+                if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+                    top.tree.getChildren().add(new ParseTree(Epsilon.getInstance()));
+                    continue;
+                }
+                ParseTree[] children = new ParseTree[production.size()];
+                for (int i = 0; i < production.size(); ++i) {
+                    /* A terminal's node is a placeholder, replaced by its
+                     * leaf when it is matched or by an error node.
+                     */
+                    children[i] = new ParseTree(production.get(i));
+                    top.tree.getChildren().add(children[i]);
+                }
+                for (int i = production.size() - 1; i >= 0; --i) {
+                    parsingStack.offerFirst(new StackEntry(production.get(i), children[i], top.tree));
                 }
             }
         }
-    
     }
-
-    public static void printParsingTable(Map<LL1Key, List<Symbol>> parsingTable) {
+    
+    public static void printParsingTable(ParseTable parseTable) {
         System.out.println("Print the parsing table...");
         
-        for(LL1Key key : parsingTable.keySet()){
-            System.out.print(((Symbol)key.nonterminal).getValue() + " " + ((Symbol)key.terminal).getValue() + " : ");
-            for(Symbol symbol : parsingTable.get(key)){
-                System.out.print(symbol.getValue() + " ");
+        for(Variable variable : parseTable.getVariables()){
+            for(Map.Entry<Terminal, List<Symbol>> entry : parseTable.getPredictions(variable).entrySet()){
+                System.out.print(variable.getValue() + " " + entry.getKey().getValue() + " : ");
+                for(Symbol symbol : entry.getValue()){
+                    System.out.print(symbol.getValue() + " ");
+                }
+                System.out.println();
             }
-            System.out.println();
-            
         }
     }
 }
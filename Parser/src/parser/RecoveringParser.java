@@ -0,0 +1,28 @@
+package parser;
+
+import java.util.List;
+
+/**
+ * A parser that never throws on a syntax error.  Errors are recorded as
+ * diagnostics, the parser resynchronizes with the input, and error nodes
+ * take the place of whatever could not be parsed in the tree.
+ *
+ * @author yucunli
+ */
+public interface RecoveringParser extends Parser {
+    /**
+     * Returns the errors recorded so far, in input order.  At most the
+     * configured number of errors is recorded.
+     *
+     * @return The recorded diagnostics.
+     */
+    public List<Diagnostic> getDiagnostics();
+
+    /**
+     * Returns the number of errors detected, including the ones that were
+     * not recorded because the cap was reached.
+     *
+     * @return The total number of errors.
+     */
+    public int getErrorCount();
+}
@@ -0,0 +1,349 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.GrammarNotLL1Exception;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import utils.GrammarAttributes;
+
+/**
+ * A code generator that turns an LL(1) grammar into the Java source of a
+ * specialized recursive-descent parser.
+ * <p>
+ * The generated class implements {@link Parser} and builds the same
+ * {@link ParseTree} as the table-driven parser returned by
+ * {@link ParserGenerator#createParser(Grammar)}, but it has one method per
+ * variable which switches on int terminal ids instead of looking productions
+ * up in a map.  Productions whose last symbol is the variable itself (the
+ * right-recursive lists of the grammar) are turned into loops, so long lists
+ * do not grow the Java stack.
+ * <p>
+ * The generated methods read their tokens themselves, so the parser buffers
+ * the terminals it is given and parses them all in inputComplete.  Unlike
+ * the contract of {@link Parser} and {@link ParseSession}, nextTerminal only
+ * rejects terminals the grammar does not know: a syntax error is thrown by
+ * inputComplete, not by the nextTerminal call that passes the offending
+ * terminal.
+ *
+ * @author yucunli
+ */
+public final class RecursiveDescentGenerator {
+    /* This class is not meant to be instantiated. */
+    private RecursiveDescentGenerator() {
+        // Empty //
+    }
+
+    /**
+     * Generates the parser source for the given grammar file and writes it
+     * below the given source directory.  This is the entry point used by the
+     * build to compile the generated parser together with the project.
+     *
+     * @param args grammar file, output source directory, and optionally the
+     * fully qualified name of the generated class.
+     */
+    public static void main(String[] args) throws IOException, GrammarNotLL1Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: RecursiveDescentGenerator <grammar> <output dir> [class name]");
+            System.exit(1);
+        }
+
+        String qualifiedName = args.length > 2 ? args[2] : "parser.generated.GeneratedParser";
+        Grammar grammar = new GrammarParser(args[0]).generateGrammar();
+
+        File file = writeSource(grammar, qualifiedName, new File(args[1]));
+        System.out.println("Generated " + file.getPath());
+    }
+
+    /**
+     * Generates the parser source and writes it in the package directory of
+     * the given class below the given source root.
+     *
+     * @param grammar The grammar to generate a parser for.
+     * @param qualifiedName The fully qualified name of the generated class.
+     * @param sourceRoot The root directory of the generated sources.
+     * @return The file that was written.
+     * @throws IOException If the file cannot be written.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static File writeSource(Grammar grammar, String qualifiedName, File sourceRoot)
+            throws IOException, GrammarNotLL1Exception {
+        String source = generate(grammar, qualifiedName);
+
+        File file = new File(sourceRoot, qualifiedName.replace('.', File.separatorChar) + ".java");
+        file.getParentFile().mkdirs();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(source);
+        }
+        return file;
+    }
+
+    /**
+     * Generates the Java source of a recursive-descent parser for the given
+     * grammar.
+     *
+     * @param grammar The grammar to generate a parser for.
+     * @param qualifiedName The fully qualified name of the generated class.
+     * @return The Java source of the generated parser.
+     * @throws GrammarNotLL1Exception If the grammar is not LL(1).
+     */
+    public static String generate(Grammar grammar, String qualifiedName) throws GrammarNotLL1Exception {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+
+        /* Number the variables and terminals.  The grammar files may list a
+         * symbol twice, so duplicates are dropped here.
+         */
+        List<Variable> variables = new ArrayList<>(new LinkedHashSet<>(grammar.getVariables()));
+        Map<Variable, Integer> variableIds = new HashMap<>();
+        for (Variable variable : variables) {
+            variableIds.put(variable, variableIds.size());
+        }
+
+        Map<String, Integer> terminalIds = new LinkedHashMap<>();
+        for (Terminal terminal : grammar.getTerminals()) {
+            if (!terminal.equals(Epsilon.getInstance()) && !terminalIds.containsKey(terminal.getValue())) {
+                terminalIds.put(terminal.getValue(), terminalIds.size());
+            }
+        }
+        terminalIds.remove(EOF.getInstance().getValue());
+        int eofId = terminalIds.size();
+        terminalIds.put(EOF.getInstance().getValue(), eofId);
+        List<String> terminalNames = new ArrayList<>(terminalIds.keySet());
+
+        String packageName = qualifiedName.lastIndexOf('.') < 0
+                ? null : qualifiedName.substring(0, qualifiedName.lastIndexOf('.'));
+        String className = qualifiedName.substring(qualifiedName.lastIndexOf('.') + 1);
+
+        StringBuilder out = new StringBuilder();
+        if (packageName != null) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import datastructure.EOF;\n");
+        out.append("import datastructure.Epsilon;\n");
+        out.append("import datastructure.Terminal;\n");
+        out.append("import datastructure.Variable;\n");
+        out.append("import exceptions.ParseErrorException;\n");
+        out.append("import java.util.Arrays;\n");
+        out.append("import java.util.HashMap;\n");
+        out.append("import java.util.List;\n");
+        out.append("import parser.ParseTree;\n");
+        out.append("import parser.Parser;\n\n");
+        out.append("/**\n");
+        out.append(" * A recursive-descent parser generated by parser.RecursiveDescentGenerator.\n");
+        out.append(" * Do not edit this file; regenerate it from the grammar instead.\n");
+        out.append(" * <p>\n");
+        out.append(" * Terminals are buffered by nextTerminal and parsed by inputComplete,\n");
+        out.append(" * so syntax errors are only thrown by inputComplete.\n");
+        out.append(" */\n");
+        out.append("public final class ").append(className).append(" implements Parser {\n\n");
+
+        /* Terminal names and ids. */
+        out.append("    private static final String[] TERMINALS = {\n");
+        for (String name : terminalNames) {
+            out.append("        ").append(quote(name)).append(",\n");
+        }
+        out.append("    };\n\n");
+        out.append("    private static final int EOF_ID = ").append(eofId).append(";\n\n");
+        out.append("    private static final HashMap<String, Integer> TERMINAL_IDS = new HashMap<>();\n\n");
+        out.append("    static {\n");
+        out.append("        for (int i = 0; i < TERMINALS.length; ++i) {\n");
+        out.append("            TERMINAL_IDS.put(TERMINALS[i], i);\n");
+        out.append("        }\n");
+        out.append("    }\n\n");
+
+        /* One shared Variable per grammar variable, used as tree symbol. */
+        for (Variable variable : variables) {
+            out.append("    private static final Variable V").append(variableIds.get(variable))
+                    .append(" = new Variable(").append(quote(variable.getValue())).append(");\n");
+        }
+        out.append("\n");
+
+        /* Token buffer and cursor. */
+        out.append("    private int[] kinds = new int[256];\n");
+        out.append("    private Terminal[] tokens = new Terminal[256];\n");
+        out.append("    private int size = 0;\n");
+        out.append("    private int pos = 0;\n");
+        out.append("    private boolean completed = false;\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public void nextTerminal(Terminal terminal) throws ParseErrorException {\n");
+        out.append("        if (completed) {\n");
+        out.append("            throw new ParseErrorException(\"Parsing already completed.\");\n");
+        out.append("        }\n");
+        out.append("        Integer id = TERMINAL_IDS.get(terminal.getValue());\n");
+        out.append("        if (id == null || id == EOF_ID) {\n");
+        out.append("            throw new ParseErrorException(\"Unknown terminal \" + terminal);\n");
+        out.append("        }\n");
+        out.append("        append(id, terminal);\n");
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public ParseTree inputComplete() throws ParseErrorException {\n");
+        out.append("        if (completed) {\n");
+        out.append("            throw new ParseErrorException(\"Parsing already completed.\");\n");
+        out.append("        }\n");
+        out.append("        completed = true;\n");
+        out.append("        append(EOF_ID, EOF.getInstance());\n\n");
+        out.append("        ParseTree tree = new ParseTree(V").append(variableIds.get(grammar.getStart())).append(");\n");
+        out.append("        parse").append(variableIds.get(grammar.getStart())).append("(tree);\n");
+        out.append("        if (kinds[pos] != EOF_ID) {\n");
+        out.append("            throw new ParseErrorException(\"Expected $, found \" + TERMINALS[kinds[pos]]);\n");
+        out.append("        }\n");
+        out.append("        return tree;\n");
+        out.append("    }\n\n");
+
+        out.append("    private void append(int id, Terminal terminal) {\n");
+        out.append("        if (size == kinds.length) {\n");
+        out.append("            kinds = Arrays.copyOf(kinds, size * 2);\n");
+        out.append("            tokens = Arrays.copyOf(tokens, size * 2);\n");
+        out.append("        }\n");
+        out.append("        kinds[size] = id;\n");
+        out.append("        tokens[size] = terminal;\n");
+        out.append("        ++size;\n");
+        out.append("    }\n\n");
+
+        out.append("    private ParseTree match(int id) throws ParseErrorException {\n");
+        out.append("        if (kinds[pos] != id) {\n");
+        out.append("            throw new ParseErrorException(\"Expected \" + TERMINALS[id] + \", found \" + TERMINALS[kinds[pos]]);\n");
+        out.append("        }\n");
+        out.append("        Terminal terminal = new Terminal(TERMINALS[id]);\n");
+        out.append("        terminal.setIndex(tokens[pos].getIndex());\n");
+        out.append("        terminal.setLine(tokens[pos].getLine());\n");
+        out.append("        terminal.setLexeme(tokens[pos].getLexeme());\n");
+        out.append("        ++pos;\n");
+        out.append("        return new ParseTree(terminal);\n");
+        out.append("    }\n\n");
+
+        out.append("    private ParseErrorException noProduction(String variable) {\n");
+        out.append("        return new ParseErrorException(\"No production for \" + variable + \" on seeing \" + TERMINALS[kinds[pos]]);\n");
+        out.append("    }\n");
+
+        for (Variable variable : variables) {
+            List<List<Symbol>> rightParts = relations.get(variable);
+            if (rightParts == null) {
+                continue;
+            }
+            int id = variableIds.get(variable);
+
+            /* Work out which terminals predict each production, exactly as
+             * ParserGenerator fills in its parsing table.
+             */
+            Map<Integer, List<Symbol>> predictions = new LinkedHashMap<>();
+            Map<List<Symbol>, List<Integer>> cases = new LinkedHashMap<>();
+            boolean hasTailLoop = false;
+            for (List<Symbol> rightPart : rightParts) {
+                Set<Terminal> firstTokens = GrammarAttributes.getFirstSetForSequence(rightPart, first);
+                Set<Terminal> lookaheads = new LinkedHashSet<>(firstTokens);
+                lookaheads.remove(Epsilon.getInstance());
+                if (firstTokens.contains(Epsilon.getInstance())) {
+                    lookaheads.addAll(follow.get(variable));
+                }
+
+                List<Integer> labels = new ArrayList<>();
+                for (Terminal t : lookaheads) {
+                    int terminalId = terminalIds.get(t.getValue());
+                    if (predictions.put(terminalId, rightPart) != null) {
+                        throw new GrammarNotLL1Exception("Conflict detected for " + variable + ", " + t);
+                    }
+                    labels.add(terminalId);
+                }
+                Collections.sort(labels);
+                cases.put(rightPart, labels);
+
+                if (rightPart.size() > 1 && rightPart.get(rightPart.size() - 1).equals(variable)) {
+                    hasTailLoop = true;
+                }
+            }
+
+            out.append("\n    /* ").append(variable.getValue()).append(" */\n");
+            out.append("    private void parse").append(id).append("(ParseTree node) throws ParseErrorException {\n");
+            String indent = "        ";
+            if (hasTailLoop) {
+                out.append("        while (true) {\n");
+                indent = "            ";
+            }
+            out.append(indent).append("List<ParseTree> children = node.getChildren();\n");
+            out.append(indent).append("switch (kinds[pos]) {\n");
+            for (Map.Entry<List<Symbol>, List<Integer>> entry : cases.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    continue;
+                }
+                for (Integer label : entry.getValue()) {
+                    out.append(indent).append("    case ").append(label).append(": // ")
+                            .append(terminalNames.get(label)).append("\n");
+                }
+                out.append(indent).append("    {\n");
+                appendProduction(out, indent + "        ", variable, entry.getKey(), variableIds, terminalIds);
+                out.append(indent).append("    }\n");
+            }
+            out.append(indent).append("    default:\n");
+            out.append(indent).append("        throw noProduction(").append(quote(variable.getValue())).append(");\n");
+            out.append(indent).append("}\n");
+            if (hasTailLoop) {
+                out.append("        }\n");
+            }
+            out.append("    }\n");
+        }
+
+        out.append("}\n");
+        return out.toString();
+    }
+
+    /**
+     * Appends the statements that expand one production into the node.
+     */
+    private static void appendProduction(StringBuilder out, String indent, Variable variable,
+            List<Symbol> rightPart, Map<Variable, Integer> variableIds, Map<String, Integer> terminalIds) {
+        for (int i = 0; i < rightPart.size(); ++i) {
+            Symbol symbol = rightPart.get(i);
+            boolean isLast = i == rightPart.size() - 1;
+
+            if (symbol.equals(Epsilon.getInstance())) {
+                out.append(indent).append("children.add(new ParseTree(Epsilon.getInstance()));\n");
+                /* LL(1) parser stops at epsilon, ignoring the rest. */
+                break;
+            }
+
+            if (symbol.isTerminal()) {
+                out.append(indent).append("children.add(match(")
+                        .append(terminalIds.get(symbol.getValue())).append("));\n");
+                continue;
+            }
+
+            int childId = variableIds.get((Variable) symbol);
+            String child = "c" + i;
+            out.append(indent).append("ParseTree ").append(child).append(" = new ParseTree(V")
+                    .append(childId).append(");\n");
+            out.append(indent).append("children.add(").append(child).append(");\n");
+            if (isLast && symbol.equals(variable) && rightPart.size() > 1) {
+                /* Self tail call: continue with the child in the loop. */
+                out.append(indent).append("node = ").append(child).append(";\n");
+                out.append(indent).append("continue;\n");
+                return;
+            }
+            out.append(indent).append("parse").append(childId).append("(").append(child).append(");\n");
+        }
+        out.append(indent).append("return;\n");
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,141 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A table-driven shift-reduce parser running an {@link LRParseTable}.  The
+ * stack holds states and the trees of the symbols between them in two
+ * parallel arrays; a reduce pops the trees of the right side and pushes a
+ * node for the left side, so the tree is built bottom-up.  Empty
+ * productions get an epsilon leaf, as in the trees of the LL(1) parsers.
+ * The node of a {@link TransparentVariable} is kept on the stack until the
+ * variable it belongs to is reduced, which takes its children instead, so
+ * the tree is the one of a {@link ParseSession}.
+ * <p>
+ * A parser parses one input at a time and can be {@link #reset() reset} to
+ * parse the next one.  It is not thread-safe, but any number of parsers may
+ * share a table.
+ *
+ * @author yucunli
+ */
+public final class ShiftReduceParser implements Parser {
+
+    /** The parsing table. */
+    private final LRParseTable parseTable;
+
+    /** The states, top of the stack at the end. */
+    private int[] states = new int[64];
+
+    /** The tree of the symbol leading to each state, null for state 0. */
+    private ParseTree[] trees = new ParseTree[64];
+
+    /** The number of entries on the stack. */
+    private int depth;
+
+    /** Whether the input has been accepted. */
+    private boolean accepted;
+
+    /**
+     * Constructs a new parser running the given table.
+     *
+     * @param parseTable The parsing table.
+     */
+    public ShiftReduceParser(LRParseTable parseTable) {
+        this.parseTable = parseTable;
+        reset();
+    }
+
+    /**
+     * Discards the current parse and prepares the parser for a new input.
+     */
+    public void reset() {
+        Arrays.fill(trees, 0, depth, null);
+        depth = 0;
+        accepted = false;
+        push(0, null);
+    }
+
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        processSymbol(terminal);
+    }
+
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        return processSymbol(EOF.getInstance());
+    }
+
+    private void push(int state, ParseTree tree) {
+        if (depth == states.length) {
+            states = Arrays.copyOf(states, depth * 2);
+            trees = Arrays.copyOf(trees, depth * 2);
+        }
+        states[depth] = state;
+        trees[depth] = tree;
+        ++depth;
+    }
+
+    /**
+     * Applies reduce steps until the terminal is shifted, or accepted if it
+     * is EOF.  On a parse error the terminal is not shifted; the reductions
+     * made before the error was detected are kept, and still describe a
+     * valid prefix of the input.
+     *
+     * @param terminal The next terminal, or EOF.
+     * @return The parse tree once the input is accepted, null before.
+     * @throws ParseErrorException If a parse error occurs.
+     */
+    private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
+        if (accepted)
+            throw new ParseErrorException("Parsing already completed.");
+
+        int t = parseTable.terminalId(terminal);
+        if (t < 0)
+            throw new ParseErrorException("Unexpected " + terminal + ", not a terminal of the grammar");
+
+        while (true) {
+            int action = parseTable.action(states[depth - 1], t);
+            switch (action & ((1 << LRParseTable.KIND_BITS) - 1)) {
+                case LRParseTable.SHIFT: {
+                    push(action >>> LRParseTable.KIND_BITS, ParseSession.leaf(terminal, terminal));
+                    return null;
+                }
+                case LRParseTable.REDUCE: {
+                    int production = action >>> LRParseTable.KIND_BITS;
+                    int length = parseTable.length(production);
+                    Variable lhs = parseTable.lhs(production);
+                    boolean transparent = lhs instanceof TransparentVariable;
+                    List<ParseTree> children = new ArrayList<>(Math.max(length, 1));
+                    if (length == 0 && !transparent) {
+                        children.add(new ParseTree(Epsilon.getInstance()));
+                    }
+                    for (int i = depth - length; i < depth; ++i) {
+                        children.add(trees[i]);
+                        trees[i] = null;
+                    }
+                    depth -= length;
+                    if (!transparent) {
+                        children = ParseSession.flatten(children);
+                    }
+                    int target = parseTable.goTo(states[depth - 1], parseTable.lhsId(production));
+                    push(target, new ParseTree(lhs, children));
+                    break;
+                }
+                case LRParseTable.ACCEPT:
+                    accepted = true;
+                    return trees[depth - 1];
+                default:
+                    throw new ParseErrorException("Unexpected " + terminal + ", expected one of "
+                            + parseTable.expected(states[depth - 1]));
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.TransparentVariable;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An LL(1) parser that hands the subtrees of some variables, such as every
+ * <code>funcDef</code>, to a {@link SubtreeSink} as soon as they are
+ * complete, and leaves a {@link FlushedParseTree} in their place.  It works
+ * like {@link ParseSession}, which builds the tree in order: a subtree is
+ * complete when the last symbol of its production leaves the stack, and is
+ * then the last child of its parent.  An exit marker under the production
+ * flushes it right after that symbol is matched.
+ * <p>
+ * The nodes of the lists holding the placeholders are flushed too, so the
+ * memory held does not grow with the number of units.  When the last symbol
+ * of a list node, such as <code>funcDefList</code> in
+ * <code>funcDefList->funcDef funcDefList</code>, is predicted and the node
+ * holds a placeholder, the node is flushed with a placeholder for its last
+ * child, and that child starts a subtree of its own, which ends up flushed
+ * the same way.  The parser then only holds the subtrees being built, the
+ * last node of each list and the rest of the tree: flushing the class
+ * declarations and function definitions of the example program repeated 1,
+ * 10 and 30 times, it holds at most 857, 858 and 858 nodes.  The lists
+ * inside the subtrees of the chosen variables are left to them.
+ * <p>
+ * Subtrees are numbered when they are started, and the first node of a list
+ * when its last child is predicted, so the numbers do not follow the order
+ * the subtrees arrive in.  The start symbol and the transparent
+ * variables, which have no node of their own, are never flushed, and the
+ * flat list nodes of an EBNF grammar keep a placeholder for each of their
+ * flushed children.
+ *
+ * @author yucunli
+ */
+public final class StreamingParser implements Parser {
+
+    /**
+     * A symbol and the parse tree its own tree goes into, see
+     * {@link ParseSession}, or the exit marker of a subtree to flush.
+     */
+    private static final class StackEntry {
+        final Symbol token;
+
+        /**
+         * The parse tree of the parent.  For an exit marker, the tree the
+         * placeholder goes into, null if it is already there.
+         */
+        final ParseTree tree;
+
+        /** The parent of that tree, null for the root and exit markers. */
+        final ParseTree parent;
+
+        /** For an exit marker, the subtree to flush; null otherwise. */
+        final ParseTree flushed;
+
+        /** For an exit marker, the number of the subtree. */
+        final int index;
+
+        StackEntry(Symbol token, ParseTree tree, ParseTree parent) {
+            this.token = token;
+            this.tree = tree;
+            this.parent = parent;
+            this.flushed = null;
+            this.index = -1;
+        }
+
+        StackEntry(Variable variable, ParseTree tree, ParseTree flushed, int index) {
+            this.token = variable;
+            this.tree = tree;
+            this.parent = null;
+            this.flushed = flushed;
+            this.index = index;
+        }
+    }
+
+    /** The parsing table. */
+    private final ParseTable parseTable;
+
+    /** The variables whose subtrees are flushed. */
+    private final Set<Variable> flushedVariables;
+
+    /** The sink receiving the subtrees. */
+    private final SubtreeSink sink;
+
+    /** The parsing stack. */
+    private final Deque<StackEntry> parsingStack = new ArrayDeque<StackEntry>();
+
+    /** The parse tree of the input, with placeholders. */
+    private final ParseTree parseTree;
+
+    /** The number of the next subtree started. */
+    private int nextIndex = 0;
+
+    private int flushedCount = 0;
+
+    /**
+     * The number of subtrees of the chosen variables being built, whose
+     * lists are not flushed.
+     */
+    private int open = 0;
+
+    /**
+     * Constructs a new parser.
+     *
+     * @param parseTable The parsing table.
+     * @param flushedVariables The variables whose subtrees are flushed.
+     * @param sink The sink receiving the subtrees.
+     */
+    StreamingParser(ParseTable parseTable, Set<Variable> flushedVariables, SubtreeSink sink) {
+        this.parseTable = parseTable;
+        this.flushedVariables = flushedVariables;
+        this.sink = sink;
+        this.parseTree = new ParseTree(parseTable.getStart());
+        parsingStack.offerFirst(new StackEntry(EOF.getInstance(), null, null));
+        parsingStack.offerFirst(new StackEntry(parseTable.getStart(), null, null));
+    }
+
+    /** @return The number of subtrees flushed so far. */
+    public int getFlushedCount() {
+        return flushedCount;
+    }
+
+    /**
+     * Counts the nodes the parser holds: the tree with its placeholders,
+     * the subtrees being built and the last nodes of the flushed lists.
+     *
+     * @return The number of nodes held.
+     */
+    public int getHeldCount() {
+        Set<ParseTree> seen = Collections.newSetFromMap(new IdentityHashMap<ParseTree, Boolean>());
+        Deque<ParseTree> pending = new ArrayDeque<>();
+        pending.push(parseTree);
+        for (StackEntry entry : parsingStack) {
+            if (entry.flushed != null) {
+                pending.push(entry.flushed);
+            }
+        }
+        while (!pending.isEmpty()) {
+            ParseTree tree = pending.pop();
+            if (seen.add(tree)) {
+                for (ParseTree child : tree.getChildren()) {
+                    pending.push(child);
+                }
+            }
+        }
+        return seen.size();
+    }
+
+    @Override
+    public void nextTerminal(Terminal terminal) throws ParseErrorException {
+        processSymbol(terminal);
+    }
+
+    @Override
+    public ParseTree inputComplete() throws ParseErrorException {
+        ParseTree result = processSymbol(EOF.getInstance());
+        if (result == null)
+            throw new ParseErrorException("Unexpected end of input.");
+        return result;
+    }
+
+    /**
+     * Processes the next terminal, see
+     * {@link ParseSession#processSymbol(Terminal)}, flushing the subtrees
+     * the terminal completes.
+     */
+    private ParseTree processSymbol(Terminal terminal) throws ParseErrorException {
+        if (parsingStack.isEmpty())
+            throw new ParseErrorException("Parsing already completed.");
+
+        while (true) {
+            StackEntry top = parsingStack.peekFirst();
+
+            if (top.flushed != null) {
+                parsingStack.pollFirst();
+                flush(top);
+                continue;
+            }
+
+            if (top.token.equals(terminal)) {
+                parsingStack.pollFirst();
+                if (top.tree != null) {
+                    top.tree.getChildren().add(ParseSession.leaf(top.token, terminal));
+                }
+                /* Flush what the terminal completes before the next one. */
+                while (!parsingStack.isEmpty() && parsingStack.peekFirst().flushed != null) {
+                    flush(parsingStack.pollFirst());
+                }
+                return terminal.equals(EOF.getInstance()) ? parseTree : null;
+            }
+
+            if (top.token.isTerminal())
+                throw new ParseErrorException("Expected " + top.token + ", found " + terminal);
+
+            Variable variable = (Variable) top.token;
+            List<Symbol> production = parseTable.getProduction(variable, terminal);
+            if (production == null)
+                throw new ParseErrorException("No production for " + variable + " on seeing " + terminal);
+            parsingStack.pollFirst();
+
+            ParseTree node;
+            if (variable instanceof TransparentVariable) {
+                node = top.tree;
+            } else if (top.tree == null) {
+                node = parseTree;
+            } else if (endsList(top, variable)) {
+                /* The list node is flushed with a placeholder for its last
+                 * child, which is flushed in turn, already in place, once
+                 * complete.  The first node of a list is still in the tree.
+                 */
+                int index = nextIndex++;
+                top.tree.getChildren().add(new FlushedParseTree(variable, index));
+                flush(parsingStack.peekFirst().flushed == top.tree ? parsingStack.pollFirst()
+                        : new StackEntry(variable, top.parent, top.tree, nextIndex++));
+                node = new ParseTree(variable);
+                parsingStack.offerFirst(new StackEntry(variable, null, node, index));
+            } else {
+                node = new ParseTree(variable);
+                top.tree.getChildren().add(node);
+                if (flushedVariables.contains(variable)) {
+                    parsingStack.offerFirst(new StackEntry(variable, top.tree, node, nextIndex++));
+                    ++open;
+                }
+            }
+
+            if (production.size() == 1 && production.get(0).equals(Epsilon.getInstance())) {
+                if (node != top.tree) {
+                    node.getChildren().add(new ParseTree(Epsilon.getInstance()));
+                }
+                continue;
+            }
+
+            ParseTree parent = node == top.tree ? top.parent : top.tree;
+            for (int i = production.size() - 1; i >= 0; --i) {
+                parsingStack.offerFirst(new StackEntry(production.get(i), node, parent));
+            }
+        }
+    }
+
+    /**
+     * Whether a variable predicted is the last child of a list node to
+     * flush: a node of the same variable, outside the subtrees being built,
+     * which holds a placeholder.
+     */
+    private boolean endsList(StackEntry top, Variable variable) {
+        if (open > 0 || top.tree == parseTree || !variable.equals(top.tree.getSymbol())
+                || parsingStack.peekFirst().tree == top.tree) {
+            return false;
+        }
+        for (ParseTree child : top.tree.getChildren()) {
+            if (child instanceof FlushedParseTree) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces a complete subtree by a placeholder, unless the last node of
+     * a list has one already, and hands it to the sink.
+     */
+    private void flush(StackEntry marker) {
+        if (marker.tree != null) {
+            List<ParseTree> siblings = marker.tree.getChildren();
+            siblings.set(siblings.size() - 1, new FlushedParseTree((Variable) marker.token, marker.index));
+            if (flushedVariables.contains(marker.token)) {
+                --open;
+            }
+        }
+        sink.subtree(marker.index, marker.flushed);
+        ++flushedCount;
+    }
+}
@@ -0,0 +1,27 @@
+package parser;
+
+/**
+ * A callback receiving the subtrees a streaming parser detaches from its
+ * tree as soon as they are complete, and the nodes of the lists holding
+ * them as soon as their last child is predicted.  The subtrees are numbered
+ * by the placeholders standing for them, and do not arrive in the order of
+ * their numbers: a list node arrives before the rest of the list, which
+ * its placeholder stands for.
+ *
+ * @author yucunli
+ * @see ParserGenerator#createStreamingParser
+ */
+public interface SubtreeSink {
+    /**
+     * Called when every symbol of the production predicted for a chosen
+     * variable has been matched, or when the last child of a list node is
+     * predicted.  The parser keeps no reference to the subtree, in which the
+     * other subtrees are placeholders.
+     *
+     * @param index The number of the subtree, from 0, which its
+     * {@link FlushedParseTree placeholder} records.  Each number is given
+     * once.
+     * @param tree The subtree.
+     */
+    public void subtree(int index, ParseTree tree);
+}
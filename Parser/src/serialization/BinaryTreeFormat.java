@@ -0,0 +1,81 @@
+package serialization;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.ErrorSymbol;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+
+/**
+ * Constants of the binary parse tree format written by
+ * {@link BinaryTreeWriter} and read by {@link MappedParseTree}.
+ * <p>
+ * A file is laid out as follows, all numbers big-endian:
+ * <pre>
+ * header:   magic "PTRB", int version, long node count,
+ *           long symbol table offset, long node offset, long index offset
+ * symbols:  varint count, then per symbol a kind byte and a varint length
+ *           followed by the UTF-8 bytes of its value
+ * nodes:    in preorder, per node a varint symbol ordinal and a varint child
+ *           count; terminal leaves matched from the input then hold a varint
+ *           line, a varint index and a varint lexeme length plus one (0 if
+ *           there is no lexeme) followed by the UTF-8 lexeme
+ * index:    per node, a long offset of its record and an int subtree size
+ * </pre>
+ * With the index, the record of any node is found without reading the ones
+ * before it, and the next sibling of node n is node n + subtree size of n.
+ *
+ * @author yucunli
+ */
+final class BinaryTreeFormat {
+    /* This class is not meant to be instantiated. */
+    private BinaryTreeFormat() {
+        // Empty //
+    }
+
+    static final int MAGIC = 0x50545242;
+
+    static final int VERSION = 1;
+
+    static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+    static final int INDEX_ENTRY_SIZE = 8 + 4;
+
+    static final byte KIND_VARIABLE = 0;
+    static final byte KIND_TERMINAL = 1;
+    static final byte KIND_EPSILON = 2;
+    static final byte KIND_EOF = 3;
+    static final byte KIND_ERROR = 4;
+
+    static byte kindOf(Symbol symbol) {
+        if (!symbol.isTerminal()) {
+            return KIND_VARIABLE;
+        }
+        if (symbol instanceof Epsilon) {
+            return KIND_EPSILON;
+        }
+        if (symbol instanceof EOF) {
+            return KIND_EOF;
+        }
+        if (symbol instanceof ErrorSymbol) {
+            return KIND_ERROR;
+        }
+        return KIND_TERMINAL;
+    }
+
+    static Symbol symbolOf(byte kind, String value) {
+        switch (kind) {
+            case KIND_VARIABLE:
+                return new Variable(value);
+            case KIND_EPSILON:
+                return Epsilon.getInstance();
+            case KIND_EOF:
+                return EOF.getInstance();
+            case KIND_ERROR:
+                return ErrorSymbol.getInstance();
+            default:
+                return new Terminal(value);
+        }
+    }
+}
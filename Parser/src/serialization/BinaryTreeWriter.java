@@ -0,0 +1,204 @@
+package serialization;
+
+import datastructure.Symbol;
+import datastructure.Terminal;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import parser.ParseTree;
+
+/**
+ * Writes a parse tree in the binary format described in
+ * {@link BinaryTreeFormat}, to be read back with {@link MappedParseTree}.
+ * The tree is walked iteratively; besides the tree itself the writer keeps
+ * twelve bytes per node for the index, which is written after the nodes.
+ *
+ * @author yucunli
+ */
+public class BinaryTreeWriter {
+
+    private final FileChannel channel;
+
+    private final OutputStream out;
+
+    /** The number of bytes written to the file so far. */
+    private long position = 0;
+
+    /* The index, filled in while the nodes are written. */
+    private long[] offsets = new long[1024];
+    private int[] subtreeSizes = new int[1024];
+    private int nodeCount = 0;
+
+    /* The symbol table. */
+    private final List<Symbol> symbols = new ArrayList<>();
+    private final HashMap<Symbol, Integer> ordinals = new HashMap<>();
+
+    private BinaryTreeWriter(FileChannel channel) {
+        this.channel = channel;
+        this.out = new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16);
+    }
+
+    /**
+     * Writes a tree to a file, replacing its contents.
+     *
+     * @param tree The tree to write.
+     * @param path The file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(ParseTree tree, Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            new BinaryTreeWriter(channel).writeTree(tree);
+        }
+    }
+
+    /**
+     * A node on the path from the root, with the index of its record.
+     */
+    private static final class Frame {
+        final Iterator<ParseTree> children;
+        final int node;
+
+        Frame(ParseTree tree, int node) {
+            this.children = tree.getChildren().iterator();
+            this.node = node;
+        }
+    }
+
+    private void writeTree(ParseTree tree) throws IOException {
+        /* The symbol table must precede the nodes, so collect it first. */
+        Deque<Iterator<ParseTree>> walk = new ArrayDeque<>();
+        ordinalOf(tree.getSymbol());
+        walk.push(tree.getChildren().iterator());
+        while (!walk.isEmpty()) {
+            Iterator<ParseTree> children = walk.peek();
+            if (children.hasNext()) {
+                ParseTree child = children.next();
+                ordinalOf(child.getSymbol());
+                walk.push(child.getChildren().iterator());
+            } else {
+                walk.pop();
+            }
+        }
+
+        writeBytes(new byte[BinaryTreeFormat.HEADER_SIZE]);
+
+        long symbolOffset = position;
+        writeVarint(symbols.size());
+        for (Symbol symbol : symbols) {
+            out.write(BinaryTreeFormat.kindOf(symbol));
+            ++position;
+            writeString(symbol.getValue());
+        }
+
+        long nodeOffset = position;
+        Deque<Frame> stack = new ArrayDeque<>();
+        stack.push(new Frame(tree, writeNode(tree)));
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.children.hasNext()) {
+                ParseTree child = frame.children.next();
+                stack.push(new Frame(child, writeNode(child)));
+            } else {
+                stack.pop();
+                subtreeSizes[frame.node] = nodeCount - frame.node;
+            }
+        }
+
+        long indexOffset = position;
+        byte[] entry = new byte[BinaryTreeFormat.INDEX_ENTRY_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        for (int i = 0; i < nodeCount; ++i) {
+            buffer.clear();
+            buffer.putLong(offsets[i]);
+            buffer.putInt(subtreeSizes[i]);
+            writeBytes(entry);
+        }
+        out.flush();
+
+        ByteBuffer header = ByteBuffer.allocate(BinaryTreeFormat.HEADER_SIZE);
+        header.putInt(BinaryTreeFormat.MAGIC);
+        header.putInt(BinaryTreeFormat.VERSION);
+        header.putLong(nodeCount);
+        header.putLong(symbolOffset);
+        header.putLong(nodeOffset);
+        header.putLong(indexOffset);
+        header.flip();
+        long at = 0;
+        while (header.hasRemaining()) {
+            at += channel.write(header, at);
+        }
+    }
+
+    /**
+     * Writes the record of a node and returns its index.
+     */
+    private int writeNode(ParseTree tree) throws IOException {
+        if (nodeCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, nodeCount * 2);
+            subtreeSizes = Arrays.copyOf(subtreeSizes, nodeCount * 2);
+        }
+        offsets[nodeCount] = position;
+
+        Symbol symbol = tree.getSymbol();
+        writeVarint(ordinals.get(symbol));
+        writeVarint(tree.getChildren().size());
+        if (BinaryTreeFormat.kindOf(symbol) == BinaryTreeFormat.KIND_TERMINAL) {
+            Terminal terminal = (Terminal) symbol;
+            writeVarint(terminal.getLine());
+            writeVarint(terminal.getIndex());
+            if (terminal.getLexeme() == null) {
+                writeVarint(0);
+            } else {
+                byte[] bytes = terminal.getLexeme().getBytes(StandardCharsets.UTF_8);
+                writeVarint(bytes.length + 1);
+                writeBytes(bytes);
+            }
+        }
+        return nodeCount++;
+    }
+
+    private int ordinalOf(Symbol symbol) {
+        Integer ordinal = ordinals.get(symbol);
+        if (ordinal == null) {
+            ordinal = symbols.size();
+            symbols.add(symbol);
+            ordinals.put(symbol, ordinal);
+        }
+        return ordinal;
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        out.write(bytes);
+        position += bytes.length;
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+            ++position;
+        }
+        out.write(value);
+        ++position;
+    }
+}
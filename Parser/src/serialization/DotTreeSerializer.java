@@ -0,0 +1,59 @@
+package serialization;
+
+import java.io.IOException;
+import java.io.Writer;
+import parser.ParseTree;
+
+/**
+ * Writes a parse tree as a Graphviz DOT digraph.  Nodes are numbered in
+ * preorder and terminals are drawn as boxes.
+ *
+ * @author yucunli
+ */
+public class DotTreeSerializer extends TreeSerializer {
+
+    private final Writer out;
+
+    /**
+     * Constructs a DOT serializer writing to the given writer.
+     *
+     * @param out The writer receiving the DOT graph.
+     */
+    public DotTreeSerializer(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    protected void begin() throws IOException {
+        out.write("digraph ParseTree {\n");
+        out.write("  node [shape=ellipse];\n");
+    }
+
+    @Override
+    protected void enter(ParseTree node, int id, int parentId, boolean firstChild) throws IOException {
+        out.write("  n" + id + " [label=\"");
+        String label = label(node);
+        for (int i = 0; i < label.length(); ++i) {
+            char c = label.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+            }
+            out.write(c);
+        }
+        out.write(node.getSymbol().isTerminal() ? "\", shape=box];\n" : "\"];\n");
+        if (parentId >= 0) {
+            out.write("  n" + parentId + " -> n" + id + ";\n");
+        }
+    }
+
+    @Override
+    protected void exit(ParseTree node, int id) throws IOException {
+        // Empty //
+    }
+
+    @Override
+    protected void end() throws IOException {
+        out.write("}\n");
+        out.flush();
+    }
+}
@@ -0,0 +1,69 @@
+package serialization;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import parser.ParseTree;
+import parser.SubtreeSink;
+
+/**
+ * Writes the subtrees of a streaming parser as JSON, one line per subtree,
+ * holding its number as {@code index} and the subtree as {@code tree} in the
+ * format of {@link JsonTreeSerializer}.  Each line is written and flushed as
+ * the subtree arrives, so the subtrees can be dropped right away.
+ *
+ * @author yucunli
+ */
+public class JsonSubtreeSink implements SubtreeSink {
+
+    /** A serializer wrapping each tree in the object of its line. */
+    private static final class LineSerializer extends JsonTreeSerializer {
+
+        private final Writer out;
+
+        private int index;
+
+        LineSerializer(Writer out) {
+            super(out);
+            this.out = out;
+        }
+
+        @Override
+        protected void begin() throws IOException {
+            out.write("{\"index\":" + index + ",\"tree\":");
+        }
+
+        @Override
+        protected void end() throws IOException {
+            out.write('}');
+            super.end();
+        }
+    }
+
+    private final LineSerializer serializer;
+
+    /**
+     * Constructs a sink writing to the given writer, which the caller
+     * closes.
+     *
+     * @param out The writer receiving the lines.
+     */
+    public JsonSubtreeSink(Writer out) {
+        this.serializer = new LineSerializer(out);
+    }
+
+    /**
+     * Writes a subtree.
+     *
+     * @throws UncheckedIOException If writing fails.
+     */
+    @Override
+    public void subtree(int index, ParseTree tree) {
+        try {
+            serializer.index = index;
+            serializer.write(tree);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package serialization;
+
+import datastructure.Terminal;
+import java.io.IOException;
+import java.io.Writer;
+import parser.FlushedParseTree;
+import parser.ParseTree;
+
+/**
+ * Writes a parse tree as JSON.  Every node is an object with a
+ * {@code name}, terminals matched from the input also carry their
+ * {@code lexeme}, {@code line} and {@code index}, and variables carry their
+ * {@code children}.  The placeholders of a streaming parser carry the number
+ * of their subtree as {@code flushed}.
+ *
+ * @author yucunli
+ */
+public class JsonTreeSerializer extends TreeSerializer {
+
+    private final Writer out;
+
+    /**
+     * Constructs a JSON serializer writing to the given writer.
+     *
+     * @param out The writer receiving the JSON.
+     */
+    public JsonTreeSerializer(Writer out) {
+        this.out = out;
+    }
+
+    @Override
+    protected void begin() throws IOException {
+        // Empty //
+    }
+
+    @Override
+    protected void enter(ParseTree node, int id, int parentId, boolean firstChild) throws IOException {
+        if (parentId >= 0) {
+            out.write(firstChild ? "\"children\":[" : ",");
+        }
+        out.write("{\"name\":");
+        string(label(node));
+
+        if (node instanceof FlushedParseTree) {
+            out.write(",\"flushed\":" + ((FlushedParseTree) node).getIndex());
+        }
+        if (node.getSymbol() instanceof Terminal) {
+            Terminal terminal = (Terminal) node.getSymbol();
+            if (terminal.getLexeme() != null) {
+                out.write(",\"lexeme\":");
+                string(terminal.getLexeme());
+                out.write(",\"line\":" + terminal.getLine() + ",\"index\":" + terminal.getIndex());
+            }
+        }
+        if (!node.getChildren().isEmpty()) {
+            out.write(',');
+        }
+    }
+
+    @Override
+    protected void exit(ParseTree node, int id) throws IOException {
+        if (!node.getChildren().isEmpty()) {
+            out.write(']');
+        }
+        out.write('}');
+    }
+
+    @Override
+    protected void end() throws IOException {
+        out.write('\n');
+        out.flush();
+    }
+
+    private void string(String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                out.write('\\');
+                out.write(c);
+            } else if (c < 0x20) {
+                out.write(String.format("\\u%04x", (int) c));
+            } else {
+                out.write(c);
+            }
+        }
+        out.write('"');
+    }
+}
@@ -0,0 +1,268 @@
+package serialization;
+
+import datastructure.Symbol;
+import datastructure.Terminal;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import parser.ParseTree;
+
+/**
+ * Random access to a parse tree file written by {@link BinaryTreeWriter}.
+ * <p>
+ * The file is memory-mapped and nodes are read where they lie: opening the
+ * file only reads the header and the symbol table, and looking at a node
+ * costs one index lookup and the decoding of its record.  Nodes are numbered
+ * in preorder, the root being node 0; the children of a node are found by
+ * skipping over the subtrees of their elder siblings.  Instances are not
+ * thread-safe; open one per thread.
+ *
+ * @author yucunli
+ */
+public class MappedParseTree implements Closeable {
+
+    /** The size of one mapped segment. */
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_BITS;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer[] segments;
+
+    private final int nodeCount;
+
+    private final long indexOffset;
+
+    private final Symbol[] symbols;
+
+    /** The position reached by the last read. */
+    private long cursor;
+
+    /**
+     * Opens a tree file.
+     *
+     * @param path The file to open.
+     * @throws IOException If the file cannot be read or is not a tree file.
+     */
+    public MappedParseTree(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ);
+        long size = channel.size();
+        segments = new MappedByteBuffer[(int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_BITS)];
+        for (int i = 0; i < segments.length; ++i) {
+            long start = (long) i << SEGMENT_BITS;
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start,
+                    Math.min(SEGMENT_SIZE, size - start));
+        }
+
+        if (size < BinaryTreeFormat.HEADER_SIZE || getInt(0) != BinaryTreeFormat.MAGIC) {
+            channel.close();
+            throw new IOException("Not a parse tree file: " + path);
+        }
+        if (getInt(4) != BinaryTreeFormat.VERSION) {
+            channel.close();
+            throw new IOException("Unsupported parse tree file version " + getInt(4));
+        }
+        nodeCount = (int) getLong(8);
+        long symbolOffset = getLong(16);
+        indexOffset = getLong(32);
+
+        cursor = symbolOffset;
+        symbols = new Symbol[readVarint()];
+        for (int i = 0; i < symbols.length; ++i) {
+            byte kind = getByte(cursor++);
+            symbols[i] = BinaryTreeFormat.symbolOf(kind, readString(readVarint()));
+        }
+    }
+
+    /** @return The number of nodes in the tree. */
+    public int size() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the symbol of a node, shared by all nodes with that symbol.
+     *
+     * @param node The node in question.
+     * @return The symbol of the node.
+     */
+    public Symbol getSymbol(int node) {
+        cursor = recordOffset(node);
+        return symbols[readVarint()];
+    }
+
+    /**
+     * Returns the number of children of a node.
+     *
+     * @param node The node in question.
+     * @return The number of children.
+     */
+    public int getChildCount(int node) {
+        cursor = recordOffset(node);
+        readVarint();
+        return readVarint();
+    }
+
+    /**
+     * Returns the number of nodes in the subtree rooted at a node, the node
+     * itself included.
+     *
+     * @param node The node in question.
+     * @return The size of the subtree.
+     */
+    public int getSubtreeSize(int node) {
+        return getInt(indexOffset + (long) node * BinaryTreeFormat.INDEX_ENTRY_SIZE + 8);
+    }
+
+    /**
+     * Returns the children of a node.
+     *
+     * @param node The node in question.
+     * @return The indices of its children, in order.
+     */
+    public int[] getChildren(int node) {
+        int[] children = new int[getChildCount(node)];
+        int child = node + 1;
+        for (int i = 0; i < children.length; ++i) {
+            children[i] = child;
+            child += getSubtreeSize(child);
+        }
+        return children;
+    }
+
+    /**
+     * Returns the terminal matched by a leaf, with its line, index and
+     * lexeme, or the symbol itself for variables, epsilon and EOF.
+     *
+     * @param node The node in question.
+     * @return The symbol of the node, with its position for input terminals.
+     */
+    public Symbol getToken(int node) {
+        cursor = recordOffset(node);
+        Symbol symbol = symbols[readVarint()];
+        readVarint();
+        if (BinaryTreeFormat.kindOf(symbol) != BinaryTreeFormat.KIND_TERMINAL) {
+            return symbol;
+        }
+        Terminal terminal = new Terminal(symbol.getValue());
+        terminal.setLine(readVarint());
+        terminal.setIndex(readVarint());
+        int length = readVarint();
+        if (length > 0) {
+            terminal.setLexeme(readString(length - 1));
+        }
+        return terminal;
+    }
+
+    /**
+     * Deserializes the subtree rooted at a node.
+     *
+     * @param node The root of the subtree.
+     * @return The subtree as a ParseTree.
+     */
+    public ParseTree toParseTree(int node) {
+        ParseTree root = new ParseTree(getToken(node));
+        Deque<ParseTree> parents = new ArrayDeque<>();
+        Deque<Integer> remaining = new ArrayDeque<>();
+        parents.push(root);
+        remaining.push(getChildCount(node));
+
+        int end = node + getSubtreeSize(node);
+        for (int current = node + 1; current < end; ++current) {
+            while (remaining.peek() == 0) {
+                parents.pop();
+                remaining.pop();
+            }
+            remaining.push(remaining.pop() - 1);
+
+            ParseTree tree = new ParseTree(getToken(current));
+            parents.peek().getChildren().add(tree);
+            parents.push(tree);
+            remaining.push(getChildCount(current));
+        }
+        return root;
+    }
+
+    /**
+     * Returns the nodes holding a given symbol within a subtree, in preorder.
+     *
+     * @param node The root of the subtree to search.
+     * @param symbol The symbol to look for.
+     * @return The matching nodes.
+     */
+    public List<Integer> find(int node, Symbol symbol) {
+        List<Integer> result = new ArrayList<>();
+        int end = node + getSubtreeSize(node);
+        for (int current = node; current < end; ++current) {
+            if (getSymbol(current).equals(symbol)) {
+                result.add(current);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long recordOffset(int node) {
+        if (node < 0 || node >= nodeCount) {
+            throw new IndexOutOfBoundsException("Node: " + node);
+        }
+        return getLong(indexOffset + (long) node * BinaryTreeFormat.INDEX_ENTRY_SIZE);
+    }
+
+    private byte getByte(long position) {
+        return segments[(int) (position >>> SEGMENT_BITS)].get((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    private int getInt(long position) {
+        int segment = (int) (position >>> SEGMENT_BITS);
+        int offset = (int) (position & (SEGMENT_SIZE - 1));
+        if (offset + 4 <= segments[segment].limit()) {
+            return segments[segment].getInt(offset);
+        }
+        int value = 0;
+        for (int i = 0; i < 4; ++i) {
+            value = (value << 8) | (getByte(position + i) & 0xFF);
+        }
+        return value;
+    }
+
+    private long getLong(long position) {
+        int segment = (int) (position >>> SEGMENT_BITS);
+        int offset = (int) (position & (SEGMENT_SIZE - 1));
+        if (offset + 8 <= segments[segment].limit()) {
+            return segments[segment].getLong(offset);
+        }
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xFFFFFFFFL);
+    }
+
+    private int readVarint() {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = getByte(cursor++);
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private String readString(int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = getByte(cursor++);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,83 @@
+package serialization;
+
+import java.io.IOException;
+import java.io.Writer;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import parser.ParseTree;
+
+/**
+ * Writes a parse tree as TreeML, the XML format read by prefuse's
+ * TreeMLReader and shown by {@link visulization.TreeView}.  Every node
+ * becomes a {@code branch} element holding a {@code name} attribute.
+ *
+ * @author yucunli
+ */
+public class TreeMLSerializer extends TreeSerializer {
+
+    private final Writer out;
+
+    private final XMLStreamWriter xml;
+
+    /**
+     * Constructs a TreeML serializer writing to the given writer.
+     *
+     * @param out The writer receiving the XML.
+     * @throws IOException If the XML writer cannot be created.
+     */
+    public TreeMLSerializer(Writer out) throws IOException {
+        this.out = out;
+        try {
+            this.xml = XMLOutputFactory.newInstance().createXMLStreamWriter(out);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    protected void begin() throws IOException {
+        try {
+            xml.writeStartElement("tree");
+            xml.writeStartElement("declarations");
+            xml.writeEmptyElement("attributeDecl");
+            xml.writeAttribute("name", "name");
+            xml.writeAttribute("type", "String");
+            xml.writeEndElement();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    protected void enter(ParseTree node, int id, int parentId, boolean firstChild) throws IOException {
+        try {
+            xml.writeStartElement("branch");
+            xml.writeEmptyElement("attribute");
+            xml.writeAttribute("name", "name");
+            xml.writeAttribute("value", label(node));
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    protected void exit(ParseTree node, int id) throws IOException {
+        try {
+            xml.writeEndElement();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    protected void end() throws IOException {
+        try {
+            xml.writeEndElement();
+            xml.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex);
+        }
+        out.flush();
+    }
+}
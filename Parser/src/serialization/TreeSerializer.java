@@ -0,0 +1,125 @@
+package serialization;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import parser.ParseTree;
+
+/**
+ * Base class of the streaming parse tree serializers.  The tree is walked
+ * iteratively in preorder and every node is written as soon as it is
+ * reached, so the memory used beyond the tree itself is bounded by the depth
+ * of the tree, and deep trees do not overflow the Java stack.
+ *
+ * @author yucunli
+ */
+public abstract class TreeSerializer {
+
+    /**
+     * A node on the path from the root to the node being visited.
+     */
+    private static final class Frame {
+        final ParseTree node;
+        final Iterator<ParseTree> children;
+        final int id;
+        boolean visitedChild = false;
+
+        Frame(ParseTree node, int id) {
+            this.node = node;
+            this.children = node.getChildren().iterator();
+            this.id = id;
+        }
+    }
+
+    /**
+     * Writes the whole tree.
+     *
+     * @param tree The tree to write.
+     * @throws IOException If writing fails.
+     */
+    public void write(ParseTree tree) throws IOException {
+        int nextId = 0;
+        Deque<Frame> stack = new ArrayDeque<>();
+
+        begin();
+        enter(tree, nextId, -1, true);
+        stack.push(new Frame(tree, nextId++));
+
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (frame.children.hasNext()) {
+                ParseTree child = frame.children.next();
+                enter(child, nextId, frame.id, !frame.visitedChild);
+                frame.visitedChild = true;
+                stack.push(new Frame(child, nextId++));
+            } else {
+                stack.pop();
+                exit(frame.node, frame.id);
+            }
+        }
+        end();
+    }
+
+    /**
+     * Called before the first node is written.
+     */
+    protected abstract void begin() throws IOException;
+
+    /**
+     * Called when a node is reached, before any of its children.
+     *
+     * @param node The node.
+     * @param id The preorder number of the node.
+     * @param parentId The preorder number of its parent, -1 for the root.
+     * @param firstChild Whether the node is the first child of its parent.
+     */
+    protected abstract void enter(ParseTree node, int id, int parentId, boolean firstChild)
+            throws IOException;
+
+    /**
+     * Called when all children of a node have been written.
+     *
+     * @param node The node.
+     * @param id The preorder number of the node.
+     */
+    protected abstract void exit(ParseTree node, int id) throws IOException;
+
+    /**
+     * Called after the last node is written.  Implementations flush their
+     * output here.
+     */
+    protected abstract void end() throws IOException;
+
+    /**
+     * Returns the label written for a node: the value of its symbol.
+     *
+     * @param node The node.
+     * @return The label of the node.
+     */
+    protected static String label(ParseTree node) {
+        return node.getSymbol().toString();
+    }
+
+    /**
+     * Opens a buffered UTF-8 writer over a file channel, truncating the file.
+     *
+     * @param filename The file to write.
+     * @return A writer for the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static Writer openWriter(String filename) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                StandardCharsets.UTF_8), 1 << 16);
+    }
+}
@@ -6,7 +6,6 @@ import datastructure.Grammar;
 import datastructure.Terminal;
 import datastructure.Symbol;
 import datastructure.Variable;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -244,180 +243,19 @@ public final class GrammarAttributes {
      * Remove grammar left recursion.
      *
      * @param grammar
+     * @see GrammarTransformer#removeLeftRecursion(Grammar)
      */
     public static void removeLeftRecursion(Grammar grammar) {
-        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
-        List<Variable> orderedVariables = new ArrayList<>(grammar.getVariables());
-
-        for (int i = 0; i < orderedVariables.size(); ++i) {
-            if (((Symbol) orderedVariables.get(i)).getValue().equals("aParams")) {
-                System.out.println("found it");
-            }
-            List<List<Symbol>> newRightAiParts = new ArrayList<>(relations.get(orderedVariables.get(i)));
-            for (int j = 0; j < i; ++j) {
-
-                for (List<Symbol> rightPartAi : relations.get(orderedVariables.get(i))) {
-                    // Ai -> Aja
-                    if (rightPartAi.get(0).equals(orderedVariables.get(j))) {
-                        // Remove Ai -> Aja
-                        newRightAiParts.remove(rightPartAi);
-                        for (List<Symbol> rightPartAj : relations.get(orderedVariables.get(j))) {
-                            List<Symbol> newRightPartAi = new ArrayList<>(rightPartAi);
-                            // Replace Aj by the value of the relation
-                            newRightPartAi.remove(0);
-                            newRightPartAi.addAll(0, rightPartAj);
-
-                            newRightAiParts.add(newRightPartAi);
-                        }
-                    }
-                }
-
-            }
-            relations.remove(orderedVariables.get(i));
-            relations.put(orderedVariables.get(i), newRightAiParts);
-
-            removeDirectLeftRecursionRemoval(grammar, orderedVariables.get(i));
-        }
-    }
-
-    /**
-     * Remove direct left recursion of one production.
-     *
-     * @param grammar target grammar
-     * @param leftPart variable of one production rule
-     *
-     */
-    private static void removeDirectLeftRecursionRemoval(Grammar grammar, Variable leftPart) {
-        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
-
-        // A -> Aa1 | ... | Aar
-        List<List<Symbol>> leftRecursiveSet = new ArrayList<>();
-        // A -> b1 | ... | bs
-        List<List<Symbol>> notLeftRecursiveSet = new ArrayList<>();
-        for (List<Symbol> rightPart : relations.get(leftPart)) {
-            if (rightPart.get(0).equals(leftPart)) {
-                leftRecursiveSet.add(rightPart);
-            } else {
-                notLeftRecursiveSet.add(rightPart);
-            }
-        }
-
-        /* If there exists a left recursion for this variable, 
-         * remove all the rules for this variable and replace them 
-         * by new rules without left recursion.
-         */
-        if (!leftRecursiveSet.isEmpty()) {
-            relations.remove(leftPart);
-            Variable oldVariable = leftPart;
-
-            Variable newVariable = Variable.getNewVariable(oldVariable);
-            grammar.addVariableToVariableSet(newVariable);
-
-            // A -> b1A' | ... | bsA'
-            for (List<Symbol> rightPart : notLeftRecursiveSet) {
-                rightPart.add(newVariable);
-            }
-            relations.put(oldVariable, notLeftRecursiveSet);
-
-            /* A' -> a1A' | ... | arA' | e */
-            for (List<Symbol> rightPart : leftRecursiveSet) {
-                // Romove left recursion
-                rightPart.remove(0);
-                rightPart.add(newVariable);
-            }
-            // Add epsilon
-            List<Symbol> epsilonList = new ArrayList<>();
-            epsilonList.add(Epsilon.getInstance());
-            grammar.addEpsilonToTerminalSet();
-            leftRecursiveSet.add(epsilonList);
-            relations.put(newVariable, leftRecursiveSet);
-        }
+        GrammarTransformer.removeLeftRecursion(grammar);
     }
 
     /**
      * Refactor right hand repetitive prefix of production rule.
      *
      * @param grammar target grammar
+     * @see GrammarTransformer#leftFactor(Grammar)
      */
-    public static void refactorRepetitivePrefix(Grammar grammar) throws Exception {
-        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
-        List<Variable> orderedLeftParts = new ArrayList<>(relations.keySet());
-
-        int leftPartIndex = 0;
-        while (leftPartIndex < orderedLeftParts.size()) {
-            Boolean isCommonPrefixFound = false;
-            Variable leftPart = orderedLeftParts.get(leftPartIndex);
-            List<List<Symbol>> orderedRightParts = new ArrayList<>(relations.get(leftPart));
-
-            int i = 0;
-            while (i < orderedRightParts.size()) {
-                List<Integer> indexesOfMatches = new ArrayList<>();
-                int sizeOfSubstring = orderedRightParts.get(i).size();
-                while (sizeOfSubstring > 0) {
-                    for (int j = 0; j < orderedRightParts.size(); ++j) {
-                        // Match
-                        if (j != i && orderedRightParts.get(j).size() >= sizeOfSubstring
-                                && orderedRightParts.get(i).subList(0, sizeOfSubstring)
-                                .equals(orderedRightParts.get(j).subList(0, sizeOfSubstring))) {
-
-                            indexesOfMatches.add(j);
-                        }
-                    }
-                    // If a match is found
-                    if (!indexesOfMatches.isEmpty()) {
-                        isCommonPrefixFound = true;
-                        break;
-                    }
-                    --sizeOfSubstring;
-                }
-
-                // If a match is found
-                if (isCommonPrefixFound) {
-                    // Create new variable
-                    Variable newVariable = Variable.getNewVariable();
-                    grammar.addVariableToVariableSet(newVariable);
-                    relations.put(newVariable, new ArrayList<List<Symbol>>());
-
-                    // A' -> b1 | ... | bn
-                    relations.get(leftPart).remove(orderedRightParts.get(i));
-                    List<Symbol> sublist = orderedRightParts.get(i).subList(sizeOfSubstring, orderedRightParts.get(i).size());
-
-                    if (sublist.isEmpty()) {
-                        sublist.add(Epsilon.getInstance());
-                        grammar.addEpsilonToTerminalSet();
-                    }
-                    relations.get(newVariable).add(sublist);
-
-                    for (Integer index : indexesOfMatches) {
-                        relations.get(leftPart).remove(orderedRightParts.get(index));
-                        sublist = orderedRightParts.get(index).subList(sizeOfSubstring, orderedRightParts.get(index).size());
-                        if (sublist.isEmpty()) {
-                            sublist.add(Epsilon.getInstance());
-                            grammar.addEpsilonToTerminalSet();;
-                        }
-                        relations.get(newVariable).add(sublist);
-                    }
-
-                    // A -> aA'
-                    sublist = new ArrayList<>(orderedRightParts.get(i).subList(0, sizeOfSubstring));
-                    if (sublist.isEmpty()) {
-                        throw new Exception("Error : common prefix (a) is empty");
-                    }
-                    sublist.add(newVariable);
-                    relations.get(leftPart).add(sublist);
-                    break;
-                }
-
-                ++i;
-
-            }
-            if (!isCommonPrefixFound) {
-                ++leftPartIndex;
-            } else {
-                leftPartIndex = 0;
-                orderedLeftParts = new ArrayList<>(relations.keySet());
-            }
-
-        }
+    public static void refactorRepetitivePrefix(Grammar grammar) {
+        GrammarTransformer.leftFactor(grammar);
     }
 }
@@ -0,0 +1,494 @@
+package utils;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites grammars into a form an LL(1) parser generator can use: left
+ * recursion is removed and common prefixes are factored out.  Both
+ * transformations keep the language of the grammar and run in time close to
+ * linear in its size.
+ * <ul>
+ * <li>Left recursion is removed by the ordered substitution algorithm, but
+ * only inside the strongly connected components of the left corner graph:
+ * a variable that cannot reach itself through first symbols needs no
+ * substitution at all, so the work stays local to the recursive cycles.</li>
+ * <li>Left factoring builds a trie of the right-hand sides of each variable
+ * and creates one new variable per branching node of the trie, instead of
+ * comparing the right-hand sides pairwise.</li>
+ * <li>Productions whose FIRST sets still overlap start with different
+ * variables deriving the same terminals, such as <code>varDecl</code> and
+ * <code>funcDef</code> both starting with a type; their leading variables
+ * are expanded and the productions factored again, for a bounded number of
+ * rounds.</li>
+ * </ul>
+ * Like the rest of {@link GrammarAttributes}, the transformations modify the
+ * grammar they are given.
+ *
+ * @author yucunli
+ */
+public final class GrammarTransformer {
+    /** The most rounds of expansions {@link #expandConflicts(Grammar)} makes. */
+    private static final int MAX_EXPANSION_ROUNDS = 8;
+
+    /* This class is not meant to be instantiated. */
+    private GrammarTransformer() {
+        // Empty //
+    }
+
+    /**
+     * Removes left recursion, factors out common prefixes, then expands the
+     * leading variables of the productions that still conflict.
+     *
+     * @param grammar The grammar to transform.
+     */
+    public static void makeLL1Ready(Grammar grammar) {
+        removeLeftRecursion(grammar);
+        leftFactor(grammar);
+        expandConflicts(grammar);
+    }
+
+    /**
+     * Removes direct and indirect left recursion.  Within each strongly
+     * connected component of the left corner graph, variables are taken in
+     * the order of the grammar; productions of a variable starting with an
+     * earlier variable of the component are expanded with that variable's
+     * productions, after which the direct left recursion of the variable is
+     * removed with a new tail variable.
+     *
+     * @param grammar The grammar to transform.
+     */
+    public static void removeLeftRecursion(Grammar grammar) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        List<Variable> variables = orderedVariables(grammar);
+        Map<Variable, Integer> order = new HashMap<>();
+        for (Variable variable : variables) {
+            order.put(variable, order.size());
+        }
+
+        int[] component = leftCornerComponents(variables, order, relations);
+        for (int i = 0; i < variables.size(); ++i) {
+            Variable variable = variables.get(i);
+            List<List<Symbol>> productions = relations.get(variable);
+            if (productions == null || !isLeftRecursive(i, productions, order, component)) {
+                continue;
+            }
+
+            /* Expand the productions starting with earlier variables of the
+             * same component until none is left.
+             */
+            List<List<Symbol>> expanded = new ArrayList<>();
+            Deque<List<Symbol>> work = new ArrayDeque<>(productions);
+            while (!work.isEmpty()) {
+                List<Symbol> production = work.pollFirst();
+                Integer first = order.get(production.get(0));
+                if (first == null || first >= i || component[first] != component[i]) {
+                    expanded.add(production);
+                    continue;
+                }
+                List<Symbol> rest = production.subList(1, production.size());
+                List<List<Symbol>> substitutes = relations.get(variables.get(first));
+                for (int k = substitutes.size() - 1; k >= 0; --k) {
+                    work.offerFirst(concatenate(substitutes.get(k), rest));
+                }
+            }
+            relations.put(variable, expanded);
+            removeDirectLeftRecursion(grammar, variable);
+        }
+    }
+
+    /**
+     * Replaces A -> A a1 | ... | A ar | b1 | ... | bs by A -> b1 A' | ... |
+     * bs A' and A' -> a1 A' | ... | ar A' | EPSILON.  Productions A -> A are
+     * dropped, as they derive nothing new.
+     */
+    private static void removeDirectLeftRecursion(Grammar grammar, Variable variable) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        List<List<Symbol>> recursive = new ArrayList<>();
+        List<List<Symbol>> others = new ArrayList<>();
+        for (List<Symbol> production : relations.get(variable)) {
+            if (production.get(0).equals(variable)) {
+                if (production.size() > 1) {
+                    recursive.add(production.subList(1, production.size()));
+                }
+            } else {
+                others.add(production);
+            }
+        }
+        if (recursive.isEmpty()) {
+            relations.put(variable, others);
+            return;
+        }
+
+        Variable tail = Variable.getNewVariable(variable);
+        grammar.addVariableToVariableSet(tail);
+        grammar.addEpsilonToTerminalSet();
+
+        List<List<Symbol>> heads = new ArrayList<>();
+        for (List<Symbol> production : others) {
+            heads.add(concatenate(production, singleton(tail)));
+        }
+        List<List<Symbol>> tails = new ArrayList<>();
+        for (List<Symbol> production : recursive) {
+            tails.add(concatenate(production, singleton(tail)));
+        }
+        tails.add(singleton(Epsilon.getInstance()));
+        relations.put(variable, heads);
+        relations.put(tail, tails);
+    }
+
+    private static boolean isLeftRecursive(int index, List<List<Symbol>> productions,
+            Map<Variable, Integer> order, int[] component) {
+        for (List<Symbol> production : productions) {
+            Integer first = order.get(production.get(0));
+            if (first != null && component[first] == component[index]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Numbers the strongly connected components of the graph with an edge
+     * from A to B for every production A -> B ..., with an iterative
+     * version of Tarjan's algorithm.
+     *
+     * @return The component of every variable, by order.
+     */
+    private static int[] leftCornerComponents(List<Variable> variables, Map<Variable, Integer> order,
+            HashMap<Variable, List<List<Symbol>>> relations) {
+        int count = variables.size();
+        int[][] edges = new int[count][];
+        for (int v = 0; v < count; ++v) {
+            List<List<Symbol>> productions = relations.get(variables.get(v));
+            Set<Integer> targets = new HashSet<>();
+            if (productions != null) {
+                for (List<Symbol> production : productions) {
+                    Integer target = order.get(production.get(0));
+                    if (target != null) {
+                        targets.add(target);
+                    }
+                }
+            }
+            edges[v] = new int[targets.size()];
+            int k = 0;
+            for (int target : targets) {
+                edges[v][k++] = target;
+            }
+        }
+
+        int[] component = new int[count];
+        int[] index = new int[count];
+        int[] low = new int[count];
+        boolean[] onStack = new boolean[count];
+        int[] stack = new int[count];
+        int stackSize = 0;
+        int[] callVertex = new int[count];
+        int[] callEdge = new int[count];
+        int next = 1;
+        int components = 0;
+
+        for (int root = 0; root < count; ++root) {
+            if (index[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            callVertex[0] = root;
+            callEdge[0] = 0;
+            index[root] = low[root] = next++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int v = callVertex[depth];
+                if (callEdge[depth] < edges[v].length) {
+                    int w = edges[v][callEdge[depth]++];
+                    if (index[w] == 0) {
+                        index[w] = low[w] = next++;
+                        stack[stackSize++] = w;
+                        onStack[w] = true;
+                        ++depth;
+                        callVertex[depth] = w;
+                        callEdge[depth] = 0;
+                    } else if (onStack[w]) {
+                        low[v] = Math.min(low[v], index[w]);
+                    }
+                    continue;
+                }
+                if (low[v] == index[v]) {
+                    int w;
+                    do {
+                        w = stack[--stackSize];
+                        onStack[w] = false;
+                        component[w] = components;
+                    } while (w != v);
+                    ++components;
+                }
+                --depth;
+                if (depth >= 0) {
+                    int parent = callVertex[depth];
+                    low[parent] = Math.min(low[parent], low[v]);
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * A node of the trie of the right-hand sides of a variable.
+     */
+    private static final class TrieNode {
+        final Map<Symbol, TrieNode> children = new LinkedHashMap<>();
+        boolean end = false;
+    }
+
+    /**
+     * A trie node still to emit, and the list its productions go to.
+     */
+    private static final class EmitEntry {
+        final TrieNode node;
+        final List<List<Symbol>> target;
+
+        EmitEntry(TrieNode node, List<List<Symbol>> target) {
+            this.node = node;
+            this.target = target;
+        }
+    }
+
+    /**
+     * Factors out the common prefixes of the productions of every variable:
+     * productions A -> a b1 | ... | a bn sharing their longest common prefix
+     * a become A -> a A' and A' -> b1 | ... | bn, recursively.  Duplicate
+     * productions are merged.
+     *
+     * @param grammar The grammar to transform.
+     */
+    public static void leftFactor(Grammar grammar) {
+        for (Variable variable : orderedVariables(grammar)) {
+            leftFactor(grammar, variable);
+        }
+    }
+
+    /**
+     * Factors out the common prefixes of the productions of a variable.
+     */
+    private static void leftFactor(Grammar grammar, Variable variable) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        List<List<Symbol>> productions = relations.get(variable);
+        if (productions != null) {
+            TrieNode root = new TrieNode();
+            for (List<Symbol> production : productions) {
+                TrieNode node = root;
+                for (Symbol symbol : production) {
+                    if (symbol.equals(Epsilon.getInstance())) {
+                        continue;
+                    }
+                    TrieNode child = node.children.get(symbol);
+                    if (child == null) {
+                        child = new TrieNode();
+                        node.children.put(symbol, child);
+                    }
+                    node = child;
+                }
+                node.end = true;
+            }
+            relations.put(variable, emit(grammar, variable, root));
+        }
+    }
+
+    /**
+     * Expands the leading variable of every production whose FIRST set
+     * overlaps the one of another production of the same variable, then
+     * factors the productions of that variable again.  Left recursion must
+     * have been removed, so that an expansion cannot lead back to the
+     * variable.  Expanding and factoring keep the language of every
+     * variable, so the FIRST sets are computed once, those of the variables
+     * factoring creates being added as they appear, and each round only
+     * takes the variables the round before changed or created.  The rounds
+     * stop when no production is expanded, or after {@link
+     * #MAX_EXPANSION_ROUNDS} for a grammar no expansion makes LL(1).
+     *
+     * @param grammar The grammar to transform.
+     */
+    public static void expandConflicts(Grammar grammar) {
+        HashMap<Variable, List<List<Symbol>>> relations = grammar.getRelations();
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        List<Variable> work = orderedVariables(grammar);
+        for (int round = 0; round < MAX_EXPANSION_ROUNDS && !work.isEmpty(); ++round) {
+            List<Variable> changed = new ArrayList<>();
+            for (Variable variable : work) {
+                List<List<Symbol>> productions = relations.get(variable);
+                if (productions == null) {
+                    continue;
+                }
+
+                /* Mark the productions sharing a lookahead with another. */
+                boolean[] conflicting = new boolean[productions.size()];
+                Map<Terminal, Integer> owners = new HashMap<>();
+                for (int i = 0; i < productions.size(); ++i) {
+                    for (Terminal terminal : GrammarAttributes.getFirstSetForSequence(productions.get(i), first)) {
+                        Integer owner = owners.put(terminal, i);
+                        if (owner != null && !terminal.equals(Epsilon.getInstance())) {
+                            conflicting[owner] = true;
+                            conflicting[i] = true;
+                        }
+                    }
+                }
+
+                List<List<Symbol>> expanded = new ArrayList<>();
+                boolean expandedAny = false;
+                for (int i = 0; i < productions.size(); ++i) {
+                    List<Symbol> production = productions.get(i);
+                    List<List<Symbol>> substitutes = relations.get(production.get(0));
+                    if (!conflicting[i] || production.get(0).isTerminal() || substitutes == null) {
+                        expanded.add(production);
+                        continue;
+                    }
+                    List<Symbol> rest = production.subList(1, production.size());
+                    for (List<Symbol> substitute : substitutes) {
+                        expanded.add(concatenate(substitute, rest));
+                    }
+                    expandedAny = true;
+                }
+                if (!expandedAny) {
+                    continue;
+                }
+                relations.put(variable, expanded);
+                int before = grammar.getVariables().size();
+                leftFactor(grammar, variable);
+                List<Variable> created = new ArrayList<>(
+                        grammar.getVariables().subList(before, grammar.getVariables().size()));
+                addFirstSets(created, relations, first);
+                changed.add(variable);
+                changed.addAll(created);
+            }
+            work = changed;
+        }
+    }
+
+    /**
+     * Computes the FIRST sets of variables created by factoring, whose
+     * productions only use them and variables with FIRST sets.
+     */
+    private static void addFirstSets(List<Variable> created, HashMap<Variable, List<List<Symbol>>> relations,
+            HashMap<Variable, Set<Terminal>> first) {
+        for (Variable variable : created) {
+            first.put(variable, new HashSet<Terminal>());
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Variable variable : created) {
+                for (List<Symbol> production : relations.get(variable)) {
+                    changed |= first.get(variable).addAll(GrammarAttributes.getFirstSetForSequence(production, first));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the productions for the branches of a trie node, creating a
+     * new variable for every branch that leads to more than one production.
+     */
+    private static List<List<Symbol>> emit(Grammar grammar, Variable variable, TrieNode root) {
+        List<List<Symbol>> result = new ArrayList<>();
+        if (root.end) {
+            result.add(singleton(Epsilon.getInstance()));
+        }
+
+        Deque<EmitEntry> work = new ArrayDeque<>();
+        work.push(new EmitEntry(root, result));
+        while (!work.isEmpty()) {
+            EmitEntry item = work.pop();
+            List<List<Symbol>> target = item.target;
+
+            for (Map.Entry<Symbol, TrieNode> branch : item.node.children.entrySet()) {
+                /* Follow the branch while it does not fork. */
+                List<Symbol> prefix = new ArrayList<>();
+                prefix.add(branch.getKey());
+                TrieNode current = branch.getValue();
+                while (!current.end && current.children.size() == 1) {
+                    Map.Entry<Symbol, TrieNode> only = current.children.entrySet().iterator().next();
+                    prefix.add(only.getKey());
+                    current = only.getValue();
+                }
+                if (current.children.isEmpty()) {
+                    target.add(prefix);
+                    continue;
+                }
+
+                Variable factored = Variable.getNewVariable(variable);
+                grammar.addVariableToVariableSet(factored);
+                List<List<Symbol>> factoredProductions = new ArrayList<>();
+                if (current.end) {
+                    grammar.addEpsilonToTerminalSet();
+                    factoredProductions.add(singleton(Epsilon.getInstance()));
+                }
+                grammar.getRelations().put(factored, factoredProductions);
+                prefix.add(factored);
+                target.add(prefix);
+                work.push(new EmitEntry(current, factoredProductions));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the variables of a grammar in declaration order, without
+     * duplicates, followed by any variable that only has productions.
+     */
+    private static List<Variable> orderedVariables(Grammar grammar) {
+        Set<Variable> seen = new HashSet<>();
+        List<Variable> variables = new ArrayList<>();
+        for (Variable variable : grammar.getVariables()) {
+            if (seen.add(variable)) {
+                variables.add(variable);
+            }
+        }
+        for (Variable variable : grammar.getRelations().keySet()) {
+            if (seen.add(variable)) {
+                variables.add(variable);
+            }
+        }
+        return variables;
+    }
+
+    /**
+     * Concatenates two symbol sequences, leaving out epsilon unless the
+     * result would be empty.
+     */
+    private static List<Symbol> concatenate(List<Symbol> first, List<Symbol> second) {
+        List<Symbol> result = new ArrayList<>(first.size() + second.size());
+        for (Symbol symbol : first) {
+            if (!symbol.equals(Epsilon.getInstance())) {
+                result.add(symbol);
+            }
+        }
+        for (Symbol symbol : second) {
+            if (!symbol.equals(Epsilon.getInstance())) {
+                result.add(symbol);
+            }
+        }
+        if (result.isEmpty()) {
+            result.add(Epsilon.getInstance());
+        }
+        return result;
+    }
+
+    private static List<Symbol> singleton(Symbol symbol) {
+        List<Symbol> result = new ArrayList<>(1);
+        result.add(symbol);
+        return result;
+    }
+}
@@ -0,0 +1,100 @@
+package driver;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import parser.GrammarLoader;
+import parser.ParserGenerator;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class BatchParserDriverTest {
+
+    public BatchParserDriverTest() {
+    }
+
+    /**
+     * Directories are searched recursively with the include pattern, globs
+     * are matched below their literal directory, relative ones against
+     * relative paths, and other inputs are kept as they are.
+     */
+    @Test
+    public void testCollectFiles() throws Exception {
+        Path root = Files.createTempDirectory("batch");
+        Path sub = Files.createDirectory(root.resolve("sub"));
+        List<Path> created = Arrays.asList(root.resolve("a.txt"), root.resolve("b.dat"),
+                sub.resolve("c.txt"), sub.resolve("d.dat"));
+        for (Path file : created) {
+            Files.write(file, new byte[0]);
+        }
+        try {
+            assertEquals(Arrays.asList(root.resolve("a.txt"), sub.resolve("c.txt")),
+                    sorted(BatchParserDriver.collectFiles(Arrays.asList(root.toString()), "*.txt")));
+            assertEquals(Arrays.asList(root.resolve("b.dat"), sub.resolve("d.dat")),
+                    sorted(BatchParserDriver.collectFiles(Arrays.asList(root.toString()), "*.dat")));
+            assertEquals(Arrays.asList(root.resolve("a.txt")),
+                    BatchParserDriver.collectFiles(Arrays.asList(root + "/*.txt"), "*.dat"));
+            assertEquals(Arrays.asList(root.resolve("b.dat"), sub.resolve("d.dat")),
+                    sorted(BatchParserDriver.collectFiles(Arrays.asList(root + "/**.dat"), "*.txt")));
+
+            assertEquals(Arrays.asList(Paths.get("tests/test2_with_error.txt"),
+                    Paths.get("tests/test3_with_error.txt")),
+                    sorted(BatchParserDriver.collectFiles(Arrays.asList("tests/*_with_error.txt"), "*.txt")));
+
+            /* A file is listed once, and a missing one is left to fail. */
+            assertEquals(Arrays.asList(root.resolve("a.txt"), sub.resolve("c.txt"), root.resolve("none.txt")),
+                    BatchParserDriver.collectFiles(Arrays.asList(root + "/a.txt", sub.toString(),
+                            root.resolve("a.txt").toString(), root + "/none.txt"), "*.txt"));
+        } finally {
+            for (Path file : created) {
+                Files.delete(file);
+            }
+            Files.delete(sub);
+            Files.delete(root);
+        }
+    }
+
+    /**
+     * The summary lists the files largest first with their diagnostics, the
+     * errors past the cap and the failures, then the totals.
+     */
+    @Test
+    public void testSummary() throws Exception {
+        List<Path> files = BatchParserDriver.collectFiles(
+                Arrays.asList("tests/*_with_error.txt", "tests/test.txt", "tests/missing.txt"), "*.txt");
+        StringWriter summary = new StringWriter();
+        boolean failed = BatchParserDriver.writeSummary(BatchParserDriver.parseAll(files,
+                ParserGenerator.createRecoveringParserFactory(
+                        new GrammarLoader().load("grammar/grammer_changed_from_solution.txt"), 1), 2),
+                2, 0, new PrintWriter(summary));
+        assertTrue(failed);
+        assertEquals(Arrays.asList(
+                "ERRORS tests/test2_with_error.txt  115 tokens, 2 errors, # ms",
+                "    15:3: No production for funcDefList on seeing ;, expected one of [$, float, id, int]",
+                "    1 more errors not reported.",
+                "OK     tests/test.txt  106 tokens, 0 errors, # ms",
+                "ERRORS tests/test3_with_error.txt  45 tokens, 5 errors, # ms",
+                "    1:15: Expected {, found [",
+                "    4 more errors not reported.",
+                "FAILED tests/missing.txt  0 tokens, 0 errors, # ms",
+                "    java.io.FileNotFoundException: tests/missing.txt (No such file or directory)",
+                "4 files, 3 with errors, 266 tokens, # ms parse time, # ms elapsed on 2 threads"),
+                Arrays.asList(summary.toString().replaceAll("\\d+\\.\\d+ ms", "# ms").split("\\R")));
+    }
+
+    private static List<Path> sorted(List<Path> files) {
+        List<Path> sorted = new ArrayList<>(files);
+        Collections.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,45 @@
+package parser;
+
+import datastructure.Terminal;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ASTBuilderTest {
+
+    public ASTBuilderTest() {
+    }
+
+    /**
+     * Punctuation is dropped, single child chains collapse, the statement
+     * list is one node and the tail variables fold into a left associative
+     * expression.  The parse tree is left as it was and shares its leaves.
+     */
+    @Test
+    public void testShape() throws Exception {
+        ParseTree tree = Samples.parse(ParserGenerator.createParseTable(Samples.grammar()),
+                Samples.lexText("program {\n\tint x;\n\tx = a + b - c;\n\tput(x * 2);\n};\n"));
+        String before = Samples.describe(tree);
+        ParseTree ast = ASTBuilder.forGrammar(Samples.grammar()).build(tree);
+
+        assertEquals("progBody -> [program, statementList -> [varDeclOrAssign -> [int, id], "
+                + "varDeclOrAssign -> [id, varDeclOrAssignTail -> [=, arithExpr -> [arithExpr -> [id, +, id], -, id]]], "
+                + "statement -> [put, term -> [id, *, int]]]] program@1 int@2 x@2 x@3 =@3 a@3 +@3 b@3 -@3 c@3 "
+                + "put@4 x@4 *@4 2@4", Samples.describe(ast));
+        assertEquals(23, ASTBuilder.countNodes(ast));
+
+        assertEquals(before, Samples.describe(tree));
+        List<Terminal> leaves = Samples.leaves(tree);
+        for (Terminal leaf : Samples.leaves(ast)) {
+            boolean shared = false;
+            for (Terminal original : leaves) {
+                shared |= original == leaf;
+            }
+            assertTrue(leaf.getLexeme(), shared);
+        }
+    }
+}
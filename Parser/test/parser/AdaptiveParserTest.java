@@ -0,0 +1,28 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class AdaptiveParserTest {
+
+    public AdaptiveParserTest() {
+    }
+
+    @Test
+    public void testSamplesMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            assertEquals(file, Samples.describe(Samples.parse(table, input)),
+                    Samples.describe(Samples.parse(ParserGenerator.createAdaptiveParser(grammar), input)));
+        }
+    }
+}
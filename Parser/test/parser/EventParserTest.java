@@ -0,0 +1,123 @@
+package parser;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class EventParserTest {
+
+    /** Every program in tests/, including the ones with syntax errors. */
+    private static final List<String> FILES = Arrays.asList(
+            "tests/test.txt", "tests/test1.txt", "tests/test2.txt",
+            "tests/test2_with_error.txt", "tests/test3_with_error.txt",
+            "tests/example-valid-program.txt");
+
+    public EventParserTest() {
+    }
+
+    /**
+     * The events of a parse are the ones of a walk of the tree of a session,
+     * and a syntax error is the one a session reports.
+     */
+    @Test
+    public void testEventsMatchTreeWalk() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        int errors = 0;
+        for (String file : FILES) {
+            List<Terminal> input = Samples.lex(file);
+            List<String> events = new ArrayList<>();
+            Parser parser = ParserGenerator.createEventParser(grammar, new Recorder(events));
+            String expected = Samples.outcome(new ParseSession(table), input);
+            if (expected.startsWith("error: ")) {
+                ++errors;
+                try {
+                    Samples.parse(parser, input);
+                    fail(file);
+                } catch (ParseErrorException ex) {
+                    assertEquals(file, expected, "error: " + ex.getMessage());
+                }
+            } else {
+                Samples.parse(parser, input);
+                assertEquals(file, walk(Samples.parse(table, input)), events);
+            }
+        }
+        assertEquals(2, errors);
+    }
+
+    /** The repetitions of an EBNF grammar fire the events of flat list nodes. */
+    @Test
+    public void testEbnfEventsMatchSession() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            List<String> events = new ArrayList<>();
+            Samples.parse(ParserGenerator.createEventParser(grammar, new Recorder(events)), input);
+            assertEquals(file, walk(Samples.parse(table, input)), events);
+        }
+    }
+
+    /** @return The events a walk of a tree fires, in the recorder's format. */
+    static List<String> walk(ParseTree tree) {
+        List<String> events = new ArrayList<>();
+        walk(tree, events);
+        return events;
+    }
+
+    private static void walk(ParseTree tree, List<String> events) {
+        if (tree.getSymbol().equals(Epsilon.getInstance())) {
+            events.add("epsilon");
+        } else if (tree.getSymbol().isTerminal()) {
+            Terminal terminal = (Terminal) tree.getSymbol();
+            events.add(terminal.getValue() + " " + terminal.getLexeme());
+        } else {
+            events.add("enter " + tree.getSymbol());
+            for (ParseTree child : tree.getChildren()) {
+                walk(child, events);
+            }
+            events.add("exit " + tree.getSymbol());
+        }
+    }
+
+    /** Records the events of a parse as strings. */
+    static final class Recorder implements ParseListener {
+
+        private final List<String> events;
+
+        Recorder(List<String> events) {
+            this.events = events;
+        }
+
+        @Override
+        public void enterVariable(Variable variable) {
+            events.add("enter " + variable);
+        }
+
+        @Override
+        public void exitVariable(Variable variable) {
+            events.add("exit " + variable);
+        }
+
+        @Override
+        public void terminal(Terminal terminal) {
+            events.add(terminal.getValue() + " " + terminal.getLexeme());
+        }
+
+        @Override
+        public void epsilon() {
+            events.add("epsilon");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.GrammarNotLL1Exception;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import utils.GrammarAttributes;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class GrammarAnalysisTest {
+
+    public GrammarAnalysisTest() {
+    }
+
+    /**
+     * Applies random production edits and checks the maintained analysis
+     * against one computed from scratch after every edit.
+     */
+    @Test
+    public void testRandomEditsMatchFullAnalysis() throws Exception {
+        randomEdits(11, 200, false);
+    }
+
+    /**
+     * As above, undoing every edit right away, which must restore the
+     * analysis of the grammar before it.
+     */
+    @Test
+    public void testUndoneEditsMatchFullAnalysis() throws Exception {
+        randomEdits(23, 200, true);
+    }
+
+    private static void randomEdits(long seed, int steps, boolean undo) throws Exception {
+        Grammar grammar = Samples.grammar();
+        GrammarAnalysis analysis = new GrammarAnalysis(grammar);
+        check(analysis, grammar, "initial");
+
+        Random random = new Random(seed);
+        List<Variable> variables = new ArrayList<>(new LinkedHashSet<>(grammar.getVariables()));
+        List<Terminal> terminals = new ArrayList<>(grammar.getTerminals());
+        terminals.remove(EOF.getInstance());
+        terminals.remove(Epsilon.getInstance());
+        for (int step = 0; step < steps; ++step) {
+            Variable leftPart = variables.get(random.nextInt(variables.size()));
+            List<List<Symbol>> rightParts = grammar.getRelations().get(leftPart);
+            List<Symbol> rightPart = new ArrayList<>();
+            int length = random.nextInt(3);
+            for (int i = 0; i < length; ++i) {
+                rightPart.add(random.nextBoolean() ? variables.get(random.nextInt(variables.size()))
+                        : terminals.get(random.nextInt(terminals.size())));
+            }
+            if (rightPart.isEmpty()) {
+                rightPart.add(Epsilon.getInstance());
+            }
+
+            int operation = random.nextInt(3);
+            if (operation == 0 && rightParts != null && rightParts.size() > 1) {
+                List<Symbol> removed = new ArrayList<>(rightParts.get(random.nextInt(rightParts.size())));
+                String edit = step + ": remove " + leftPart + " -> " + removed;
+                analysis.removeProduction(leftPart, removed);
+                check(analysis, grammar, edit);
+                if (undo) {
+                    analysis.addProduction(leftPart, removed);
+                    check(analysis, grammar, "undo " + edit);
+                }
+            } else if (operation == 1 && rightParts != null && !rightParts.isEmpty()) {
+                List<Symbol> replaced = new ArrayList<>(rightParts.get(random.nextInt(rightParts.size())));
+                String edit = step + ": replace " + leftPart + " -> " + replaced + " by " + rightPart;
+                analysis.replaceProduction(leftPart, replaced, rightPart);
+                check(analysis, grammar, edit);
+                if (undo) {
+                    analysis.replaceProduction(leftPart, rightPart, replaced);
+                    check(analysis, grammar, "undo " + edit);
+                }
+            } else {
+                String edit = step + ": add " + leftPart + " -> " + rightPart;
+                analysis.addProduction(leftPart, rightPart);
+                check(analysis, grammar, edit);
+                if (undo) {
+                    analysis.removeProduction(leftPart, rightPart);
+                    check(analysis, grammar, "undo " + edit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks FIRST, FOLLOW, the conflicts and the table of an analysis
+     * against those computed from scratch for the grammar it edits.
+     */
+    private static void check(GrammarAnalysis analysis, Grammar grammar, String edit) {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
+        for (Variable variable : first.keySet()) {
+            assertEquals(edit + ", FIRST of " + variable, first.get(variable), analysis.getFirst(variable));
+            assertEquals(edit + ", FOLLOW of " + variable, follow.get(variable), analysis.getFollow(variable));
+        }
+
+        ParseTable expected;
+        List<String> conflicts;
+        try {
+            expected = ParserGenerator.createParseTable(grammar);
+            conflicts = Collections.emptyList();
+        } catch (GrammarNotLL1Exception ex) {
+            expected = null;
+            conflicts = ex.getConflicts();
+        }
+        assertEquals(edit + ", conflicts", conflicts, analysis.getConflicts());
+        assertEquals(edit, expected == null, !analysis.isLL1());
+        if (expected != null) {
+            ParseTable actual;
+            try {
+                actual = analysis.createParseTable();
+            } catch (GrammarNotLL1Exception ex) {
+                throw new AssertionError(edit + ", " + ex.getMessage());
+            }
+            for (Variable variable : expected.getVariables()) {
+                assertEquals(edit + ", row of " + variable,
+                        expected.getPredictions(variable), actual.getPredictions(variable));
+            }
+        }
+    }
+}
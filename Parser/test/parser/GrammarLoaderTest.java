@@ -0,0 +1,176 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import exceptions.GrammarFormatException;
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class GrammarLoaderTest {
+
+    public GrammarLoaderTest() {
+    }
+
+    @Test
+    public void testMultiLineProductions() throws Exception {
+        Grammar grammar = load("s a b\nx y\ns\n"
+                + "s->x\n"
+                + "   a\n"
+                + " | y\n"
+                + "   b\n"
+                + "a->x|EPSILON_VALUE\n"
+                + "b->y\n");
+        assertEquals("[[x, a], [y, b]]", grammar.getRelations().get(new Variable("s")).toString());
+        assertEquals("[[x], [EPSILON_VALUE]]", grammar.getRelations().get(new Variable("a")).toString());
+        assertEquals("[[y]]", grammar.getRelations().get(new Variable("b")).toString());
+    }
+
+    /** The alternatives of a variable given in several places add up. */
+    @Test
+    public void testSplitAlternatives() throws Exception {
+        Grammar grammar = load("s a\nx y\ns\n"
+                + "s->x a\n"
+                + "a->y\n"
+                + "s->y\n"
+                + "s->EPSILON_VALUE\n");
+        assertEquals("[[x, a], [y], [EPSILON_VALUE]]", grammar.getRelations().get(new Variable("s")).toString());
+        assertEquals(2, grammar.getRelations().size());
+    }
+
+    @Test
+    public void testComments() throws Exception {
+        Grammar grammar = load("# a grammar\n"
+                + "s a   # the variables\n"
+                + "x y\n"
+                + "\n"
+                + "s\n"
+                + "# the productions\n"
+                + "s->x a # the first\n"
+                + "\n"
+                + "a->y\n");
+        assertEquals(Arrays.asList(new Variable("s"), new Variable("a")), grammar.getVariables());
+        assertEquals(new Variable("s"), grammar.getStart());
+        assertEquals("[[x, a]]", grammar.getRelations().get(new Variable("s")).toString());
+        assertEquals("[[y]]", grammar.getRelations().get(new Variable("a")).toString());
+    }
+
+    @Test
+    public void testErrorPositions() throws Exception {
+        checkError("s\nx\ns\ns->x z\n", 4, 6,
+                "Right part does not belong to the variables nor the terminals : z");
+        checkError("s\nx\ns\ns x\n", 4, 3, "Expected '->' after s");
+        checkError("s\nx\ns\ns->x\nt->x\n", 5, 1, "Left part is not a declared variable : t");
+        checkError("s\nx\ns\ns->x||x\n", 4, 5, "Empty right part, use EPSILON_VALUE");
+        checkError("s\nx\ns\ns->(x||x)*\n", 4, 7, "Empty alternative, use EPSILON_VALUE");
+        checkError("s\nx\n", 3, 1, "Missing start symbol line");
+    }
+
+    /**
+     * The grammars give the grammars the old loader read from them without
+     * their comment and declaration lines, which the old format lacked.
+     */
+    @Test
+    public void testMatchesOldLoader() throws Exception {
+        for (String file : Arrays.asList("grammar/grammar.txt", "grammar/test_left_recursion_removed.txt",
+                Samples.GRAMMAR, "grammar/grammar_left_recursive.txt", "grammar/grammar_not_ll1.txt")) {
+            StringBuilder text = new StringBuilder();
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                if (!line.startsWith("#") && !line.startsWith("%")) {
+                    text.append(line).append('\n');
+                }
+            }
+            Grammar expected = oldLoad(text.toString());
+            Grammar actual = new GrammarLoader().load(file);
+            assertEquals(file, expected.getVariables(), actual.getVariables());
+            assertEquals(file, expected.getTerminals(), actual.getTerminals());
+            assertEquals(file, expected.getStart(), actual.getStart());
+            assertEquals(file, expected.getRelations(), actual.getRelations());
+        }
+    }
+
+    private static Grammar load(String text) throws Exception {
+        return new GrammarLoader().load(new StringReader(text));
+    }
+
+    private static void checkError(String text, int line, int column, String message) throws Exception {
+        try {
+            load(text);
+            fail(text);
+        } catch (GrammarFormatException ex) {
+            assertEquals(text, line, ex.getLine());
+            assertEquals(text, column, ex.getColumn());
+            assertEquals(text, line + ":" + column + ": " + message, ex.getMessage());
+        }
+    }
+
+    /**
+     * Reads a grammar the way GrammarParser did before GrammarLoader: one
+     * production per line, alternatives split on bars and symbols on
+     * spaces.
+     */
+    private static Grammar oldLoad(String text) throws Exception {
+        List<Variable> variables = new ArrayList<>();
+        List<Terminal> terminals = new ArrayList<>();
+        HashMap<Variable, List<List<Symbol>>> relations = new HashMap<>();
+        BufferedReader reader = new BufferedReader(new StringReader(text));
+        for (String value : reader.readLine().split("\\s+")) {
+            variables.add(new Variable(value));
+        }
+        for (String value : reader.readLine().split("\\s+")) {
+            terminals.add((Terminal) symbol(value, variables, null));
+        }
+        Variable start = new Variable(reader.readLine());
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("->");
+            List<List<Symbol>> rightParts = new ArrayList<>();
+            for (String alternative : parts[1].split("\\|")) {
+                List<Symbol> rightPart = new ArrayList<>();
+                for (String value : alternative.split("\\s+")) {
+                    rightPart.add(symbol(value, variables, terminals));
+                }
+                rightParts.add(rightPart);
+            }
+            relations.put(new Variable(parts[0]), rightParts);
+        }
+        return new Grammar(variables, terminals, relations, start);
+    }
+
+    /** @return The symbol of a name, a terminal if terminals is null. */
+    private static Symbol symbol(String value, List<Variable> variables, List<Terminal> terminals) {
+        if (value.equals("EPSILON_VALUE")) {
+            return Epsilon.getInstance();
+        }
+        if (value.equals("$")) {
+            return EOF.getInstance();
+        }
+        if (terminals == null) {
+            return new Terminal(value);
+        }
+        if (variables.contains(new Variable(value))) {
+            return new Variable(value);
+        }
+        assertTrue(value, terminals.contains(new Terminal(value)));
+        return new Terminal(value);
+    }
+}
@@ -0,0 +1,48 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class GrammarOptimizerTest {
+
+    public GrammarOptimizerTest() {
+    }
+
+    @Test
+    public void testRestoresSamples() throws Exception {
+        checkRestores(Samples.grammar());
+    }
+
+    /** The list nodes of an EBNF grammar are restored as they are. */
+    @Test
+    public void testRestoresEbnfSamples() throws Exception {
+        checkRestores(new GrammarLoader().load("grammar/grammar_ebnf.txt"));
+    }
+
+    /**
+     * Parses the samples with the original and the optimized grammar, and
+     * checks that the optimized grammar saves predict steps and that its
+     * restored trees are the original ones.
+     */
+    private static void checkRestores(Grammar grammar) throws Exception {
+        GrammarOptimizer optimizer = new GrammarOptimizer(grammar);
+        assertTrue(optimizer.getInlinedCount() > 0);
+        ParseTable original = ParserGenerator.createParseTable(grammar);
+        ParseTable optimized = ParserGenerator.createParseTable(optimizer.getGrammar());
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            ParseTree expected = Samples.parse(original, input);
+            ParseTree actual = Samples.parse(optimized, input);
+            assertTrue(file, GrammarOptimizer.countPredictSteps(actual)
+                    < GrammarOptimizer.countPredictSteps(expected));
+            assertEquals(file, Samples.describe(expected), Samples.describe(optimizer.restore(actual)));
+        }
+    }
+}
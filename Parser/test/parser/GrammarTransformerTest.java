@@ -0,0 +1,64 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import utils.GrammarTransformer;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class GrammarTransformerTest {
+
+    /** Every program in tests/, including the ones with syntax errors. */
+    private static final List<String> FILES = Arrays.asList(
+            "tests/test.txt", "tests/test1.txt", "tests/test2.txt",
+            "tests/test2_with_error.txt", "tests/test3_with_error.txt",
+            "tests/example-valid-program.txt");
+
+    public GrammarTransformerTest() {
+    }
+
+    /**
+     * The left recursive grammar becomes LL(1) and accepts the programs the
+     * solution grammar accepts, with the same leaves.
+     */
+    @Test
+    public void testLeftRecursiveGrammarMadeLL1() throws Exception {
+        Grammar grammar = new GrammarParser("grammar/grammar_left_recursive.txt").generateGrammar();
+        GrammarTransformer.makeLL1Ready(grammar);
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ParseTable solution = ParserGenerator.createParseTable(Samples.grammar());
+        int accepted = 0;
+        for (String file : FILES) {
+            List<Terminal> input = Samples.lex(file);
+            List<String> expected = leaves(solution, input);
+            assertEquals(file, expected, leaves(table, input));
+            if (expected != null) {
+                ++accepted;
+            }
+        }
+        assertEquals(4, accepted);
+    }
+
+    /** @return The values and lexemes of the leaves, or null on an error. */
+    private static List<String> leaves(ParseTable table, List<Terminal> input) throws Exception {
+        ParseTree tree;
+        try {
+            tree = Samples.parse(table, input);
+        } catch (ParseErrorException ex) {
+            return null;
+        }
+        List<String> leaves = new ArrayList<>();
+        for (Terminal leaf : Samples.leaves(tree)) {
+            leaves.add(leaf.getValue() + " " + leaf.getLexeme() + "@" + leaf.getLine());
+        }
+        return leaves;
+    }
+}
@@ -0,0 +1,54 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class HybridParserTest {
+
+    public HybridParserTest() {
+    }
+
+    /**
+     * The hybrid parser builds binary nodes for expressions, so only the
+     * leaves can be compared with a session's tree: both must hold the
+     * input in order, with its lexemes.
+     */
+    @Test
+    public void testSamplesKeepInput() throws Exception {
+        Grammar grammar = new GrammarLoader().load(Samples.GRAMMAR);
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            assertEquals(file, lexemes(Samples.parse(table, input)),
+                    lexemes(Samples.parse(ParserGenerator.createHybridParser(grammar), input)));
+        }
+    }
+
+    @Test
+    public void testTruncatedInputFails() throws Exception {
+        Grammar grammar = new GrammarLoader().load(Samples.GRAMMAR);
+        List<Terminal> input = Samples.lex(Samples.PROGRAMS.get(0));
+        try {
+            Samples.parse(ParserGenerator.createHybridParser(grammar), input.subList(0, input.size() - 1));
+            fail();
+        } catch (ParseErrorException e) {
+        }
+    }
+
+    private static List<String> lexemes(ParseTree tree) {
+        List<String> lexemes = new ArrayList<>();
+        for (Terminal leaf : Samples.leaves(tree)) {
+            lexemes.add(leaf.getValue() + " " + leaf.getLexeme() + "@" + leaf.getLine());
+        }
+        return lexemes;
+    }
+}
@@ -0,0 +1,182 @@
+package parser;
+
+import datastructure.Terminal;
+import exceptions.ParseErrorException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class IncrementalParserTest {
+
+    /** The statement the random edits insert and delete. */
+    private static final String[] STATEMENT = {"id", "=", "id", "+", "int", ";"};
+
+    public IncrementalParserTest() {
+    }
+
+    @Test
+    public void testSamplesMatchSession() throws Exception {
+        ParseTable table = ParserGenerator.createParseTable(Samples.grammar());
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            IncrementalParser parser = new IncrementalParser(table);
+            assertEquals(file, Samples.parse(table, input).toString(), parser.parse(input).toString());
+        }
+    }
+
+    /**
+     * Applies random edits, valid and invalid, and checks each result
+     * against a full parse of the edited tokens.
+     */
+    @Test
+    public void testRandomEditsMatchSession() throws Exception {
+        checkRandomEdits(ParserGenerator.createParseTable(Samples.grammar()));
+    }
+
+    /**
+     * The nodes of the repetitions of an EBNF grammar are reused, while the
+     * trees handed back have the flat list nodes of a session.
+     */
+    @Test
+    public void testEbnfMatchesSession() throws Exception {
+        ParseTable table = ParserGenerator.createParseTable(new GrammarLoader().load("grammar/grammar_ebnf.txt"));
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            IncrementalParser parser = new IncrementalParser(table);
+            assertEquals(file, Samples.parse(table, input).toString(), parser.parse(input).toString());
+        }
+        checkRandomEdits(table);
+    }
+
+    private static void checkRandomEdits(ParseTable table) throws Exception {
+        Random random = new Random(37);
+        List<Terminal> tokens = new ArrayList<>(Samples.lex("tests/example-valid-program.txt"));
+        IncrementalParser parser = new IncrementalParser(table);
+        parser.parse(tokens);
+        int reused = 0;
+        int accepted = 0;
+        for (int step = 0; step < 300; ++step) {
+            int start;
+            int end;
+            List<Terminal> inserted = new ArrayList<>();
+            int kind = random.nextInt(5);
+            if (kind == 0) {
+                /* A statement at the start of a statement list. */
+                List<Integer> lists = find(tokens, new String[] {"{"}, program(tokens));
+                start = end = lists.get(random.nextInt(lists.size())) + 1;
+                for (String value : STATEMENT) {
+                    inserted.add(new Terminal(value));
+                }
+            } else if (kind == 1) {
+                List<Integer> statements = find(tokens, STATEMENT, program(tokens));
+                if (statements.isEmpty()) {
+                    continue;
+                }
+                start = statements.get(random.nextInt(statements.size()));
+                end = start + STATEMENT.length;
+            } else if (kind == 2 || kind == 3) {
+                /* Duplicate or delete a function definition. */
+                List<Integer> ends = unitEnds(tokens);
+                int program = ends.indexOf(programEnd(tokens));
+                if (program == ends.size() - 1) {
+                    continue;
+                }
+                int unit = program + 1 + random.nextInt(ends.size() - program - 1);
+                start = ends.get(unit - 1);
+                end = ends.get(unit);
+                if (kind == 2) {
+                    inserted.addAll(tokens.subList(start, end));
+                    end = start;
+                }
+            } else {
+                /* Delete or duplicate a single token, which rarely parses. */
+                start = random.nextInt(tokens.size());
+                end = start + 1;
+                if (random.nextBoolean()) {
+                    inserted.add(new Terminal(tokens.get(start).getValue()));
+                    inserted.add(tokens.get(start));
+                }
+            }
+
+            List<Terminal> edited = new ArrayList<>(tokens);
+            edited.subList(start, end).clear();
+            edited.addAll(start, inserted);
+            String expected;
+            try {
+                expected = Samples.parse(table, edited).toString();
+            } catch (ParseErrorException ex) {
+                expected = null;
+            }
+            String actual;
+            try {
+                actual = parser.edit(start, end, inserted).toString();
+                reused += parser.getReusedNodeCount();
+            } catch (ParseErrorException ex) {
+                actual = null;
+            }
+            assertEquals("step " + step, expected, actual);
+            if (expected != null) {
+                tokens = edited;
+                ++accepted;
+            }
+            assertEquals(tokens.size(), parser.getTokenCount());
+            assertEquals(Samples.parse(table, tokens).toString(), parser.getTree().toString());
+        }
+        assertTrue(accepted > 100);
+        assertTrue(reused > 0);
+    }
+
+    /** @return The index of the program keyword. */
+    private static int program(List<Terminal> tokens) {
+        return find(tokens, new String[] {"program"}, 0).get(0);
+    }
+
+    /** @return The index after the end of the program body. */
+    private static int programEnd(List<Terminal> tokens) {
+        int program = program(tokens);
+        for (int end : unitEnds(tokens)) {
+            if (end > program) {
+                return end;
+            }
+        }
+        throw new AssertionError("no program body");
+    }
+
+    /** @return The indexes after each "} ;" outside of braces. */
+    private static List<Integer> unitEnds(List<Terminal> tokens) {
+        List<Integer> ends = new ArrayList<>();
+        int depth = 0;
+        for (int i = 0; i < tokens.size(); ++i) {
+            String value = tokens.get(i).getValue();
+            if (value.equals("{")) {
+                ++depth;
+            } else if (value.equals("}")) {
+                --depth;
+            } else if (depth == 0 && value.equals(";") && tokens.get(i - 1).getValue().equals("}")) {
+                ends.add(i + 1);
+            }
+        }
+        return ends;
+    }
+
+    /** @return The indexes from which the tokens have the given values. */
+    private static List<Integer> find(List<Terminal> tokens, String[] values, int from) {
+        List<Integer> found = new ArrayList<>();
+        for (int i = from; i + values.length <= tokens.size(); ++i) {
+            int j = 0;
+            while (j < values.length && tokens.get(i + j).getValue().equals(values[j])) {
+                ++j;
+            }
+            if (j == values.length) {
+                found.add(i);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,90 @@
+package parser;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class IntStackParserTest {
+
+    /** Every program in tests/, including the ones with syntax errors. */
+    private static final List<String> FILES = Arrays.asList(
+            "tests/test.txt", "tests/test1.txt", "tests/test2.txt",
+            "tests/test2_with_error.txt", "tests/test3_with_error.txt",
+            "tests/example-valid-program.txt");
+
+    public IntStackParserTest() {
+    }
+
+    @Test
+    public void testFilesMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        int errors = 0;
+        for (String file : FILES) {
+            List<Terminal> input = Samples.lex(file);
+            String expected = Samples.outcome(new ParseSession(table), input);
+            if (expected.startsWith("error: ")) {
+                ++errors;
+            }
+            assertEquals(file, expected, Samples.outcome(ParserGenerator.createCompactParser(grammar), input));
+            assertEquals(file, expected, Samples.outcome(ParserGenerator.createIntStackParser(grammar), input));
+        }
+        assertTrue(errors > 0);
+    }
+
+    /** The repetitions of an EBNF grammar give the flat list nodes of a session. */
+    @Test
+    public void testEbnfMatchesSession() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (String file : FILES) {
+            List<Terminal> input = Samples.lex(file);
+            String expected = Samples.outcome(new ParseSession(table), input);
+            assertEquals(file, expected, Samples.outcome(ParserGenerator.createCompactParser(grammar), input));
+            assertEquals(file, expected, Samples.outcome(ParserGenerator.createIntStackParser(grammar), input));
+        }
+    }
+
+    /**
+     * Deletes, duplicates and replaces random tokens of a valid program, so
+     * that macro predictions meet errors at every depth of their chains.
+     */
+    @Test
+    public void testRandomEditsMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        List<Terminal> terminals = new ArrayList<>();
+        for (Terminal terminal : grammar.getTerminals()) {
+            if (!(terminal instanceof Epsilon)) {
+                terminals.add(terminal);
+            }
+        }
+        List<Terminal> program = Samples.lex("tests/example-valid-program.txt");
+        Random random = new Random(44);
+        for (int step = 0; step < 500; ++step) {
+            List<Terminal> input = new ArrayList<>(program);
+            int position = random.nextInt(input.size());
+            int kind = random.nextInt(3);
+            if (kind == 0) {
+                input.remove(position);
+            } else if (kind == 1) {
+                input.add(position, input.get(position));
+            } else {
+                input.set(position, terminals.get(random.nextInt(terminals.size())));
+            }
+            String expected = Samples.outcome(new ParseSession(table), input);
+            assertEquals("step " + step, expected,
+                    Samples.outcome(ParserGenerator.createIntStackParser(grammar), input));
+        }
+    }
+}
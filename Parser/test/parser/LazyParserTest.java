@@ -0,0 +1,63 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class LazyParserTest {
+
+    public LazyParserTest() {
+    }
+
+    /**
+     * Skips function bodies, fed as a list and one terminal at a time, and
+     * checks the expanded trees against a session's.
+     */
+    @Test
+    public void testExpandedSamplesMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        List<Variable> skipped = Collections.singletonList(new Variable("funcBody"));
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            String expected = Samples.describe(Samples.parse(table, input));
+
+            LazyParser parser = ParserGenerator.createLazyParser(grammar, skipped);
+            ParseTree tree = parser.parse(input);
+            assertTrue(file, parser.getDeferredCount() > 0);
+            assertEquals(file, parser.getDeferredCount(), DeferredParseTree.expandAll(tree));
+            assertEquals(file, expected, Samples.describe(tree));
+
+            tree = Samples.parse(ParserGenerator.createLazyParser(grammar, skipped), input);
+            DeferredParseTree.expandAll(tree);
+            assertEquals(file, expected, Samples.describe(tree));
+        }
+    }
+
+    /**
+     * A class declaration opens with class and closes with a semicolon, but
+     * its fields end with semicolons too, so it cannot be skipped by
+     * counting that pair.
+     */
+    @Test
+    public void testUnbalancedPairRejected() throws Exception {
+        Grammar grammar = Samples.grammar();
+        try {
+            ParserGenerator.createLazyParser(grammar, Collections.singletonList(new Variable("classDecl")));
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("classDecl can derive ; without class", e.getMessage());
+        }
+        assertTrue(ParserGenerator.isBalanced(grammar, new Variable("funcBody"), new Terminal("{"), new Terminal("}")));
+        assertFalse(ParserGenerator.isBalanced(grammar, new Variable("classDecl"), new Terminal("class"),
+                new Terminal(";")));
+    }
+}
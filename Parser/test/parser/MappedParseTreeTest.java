@@ -0,0 +1,88 @@
+package parser;
+
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import serialization.BinaryTreeWriter;
+import serialization.MappedParseTree;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class MappedParseTreeTest {
+
+    public MappedParseTreeTest() {
+    }
+
+    /**
+     * Writes the tree of every sample, maps the file and checks every node
+     * against the tree in preorder, then reads back the whole tree and the
+     * subtrees of the first variables.
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        ParseTable table = ParserGenerator.createParseTable(Samples.grammar());
+        Path path = Files.createTempFile("tree", ".bin");
+        try {
+            for (String file : Samples.PROGRAMS) {
+                ParseTree tree = Samples.parse(table, Samples.lex(file));
+                List<ParseTree> nodes = new ArrayList<>();
+                preorder(tree, nodes);
+                BinaryTreeWriter.write(tree, path);
+                try (MappedParseTree mapped = new MappedParseTree(path)) {
+                    assertEquals(file, nodes.size(), mapped.size());
+                    int subtrees = 0;
+                    for (int node = 0; node < nodes.size(); ++node) {
+                        ParseTree original = nodes.get(node);
+                        assertEquals(file, original.getSymbol(), mapped.getSymbol(node));
+                        assertEquals(file, original.getChildren().size(), mapped.getChildCount(node));
+                        int[] children = mapped.getChildren(node);
+                        for (int i = 0; i < children.length; ++i) {
+                            assertTrue(file, original.getChildren().get(i) == nodes.get(children[i]));
+                        }
+                        Symbol token = mapped.getToken(node);
+                        if (original.getSymbol() instanceof Terminal) {
+                            Terminal expected = (Terminal) original.getSymbol();
+                            Terminal actual = (Terminal) token;
+                            assertEquals(file, expected.getLexeme(), actual.getLexeme());
+                            assertEquals(file, expected.getLine(), actual.getLine());
+                            assertEquals(file, expected.getIndex(), actual.getIndex());
+                        } else if (subtrees < 50) {
+                            /* The subtrees of the first variables, read back. */
+                            assertEquals(file, Samples.describe(original),
+                                    Samples.describe(mapped.toParseTree(node)));
+                            ++subtrees;
+                        }
+                    }
+                    assertEquals(file, Samples.describe(tree), Samples.describe(mapped.toParseTree(0)));
+
+                    Variable funcDef = new Variable("funcDef");
+                    List<Integer> expected = new ArrayList<>();
+                    for (int node = 0; node < nodes.size(); ++node) {
+                        if (nodes.get(node).getSymbol().equals(funcDef)) {
+                            expected.add(node);
+                        }
+                    }
+                    assertFalse(file, expected.isEmpty());
+                    assertEquals(file, expected, mapped.find(0, funcDef));
+                }
+            }
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static void preorder(ParseTree tree, List<ParseTree> nodes) {
+        nodes.add(tree);
+        for (ParseTree child : tree.getChildren()) {
+            preorder(child, nodes);
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ParallelParserTest {
+
+    private static final List<Variable> UNITS = Arrays.asList(
+            new Variable("classDecl"), new Variable("progBody"), new Variable("funcDef"));
+
+    public ParallelParserTest() {
+    }
+
+    @Test
+    public void testFilesMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser parser = ParserGenerator.createParallelParser(grammar, UNITS, pool);
+            for (String file : Samples.PROGRAMS) {
+                List<Terminal> input = Samples.lex(file);
+                assertEquals(file, Samples.outcome(new ParseSession(table), input), Samples.outcome(parser, input));
+                assertEquals(file, topLevelUnits(input), parser.getUnitCount());
+                assertFalse(file, parser.fellBack());
+            }
+
+            /* A program long enough to be split across tasks. */
+            List<Terminal> program = Samples.lex("tests/example-valid-program.txt");
+            List<Terminal> functions = program.subList(functionStart(program), program.size());
+            List<Terminal> input = new ArrayList<>(program);
+            for (int i = 0; i < 30; ++i) {
+                input.addAll(functions);
+            }
+            assertEquals(Samples.outcome(new ParseSession(table), input), Samples.outcome(parser, input));
+            assertEquals(topLevelUnits(input), parser.getUnitCount());
+            assertFalse(parser.fellBack());
+
+            for (String file : Arrays.asList("tests/test2_with_error.txt", "tests/test3_with_error.txt")) {
+                input = Samples.lex(file);
+                String expected = Samples.outcome(new ParseSession(table), input);
+                assertTrue(file, expected.startsWith("error: "));
+                assertEquals(file, expected, Samples.outcome(parser, input));
+                assertTrue(file, parser.fellBack());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Deletes, duplicates and replaces random tokens, so that errors fall
+     * in units, between them and across their bounds, and checks that the
+     * tree or error is the one of a session.
+     */
+    @Test
+    public void testRandomEditsMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ParallelParser parser = ParserGenerator.createParallelParser(grammar, UNITS, pool);
+            List<Terminal> program = Samples.lex("tests/example-valid-program.txt");
+            Random random = new Random(49);
+            int keptUnits = 0;
+            for (int step = 0; step < 500; ++step) {
+                List<Terminal> input = new ArrayList<>(program);
+                int position = random.nextInt(input.size());
+                int kind = random.nextInt(3);
+                if (kind == 0) {
+                    input.remove(position);
+                } else if (kind == 1) {
+                    input.add(position, input.get(position));
+                } else {
+                    input.set(position, input.get(random.nextInt(input.size())));
+                }
+                String expected = Samples.outcome(new ParseSession(table), input);
+                assertEquals("step " + step, expected, Samples.outcome(parser, input));
+                if (expected.startsWith("error: ") && parser.getUnitCount() > 0) {
+                    ++keptUnits;
+                }
+            }
+            /* Errors after the first unit keep the units before them. */
+            assertTrue(keptUnits > 0);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** The units of an EBNF grammar go into flat list nodes. */
+    @Test
+    public void testEbnfListsMatchSession() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ParallelParser parser = ParserGenerator.createParallelParser(grammar, UNITS, ForkJoinPool.commonPool());
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            assertEquals(file, Samples.outcome(new ParseSession(table), input), Samples.outcome(parser, input));
+            assertEquals(file, topLevelUnits(input), parser.getUnitCount());
+        }
+    }
+
+    @Test
+    public void testUnitsChecked() throws Exception {
+        Grammar grammar = Samples.grammar();
+        for (String unit : Arrays.asList("prog", "classDeclList", "unknown")) {
+            try {
+                ParserGenerator.createParallelParser(grammar, Collections.singletonList(new Variable(unit)),
+                        ForkJoinPool.commonPool());
+                fail(unit);
+            } catch (IllegalArgumentException e) {
+                assertEquals("Cannot parse " + unit + " as a unit", e.getMessage());
+            }
+        }
+        try {
+            ParserGenerator.createParallelParser(grammar,
+                    Arrays.asList(new Variable("funcDef"), new Variable("funcHead")), ForkJoinPool.commonPool());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("funcDef and funcHead both open with "));
+        }
+        try {
+            ParserGenerator.createParallelParser(grammar, Collections.singletonList(new Variable("assignStat")),
+                    ForkJoinPool.commonPool());
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertEquals("assignStat does not end with a terminal", e.getMessage());
+        }
+    }
+
+    /** Class declarations alone are parsed concurrently, the rest in order. */
+    @Test
+    public void testSomeUnits() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ParallelParser parser = ParserGenerator.createParallelParser(grammar,
+                Collections.singletonList(new Variable("classDecl")), ForkJoinPool.commonPool());
+        List<Terminal> input = Samples.lex("tests/example-valid-program.txt");
+        assertEquals(Samples.outcome(new ParseSession(table), input), Samples.outcome(parser, input));
+        assertTrue(parser.getUnitCount() > 0);
+        assertTrue(parser.fellBack());
+    }
+
+    /** @return The number of semicolons outside braces. */
+    private static int topLevelUnits(List<Terminal> input) {
+        int units = 0;
+        int depth = 0;
+        for (Terminal terminal : input) {
+            if (terminal.getValue().equals("{")) {
+                ++depth;
+            } else if (terminal.getValue().equals("}")) {
+                --depth;
+            } else if (depth == 0 && terminal.getValue().equals(";")) {
+                ++units;
+            }
+        }
+        return units;
+    }
+
+    /** @return The position of the first function after the program body. */
+    private static int functionStart(List<Terminal> program) {
+        int depth = 0;
+        boolean body = false;
+        for (int i = 0; i < program.size(); ++i) {
+            String value = program.get(i).getValue();
+            if (value.equals("program")) {
+                body = true;
+            } else if (value.equals("{")) {
+                ++depth;
+            } else if (value.equals("}") && --depth == 0 && body) {
+                return i + 2;
+            }
+        }
+        throw new IllegalArgumentException("No program body");
+    }
+}
@@ -0,0 +1,109 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Variable;
+import exceptions.GrammarNotLL1Exception;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ParallelTableTest {
+
+    public ParallelTableTest() {
+    }
+
+    /**
+     * Builds the tables of the sample grammars on one and four workers,
+     * with the relations of the grammar in random orders.
+     */
+    @Test
+    public void testTableIndependentOfPoolAndOrder() throws Exception {
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            Random random = new Random(40);
+            for (String file : Arrays.asList(Samples.GRAMMAR, "grammar/grammar.txt",
+                    "grammar/test_left_recursion_removed.txt")) {
+                Grammar grammar = new GrammarParser(file).generateGrammar();
+                String expected = dump(ParserGenerator.createParseTable(grammar, one));
+                for (int round = 0; round < 5; ++round) {
+                    Grammar shuffled = shuffle(grammar, random);
+                    assertEquals(file, expected, dump(ParserGenerator.createParseTable(shuffled, one)));
+                    assertEquals(file, expected, dump(ParserGenerator.createParseTable(shuffled, four)));
+                }
+            }
+        } finally {
+            one.shutdown();
+            four.shutdown();
+        }
+    }
+
+    @Test
+    public void testConflictsListed() throws Exception {
+        assertEquals(Arrays.asList(
+                "Conflict detected for statement, id, between statement -> assignStat ; "
+                + "and statement -> type id arraySizeList ;",
+                "Conflict detected for factor, id, between factor -> variable and factor -> funcCall"),
+                conflicts(new GrammarParser("grammar/grammar_not_ll1.txt").generateGrammar(),
+                        ForkJoinPool.commonPool()));
+
+        /* Every lookahead of a left recursive variable is a conflict. */
+        Grammar grammar = new GrammarParser("grammar/grammar_left_recursive.txt").generateGrammar();
+        ForkJoinPool four = new ForkJoinPool(4);
+        try {
+            List<String> conflicts = conflicts(grammar, four);
+            assertEquals(56, conflicts.size());
+            assertEquals("Conflict detected for classDeclList, class, between "
+                    + "classDeclList -> classDeclList classDecl and classDeclList -> EPSILON_VALUE",
+                    conflicts.get(0));
+            assertEquals("Conflict detected for aParamsList, float, between "
+                    + "aParamsList -> aParamsList , expr and aParamsList -> expr",
+                    conflicts.get(55));
+            assertEquals(conflicts, conflicts(shuffle(grammar, new Random(56)), four));
+        } finally {
+            four.shutdown();
+        }
+    }
+
+    private static List<String> conflicts(Grammar grammar, ForkJoinPool pool) throws Exception {
+        try {
+            ParserGenerator.createParseTable(grammar, pool);
+            fail("no conflict");
+            return null;
+        } catch (GrammarNotLL1Exception ex) {
+            return ex.getConflicts();
+        }
+    }
+
+    /** @return The grammar with its relations in a random order. */
+    private static Grammar shuffle(Grammar grammar, Random random) {
+        List<Variable> leftParts = new ArrayList<>(grammar.getRelations().keySet());
+        Collections.shuffle(leftParts, random);
+        LinkedHashMap<Variable, List<List<Symbol>>> relations = new LinkedHashMap<>();
+        for (Variable variable : leftParts) {
+            relations.put(variable, grammar.getRelations().get(variable));
+        }
+        return new Grammar(grammar.getVariables(), grammar.getTerminals(), relations, grammar.getStart());
+    }
+
+    /** @return Every prediction of a table, by variable name. */
+    private static String dump(ParseTable table) {
+        List<String> rows = new ArrayList<>();
+        for (Variable variable : table.getVariables()) {
+            rows.add(variable + " " + table.getPredictions(variable));
+        }
+        Collections.sort(rows);
+        return table.getStorageSize() + " " + rows;
+    }
+}
@@ -0,0 +1,56 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.Test;
+import serialization.JsonTreeSerializer;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ParseSessionTest {
+
+    public ParseSessionTest() {
+    }
+
+    @Test
+    public void testLeavesKeepLexeme() throws Exception {
+        ParseTable table = ParserGenerator.createParseTable(Samples.grammar());
+        ParseSession session = new ParseSession(table, new Variable("statement"));
+        ParseTree tree = Samples.parse(session, Samples.lexText("x = 1;"));
+
+        List<Terminal> leaves = Samples.leaves(tree);
+        assertEquals(4, leaves.size());
+        assertEquals("id", leaves.get(0).getValue());
+        assertEquals("x", leaves.get(0).getLexeme());
+        assertEquals("=", leaves.get(1).getLexeme());
+        assertEquals("1", leaves.get(2).getLexeme());
+        assertEquals(";", leaves.get(3).getLexeme());
+
+        StringWriter out = new StringWriter();
+        new JsonTreeSerializer(out).write(tree);
+        String json = out.toString();
+        assertTrue(json, json.contains("{\"name\":\"id\",\"lexeme\":\"x\",\"line\":1,"));
+        assertTrue(json, json.contains("\"lexeme\":\"1\""));
+    }
+
+    @Test
+    public void testEmptyRepetitionHasNoChildren() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        ParseTree tree = Samples.parse(table, Samples.lexText("program { } ;"));
+
+        ParseTree classes = tree.getChildren().get(0);
+        assertEquals(new Variable("classDeclList"), classes.getSymbol());
+        assertTrue(classes.getChildren().isEmpty());
+        ParseTree body = tree.getChildren().get(1);
+        ParseTree statements = body.getChildren().get(1).getChildren().get(1);
+        assertEquals(new Variable("statementList"), statements.getSymbol());
+        assertTrue(statements.getChildren().isEmpty());
+    }
+}
@@ -0,0 +1,148 @@
+package parser;
+
+import datastructure.EOF;
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Symbol;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+import utils.GrammarAttributes;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ParseTableTest {
+
+    public ParseTableTest() {
+    }
+
+    /** The comb of every LL(1) sample grammar answers as its dense table. */
+    @Test
+    public void testSampleCombsMatchDense() throws Exception {
+        List<Grammar> grammars = new ArrayList<>();
+        for (String file : Arrays.asList(Samples.GRAMMAR, "grammar/grammar.txt",
+                "grammar/test_left_recursion_removed.txt")) {
+            grammars.add(new GrammarParser(file).generateGrammar());
+        }
+        grammars.add(new GrammarLoader().load("grammar/grammar_ebnf.txt"));
+        for (Grammar grammar : grammars) {
+            Map<Variable, Map<Terminal, List<Symbol>>> dense = dense(grammar);
+            ParseTable table = ParserGenerator.createParseTable(grammar);
+            assertTrue(table.isCompressed());
+            checkLookups(dense, table);
+        }
+    }
+
+    /**
+     * Random tables: sparse ones with a frequent production per row, which
+     * take the comb with defaults, and full ones with a production of their
+     * own in every entry, which take the dense fallback.
+     */
+    @Test
+    public void testGeneratedTablesMatchDense() throws Exception {
+        Random random = new Random(36);
+        int compressed = 0;
+        int fallbacks = 0;
+        for (int round = 0; round < 40; ++round) {
+            boolean full = round % 2 == 1;
+            int variableCount = 1 + random.nextInt(12);
+            int terminalCount = 1 + random.nextInt(24);
+            List<Variable> variables = new ArrayList<>();
+            for (int v = 0; v < variableCount; ++v) {
+                variables.add(new Variable("V" + v));
+            }
+            List<Terminal> terminals = new ArrayList<>();
+            terminals.add(EOF.getInstance());
+            for (int t = 0; t < terminalCount; ++t) {
+                terminals.add(new Terminal("t" + t));
+            }
+
+            Map<Variable, Map<Terminal, List<Symbol>>> dense = new LinkedHashMap<>();
+            for (Variable variable : variables) {
+                Map<Terminal, List<Symbol>> row = new LinkedHashMap<>();
+                List<Symbol> frequent = Collections.<Symbol>singletonList(Epsilon.getInstance());
+                for (Terminal terminal : terminals) {
+                    if (full) {
+                        row.put(terminal, Arrays.<Symbol>asList(terminal, variable));
+                    } else if (random.nextInt(3) == 0) {
+                        row.put(terminal, random.nextBoolean() ? frequent
+                                : Arrays.<Symbol>asList(terminal, variables.get(random.nextInt(variableCount))));
+                    }
+                }
+                dense.put(variable, row);
+            }
+
+            ParseTable table = new ParseTable(variables.get(0), dense);
+            if (table.isCompressed()) {
+                ++compressed;
+            } else {
+                ++fallbacks;
+            }
+            checkLookups(dense, table);
+        }
+        assertTrue(compressed > 0);
+        assertTrue(fallbacks > 0);
+    }
+
+    /**
+     * Checks every lookup of a table against the dense map, with a terminal
+     * and a variable the table has never seen.
+     */
+    private static void checkLookups(Map<Variable, Map<Terminal, List<Symbol>>> dense, ParseTable table) {
+        List<Terminal> terminals = new ArrayList<>();
+        terminals.add(EOF.getInstance());
+        for (Map<Terminal, List<Symbol>> row : dense.values()) {
+            for (Terminal terminal : row.keySet()) {
+                if (!terminals.contains(terminal)) {
+                    terminals.add(terminal);
+                }
+            }
+        }
+        terminals.add(new Terminal("unknown"));
+        List<Variable> variables = new ArrayList<>(dense.keySet());
+        variables.add(new Variable("unknown"));
+        for (Variable variable : variables) {
+            Map<Terminal, List<Symbol>> row = dense.get(variable);
+            if (row == null) {
+                row = Collections.emptyMap();
+            }
+            for (Terminal terminal : terminals) {
+                assertEquals(variable + " on " + terminal, row.get(terminal), table.getProduction(variable, terminal));
+            }
+            assertEquals(variable.toString(), row, table.getPredictions(variable));
+        }
+    }
+
+    /** @return The LL(1) table of a grammar, computed from its FIRST and FOLLOW sets. */
+    private static Map<Variable, Map<Terminal, List<Symbol>>> dense(Grammar grammar) {
+        HashMap<Variable, Set<Terminal>> first = GrammarAttributes.computeFirstSets(grammar);
+        HashMap<Variable, Set<Terminal>> follow = GrammarAttributes.computeFollowSets(grammar, first);
+        Map<Variable, Map<Terminal, List<Symbol>>> dense = new LinkedHashMap<>();
+        for (Map.Entry<Variable, List<List<Symbol>>> entry : grammar.getRelations().entrySet()) {
+            Map<Terminal, List<Symbol>> row = new HashMap<>();
+            for (List<Symbol> rightPart : entry.getValue()) {
+                Set<Terminal> lookaheads = GrammarAttributes.getFirstSetForSequence(rightPart, first);
+                if (lookaheads.remove(Epsilon.getInstance())) {
+                    lookaheads.addAll(follow.get(entry.getKey()));
+                }
+                for (Terminal terminal : lookaheads) {
+                    assertNull(row.put(terminal, rightPart));
+                }
+            }
+            dense.put(entry.getKey(), row);
+        }
+        return dense;
+    }
+}
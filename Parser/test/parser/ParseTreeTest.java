@@ -0,0 +1,93 @@
+package parser;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Stack;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ParseTreeTest {
+
+    public ParseTreeTest() {
+    }
+
+    /**
+     * The streamed TreeML must be the bytes the DOM writer it replaced
+     * produced, which the tree viewer reads.
+     */
+    @Test
+    public void testWriteToXMLMatchesDomWriter() throws Exception {
+        ParseTable table = ParserGenerator.createParseTable(Samples.grammar());
+        for (String file : Samples.PROGRAMS) {
+            ParseTree tree = Samples.parse(table, Samples.lex(file));
+            Path streamed = Files.createTempFile("streamed", ".xml");
+            Path dom = Files.createTempFile("dom", ".xml");
+            try {
+                tree.writeToXML(streamed.toString());
+                writeWithDom(tree, dom.toFile());
+                assertTrue(file, Arrays.equals(Files.readAllBytes(dom), Files.readAllBytes(streamed)));
+            } finally {
+                Files.delete(streamed);
+                Files.delete(dom);
+            }
+        }
+    }
+
+    /** The DOM based writeToXML the streamed one replaced. */
+    private static void writeWithDom(ParseTree root, File file) throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element mainRootElement = doc.createElement("tree");
+        doc.appendChild(mainRootElement);
+
+        Element declaration = doc.createElement("declarations");
+        Element attributeDecl = doc.createElement("attributeDecl");
+        attributeDecl.setAttribute("name", "name");
+        attributeDecl.setAttribute("type", "String");
+        declaration.appendChild(attributeDecl);
+        mainRootElement.appendChild(declaration);
+
+        Element treeBranchRoot = branch(doc, root.getSymbol().toString());
+        mainRootElement.appendChild(treeBranchRoot);
+
+        Stack<ParseTree> stack_tree = new Stack<>();
+        Stack<Element> stack_elements = new Stack<>();
+        stack_tree.push(root);
+        stack_elements.push(treeBranchRoot);
+        while (!stack_tree.isEmpty()) {
+            ParseTree top_tree = stack_tree.pop();
+            Element top_element = stack_elements.pop();
+            for (ParseTree tree : top_tree.getChildren()) {
+                Element e = branch(doc, tree.getSymbol().toString());
+                top_element.appendChild(e);
+                stack_tree.push(tree);
+                stack_elements.push(e);
+            }
+        }
+
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty("omit-xml-declaration", "yes");
+        transformer.transform(new DOMSource(doc), new StreamResult(file));
+    }
+
+    private static Element branch(Document doc, String value) {
+        Element branch = doc.createElement("branch");
+        Element attribute = doc.createElement("attribute");
+        attribute.setAttribute("name", "name");
+        attribute.setAttribute("value", value);
+        branch.appendChild(attribute);
+        return branch;
+    }
+}
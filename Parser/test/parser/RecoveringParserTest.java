@@ -0,0 +1,75 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class RecoveringParserTest {
+
+    public RecoveringParserTest() {
+    }
+
+    /** Without errors, the tree of an EBNF grammar is the one of a session. */
+    @Test
+    public void testEbnfMatchesSession() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            RecoveringParser parser = ParserGenerator.createRecoveringParser(grammar, 10);
+            assertEquals(file, Samples.outcome(new ParseSession(table), input), Samples.outcome(parser, input));
+            assertEquals(file, 0, parser.getErrorCount());
+        }
+    }
+
+    @Test
+    public void testDiagnostics() throws Exception {
+        assertEquals(Arrays.asList(
+                "15:3: No production for funcDefList on seeing ;, expected one of [$, float, id, int]",
+                "17:20: No production for funcBody on seeing [, expected one of [{]"),
+                diagnostics("tests/test2_with_error.txt", 10));
+        assertEquals(Arrays.asList(
+                "1:15: Expected {, found [",
+                "2:11: No production for varFuncDeclList1 on seeing {, expected one of [(, ;, []",
+                "6:9: No production for term1 on seeing return, expected one of "
+                        + "[), *, +, ,, -, /, ;, <, <=, <>, ==, >, >=, ], and, or]",
+                "7:4: No production for varFuncDeclList on seeing [, expected one of [float, id, int, }]",
+                "11:9: No production for term1 on seeing return, expected one of "
+                        + "[), *, +, ,, -, /, ;, <, <=, <>, ==, >, >=, ], and, or]"),
+                diagnostics("tests/test3_with_error.txt", 10));
+    }
+
+    /** Past the cap, errors are counted but not recorded. */
+    @Test
+    public void testMaxErrors() throws Exception {
+        RecoveringParser parser = ParserGenerator.createRecoveringParser(Samples.grammar(), 1);
+        Samples.parse(parser, Samples.lex("tests/test3_with_error.txt"));
+        assertEquals(5, parser.getErrorCount());
+        assertEquals(1, parser.getDiagnostics().size());
+        assertEquals("1:15: Expected {, found [", parser.getDiagnostics().get(0).toString());
+
+        parser = ParserGenerator.createRecoveringParser(Samples.grammar(), 0);
+        Samples.parse(parser, Samples.lex("tests/test3_with_error.txt"));
+        assertEquals(5, parser.getErrorCount());
+        assertTrue(parser.getDiagnostics().isEmpty());
+    }
+
+    private static List<String> diagnostics(String file, int maxErrors) throws Exception {
+        RecoveringParser parser = ParserGenerator.createRecoveringParser(Samples.grammar(), maxErrors);
+        Samples.parse(parser, Samples.lex(file));
+        assertEquals(file, parser.getDiagnostics().size(), parser.getErrorCount());
+        List<String> lines = new ArrayList<>();
+        for (Diagnostic diagnostic : parser.getDiagnostics()) {
+            lines.add(diagnostic.toString());
+        }
+        return lines;
+    }
+}
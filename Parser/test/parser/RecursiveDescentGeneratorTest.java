@@ -0,0 +1,77 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class RecursiveDescentGeneratorTest {
+
+    /** Every program in tests/, including the ones with syntax errors. */
+    private static final List<String> FILES = Arrays.asList(
+            "tests/test.txt", "tests/test1.txt", "tests/test2.txt",
+            "tests/test2_with_error.txt", "tests/test3_with_error.txt",
+            "tests/example-valid-program.txt");
+
+    public RecursiveDescentGeneratorTest() {
+    }
+
+    /**
+     * Generates the parser of the sample grammar, compiles it against the
+     * classes of the tests and checks it gives the tree, or the error, of a
+     * session on every program.
+     */
+    @Test
+    public void testGeneratedParserMatchesSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        File root = Files.createTempDirectory("generated").toFile();
+        try {
+            File source = RecursiveDescentGenerator.writeSource(grammar, "generated.SampleParser", root);
+            JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+            assertNotNull(compiler);
+            assertEquals(0, compiler.run(null, null, null, "-nowarn", "-classpath",
+                    System.getProperty("java.class.path"), "-d", root.getPath(), source.getPath()));
+
+            try (URLClassLoader loader = new URLClassLoader(new URL[] {root.toURI().toURL()},
+                    getClass().getClassLoader())) {
+                Class<?> generated = loader.loadClass("generated.SampleParser");
+                int errors = 0;
+                for (String file : FILES) {
+                    List<Terminal> input = Samples.lex(file);
+                    String expected = Samples.outcome(new ParseSession(table), input);
+                    if (expected.startsWith("error: ")) {
+                        ++errors;
+                    }
+                    Parser parser = (Parser) generated.getDeclaredConstructor().newInstance();
+                    assertEquals(file, expected, Samples.outcome(parser, input));
+                }
+                assertEquals(2, errors);
+            }
+        } finally {
+            delete(root);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,134 @@
+package parser;
+
+import datastructure.Epsilon;
+import datastructure.Grammar;
+import datastructure.Terminal;
+import exceptions.ParseErrorException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lexer.Lexer;
+import lexer.Tag;
+import lexer.Token;
+
+/**
+ * The grammar and sample programs the parser tests run on, lexed the way
+ * the drivers lex them.
+ *
+ * @author yucunli
+ */
+final class Samples {
+
+    static final String GRAMMAR = "grammar/grammer_changed_from_solution.txt";
+
+    /** The valid sample programs. */
+    static final List<String> PROGRAMS = Arrays.asList(
+            "tests/test.txt", "tests/test2.txt", "tests/example-valid-program.txt");
+
+    private Samples() {
+    }
+
+    static Grammar grammar() throws Exception {
+        return new GrammarParser(GRAMMAR).generateGrammar();
+    }
+
+    /**
+     * Lexes a source file into terminals carrying their position and
+     * lexeme.
+     */
+    static List<Terminal> lex(String filename) throws Exception {
+        List<Terminal> terminals = new ArrayList<>();
+        Lexer lex = new Lexer(filename);
+        lex.init();
+        while (true) {
+            Token t = lex.next_token();
+            if (t.tag == Tag.EOF) {
+                break;
+            }
+            Terminal terminal = new Terminal(Tag.tagToTerminalString(t.tag));
+            terminal.setLine(t.getLine());
+            terminal.setIndex(t.getIndex());
+            terminal.setLexeme(t.toString());
+            terminals.add(terminal);
+        }
+        return terminals;
+    }
+
+    /** Lexes a piece of source text. */
+    static List<Terminal> lexText(String text) throws Exception {
+        Path file = Files.createTempFile("parser-test", ".txt");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            return lex(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /** Parses an input with a parser, feeding one terminal at a time. */
+    static ParseTree parse(Parser parser, List<Terminal> input) throws Exception {
+        for (Terminal terminal : input) {
+            parser.nextTerminal(terminal);
+        }
+        return parser.inputComplete();
+    }
+
+    /** Parses an input with a fresh session over a table. */
+    static ParseTree parse(ParseTable table, List<Terminal> input) throws Exception {
+        return parse(new ParseSession(table), input);
+    }
+
+    /** The terminals of the leaves of a tree, in order, without epsilons. */
+    static List<Terminal> leaves(ParseTree tree) {
+        List<Terminal> leaves = new ArrayList<>();
+        leaves(tree, leaves);
+        return leaves;
+    }
+
+    private static void leaves(ParseTree tree, List<Terminal> leaves) {
+        if (tree.getSymbol() instanceof Terminal && !(tree.getSymbol() instanceof Epsilon)) {
+            leaves.add((Terminal) tree.getSymbol());
+        }
+        for (ParseTree child : tree.getChildren()) {
+            leaves(child, leaves);
+        }
+    }
+
+    /**
+     * Describes a tree by its shape and the lexeme and line of every leaf,
+     * which toString leaves out.
+     */
+    static String describe(ParseTree tree) {
+        StringBuilder description = new StringBuilder(tree.toString());
+        for (Terminal leaf : leaves(tree)) {
+            description.append(' ').append(leaf.getLexeme()).append('@').append(leaf.getLine());
+        }
+        return description.toString();
+    }
+
+    /**
+     * Parses an input and describes the outcome: the tree, or the message of
+     * the error the parser reports.
+     */
+    static String outcome(Parser parser, List<Terminal> input) {
+        try {
+            return describe(parse(parser, input));
+        } catch (ParseErrorException e) {
+            return "error: " + e.getMessage();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /** Describes the outcome of a parallel parse, see {@link #outcome(Parser, List)}. */
+    static String outcome(ParallelParser parser, List<Terminal> input) {
+        try {
+            return describe(parser.parse(input));
+        } catch (ParseErrorException e) {
+            return "error: " + e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import exceptions.GrammarNotLALR1Exception;
+import exceptions.ParseErrorException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class ShiftReduceParserTest {
+
+    /** Every program in tests/, including the ones with syntax errors. */
+    private static final List<String> FILES = Arrays.asList(
+            "tests/test.txt", "tests/test1.txt", "tests/test2.txt",
+            "tests/test2_with_error.txt", "tests/test3_with_error.txt",
+            "tests/example-valid-program.txt");
+
+    public ShiftReduceParserTest() {
+    }
+
+    /**
+     * The left recursive grammar, which is LALR(1) as it is, accepts the
+     * programs the LL(1) solution grammar accepts, with the same leaves.
+     * One parser is reset between the files.
+     */
+    @Test
+    public void testLeftRecursiveGrammarMatchesSolution() throws Exception {
+        LRParseTable table = LALRGenerator.createParseTable(
+                new GrammarLoader().load("grammar/grammar_left_recursive.txt"));
+        ParseTable solution = ParserGenerator.createParseTable(Samples.grammar());
+        ShiftReduceParser parser = new ShiftReduceParser(table);
+        int rejected = 0;
+        for (String file : FILES) {
+            List<Terminal> input = Samples.lex(file);
+            parser.reset();
+            List<Terminal> expected;
+            try {
+                expected = Samples.leaves(Samples.parse(solution, input));
+            } catch (ParseErrorException ex) {
+                expected = null;
+            }
+            try {
+                ParseTree tree = Samples.parse(parser, input);
+                assertTrue(file, expected != null);
+                assertEquals(file, describe(expected), describe(Samples.leaves(tree)));
+            } catch (ParseErrorException ex) {
+                assertTrue(file, expected == null);
+                ++rejected;
+            }
+        }
+        assertEquals(2, rejected);
+    }
+
+    /**
+     * The classic LR(1) grammar whose LALR(1) states merge two reductions
+     * on the same lookaheads.
+     */
+    @Test
+    public void testNotLALR1Rejected() throws Exception {
+        Grammar grammar = new GrammarLoader().load(new StringReader("S A B\na b c d e\nS\n"
+                + "S->a A d|b B d|a B e|b A e\n"
+                + "A->c\n"
+                + "B->c\n"));
+        try {
+            LALRGenerator.createParseTable(grammar);
+            fail("LALR(1) table built");
+        } catch (GrammarNotLALR1Exception ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("2 conflicts detected\n"));
+        }
+    }
+
+    private static String describe(List<Terminal> leaves) {
+        StringBuilder builder = new StringBuilder();
+        for (Terminal leaf : leaves) {
+            builder.append(leaf.getValue()).append(' ').append(leaf.getLexeme()).append('@')
+                    .append(leaf.getLine()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    /** The reductions of an EBNF grammar's repetitions give flat list nodes. */
+    @Test
+    public void testEbnfMatchesSession() throws Exception {
+        Grammar grammar = new GrammarLoader().load("grammar/grammar_ebnf.txt");
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        LRParseTable lrTable = LALRGenerator.createParseTable(grammar);
+        for (String file : Samples.PROGRAMS) {
+            List<Terminal> input = Samples.lex(file);
+            assertEquals(file, Samples.outcome(new ParseSession(table), input),
+                    Samples.outcome(new ShiftReduceParser(lrTable), input));
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package parser;
+
+import datastructure.Grammar;
+import datastructure.Terminal;
+import datastructure.Variable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author yucunli
+ */
+public class StreamingParserTest {
+
+    public StreamingParserTest() {
+    }
+
+    /**
+     * Flushes every function definition, and every class declaration, and
+     * puts the subtrees back in place of their placeholders, which must give
+     * a session's tree.
+     */
+    @Test
+    public void testRestoredSamplesMatchSession() throws Exception {
+        Grammar grammar = Samples.grammar();
+        ParseTable table = ParserGenerator.createParseTable(grammar);
+        for (List<Variable> flushed : Arrays.asList(Arrays.asList(new Variable("funcDef")),
+                Arrays.asList(new Variable("funcDef"), new Variable("classDecl")))) {
+            for (String file : Samples.PROGRAMS) {
+                for (int times : new int[] {1, 3}) {
+                    List<Terminal> input = scale(Samples.lex(file), times);
+                    Map<Integer, ParseTree> subtrees = new HashMap<>();
+                    StreamingParser parser = (StreamingParser) ParserGenerator.createStreamingParser(
+                            grammar, flushed, collect(subtrees));
+                    ParseTree tree = Samples.parse(parser, input);
+                    assertFalse(file, subtrees.isEmpty());
+                    assertEquals(file, subtrees.size(), parser.getFlushedCount());
+                    for (int index = 0; index < subtrees.size(); ++index) {
+                        assertTrue(file, subtrees.containsKey(index));
+                    }
+                    assertEquals(file, Samples.describe(Samples.parse(table, input)),
+                            Samples.describe(restore(tree, subtrees)));
+                }
+            }
+        }
+    }
+
+    /**
+     * The lists of the flushed subtrees are flushed too, so the nodes held
+     * at any point do not grow with the number of units.
+     */
+    @Test
+    public void testHeldNodesFlat() throws Exception {
+        Grammar grammar = Samples.grammar();
+        List<Terminal> program = Samples.lex("tests/example-valid-program.txt");
+        List<Variable> flushed = Arrays.asList(new Variable("funcDef"), new Variable("classDecl"));
+        int[] held = new int[3];
+        int[] scales = {1, 10, 30};
+        for (int i = 0; i < scales.length; ++i) {
+            StreamingParser parser = (StreamingParser) ParserGenerator.createStreamingParser(
+                    grammar, flushed, collect(new HashMap<Integer, ParseTree>()));
+            for (Terminal terminal : scale(program, scales[i])) {
+                parser.nextTerminal(terminal);
+                held[i] = Math.max(held[i], parser.getHeldCount());
+            }
+            parser.inputComplete();
+            held[i] = Math.max(held[i], parser.getHeldCount());
+        }
+        assertTrue(held[0] > 0);
+        assertEquals(held[1], held[2]);
+        assertTrue(held[1] <= held[0] + 4);
+    }
+
+    /** A sink keeping the subtrees by number, each given once. */
+    private static SubtreeSink collect(final Map<Integer, ParseTree> subtrees) {
+        return new SubtreeSink() {
+            @Override
+            public void subtree(int index, ParseTree tree) {
+                assertNull(subtrees.put(index, tree));
+            }
+        };
+    }
+
+    /**
+     * Repeats the class declarations before the "program" keyword and the
+     * function definitions after the program block, as the benchmark does.
+     */
+    private static List<Terminal> scale(List<Terminal> program, int times) {
+        int start = 0;
+        while (!program.get(start).getValue().equals("program")) {
+            ++start;
+        }
+        int end = start + 1;
+        int depth = 0;
+        do {
+            String value = program.get(end).getValue();
+            if (value.equals("{")) {
+                ++depth;
+            } else if (value.equals("}")) {
+                --depth;
+            }
+            ++end;
+        } while (depth > 0);
+        ++end;
+
+        List<Terminal> result = new ArrayList<>();
+        for (int i = 0; i < times; ++i) {
+            result.addAll(program.subList(0, start));
+        }
+        result.addAll(program.subList(start, end));
+        for (int i = 0; i < times; ++i) {
+            result.addAll(program.subList(end, program.size()));
+        }
+        return result;
+    }
+
+    private static ParseTree restore(ParseTree tree, Map<Integer, ParseTree> subtrees) {
+        if (tree instanceof FlushedParseTree) {
+            return restore(subtrees.get(((FlushedParseTree) tree).getIndex()), subtrees);
+        }
+        List<ParseTree> children = tree.getChildren();
+        for (int i = 0; i < children.size(); ++i) {
+            children.set(i, restore(children.get(i), subtrees));
+        }
+        return tree;
+    }
+}